@@ -0,0 +1,36 @@
+package com.young.commons;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching a pattern once per thread count, with the GC profiler attached so that allocation
+ * rates are reported along with the scores. The results of each run are written to jmh-result-{threads}.json.
+ * <p>
+ * Arguments: {@code [include pattern] [comma separated thread counts]}, defaulting to all benchmarks and 1 thread,
+ * e.g. {@code mvn -Pjmh test-compile exec:exec -Djmh.args="ConcurrentCache 1,4,16"}.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        final String include = args.length > 0 ? args[0] : ".*";
+        final String[] threadCounts = (args.length > 1 ? args[1] : "1").split(",");
+
+        for (final String threadCount : threadCounts) {
+            final int threads = Integer.parseInt(threadCount.trim());
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .threads(threads)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result-" + threads + ".json");
+            new Runner(options.build()).run();
+        }
+    }
+}
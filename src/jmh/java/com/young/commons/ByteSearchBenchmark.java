@@ -0,0 +1,110 @@
+package com.young.commons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ByteSearch} with the byte at a time loops {@link ByteUtil#indexOf} used before, searching a
+ * delimiter placed at the end of a random buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ByteSearchBenchmark {
+    @Param({"1024", "65536", "4194304"})
+    int size;
+
+    @Param({"\r\n\r\n", "--boundary-7d33a816d302b6"})
+    String delimiter;
+
+    private byte[] source;
+    private byte[] target;
+    private byte value;
+    private ByteSearch.Pattern pattern;
+
+    @Setup
+    public void setUp() {
+        target = delimiter.getBytes();
+        value = target[target.length - 1];
+        source = new byte[size];
+        final Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            // printable bytes other than the delimiter's
+            byte b;
+            do {
+                b = (byte) (' ' + random.nextInt(95));
+            } while (delimiter.indexOf(b) >= 0);
+            source[i] = b;
+        }
+        System.arraycopy(target, 0, source, size - target.length, target.length);
+        pattern = ByteSearch.compile(target);
+    }
+
+    @Benchmark
+    public int naiveByte() {
+        return naiveIndexOf(source, value);
+    }
+
+    @Benchmark
+    public int swarByte() {
+        return ByteSearch.indexOf(source, value, 0, source.length);
+    }
+
+    @Benchmark
+    public int naiveBytes() {
+        return naiveIndexOf(source, target);
+    }
+
+    @Benchmark
+    public int searchBytes() {
+        return ByteUtil.indexOf(source, target);
+    }
+
+    @Benchmark
+    public int compiledPattern() {
+        return pattern.indexOf(source);
+    }
+
+    private static int naiveIndexOf(final byte[] source, final byte target) {
+        for (int i = 0; i < source.length; i++) {
+            if (source[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int naiveIndexOf(final byte[] source, final byte[] target) {
+        final byte first = target[0];
+        final int max = source.length - target.length;
+        for (int i = 0; i <= max; i++) {
+            if (source[i] != first) {
+                while (++i <= max && source[i] != first) ;
+            }
+            if (i <= max) {
+                int j = i + 1;
+                final int end = j + target.length - 1;
+                for (int k = 1; j < end && source[j] == target[k]; j++, k++) ;
+                if (j == end) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,68 @@
+package com.young.commons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primitive conversions and searches of {@link ByteUtil} on small arrays, as found in protocol headers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteUtilBenchmark {
+    private final byte[] buffer = new byte[8];
+    private final byte[] header = "GET /index.html HTTP/1.1\r\nHost: localhost\r\nAccept: */*\r\n\r\n".getBytes();
+    private final byte[] delimiter = "\r\n\r\n".getBytes();
+    private int intValue = 0x12345678;
+    private long longValue = 0x123456789ABCDEFL;
+
+    @Benchmark
+    public int intRoundTrip() {
+        ByteUtil.int2bytes(intValue++, buffer, 0);
+        return ByteUtil.bytes2int(buffer, 0);
+    }
+
+    @Benchmark
+    public long longRoundTrip() {
+        ByteUtil.long2bytes(longValue++, buffer, 0);
+        return ByteUtil.bytes2long(buffer, 0);
+    }
+
+    @Benchmark
+    public double doubleRoundTrip() {
+        ByteUtil.double2bytes(longValue++, buffer, 0);
+        return ByteUtil.bytes2double(buffer, 0);
+    }
+
+    @Benchmark
+    public int networkByteOrder() {
+        return ByteUtil.networkByteOrderToInt(ByteUtil.intToNetworkByteOrder(intValue++, 4));
+    }
+
+    @Benchmark
+    public int indexOfByte() {
+        return ByteUtil.indexOf(header, (byte) '\n');
+    }
+
+    @Benchmark
+    public int indexOfBytes() {
+        return ByteUtil.indexOf(header, delimiter);
+    }
+
+    @Benchmark
+    public String asHex() {
+        return ByteUtil.asHex(delimiter);
+    }
+}
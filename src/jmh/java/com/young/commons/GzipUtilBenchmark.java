@@ -0,0 +1,59 @@
+package com.young.commons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression and decompression of text-like payloads with {@link GzipUtil}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GzipUtilBenchmark {
+    private static final String[] WORDS = {
+        "timer", "wheel", "cache", "buffer", "allocator", "stream", "limit", "rate", "the", "of", "and", "{", "}"
+    };
+
+    @Param({"1024", "65536"})
+    int size;
+
+    private byte[] data;
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        final StringBuilder builder = new StringBuilder(size);
+        final Random random = new Random(42);
+        while (builder.length() < size) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        data = builder.substring(0, size).getBytes();
+        compressed = GzipUtil.gzip(data);
+    }
+
+    @Benchmark
+    public byte[] gzip() throws IOException {
+        return GzipUtil.gzip(data);
+    }
+
+    @Benchmark
+    public byte[] ungzip() throws IOException {
+        return GzipUtil.ungzip(compressed);
+    }
+}
@@ -0,0 +1,43 @@
+package com.young.commons;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting and variable replacement of {@link StringUtils}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StringUtilsBenchmark {
+    private final String text = "the quick brown fox jumps over the lazy dog, again and again and again";
+    private final String template = "user %1 logged in from %2 at %3 using %4";
+    private final String[] values = {"alice", "10.0.0.1", "12:00", "ssh"};
+
+    @Benchmark
+    public String[] split() {
+        return StringUtils.split(text, 8);
+    }
+
+    @Benchmark
+    public String replace() {
+        return StringUtils.replace("%", template, values);
+    }
+
+    @Benchmark
+    public int count() {
+        return StringUtils.count(text, "again");
+    }
+}
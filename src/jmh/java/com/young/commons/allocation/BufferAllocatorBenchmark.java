@@ -0,0 +1,62 @@
+package com.young.commons.allocation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation and release of a buffer by each {@link BufferAllocator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BufferAllocatorBenchmark {
+    @Param({"simple", "direct", "directFreeOnClose", "pooled"})
+    String allocatorType;
+
+    @Param({"512", "65536"})
+    int capacity;
+
+    private BufferAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        switch (allocatorType) {
+            case "simple":
+                allocator = new SimpleBufferAllocator();
+                break;
+            case "direct":
+                allocator = new DirectBufferAllocator();
+                break;
+            case "directFreeOnClose":
+                allocator = new DirectBufferAllocator(true);
+                break;
+            case "pooled":
+                allocator = new PooledBufferAllocator();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown allocator: " + allocatorType);
+        }
+    }
+
+    @Benchmark
+    public int allocateClose() {
+        final AllocatedBuffer buffer = allocator.allocate(capacity);
+        final int capacity = buffer.getRawBuffer().capacity();
+        buffer.close();
+        return capacity;
+    }
+}
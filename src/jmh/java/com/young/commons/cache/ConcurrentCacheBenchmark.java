@@ -0,0 +1,69 @@
+package com.young.commons.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and writes of {@link ConcurrentCache} over a skewed key distribution, so that some reads hit and the
+ * eviction policy is exercised by the writes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentCacheBenchmark {
+    private static final int KEYS = 1 << 16;
+
+    @Param({"1024", "65536"})
+    int maximumSize;
+
+    private ConcurrentCache<Integer, Integer> cache;
+    private Integer[] keys;
+
+    @Setup
+    public void setUp() {
+        cache = new ConcurrentCache<>(maximumSize);
+        keys = new Integer[KEYS];
+        final Random random = new Random(42);
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = (int) Math.abs(random.nextGaussian() * maximumSize);
+        }
+        for (int i = 0; i < maximumSize; i++) {
+            cache.put(i, i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int index = new Random().nextInt(KEYS);
+    }
+
+    @Benchmark
+    public Integer get(final ThreadState state) {
+        return cache.get(keys[state.index++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public Integer getOrPut(final ThreadState state) {
+        final Integer key = keys[state.index++ & (KEYS - 1)];
+        final Integer value = cache.get(key);
+        if (value == null) {
+            cache.put(key, key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,50 @@
+package com.young.commons.function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached calls of a {@link MemoizedFunction}, which only read the map once warmed up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemoizedFunctionBenchmark {
+    private static final int KEYS = 1024;
+
+    private MemoizedFunction<Integer, String> function;
+    private Integer[] keys;
+
+    @Setup
+    public void setUp() {
+        function = new MemoizedFunction<>(String::valueOf);
+        keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i;
+            function.apply(i);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int index;
+    }
+
+    @Benchmark
+    public String apply(final ThreadState state) {
+        return function.apply(keys[state.index++ & (KEYS - 1)]);
+    }
+}
@@ -0,0 +1,70 @@
+package com.young.commons.io;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write throughput of a {@link PipelinedOutputStream} to a stream discarding its input, one stream per thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelinedOutputStreamBenchmark {
+    @Param({"64", "8192", "1048576"})
+    int writeSize;
+
+    @Param({"8192", "1048576"})
+    int chunkSize;
+
+    private PipelinedOutputStream out;
+    private byte[] data;
+
+    @Setup
+    public void setUp() throws IOException {
+        out = new PipelinedOutputStream(8 * chunkSize, chunkSize, new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, new AtomicLong());
+        data = new byte[writeSize];
+        new Random(42).nextBytes(data);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        out.close();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        out.write(data, 0, data.length);
+    }
+
+    @Benchmark
+    public void writeByte() throws IOException {
+        out.write(data[0]);
+    }
+}
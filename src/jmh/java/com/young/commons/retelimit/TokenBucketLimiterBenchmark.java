@@ -0,0 +1,47 @@
+package com.young.commons.retelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decisions per second of a {@link TokenBucketLimiter} shared by all benchmark threads, with a rate the threads stay
+ * under (mostly granted) and one they exceed (mostly refused).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenBucketLimiterBenchmark {
+    @Param({"1000", "1000000000"})
+    int qps;
+
+    private TokenBucketLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = new TokenBucketLimiter(qps);
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return limiter.tryAcquire(1);
+    }
+
+    @Benchmark
+    public long reserve() {
+        return limiter.reserve(1);
+    }
+}
@@ -0,0 +1,84 @@
+package com.young.commons.schedule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds and removals on a running {@link TimingWheel}, every thread working either on its own elements or on a shared
+ * set of boxed keys, as sessions are. Run with several thread counts to check the scaling, e.g. 1,8,32.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+    private static final int ELEMENTS = 4096;
+
+    private TimingWheel<Object> timingWheel;
+    private final Long[] sharedKeys = new Long[ELEMENTS];
+
+    @Setup
+    public void setUp() {
+        timingWheel = new TimingWheel<>(100, 600, TimeUnit.MILLISECONDS);
+        timingWheel.start();
+        for (int i = 0; i < ELEMENTS; i++) {
+            sharedKeys[i] = (long) i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        timingWheel.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Object[] elements = new Object[ELEMENTS];
+        int index = ThreadLocalRandom.current().nextInt(ELEMENTS);
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < ELEMENTS; i++) {
+                elements[i] = new Object();
+            }
+        }
+    }
+
+    @Benchmark
+    public long add(final ThreadState state) {
+        return timingWheel.add(state.elements[state.index++ & (ELEMENTS - 1)]);
+    }
+
+    @Benchmark
+    public boolean addRemove(final ThreadState state) {
+        final Object element = state.elements[state.index++ & (ELEMENTS - 1)];
+        timingWheel.add(element);
+        return timingWheel.remove(element);
+    }
+
+    @Benchmark
+    public long addSharedKey(final ThreadState state) {
+        return timingWheel.add(sharedKeys[state.index++ & (ELEMENTS - 1)], 30, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public boolean addRemoveSharedKey(final ThreadState state) {
+        final Long key = sharedKeys[state.index++ & (ELEMENTS - 1)];
+        timingWheel.add(key, 30, TimeUnit.SECONDS);
+        return timingWheel.remove(key);
+    }
+}
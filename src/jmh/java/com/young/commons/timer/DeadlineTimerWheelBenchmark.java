@@ -0,0 +1,67 @@
+package com.young.commons.timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling, cancelling and expiring timers of a {@link DeadlineTimerWheel}. The wheel is not thread-safe, so every
+ * thread has its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeadlineTimerWheelBenchmark {
+    private static final long TICK_RESOLUTION = 1L << 20;
+    private static final int TICKS_PER_WHEEL = 1024;
+
+    @Param({"1024", "65536"})
+    int timers;
+
+    private DeadlineTimerWheel wheel;
+    private long now;
+    private long[] timerIds;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, TICK_RESOLUTION, TICKS_PER_WHEEL);
+        timerIds = new long[timers];
+        for (int i = 0; i < timers; i++) {
+            timerIds[i] = wheel.scheduleTimer(deadline(i));
+        }
+    }
+
+    private long deadline(final int i) {
+        return now + (i % TICKS_PER_WHEEL) * TICK_RESOLUTION + TICK_RESOLUTION;
+    }
+
+    @Benchmark
+    public long scheduleCancel() {
+        final int i = index++ & (timers - 1);
+        wheel.cancelTimer(timerIds[i]);
+        return timerIds[i] = wheel.scheduleTimer(deadline(i));
+    }
+
+    @Benchmark
+    public int pollReschedule() {
+        now += TICK_RESOLUTION;
+        return wheel.poll(now, (timeUnit, time, timerId) -> {
+            wheel.scheduleTimer(time + TICK_RESOLUTION * TICKS_PER_WHEEL / 2);
+            return true;
+        }, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,212 @@
+package com.young.commons;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static com.young.commons.UnsafeAccess.ARRAY_BYTE_BASE_OFFSET;
+import static com.young.commons.UnsafeAccess.UNSAFE;
+
+/**
+ * Searches of bytes in byte arrays.
+ * <p>
+ * A single byte is searched for 8 bytes at a time: each word read from the array is XOR-ed with the byte repeated
+ * 8 times, turning a match into a zero byte which is then located with a few arithmetic operations (SWAR). Searches
+ * of several bytes use a {@link Pattern}, which can be compiled once and reused.
+ */
+public final class ByteSearch {
+    private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS_CLEARED = 0x7F7F7F7F7F7F7F7FL;
+    /**
+     * Below this length a range is searched for the first byte of the target instead of compiling a pattern, whose
+     * shift table would cost more to build than it saves.
+     */
+    private static final int PATTERN_THRESHOLD = 512;
+
+    private ByteSearch() {
+    }
+
+    /**
+     * Find the first occurrence of a byte in a range of an array.
+     *
+     * @param source    array to search in.
+     * @param value     to search for.
+     * @param fromIndex the index to start the search from, inclusive.
+     * @param endIndex  the index to finish the search at, exclusive.
+     * @return the index of the byte, or -1 if it does not occur in the range.
+     * @throws IndexOutOfBoundsException if the range is not within the array.
+     */
+    public static int indexOf(final byte[] source, final byte value, final int fromIndex, final int endIndex) {
+        checkRange(source, fromIndex, endIndex);
+        return search(source, value, fromIndex, endIndex);
+    }
+
+    /**
+     * Find the first occurrence of a sequence of bytes in a range of an array.
+     *
+     * @param source    array to search in.
+     * @param target    bytes to search for.
+     * @param fromIndex the index to start the search from, inclusive.
+     * @param endIndex  the index to finish the search at, exclusive.
+     * @return the index of the first byte of the sequence, or -1 if it does not occur in the range.
+     * @throws IndexOutOfBoundsException if the range is not within the array.
+     */
+    public static int indexOf(final byte[] source, final byte[] target, final int fromIndex, final int endIndex) {
+        checkRange(source, fromIndex, endIndex);
+        if (target.length == 0) {
+            return fromIndex;
+        }
+        if (target.length == 1) {
+            return search(source, target[0], fromIndex, endIndex);
+        }
+        if (endIndex - fromIndex >= PATTERN_THRESHOLD) {
+            return compile(target).search(source, fromIndex, endIndex);
+        }
+
+        final int max = endIndex - target.length;
+        for (int i = fromIndex; i <= max; i++) {
+            i = search(source, target[0], i, max + 1);
+            if (i < 0) {
+                return -1;
+            }
+            if (regionMatches(source, i + 1, target, 1, target.length - 1)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compile a sequence of bytes to search for.
+     *
+     * @param target bytes to search for.
+     * @return the compiled pattern.
+     */
+    public static Pattern compile(final byte[] target) {
+        return new Pattern(target);
+    }
+
+    /**
+     * Checks a range once per search, as the words are read without the bounds checks of array accesses.
+     */
+    private static void checkRange(final byte[] source, final int fromIndex, final int endIndex) {
+        if (fromIndex < 0 || endIndex > source.length || fromIndex > endIndex) {
+            throw new IndexOutOfBoundsException(
+                "fromIndex: " + fromIndex + ", endIndex: " + endIndex + ", length: " + source.length);
+        }
+    }
+
+    /**
+     * The search of a byte in a range already checked.
+     */
+    private static int search(final byte[] source, final byte value, final int fromIndex, final int endIndex) {
+        final long pattern = (value & 0xFFL) * LOW_BITS;
+        int i = fromIndex;
+        for (final int limit = endIndex - 7; i < limit; i += 8) {
+            final long word = UNSAFE.getLong(source, ARRAY_BYTE_BASE_OFFSET + i);
+            final long matches = zeroBytes(word ^ pattern);
+            if (matches != 0) {
+                return i + firstByte(matches);
+            }
+        }
+        for (; i < endIndex; i++) {
+            if (source[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(
+        final byte[] source, final int sourceIndex, final byte[] target, final int targetIndex, final int length) {
+        for (int j = 0; j < length; j++) {
+            if (source[sourceIndex + j] != target[targetIndex + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a word with the high bit set in every byte of the word given which is zero, and no other bit set.
+     */
+    private static long zeroBytes(final long word) {
+        final long t = (word & HIGH_BITS_CLEARED) + HIGH_BITS_CLEARED;
+        return ~(t | word | HIGH_BITS_CLEARED);
+    }
+
+    /**
+     * @return the index in memory order of the first byte flagged by {@link #zeroBytes(long)}.
+     */
+    private static int firstByte(final long matches) {
+        return (LITTLE_ENDIAN ? Long.numberOfTrailingZeros(matches) : Long.numberOfLeadingZeros(matches)) >>> 3;
+    }
+
+    /**
+     * A sequence of bytes to search for with the Boyer-Moore-Horspool algorithm, along with its precomputed shift
+     * table. It is immutable, so it can be shared between threads.
+     */
+    public static final class Pattern {
+        private final byte[] target;
+        private final int[] shifts = new int[256];
+
+        private Pattern(final byte[] target) {
+            this.target = target.clone();
+            final int last = target.length - 1;
+            Arrays.fill(shifts, target.length);
+            for (int i = 0; i < last; i++) {
+                shifts[target[i] & 0xFF] = last - i;
+            }
+        }
+
+        public int length() {
+            return target.length;
+        }
+
+        /**
+         * Find the first occurrence of this pattern in an array.
+         *
+         * @param source array to search in.
+         * @return the index of the first byte of the pattern, or -1 if it does not occur.
+         */
+        public int indexOf(final byte[] source) {
+            return indexOf(source, 0, source.length);
+        }
+
+        /**
+         * Find the first occurrence of this pattern in a range of an array.
+         *
+         * @param source    array to search in.
+         * @param fromIndex the index to start the search from, inclusive.
+         * @param endIndex  the index to finish the search at, exclusive.
+         * @return the index of the first byte of the pattern, or -1 if it does not occur in the range.
+         * @throws IndexOutOfBoundsException if the range is not within the array.
+         */
+        public int indexOf(final byte[] source, final int fromIndex, final int endIndex) {
+            checkRange(source, fromIndex, endIndex);
+            return search(source, fromIndex, endIndex);
+        }
+
+        private int search(final byte[] source, final int fromIndex, final int endIndex) {
+            final byte[] target = this.target;
+            final int last = target.length - 1;
+            if (last < 0) {
+                return fromIndex;
+            }
+            if (last == 0) {
+                return ByteSearch.search(source, target[0], fromIndex, endIndex);
+            }
+            final byte lastByte = target[last];
+            final int max = endIndex - target.length;
+            int i = fromIndex;
+            while (i <= max) {
+                final byte b = source[i + last];
+                if (b == lastByte && regionMatches(source, i, target, 0, last)) {
+                    return i;
+                }
+                i += shifts[b & 0xFF];
+            }
+            return -1;
+        }
+    }
+}
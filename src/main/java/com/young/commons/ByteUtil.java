@@ -1,5 +1,7 @@
 package com.young.commons;
 
+import java.util.Arrays;
+
 public class ByteUtil {
     private ByteUtil() {
         throw new UnsupportedOperationException();
@@ -61,8 +63,7 @@ public class ByteUtil {
         if (target.length == 1) {
             return indexOf(source, target[0], fromIndex, endIndex);
         } else {
-            int sourceCount = endIndex - fromIndex;
-            return ByteUtil.indexOf(source, 0, sourceCount, target, 0, target.length, fromIndex);
+            return ByteUtil.indexOf(source, 0, Math.max(0, Math.min(endIndex, source.length)), target, 0, target.length, fromIndex);
         }
     }
 
@@ -78,12 +79,7 @@ public class ByteUtil {
             return -1;
         }
 
-        for (int i = 0; i < source.length; i++) {
-            if (source[i] == target) {
-                return i;
-            }
-        }
-        return -1;
+        return ByteSearch.indexOf(source, target, 0, source.length);
     }
 
     /**
@@ -102,12 +98,7 @@ public class ByteUtil {
             fromIndex = 0;
         }
 
-        for (int i = fromIndex; i < source.length; i++) {
-            if (source[i] == target) {
-                return i;
-            }
-        }
-        return -1;
+        return ByteSearch.indexOf(source, target, fromIndex, source.length);
     }
 
     /**
@@ -129,13 +120,11 @@ public class ByteUtil {
         if (endIndex > source.length) {
             endIndex = source.length;
         }
-
-        for (int i = fromIndex; i < endIndex; i++) {
-            if (source[i] == target) {
-                return i;
-            }
+        if (fromIndex >= endIndex) {
+            return -1;
         }
-        return -1;
+
+        return ByteSearch.indexOf(source, target, fromIndex, endIndex);
     }
 
     /**
@@ -160,28 +149,11 @@ public class ByteUtil {
             return fromIndex;
         }
 
-        byte first = target[targetOffset];
-        int max = sourceOffset + (sourceCount - targetCount);
-        for (int i = sourceOffset + fromIndex; i <= max; i++) {
-            /* Look for first character. */
-            if (source[i] != first) {
-                while (++i <= max && source[i] != first) ;
-            }
-
-            /* Found first character, now look at the rest of v2 */
-            if (i <= max) {
-                int j = i + 1;
-                int end = j + targetCount - 1;
-                for (int k = targetOffset + 1; j < end && source[j] == target[k]; j++, k++) ;
-
-                if (j == end) {
-                    /* Found whole string. */
-                    return i - sourceOffset;
-                }
-            }
+        if (targetOffset != 0 || targetCount != target.length) {
+            target = Arrays.copyOfRange(target, targetOffset, targetOffset + targetCount);
         }
-
-        return -1;
+        int index = ByteSearch.indexOf(source, target, sourceOffset + fromIndex, sourceOffset + sourceCount);
+        return index < 0 ? -1 : index - sourceOffset;
     }
 
     /**
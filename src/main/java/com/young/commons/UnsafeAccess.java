@@ -3,6 +3,8 @@ package com.young.commons;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -10,6 +12,11 @@ import java.security.PrivilegedExceptionAction;
 public class UnsafeAccess {
     public static final Unsafe UNSAFE;
     public static final int ARRAY_BYTE_BASE_OFFSET;
+    /**
+     * Offset of the {@code address} field of {@link Buffer}, holding the start address of a direct buffer, or -1 if
+     * {@link #UNSAFE} or the field is not available.
+     */
+    public static final long BUFFER_ADDRESS_OFFSET;
 
     private UnsafeAccess() {}
 
@@ -31,5 +38,34 @@ public class UnsafeAccess {
         }
         UNSAFE = unsafe;
         ARRAY_BYTE_BASE_OFFSET = Unsafe.ARRAY_BYTE_BASE_OFFSET;
+        // failing here would make the whole class unusable, address() reports the failure instead
+        long bufferAddressOffset = -1;
+        if (unsafe != null) {
+            try {
+                bufferAddressOffset = unsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            } catch (NoSuchFieldException e) {
+                // not an OpenJDK derived JVM
+            }
+        }
+        BUFFER_ADDRESS_OFFSET = bufferAddressOffset;
+    }
+
+    /**
+     * Get the start address of the memory of a direct buffer.
+     *
+     * @param buffer to get the address of.
+     * @return the address of the buffer's memory.
+     * @throws IllegalArgumentException if the buffer is not direct.
+     * @throws IllegalStateException    if the address of buffers can not be read on this JVM.
+     */
+    public static long address(final ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            throw new IllegalArgumentException("buffer is not direct");
+        }
+        if (BUFFER_ADDRESS_OFFSET < 0) {
+            throw new IllegalStateException(UNSAFE == null
+                ? "sun.misc.Unsafe is not available" : "java.nio.Buffer has no address field");
+        }
+        return UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
     }
 }
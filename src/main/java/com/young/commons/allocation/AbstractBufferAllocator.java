@@ -1,10 +1,26 @@
 package com.young.commons.allocation;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Base of the allocators, accounting the buffers they hand out per allocator and per tag, and sampling them for
+ * leaks with a {@link BufferLeakDetector}.
+ * <p>
+ * Subclasses implement {@link #doAllocate(int)}. Those written before it existed, which override
+ * {@link #allocate(int)} instead, keep working: tagged allocations are delegated to their {@code allocate(int)},
+ * but their buffers are neither accounted in the gauges nor tracked for leaks.
+ */
 public abstract class AbstractBufferAllocator implements BufferAllocator {
     protected static final AtomicLong ALLOCATED_MEMORY = new AtomicLong();
 
+    private final BufferStats stats = new BufferStats();
+    private final ConcurrentHashMap<String, BufferStats> tagStats = new ConcurrentHashMap<>();
+    private final BufferLeakDetector leakDetector = new BufferLeakDetector(getClass().getSimpleName());
+    private final boolean overridesAllocate = overridesAllocate(getClass());
+
     protected static void onFree(final AllocatedDirectBuffer buffer) {
         ALLOCATED_MEMORY.addAndGet(-buffer.capacity());
     }
@@ -12,4 +28,73 @@ public abstract class AbstractBufferAllocator implements BufferAllocator {
     public static long getAllocatedMemoryInKb() {
         return ALLOCATED_MEMORY.get() / 1024;
     }
+
+    private static boolean overridesAllocate(final Class<?> type) {
+        try {
+            return type.getMethod("allocate", int.class).getDeclaringClass() != AbstractBufferAllocator.class;
+        } catch (final NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public AllocatedBuffer allocate(final int capacity) {
+        return allocate(capacity, null);
+    }
+
+    @Override
+    public AllocatedBuffer allocate(final int capacity, final String tag) {
+        if (overridesAllocate) {
+            return allocate(capacity);
+        }
+        final AllocatedBuffer buffer = doAllocate(capacity);
+        BufferStats bufferTagStats = null;
+        if (tag != null) {
+            bufferTagStats = tagStats.get(tag);
+            if (bufferTagStats == null) {
+                bufferTagStats = tagStats.computeIfAbsent(tag, t -> new BufferStats());
+            }
+            bufferTagStats.onAllocate(buffer.capacity());
+        }
+        stats.onAllocate(buffer.capacity());
+        buffer.track(stats, bufferTagStats, leakDetector.track(buffer, tag, stats, bufferTagStats));
+        return buffer;
+    }
+
+    /**
+     * Allocate a buffer, accounting its memory in {@link #ALLOCATED_MEMORY}. Not abstract so that the subclasses
+     * overriding {@link #allocate(int)} still compile, every other subclass must override it.
+     *
+     * @param capacity of the buffer.
+     * @return the allocated buffer.
+     */
+    protected AllocatedBuffer doAllocate(final int capacity) {
+        throw new UnsupportedOperationException(getClass().getName() + " must override doAllocate(int)");
+    }
+
+    /**
+     * @return the gauges of the buffers allocated by this allocator and not closed yet.
+     */
+    public BufferStats stats() {
+        return stats;
+    }
+
+    /**
+     * @param tag of the allocations.
+     * @return the gauges of the buffers allocated under the tag and not closed yet, or null if the tag was never used.
+     */
+    public BufferStats stats(final String tag) {
+        return tagStats.get(tag);
+    }
+
+    /**
+     * @return a live view of the gauges of every tag used so far.
+     */
+    public Map<String, BufferStats> tagStats() {
+        return Collections.unmodifiableMap(tagStats);
+    }
+
+    public BufferLeakDetector leakDetector() {
+        return leakDetector;
+    }
 }
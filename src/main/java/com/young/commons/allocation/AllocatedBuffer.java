@@ -1,40 +1,73 @@
 package com.young.commons.allocation;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Wrapper for java nio ByteBuffer
+ * <p>
+ * Once closed the raw buffer is no longer accessible, and references to it that were obtained before must not be
+ * used anymore as its memory may have been freed or handed out again.
  */
 public abstract class AllocatedBuffer implements AutoCloseable {
     protected ByteBuffer rawBuffer;
-    private volatile boolean closed;
+    private final int capacity;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private BufferStats stats;
+    private BufferStats tagStats;
+    private BufferLeakDetector.LeakTracker leakTracker;
 
     public AllocatedBuffer(final ByteBuffer buffer) {
         rawBuffer = buffer;
-        closed = false;
+        capacity = buffer.capacity();
     }
 
+    /**
+     * @return the wrapped buffer.
+     * @throws IllegalStateException if this buffer has been closed.
+     */
     public ByteBuffer getRawBuffer() {
-        return rawBuffer;
+        final ByteBuffer buffer = rawBuffer;
+        if (buffer == null || closed.get()) {
+            throw new IllegalStateException("buffer has been closed");
+        }
+        return buffer;
     }
 
     public int capacity() {
-        return rawBuffer.capacity();
+        return capacity;
     }
 
     public boolean isClosed() {
-        return closed;
+        return closed.get();
     }
 
     @Override
     public void close() {
-        if (!closed) {
-            closed = true;
+        if (closed.compareAndSet(false, true)) {
             doClose();
             rawBuffer = null;
+            if (stats != null) {
+                stats.onRelease(capacity);
+            }
+            if (tagStats != null) {
+                tagStats.onRelease(capacity);
+            }
+            if (leakTracker != null) {
+                leakTracker.close();
+            }
         }
     }
 
+    /**
+     * Register the accounting to update on close, called by the allocator before the buffer is handed out.
+     */
+    void track(final BufferStats stats, final BufferStats tagStats, final BufferLeakDetector.LeakTracker leakTracker) {
+        this.stats = stats;
+        this.tagStats = tagStats;
+        this.leakTracker = leakTracker;
+    }
+
     public void doClose() {
     }
 }
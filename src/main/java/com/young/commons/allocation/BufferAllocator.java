@@ -2,4 +2,16 @@ package com.young.commons.allocation;
 
 public interface BufferAllocator {
     AllocatedBuffer allocate(int capacity);
+
+    /**
+     * Allocate a buffer accounted under a tag, which identifies the code path requesting it. Allocators that do not
+     * support tags ignore it.
+     *
+     * @param capacity of the buffer.
+     * @param tag      of the allocation, or null.
+     * @return the allocated buffer.
+     */
+    default AllocatedBuffer allocate(int capacity, String tag) {
+        return allocate(capacity);
+    }
 }
@@ -1,12 +1,65 @@
 package com.young.commons.allocation;
 
+import static java.util.Objects.requireNonNull;
+
 public final class BufferAllocators {
+    /**
+     * System property selecting the {@link PooledBufferAllocator} as the default allocator when set to true.
+     */
+    public static final String POOLED_PROPERTY_NAME = "com.young.commons.allocation.pooled";
+
     private final static DirectBufferAllocator DIRECT_BUFFER_ALLOCATOR = new DirectBufferAllocator();
+    private final static PooledBufferAllocator POOLED_BUFFER_ALLOCATOR = new PooledBufferAllocator();
+
+    private static volatile BufferAllocator defaultAllocator =
+        Boolean.getBoolean(POOLED_PROPERTY_NAME) ? POOLED_BUFFER_ALLOCATOR : DIRECT_BUFFER_ALLOCATOR;
 
     private BufferAllocators() {
     }
 
     public static AllocatedBuffer allocate(int capacity) {
-        return DIRECT_BUFFER_ALLOCATOR.allocate(capacity);
+        return defaultAllocator.allocate(capacity);
+    }
+
+    /**
+     * Allocate from the default allocator, accounting the buffer under a tag.
+     *
+     * @param capacity of the buffer.
+     * @param tag      of the allocation, or null.
+     * @return the allocated buffer.
+     * @see AbstractBufferAllocator#stats(String)
+     */
+    public static AllocatedBuffer allocate(int capacity, String tag) {
+        return defaultAllocator.allocate(capacity, tag);
+    }
+
+    /**
+     * @return the allocator used by {@link #allocate(int)}.
+     */
+    public static BufferAllocator defaultAllocator() {
+        return defaultAllocator;
+    }
+
+    /**
+     * Replace the allocator used by {@link #allocate(int)}, e.g. with {@link #pooledAllocator()}.
+     *
+     * @param allocator the allocator to use from now on.
+     */
+    public static void setDefaultAllocator(BufferAllocator allocator) {
+        defaultAllocator = requireNonNull(allocator);
+    }
+
+    /**
+     * @return the shared allocator allocating a new direct buffer on every request.
+     */
+    public static BufferAllocator directAllocator() {
+        return DIRECT_BUFFER_ALLOCATOR;
+    }
+
+    /**
+     * @return the shared allocator recycling direct buffers.
+     */
+    public static BufferAllocator pooledAllocator() {
+        return POOLED_BUFFER_ALLOCATOR;
     }
 }
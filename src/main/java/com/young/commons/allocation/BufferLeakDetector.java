@@ -0,0 +1,164 @@
+package com.young.commons.allocation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detects {@link AllocatedBuffer}s which were garbage collected without being closed.
+ * <p>
+ * One out of every sampling interval allocations, chosen at random, is tracked by a {@link PhantomReference} along
+ * with the stack trace of its allocation. Closing the buffer stops the tracking, so a tracked buffer that reaches the
+ * reference queue has leaked. Leaks are reported as warnings when the detector is polled, which happens on every
+ * allocation of its allocator.
+ * <p>
+ * A reported leak is released from the gauges it was accounted in, as closing it would have. The leaks which were
+ * not sampled go unnoticed, so they stay counted in {@link BufferStats#usedBytes()} and {@link BufferStats#count()}:
+ * gauges growing with a {@link #leakCount()} above 0 are a hint to lower the sampling interval.
+ * <p>
+ * The default sampling interval is 128, it can be changed with the {@link #SAMPLING_INTERVAL_PROPERTY_NAME} system
+ * property or {@link #setSamplingInterval(int)}. An interval of 1 tracks every buffer, 0 disables detection.
+ */
+public final class BufferLeakDetector {
+    /**
+     * System property for the default sampling interval.
+     */
+    public static final String SAMPLING_INTERVAL_PROPERTY_NAME =
+        "com.young.commons.allocation.leakDetection.samplingInterval";
+    public static final int DEFAULT_SAMPLING_INTERVAL = 128;
+
+    private static final Logger logger = LoggerFactory.getLogger(BufferLeakDetector.class);
+
+    private final String name;
+    private final ReferenceQueue<AllocatedBuffer> referenceQueue = new ReferenceQueue<>();
+    private final Set<LeakTracker> trackers = ConcurrentHashMap.newKeySet();
+    private final LongAdder leakCount = new LongAdder();
+    private volatile int samplingInterval;
+
+    /**
+     * Create a detector using the sampling interval of the {@link #SAMPLING_INTERVAL_PROPERTY_NAME} system property.
+     *
+     * @param name of the allocator, included in the reports.
+     */
+    public BufferLeakDetector(final String name) {
+        this(name, Integer.getInteger(SAMPLING_INTERVAL_PROPERTY_NAME, DEFAULT_SAMPLING_INTERVAL));
+    }
+
+    /**
+     * Create a detector.
+     *
+     * @param name             of the allocator, included in the reports.
+     * @param samplingInterval one out of how many allocations are tracked, 0 to disable detection.
+     */
+    public BufferLeakDetector(final String name, final int samplingInterval) {
+        this.name = name;
+        setSamplingInterval(samplingInterval);
+    }
+
+    /**
+     * @param samplingInterval one out of how many allocations are tracked, 0 to disable detection.
+     */
+    public void setSamplingInterval(final int samplingInterval) {
+        if (samplingInterval < 0) {
+            throw new IllegalArgumentException("samplingInterval must not be negative: " + samplingInterval);
+        }
+        this.samplingInterval = samplingInterval;
+    }
+
+    public int samplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * @return the number of leaks reported so far.
+     */
+    public long leakCount() {
+        return leakCount.sum();
+    }
+
+    /**
+     * @return the number of buffers currently tracked.
+     */
+    public int trackedCount() {
+        return trackers.size();
+    }
+
+    /**
+     * Report the tracked buffers which have been garbage collected without being closed.
+     *
+     * @return the number of leaks found.
+     */
+    public int reportLeaks() {
+        int leaks = 0;
+        LeakTracker tracker;
+        while ((tracker = (LeakTracker) referenceQueue.poll()) != null) {
+            if (trackers.remove(tracker)) {
+                leaks++;
+                leakCount.increment();
+                tracker.release();
+                logger.warn("{} leaked a buffer of {} bytes (tag {}), it was garbage collected without being closed",
+                    name, tracker.capacity, tracker.tag, tracker.allocation);
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * Start tracking a buffer if it is sampled.
+     *
+     * @param buffer   just allocated.
+     * @param tag      of the allocation, may be null.
+     * @param stats    the buffer is accounted in, may be null.
+     * @param tagStats the buffer is accounted in, may be null.
+     * @return the tracker to close along with the buffer, or null if the buffer is not sampled.
+     */
+    LeakTracker track(
+        final AllocatedBuffer buffer, final String tag, final BufferStats stats, final BufferStats tagStats) {
+        reportLeaks();
+        final int interval = samplingInterval;
+        if (interval == 0 || (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0)) {
+            return null;
+        }
+        final LeakTracker tracker = new LeakTracker(buffer, tag, stats, tagStats);
+        trackers.add(tracker);
+        return tracker;
+    }
+
+    final class LeakTracker extends PhantomReference<AllocatedBuffer> {
+        private final int capacity;
+        private final String tag;
+        private final Throwable allocation;
+        private final BufferStats stats;
+        private final BufferStats tagStats;
+
+        private LeakTracker(
+            final AllocatedBuffer buffer, final String tag, final BufferStats stats, final BufferStats tagStats) {
+            super(buffer, referenceQueue);
+            this.capacity = buffer.capacity();
+            this.tag = tag;
+            this.allocation = new Throwable("buffer allocated at");
+            this.stats = stats;
+            this.tagStats = tagStats;
+        }
+
+        private void release() {
+            if (stats != null) {
+                stats.onRelease(capacity);
+            }
+            if (tagStats != null) {
+                tagStats.onRelease(capacity);
+            }
+        }
+
+        void close() {
+            trackers.remove(this);
+            clear();
+        }
+    }
+}
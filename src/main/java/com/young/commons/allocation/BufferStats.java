@@ -0,0 +1,45 @@
+package com.young.commons.allocation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gauges of the buffers handed out by an allocator which have not been closed, or reported as leaked by its
+ * {@link BufferLeakDetector}, yet. Updates are striped over
+ * {@link LongAdder}s, so they are cheap for concurrent allocations but a read is only a snapshot.
+ */
+public final class BufferStats {
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder count = new LongAdder();
+
+    BufferStats() {
+    }
+
+    void onAllocate(final int capacity) {
+        bytes.add(capacity);
+        count.increment();
+    }
+
+    void onRelease(final int capacity) {
+        bytes.add(-capacity);
+        count.decrement();
+    }
+
+    /**
+     * @return the total capacity in bytes of the buffers not closed yet.
+     */
+    public long usedBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return the number of buffers not closed yet.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferStats{usedBytes=" + usedBytes() + ", count=" + count() + '}';
+    }
+}
@@ -3,13 +3,41 @@ package com.young.commons.allocation;
 import java.nio.ByteBuffer;
 
 public class DirectBufferAllocator extends AbstractBufferAllocator {
+    private final boolean freeOnClose;
+
+    /**
+     * Create an allocator whose buffers are freed by the garbage collector once unreachable.
+     */
+    public DirectBufferAllocator() {
+        this(false);
+    }
+
+    /**
+     * Create an allocator.
+     *
+     * @param freeOnClose true to free the native memory of a buffer as soon as it is closed, see
+     *                    {@link DirectBufferCleaner}, false to leave it to the garbage collector.
+     */
+    public DirectBufferAllocator(final boolean freeOnClose) {
+        this.freeOnClose = freeOnClose;
+    }
 
     @Override
-    public AllocatedBuffer allocate(final int capacity) {
-        final AllocatedDirectBuffer buffer =
-            new AllocatedDirectBuffer(ByteBuffer.allocateDirect(capacity), DirectBufferAllocator::onFree);
+    protected AllocatedBuffer doAllocate(final int capacity) {
+        final AllocatedDirectBuffer buffer = new AllocatedDirectBuffer(
+            ByteBuffer.allocateDirect(capacity),
+            freeOnClose ? DirectBufferAllocator::free : DirectBufferAllocator::onFree);
         ALLOCATED_MEMORY.addAndGet(capacity);
 
         return buffer;
     }
+
+    public boolean isFreeOnClose() {
+        return freeOnClose;
+    }
+
+    private static void free(final AllocatedDirectBuffer buffer) {
+        onFree(buffer);
+        DirectBufferCleaner.free(buffer.rawBuffer);
+    }
 }
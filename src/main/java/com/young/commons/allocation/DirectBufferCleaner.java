@@ -0,0 +1,104 @@
+package com.young.commons.allocation;
+
+import com.young.commons.UnsafeAccess;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Releases the native memory of a direct {@link ByteBuffer} immediately, instead of waiting for the garbage collector
+ * to run its cleaner.
+ * <p>
+ * On Java 9+ this goes through {@code Unsafe.invokeCleaner}, on Java 8 through the buffer's
+ * {@code sun.misc.Cleaner}. The buffer must not be accessed once freed, doing so may crash the JVM.
+ */
+public final class DirectBufferCleaner {
+    private static final MethodHandle INVOKE_CLEANER;
+    private static final MethodHandle GET_CLEANER;
+    private static final MethodHandle CLEAN;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle invokeCleaner = null;
+        MethodHandle getCleaner = null;
+        MethodHandle clean = null;
+        try {
+            final Method method = UnsafeAccess.UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner = lookup.unreflect(method).bindTo(UnsafeAccess.UNSAFE);
+        } catch (final Exception e) {
+            try {
+                final Method cleanerMethod = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                final Method cleanMethod = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                getCleaner = lookup.unreflect(cleanerMethod)
+                    .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+                clean = lookup.unreflect(cleanMethod).asType(MethodType.methodType(void.class, Object.class));
+            } catch (final Exception ex) {
+                // neither is available, buffers are left to the garbage collector
+            }
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        GET_CLEANER = getCleaner;
+        CLEAN = clean;
+    }
+
+    private DirectBufferCleaner() {
+    }
+
+    /**
+     * @return true if direct buffers can be freed explicitly on this JVM.
+     */
+    public static boolean isSupported() {
+        return INVOKE_CLEANER != null || CLEAN != null;
+    }
+
+    /**
+     * Free the native memory of a direct buffer. Heap buffers are ignored, as are direct buffers when explicit
+     * freeing is not supported.
+     *
+     * @param buffer to be freed, must not be a slice or a duplicate of another buffer.
+     * @throws IllegalArgumentException if the buffer is a slice or a duplicate.
+     */
+    public static void free(final ByteBuffer buffer) {
+        free(buffer, INVOKE_CLEANER, GET_CLEANER, CLEAN);
+    }
+
+    /**
+     * @return true if buffers are freed through {@code Unsafe.invokeCleaner}, the Java 9+ path.
+     */
+    static boolean usesInvokeCleaner() {
+        return INVOKE_CLEANER != null;
+    }
+
+    /**
+     * Free a buffer through the given handles, so that the Java 8 path can be exercised on any JVM.
+     *
+     * @param invokeCleaner {@code (ByteBuffer)void}, the Java 9+ path, or null.
+     * @param getCleaner    {@code (ByteBuffer)Object} returning the buffer's cleaner, or null.
+     * @param clean         {@code (Object)void} running a cleaner, or null.
+     */
+    static void free(
+        final ByteBuffer buffer, final MethodHandle invokeCleaner, final MethodHandle getCleaner,
+        final MethodHandle clean) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (invokeCleaner != null) {
+                invokeCleaner.invokeExact(buffer);
+            } else if (getCleaner != null && clean != null) {
+                final Object cleaner = getCleaner.invokeExact(buffer);
+                if (cleaner == null) {
+                    throw new IllegalArgumentException("duplicate or slice");
+                }
+                clean.invokeExact(cleaner);
+            }
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new IllegalStateException("failed to free direct buffer", t);
+        }
+    }
+}
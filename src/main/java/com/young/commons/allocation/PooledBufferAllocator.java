@@ -0,0 +1,253 @@
+package com.young.commons.allocation;
+
+import com.young.commons.BitUtil;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link BufferAllocator} recycling direct buffers instead of allocating a new one on every request, which saves
+ * the zeroing of the memory and the registration of a cleaner.
+ * <p>
+ * Requests are rounded up to a power of 2 size class. Every thread keeps a small cache of free chunks per size
+ * class, backed by a shared arena which also receives the chunks released while a thread's cache is full.
+ * Closing an {@link AllocatedBuffer} returns its chunk to the pool; chunks which fit in neither the thread cache nor
+ * the arena, and requests larger than the maximum size class, are not pooled and their memory is freed right away.
+ * <p>
+ * The cache of a thread which terminated is reclaimed once it has been garbage collected, its chunks going back to
+ * the arena or being freed, so the memory held by caches follows the live threads, e.g. of a pool recycling its
+ * threads. Reclaiming happens on allocation or with {@link #reclaimThreadCaches()}.
+ * <p>
+ * A closed buffer must no longer be used, its memory may already have been handed out again.
+ */
+public class PooledBufferAllocator extends AbstractBufferAllocator {
+    private static final int DEFAULT_MIN_SIZE = 256;
+    private static final int DEFAULT_MAX_SIZE = 1 << 20;
+    private static final int DEFAULT_THREAD_CACHE_SIZE = 16;
+    private static final int DEFAULT_ARENA_SIZE = 64;
+
+    private final int minSizeShift;
+    private final int maxSize;
+    private final int threadCacheSize;
+    private final int arenaSize;
+    private final Arena[] arenas;
+    private final ThreadLocal<ThreadCache> threadCache;
+    private final ReferenceQueue<ThreadCache> deadCaches = new ReferenceQueue<>();
+    private final Set<CacheReference> liveCaches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an allocator pooling buffers from 256 bytes to 1 MiB, caching up to 16 free buffers per size class
+     * and thread, and 64 per size class in the shared arena.
+     */
+    public PooledBufferAllocator() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_THREAD_CACHE_SIZE, DEFAULT_ARENA_SIZE);
+    }
+
+    /**
+     * Creates a pooled allocator.
+     *
+     * @param minSize         of the smallest size class (must be power of 2).
+     * @param maxSize         of the largest size class (must be power of 2), larger requests are not pooled.
+     * @param threadCacheSize the maximum number of free buffers cached per size class by each thread.
+     * @param arenaSize       the maximum number of free buffers held per size class by the shared arena.
+     */
+    public PooledBufferAllocator(int minSize, int maxSize, int threadCacheSize, int arenaSize) {
+        if (!BitUtil.isPowerOfTwo(minSize) || !BitUtil.isPowerOfTwo(maxSize) || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                "size classes must be powers of 2 with minSize <= maxSize: minSize=" + minSize + " maxSize=" + maxSize);
+        }
+        if (threadCacheSize < 0 || arenaSize < 0) {
+            throw new IllegalArgumentException(
+                "cache sizes must not be negative: threadCacheSize=" + threadCacheSize + " arenaSize=" + arenaSize);
+        }
+        this.minSizeShift = Integer.numberOfTrailingZeros(minSize);
+        this.maxSize = maxSize;
+        this.threadCacheSize = threadCacheSize;
+        this.arenaSize = arenaSize;
+
+        int sizeClasses = Integer.numberOfTrailingZeros(maxSize) - minSizeShift + 1;
+        this.arenas = new Arena[sizeClasses];
+        for (int i = 0; i < sizeClasses; i++) {
+            arenas[i] = new Arena();
+        }
+        this.threadCache = ThreadLocal.withInitial(() -> {
+            final ThreadCache cache = new ThreadCache(sizeClasses);
+            liveCaches.add(new CacheReference(cache));
+            return cache;
+        });
+    }
+
+    @Override
+    protected AllocatedBuffer doAllocate(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        if (capacity > maxSize) {
+            final AllocatedDirectBuffer buffer =
+                new AllocatedDirectBuffer(ByteBuffer.allocateDirect(capacity), PooledBufferAllocator::free);
+            ALLOCATED_MEMORY.addAndGet(capacity);
+            return buffer;
+        }
+
+        reclaimThreadCaches();
+        final int sizeClass = sizeClass(capacity);
+        ByteBuffer chunk = threadCacheSize > 0 ? threadCache.get().poll(sizeClass) : null;
+        if (chunk == null) {
+            chunk = arenas[sizeClass].poll();
+        }
+        if (chunk == null) {
+            chunk = ByteBuffer.allocateDirect(sizeOf(sizeClass));
+            ALLOCATED_MEMORY.addAndGet(chunk.capacity());
+        }
+
+        // through Buffer, whose methods only return ByteBuffer from Java 9 on
+        ((Buffer) chunk).clear().limit(capacity);
+        final ByteBuffer buffer = chunk.slice();
+        ((Buffer) chunk).clear();
+        return new PooledDirectBuffer(buffer, chunk, sizeClass, this::release);
+    }
+
+    /**
+     * @return the number of size classes pooled by this allocator.
+     */
+    public int sizeClasses() {
+        return arenas.length;
+    }
+
+    /**
+     * @return the number of free buffers currently held by the shared arena, across all size classes.
+     */
+    public int arenaBufferCount() {
+        int count = 0;
+        for (Arena arena : arenas) {
+            count += arena.count.get();
+        }
+        return count;
+    }
+
+    /**
+     * Give the chunks cached by the threads which terminated back to the arena, or free them. Only the caches
+     * garbage collected already are found.
+     *
+     * @return the number of chunks reclaimed.
+     */
+    public int reclaimThreadCaches() {
+        int reclaimed = 0;
+        CacheReference reference;
+        while ((reference = (CacheReference) deadCaches.poll()) != null) {
+            liveCaches.remove(reference);
+            for (int sizeClass = 0; sizeClass < reference.chunks.length; sizeClass++) {
+                ByteBuffer chunk;
+                while ((chunk = reference.chunks[sizeClass].poll()) != null) {
+                    releaseToArena(sizeClass, chunk);
+                    reclaimed++;
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    private void release(final AllocatedDirectBuffer allocatedBuffer) {
+        final PooledDirectBuffer buffer = (PooledDirectBuffer) allocatedBuffer;
+        if (threadCacheSize > 0 && threadCache.get().offer(buffer.sizeClass, buffer.chunk)) {
+            return;
+        }
+        releaseToArena(buffer.sizeClass, buffer.chunk);
+    }
+
+    private void releaseToArena(final int sizeClass, final ByteBuffer chunk) {
+        if (arenas[sizeClass].offer(chunk)) {
+            return;
+        }
+        ALLOCATED_MEMORY.addAndGet(-chunk.capacity());
+        DirectBufferCleaner.free(chunk);
+    }
+
+    private static void free(final AllocatedDirectBuffer buffer) {
+        onFree(buffer);
+        DirectBufferCleaner.free(buffer.rawBuffer);
+    }
+
+    private int sizeClass(final int capacity) {
+        final int size = BitUtil.findNextPositivePowerOfTwo(capacity);
+        return Math.max(0, Integer.numberOfTrailingZeros(size) - minSizeShift);
+    }
+
+    private int sizeOf(final int sizeClass) {
+        return 1 << (sizeClass + minSizeShift);
+    }
+
+    /**
+     * The free chunks of a size class shared by all threads.
+     */
+    private final class Arena {
+        private final Queue<ByteBuffer> chunks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        ByteBuffer poll() {
+            final ByteBuffer chunk = chunks.poll();
+            if (chunk != null) {
+                count.decrementAndGet();
+            }
+            return chunk;
+        }
+
+        boolean offer(final ByteBuffer chunk) {
+            if (count.incrementAndGet() > arenaSize) {
+                count.decrementAndGet();
+                return false;
+            }
+            chunks.offer(chunk);
+            return true;
+        }
+    }
+
+    /**
+     * Keeps the chunks of a thread cache, to reclaim them once the cache is garbage collected.
+     */
+    private final class CacheReference extends PhantomReference<ThreadCache> {
+        private final ArrayDeque<ByteBuffer>[] chunks;
+
+        CacheReference(final ThreadCache cache) {
+            super(cache, deadCaches);
+            this.chunks = cache.chunks;
+        }
+    }
+
+    /**
+     * The free chunks of every size class cached by a single thread. Chunks cached by a thread which terminates are
+     * reclaimed through a {@link CacheReference}.
+     */
+    private final class ThreadCache {
+        private final ArrayDeque<ByteBuffer>[] chunks;
+
+        @SuppressWarnings("unchecked")
+        ThreadCache(final int sizeClasses) {
+            chunks = new ArrayDeque[sizeClasses];
+            for (int i = 0; i < sizeClasses; i++) {
+                chunks[i] = new ArrayDeque<>(threadCacheSize);
+            }
+        }
+
+        ByteBuffer poll(final int sizeClass) {
+            return chunks[sizeClass].pollLast();
+        }
+
+        boolean offer(final int sizeClass, final ByteBuffer chunk) {
+            final ArrayDeque<ByteBuffer> cache = chunks[sizeClass];
+            if (cache.size() >= threadCacheSize) {
+                return false;
+            }
+            cache.addLast(chunk);
+            return true;
+        }
+    }
+}
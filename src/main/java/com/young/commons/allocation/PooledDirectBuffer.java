@@ -0,0 +1,19 @@
+package com.young.commons.allocation;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * A direct buffer handed out by {@link PooledBufferAllocator}, a slice of a pooled chunk of its size class.
+ */
+final class PooledDirectBuffer extends AllocatedDirectBuffer {
+    final ByteBuffer chunk;
+    final int sizeClass;
+
+    PooledDirectBuffer(ByteBuffer buffer, ByteBuffer chunk, int sizeClass,
+                       Consumer<AllocatedDirectBuffer> closeCallback) {
+        super(buffer, closeCallback);
+        this.chunk = chunk;
+        this.sizeClass = sizeClass;
+    }
+}
@@ -5,7 +5,7 @@ import java.nio.ByteBuffer;
 public class SimpleBufferAllocator extends AbstractBufferAllocator {
 
     @Override
-    public AllocatedBuffer allocate(int capacity) {
+    protected AllocatedBuffer doAllocate(int capacity) {
         final AllocatedSimpleBuffer buffer =
             new AllocatedSimpleBuffer(ByteBuffer.allocate(capacity));
         ALLOCATED_MEMORY.addAndGet(capacity);
@@ -1,5 +1,6 @@
 package com.young.commons.buffer;
 
+import com.young.commons.ByteSearch;
 import com.young.commons.ByteUtil;
 
 import java.io.Serializable;
@@ -262,12 +263,7 @@ public class ByteArrayBuffer implements Serializable {
             return -1;
         }
 
-        for (int i = beginIndex; i < endIndex; i++) {
-            if (this.buffer[i] == b) {
-                return i;
-            }
-        }
-        return -1;
+        return ByteSearch.indexOf(this.buffer, b, beginIndex, endIndex);
     }
 
     /**
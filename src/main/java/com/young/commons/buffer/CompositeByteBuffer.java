@@ -0,0 +1,383 @@
+package com.young.commons.buffer;
+
+import com.young.commons.allocation.AllocatedBuffer;
+import com.young.commons.allocation.BufferAllocator;
+import com.young.commons.allocation.BufferAllocators;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+/**
+ * A growable buffer made of a chain of fixed size chunks, so growing it never copies what has been written already.
+ * <p>
+ * Bytes are appended with the {@code put} methods and consumed either with {@link #get(byte[], int, int)} or by
+ * {@link #write(GatheringByteChannel)}, which hands all the chunks to the channel in a single gathering write.
+ * Chunks which have been consumed entirely are given back to the allocator. Values spanning two chunks are split
+ * across them.
+ * <p>
+ * Chunks are allocated from a {@link BufferAllocator}, by default the shared pooled allocator. The buffer must be
+ * closed to give back its chunks. This class is not thread-safe.
+ */
+public class CompositeByteBuffer implements AutoCloseable {
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private static final int INITIAL_CHUNKS = 8;
+
+    private final BufferAllocator allocator;
+    private final int chunkSize;
+    private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+    /**
+     * The allocated chunks from {@link #readChunk} on. Writes go to the last chunk through its raw buffer, whose
+     * position is the end of the written bytes.
+     */
+    private AllocatedBuffer[] chunks = new AllocatedBuffer[INITIAL_CHUNKS];
+    /**
+     * Views over the written bytes of every chunk, their positions track the bytes consumed.
+     */
+    private ByteBuffer[] readViews = new ByteBuffer[INITIAL_CHUNKS];
+    private int chunkCount;
+    private int readChunk;
+    private ByteBuffer writeBuffer;
+    private long readerIndex;
+    private long writerIndex;
+    private boolean closed;
+
+    /**
+     * Create a buffer of {@link #DEFAULT_CHUNK_SIZE} chunks from the shared pooled allocator.
+     */
+    public CompositeByteBuffer() {
+        this(BufferAllocators.pooledAllocator(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a buffer.
+     *
+     * @param allocator to allocate the chunks from.
+     * @param chunkSize the capacity of every chunk in bytes.
+     */
+    public CompositeByteBuffer(BufferAllocator allocator, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.allocator = allocator;
+        this.chunkSize = chunkSize;
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    /**
+     * Set the byte order of the multi-byte values put from now on, big endian by default.
+     *
+     * @param order of the values.
+     * @return this buffer.
+     */
+    public CompositeByteBuffer order(ByteOrder order) {
+        this.order = order;
+        if (writeBuffer != null) {
+            writeBuffer.order(order);
+        }
+        return this;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the number of chunks currently held.
+     */
+    public int chunkCount() {
+        return chunkCount - readChunk;
+    }
+
+    /**
+     * @return the total number of bytes consumed so far.
+     */
+    public long readerIndex() {
+        return readerIndex;
+    }
+
+    /**
+     * @return the total number of bytes appended so far.
+     */
+    public long writerIndex() {
+        return writerIndex;
+    }
+
+    /**
+     * @return the number of bytes appended but not consumed yet.
+     */
+    public long readableBytes() {
+        return writerIndex - readerIndex;
+    }
+
+    public boolean isReadable() {
+        return writerIndex > readerIndex;
+    }
+
+    public CompositeByteBuffer put(byte b) {
+        writableBuffer().put(b);
+        writerIndex++;
+        return this;
+    }
+
+    public CompositeByteBuffer put(byte[] src) {
+        return put(src, 0, src.length);
+    }
+
+    public CompositeByteBuffer put(byte[] src, int offset, int length) {
+        if ((offset | length | (src.length - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " length=" + length + " src.length=" + src.length);
+        }
+        while (length > 0) {
+            final ByteBuffer buffer = writableBuffer();
+            final int n = Math.min(length, buffer.remaining());
+            buffer.put(src, offset, n);
+            offset += n;
+            length -= n;
+            writerIndex += n;
+        }
+        return this;
+    }
+
+    /**
+     * Append the remaining bytes of a buffer, advancing its position.
+     *
+     * @param src buffer to copy from.
+     * @return this buffer.
+     */
+    public CompositeByteBuffer put(ByteBuffer src) {
+        final int limit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                final ByteBuffer buffer = writableBuffer();
+                final int n = Math.min(src.remaining(), buffer.remaining());
+                ((Buffer) src).limit(src.position() + n);
+                buffer.put(src);
+                ((Buffer) src).limit(limit);
+                writerIndex += n;
+            }
+        } finally {
+            ((Buffer) src).limit(limit);
+        }
+        return this;
+    }
+
+    public CompositeByteBuffer putShort(short value) {
+        final ByteBuffer buffer = writableBuffer();
+        if (buffer.remaining() >= 2) {
+            buffer.putShort(value);
+            writerIndex += 2;
+            return this;
+        }
+        return putSplit(value, 2);
+    }
+
+    public CompositeByteBuffer putChar(char value) {
+        return putShort((short) value);
+    }
+
+    public CompositeByteBuffer putInt(int value) {
+        final ByteBuffer buffer = writableBuffer();
+        if (buffer.remaining() >= 4) {
+            buffer.putInt(value);
+            writerIndex += 4;
+            return this;
+        }
+        return putSplit(value, 4);
+    }
+
+    public CompositeByteBuffer putLong(long value) {
+        final ByteBuffer buffer = writableBuffer();
+        if (buffer.remaining() >= 8) {
+            buffer.putLong(value);
+            writerIndex += 8;
+            return this;
+        }
+        return putSplit(value, 8);
+    }
+
+    public CompositeByteBuffer putFloat(float value) {
+        return putInt(Float.floatToRawIntBits(value));
+    }
+
+    public CompositeByteBuffer putDouble(double value) {
+        return putLong(Double.doubleToRawLongBits(value));
+    }
+
+    private CompositeByteBuffer putSplit(long value, int size) {
+        if (order == ByteOrder.BIG_ENDIAN) {
+            for (int shift = (size - 1) << 3; shift >= 0; shift -= 8) {
+                put((byte) (value >>> shift));
+            }
+        } else {
+            for (int shift = 0; shift < size << 3; shift += 8) {
+                put((byte) (value >>> shift));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Consume bytes into an array.
+     *
+     * @param dst    array to copy to.
+     * @param offset in the array.
+     * @param length of the bytes to copy, at most {@link #readableBytes()}.
+     * @return this buffer.
+     */
+    public CompositeByteBuffer get(byte[] dst, int offset, int length) {
+        if ((offset | length | (dst.length - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " length=" + length + " dst.length=" + dst.length);
+        }
+        if (length > readableBytes()) {
+            throw new IndexOutOfBoundsException("length=" + length + " readableBytes=" + readableBytes());
+        }
+        while (length > 0) {
+            final ByteBuffer view = readView(readChunk);
+            final int n = Math.min(length, view.remaining());
+            view.get(dst, offset, n);
+            offset += n;
+            length -= n;
+            readerIndex += n;
+            if (!view.hasRemaining()) {
+                releaseConsumedChunks();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write the readable bytes to a channel with a single gathering write, without flattening the chunks. A channel
+     * in non-blocking mode may write only part of them, the rest is written by the next call.
+     *
+     * @param channel to write to.
+     * @return the number of bytes written.
+     * @throws IOException if the channel fails.
+     */
+    public long write(GatheringByteChannel channel) throws IOException {
+        if (!isReadable()) {
+            return 0;
+        }
+        final int length = chunkCount - readChunk;
+        for (int i = readChunk; i < chunkCount; i++) {
+            readView(i);
+        }
+        final long written = channel.write(readViews, readChunk, length);
+        if (written > 0) {
+            readerIndex += written;
+            releaseConsumedChunks();
+        }
+        return written;
+    }
+
+    /**
+     * @return read-only views over the readable bytes, one per chunk, without copying them.
+     */
+    public ByteBuffer[] nioBuffers() {
+        final ByteBuffer[] buffers = new ByteBuffer[chunkCount - readChunk];
+        for (int i = readChunk; i < chunkCount; i++) {
+            buffers[i - readChunk] = readView(i).asReadOnlyBuffer();
+        }
+        return buffers;
+    }
+
+    /**
+     * Give back all chunks and reset the indexes, the buffer can be reused afterwards.
+     */
+    public void clear() {
+        for (int i = readChunk; i < chunkCount; i++) {
+            chunks[i].close();
+        }
+        Arrays.fill(chunks, 0, chunkCount, null);
+        Arrays.fill(readViews, 0, chunkCount, null);
+        chunkCount = 0;
+        readChunk = 0;
+        writeBuffer = null;
+        readerIndex = 0;
+        writerIndex = 0;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            clear();
+        }
+    }
+
+    /**
+     * @return the last chunk with at least one byte of space, allocating a chunk if needed.
+     */
+    private ByteBuffer writableBuffer() {
+        if (closed) {
+            throw new IllegalStateException("buffer has been closed");
+        }
+        if (writeBuffer != null && writeBuffer.hasRemaining()) {
+            return writeBuffer;
+        }
+        if (chunkCount == chunks.length) {
+            if (readChunk > 0) {
+                compact();
+            } else {
+                chunks = Arrays.copyOf(chunks, chunks.length << 1);
+                readViews = Arrays.copyOf(readViews, readViews.length << 1);
+            }
+        }
+        final AllocatedBuffer chunk = allocator.allocate(chunkSize);
+        final ByteBuffer buffer = chunk.getRawBuffer();
+        // Buffer methods through Buffer, they only return ByteBuffer from Java 9 on
+        ((Buffer) buffer).clear();
+        buffer.order(order);
+        chunks[chunkCount] = chunk;
+        readViews[chunkCount] = buffer.duplicate();
+        ((Buffer) readViews[chunkCount]).limit(0);
+        chunkCount++;
+        writeBuffer = buffer;
+        return buffer;
+    }
+
+    /**
+     * Update the limit of a read view to the bytes written to its chunk.
+     */
+    private ByteBuffer readView(int index) {
+        final ByteBuffer view = readViews[index];
+        ((Buffer) view).limit(chunks[index].getRawBuffer().position());
+        return view;
+    }
+
+    /**
+     * Give back the chunks read entirely, except the one being written to.
+     */
+    private void releaseConsumedChunks() {
+        while (readChunk < chunkCount - 1 && !readView(readChunk).hasRemaining()) {
+            chunks[readChunk].close();
+            chunks[readChunk] = null;
+            readViews[readChunk] = null;
+            readChunk++;
+        }
+    }
+
+    private void compact() {
+        final int length = chunkCount - readChunk;
+        System.arraycopy(chunks, readChunk, chunks, 0, length);
+        System.arraycopy(readViews, readChunk, readViews, 0, length);
+        Arrays.fill(chunks, length, chunkCount, null);
+        Arrays.fill(readViews, length, chunkCount, null);
+        chunkCount = length;
+        readChunk = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeByteBuffer{readerIndex=" + readerIndex + ", writerIndex=" + writerIndex
+            + ", chunks=" + chunkCount() + ", chunkSize=" + chunkSize + '}';
+    }
+}
@@ -1,37 +1,79 @@
 package com.young.commons.buffer;
 
+import com.young.commons.allocation.AllocatedBuffer;
+import com.young.commons.allocation.BufferAllocator;
+
+import java.io.IOException;
 import java.io.Serializable;
 import java.nio.Buffer;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link ByteBuffer} growing when a put does not fit in the remaining space.
+ * <p>
+ * The buffer is on the heap unless a {@link BufferAllocator} is given, in which case it grows by allocating a new
+ * buffer from the allocator and closing the previous one. A direct buffer can be written to channels without the
+ * copy the JDK does for heap buffers; it must be closed once done with to give back its memory.
+ */
+public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable, AutoCloseable {
+    /**
+     * The largest capacity grown to, some JVMs reserve a few header words in arrays.
+     */
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
 
-public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
     private ByteBuffer byteBuffer;
     private float expandFactor;
+    private transient BufferAllocator allocator;
+    private transient AllocatedBuffer allocated;
 
     public DynamicByteBuffer(int initialCapacity, float expandFactor) {
+        this(initialCapacity, expandFactor, null);
+    }
+
+    public DynamicByteBuffer(int initialCapacity) {
+        this(initialCapacity, 2);
+    }
+
+    /**
+     * Create a buffer allocated from an allocator, growing by twice its capacity.
+     *
+     * @param initialCapacity of the buffer.
+     * @param allocator       to allocate the buffer from.
+     */
+    public DynamicByteBuffer(int initialCapacity, BufferAllocator allocator) {
+        this(initialCapacity, 2, allocator);
+    }
+
+    /**
+     * Create a buffer.
+     *
+     * @param initialCapacity of the buffer.
+     * @param expandFactor    the capacity is multiplied by when growing.
+     * @param allocator       to allocate the buffer from, or null for a heap buffer.
+     */
+    public DynamicByteBuffer(int initialCapacity, float expandFactor, BufferAllocator allocator) {
         if (expandFactor < 1) {
             throw new IllegalArgumentException(
                 "The expand factor must be greater or equal to 1!");
         }
-        this.byteBuffer = ByteBuffer.allocate(initialCapacity);
+        this.allocator = allocator;
+        this.byteBuffer = allocate(initialCapacity);
         this.expandFactor = expandFactor;
     }
 
-    public DynamicByteBuffer(int initialCapacity) {
-        this(initialCapacity, 2);
-    }
-
     public int capacity() {
         return byteBuffer.capacity();
     }
 
     public void clear() {
-        byteBuffer.clear();
+        ((Buffer) byteBuffer).clear();
     }
 
     public Buffer flip() {
-        return byteBuffer.flip();
+        return ((Buffer) byteBuffer).flip();
     }
 
     public boolean hasRemaining() {
@@ -47,11 +89,11 @@ public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
     }
 
     public Buffer limit(int newLimit) {
-        return byteBuffer.limit(newLimit);
+        return ((Buffer) byteBuffer).limit(newLimit);
     }
 
     public Buffer mark() {
-        return byteBuffer.mark();
+        return ((Buffer) byteBuffer).mark();
     }
 
     public int position() {
@@ -59,7 +101,7 @@ public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
     }
 
     public Buffer position(int newPosition) {
-        return byteBuffer.position(newPosition);
+        return ((Buffer) byteBuffer).position(newPosition);
     }
 
     public int remaining() {
@@ -67,11 +109,11 @@ public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
     }
 
     public Buffer reset() {
-        return byteBuffer.reset();
+        return ((Buffer) byteBuffer).reset();
     }
 
     public Buffer rewind() {
-        return byteBuffer.rewind();
+        return ((Buffer) byteBuffer).rewind();
     }
 
     public byte[] array() {
@@ -281,6 +323,51 @@ public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
         return byteBuffer;
     }
 
+    /**
+     * Get a read-only view of the bytes written so far, from 0 to the position, sharing the memory of this buffer.
+     * The view is no longer valid once this buffer grows or is closed.
+     *
+     * @return the read-only view.
+     */
+    public ByteBuffer asReadOnlySlice() {
+        final ByteBuffer view = byteBuffer.duplicate();
+        ((Buffer) view).flip();
+        return view.slice().asReadOnlyBuffer().order(byteBuffer.order());
+    }
+
+    /**
+     * Write the bytes written so far, from 0 to the position, to a channel. The position of this buffer is left
+     * unchanged. Writing stops early if the channel does not accept more bytes, as a non-blocking channel may.
+     *
+     * @param channel to write to.
+     * @return the number of bytes written.
+     * @throws IOException if the channel fails.
+     */
+    public long writeTo(WritableByteChannel channel) throws IOException {
+        final ByteBuffer view = byteBuffer.duplicate();
+        ((Buffer) view).flip();
+        long written = 0;
+        while (view.hasRemaining()) {
+            final int n = channel.write(view);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+        }
+        return written;
+    }
+
+    /**
+     * Give back the buffer to its allocator, if any. The buffer must no longer be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (allocated != null) {
+            allocated.close();
+            allocated = null;
+        }
+    }
+
     public float getExpandFactor() {
         return expandFactor;
     }
@@ -297,13 +384,38 @@ public class DynamicByteBuffer implements Comparable<ByteBuffer>, Serializable {
         if (remaining() >= needed) {
             return;
         }
-        int newCapacity = (int) (byteBuffer.capacity() * expandFactor);
-        while (newCapacity < (byteBuffer.capacity() + needed)) {
-            newCapacity *= expandFactor;
-        }
-        ByteBuffer expanded = ByteBuffer.allocate(newCapacity);
+        final int newCapacity = newCapacity(byteBuffer.capacity(), needed, expandFactor);
+        final AllocatedBuffer previous = allocated;
+        ByteBuffer expanded = allocate(newCapacity);
         expanded.order(byteBuffer.order());
+        ((Buffer) byteBuffer).flip();
         expanded.put(byteBuffer);
         byteBuffer = expanded;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return the capacity multiplied by the expand factor, or the capacity needed if larger, saturated at
+     * {@link #MAX_CAPACITY}.
+     * @throws BufferOverflowException if the capacity needed is larger than {@link #MAX_CAPACITY}.
+     */
+    static int newCapacity(int capacity, int needed, float expandFactor) {
+        final long minCapacity = (long) capacity + needed;
+        if (minCapacity > MAX_CAPACITY) {
+            throw new BufferOverflowException();
+        }
+        return (int) Math.min(Math.max((long) (capacity * (double) expandFactor), minCapacity), MAX_CAPACITY);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        if (allocator == null) {
+            return ByteBuffer.allocate(capacity);
+        }
+        allocated = allocator.allocate(capacity);
+        final ByteBuffer buffer = allocated.getRawBuffer();
+        ((Buffer) buffer).clear();
+        return buffer;
     }
 }
@@ -0,0 +1,511 @@
+package com.young.commons.buffer;
+
+import com.young.commons.BitUtil;
+import com.young.commons.allocation.AllocatedBuffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static com.young.commons.BitUtil.SIZE_OF_BYTE;
+import static com.young.commons.BitUtil.SIZE_OF_CHAR;
+import static com.young.commons.BitUtil.SIZE_OF_DOUBLE;
+import static com.young.commons.BitUtil.SIZE_OF_FLOAT;
+import static com.young.commons.BitUtil.SIZE_OF_INT;
+import static com.young.commons.BitUtil.SIZE_OF_LONG;
+import static com.young.commons.BitUtil.SIZE_OF_SHORT;
+import static com.young.commons.UnsafeAccess.ARRAY_BYTE_BASE_OFFSET;
+import static com.young.commons.UnsafeAccess.UNSAFE;
+import static com.young.commons.UnsafeAccess.address;
+
+/**
+ * A fixed size buffer over a byte[], a {@link ByteBuffer}, an {@link AllocatedBuffer} or raw off-heap memory,
+ * accessed with {@link sun.misc.Unsafe}.
+ * <p>
+ * All accessors are absolute, there is no position or limit to maintain, and use the native byte order unless a
+ * {@link ByteOrder} is given. The buffer can be re-pointed at other memory with the {@code wrap} methods, so a single
+ * instance can be used as a flyweight to encode many messages.
+ * <p>
+ * Bounds checks can be disabled by setting the {@link #DISABLE_BOUNDS_CHECKS_PROPERTY_NAME} system property to true,
+ * out of bounds accesses will then corrupt memory or crash the JVM.
+ * <p>
+ * The atomic accessors require the index to be aligned on the size of the type, see {@link #verifyAlignment()}.
+ * This class is not thread-safe, apart from the volatile, ordered and atomic accessors.
+ */
+public class UnsafeBuffer {
+    /**
+     * System property disabling the bounds checks when set to true.
+     */
+    public static final String DISABLE_BOUNDS_CHECKS_PROPERTY_NAME = "com.young.commons.buffer.disableBoundsChecks";
+
+    public static final boolean SHOULD_BOUNDS_CHECK = !Boolean.getBoolean(DISABLE_BOUNDS_CHECKS_PROPERTY_NAME);
+
+    private static final ByteOrder NATIVE_BYTE_ORDER = ByteOrder.nativeOrder();
+
+    private long addressOffset;
+    private int capacity;
+    private byte[] byteArray;
+    private ByteBuffer byteBuffer;
+
+    /**
+     * Wrap a byte[].
+     *
+     * @param buffer to wrap.
+     */
+    public UnsafeBuffer(final byte[] buffer) {
+        wrap(buffer);
+    }
+
+    /**
+     * Wrap a region of a byte[].
+     *
+     * @param buffer to wrap.
+     * @param offset of the region in the array.
+     * @param length of the region.
+     */
+    public UnsafeBuffer(final byte[] buffer, final int offset, final int length) {
+        wrap(buffer, offset, length);
+    }
+
+    /**
+     * Wrap the content of a heap or direct {@link ByteBuffer}, from 0 to its capacity.
+     *
+     * @param buffer to wrap.
+     */
+    public UnsafeBuffer(final ByteBuffer buffer) {
+        wrap(buffer);
+    }
+
+    /**
+     * Wrap the buffer of an {@link AllocatedBuffer}, which must outlive this buffer.
+     *
+     * @param buffer to wrap.
+     */
+    public UnsafeBuffer(final AllocatedBuffer buffer) {
+        wrap(buffer.getRawBuffer());
+    }
+
+    /**
+     * Wrap off-heap memory at an address.
+     *
+     * @param address of the memory.
+     * @param length  of the memory in bytes.
+     */
+    public UnsafeBuffer(final long address, final int length) {
+        wrap(address, length);
+    }
+
+    public void wrap(final byte[] buffer) {
+        wrap(buffer, 0, buffer.length);
+    }
+
+    public void wrap(final byte[] buffer, final int offset, final int length) {
+        if (SHOULD_BOUNDS_CHECK) {
+            if ((offset | length | (buffer.length - offset - length)) < 0) {
+                throw new IndexOutOfBoundsException(
+                    "offset=" + offset + " length=" + length + " capacity=" + buffer.length);
+            }
+        }
+        addressOffset = ARRAY_BYTE_BASE_OFFSET + offset;
+        capacity = length;
+        byteArray = buffer;
+        byteBuffer = null;
+    }
+
+    /**
+     * Wrap the content of a heap or direct {@link ByteBuffer}, from 0 to its capacity. A read-only direct buffer
+     * is wrapped as any other, the writes of this buffer bypassing its read-only view.
+     *
+     * @param buffer to wrap.
+     * @throws IllegalArgumentException if the buffer is a read-only heap buffer, whose array is not accessible.
+     */
+    public void wrap(final ByteBuffer buffer) {
+        if (!buffer.isDirect() && !buffer.hasArray()) {
+            throw new IllegalArgumentException("read-only heap buffers can not be wrapped");
+        }
+        if (buffer.isDirect()) {
+            addressOffset = address(buffer);
+            byteArray = null;
+        } else {
+            addressOffset = ARRAY_BYTE_BASE_OFFSET + buffer.arrayOffset();
+            byteArray = buffer.array();
+        }
+        capacity = buffer.capacity();
+        byteBuffer = buffer;
+    }
+
+    public void wrap(final long address, final int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative: " + length);
+        }
+        addressOffset = address;
+        capacity = length;
+        byteArray = null;
+        byteBuffer = null;
+    }
+
+    /**
+     * @return the address of the memory for a direct buffer, or the offset of the first byte in the byte[].
+     */
+    public long addressOffset() {
+        return addressOffset;
+    }
+
+    /**
+     * @return the wrapped byte[], or null if the memory is off-heap.
+     */
+    public byte[] byteArray() {
+        return byteArray;
+    }
+
+    /**
+     * @return the wrapped {@link ByteBuffer}, or null if none was wrapped.
+     */
+    public ByteBuffer byteBuffer() {
+        return byteBuffer;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Verify the buffer starts on an 8 byte boundary, which the atomic accessors require.
+     *
+     * @throws IllegalStateException if the buffer is not aligned.
+     */
+    public void verifyAlignment() {
+        if (!BitUtil.isAligned(addressOffset, SIZE_OF_LONG)) {
+            throw new IllegalStateException(
+                "addressOffset must be aligned to " + SIZE_OF_LONG + " bytes: " + addressOffset);
+        }
+    }
+
+    /**
+     * Check that a range is within the buffer.
+     *
+     * @param index  of the first byte.
+     * @param length of the range.
+     * @throws IndexOutOfBoundsException if the range is not within the buffer.
+     */
+    public void boundsCheck(final int index, final int length) {
+        if (SHOULD_BOUNDS_CHECK) {
+            checkBounds(index, length);
+        }
+    }
+
+    private void checkBounds(final int index, final int length) {
+        final long resultingPosition = index + (long) length;
+        if (index < 0 || length < 0 || resultingPosition > capacity) {
+            throw new IndexOutOfBoundsException("index=" + index + " length=" + length + " capacity=" + capacity);
+        }
+    }
+
+    // long
+
+    public long getLong(final int index) {
+        boundsCheck(index, SIZE_OF_LONG);
+        return UNSAFE.getLong(byteArray, addressOffset + index);
+    }
+
+    public long getLong(final int index, final ByteOrder byteOrder) {
+        final long value = getLong(index);
+        return byteOrder == NATIVE_BYTE_ORDER ? value : Long.reverseBytes(value);
+    }
+
+    public void putLong(final int index, final long value) {
+        boundsCheck(index, SIZE_OF_LONG);
+        UNSAFE.putLong(byteArray, addressOffset + index, value);
+    }
+
+    public void putLong(final int index, final long value, final ByteOrder byteOrder) {
+        putLong(index, byteOrder == NATIVE_BYTE_ORDER ? value : Long.reverseBytes(value));
+    }
+
+    public long getLongVolatile(final int index) {
+        boundsCheck(index, SIZE_OF_LONG);
+        return UNSAFE.getLongVolatile(byteArray, addressOffset + index);
+    }
+
+    public void putLongVolatile(final int index, final long value) {
+        boundsCheck(index, SIZE_OF_LONG);
+        UNSAFE.putLongVolatile(byteArray, addressOffset + index, value);
+    }
+
+    /**
+     * Put a value with store/store ordering, it becomes visible to other threads eventually but is not reordered
+     * with the preceding stores.
+     *
+     * @param index in bytes of the value.
+     * @param value to be written.
+     */
+    public void putLongOrdered(final int index, final long value) {
+        boundsCheck(index, SIZE_OF_LONG);
+        UNSAFE.putOrderedLong(byteArray, addressOffset + index, value);
+    }
+
+    public boolean compareAndSetLong(final int index, final long expectedValue, final long updateValue) {
+        boundsCheck(index, SIZE_OF_LONG);
+        return UNSAFE.compareAndSwapLong(byteArray, addressOffset + index, expectedValue, updateValue);
+    }
+
+    public long getAndAddLong(final int index, final long delta) {
+        boundsCheck(index, SIZE_OF_LONG);
+        return UNSAFE.getAndAddLong(byteArray, addressOffset + index, delta);
+    }
+
+    public long getAndSetLong(final int index, final long value) {
+        boundsCheck(index, SIZE_OF_LONG);
+        return UNSAFE.getAndSetLong(byteArray, addressOffset + index, value);
+    }
+
+    // int
+
+    public int getInt(final int index) {
+        boundsCheck(index, SIZE_OF_INT);
+        return UNSAFE.getInt(byteArray, addressOffset + index);
+    }
+
+    public int getInt(final int index, final ByteOrder byteOrder) {
+        final int value = getInt(index);
+        return byteOrder == NATIVE_BYTE_ORDER ? value : Integer.reverseBytes(value);
+    }
+
+    public void putInt(final int index, final int value) {
+        boundsCheck(index, SIZE_OF_INT);
+        UNSAFE.putInt(byteArray, addressOffset + index, value);
+    }
+
+    public void putInt(final int index, final int value, final ByteOrder byteOrder) {
+        putInt(index, byteOrder == NATIVE_BYTE_ORDER ? value : Integer.reverseBytes(value));
+    }
+
+    public int getIntVolatile(final int index) {
+        boundsCheck(index, SIZE_OF_INT);
+        return UNSAFE.getIntVolatile(byteArray, addressOffset + index);
+    }
+
+    public void putIntVolatile(final int index, final int value) {
+        boundsCheck(index, SIZE_OF_INT);
+        UNSAFE.putIntVolatile(byteArray, addressOffset + index, value);
+    }
+
+    public void putIntOrdered(final int index, final int value) {
+        boundsCheck(index, SIZE_OF_INT);
+        UNSAFE.putOrderedInt(byteArray, addressOffset + index, value);
+    }
+
+    public boolean compareAndSetInt(final int index, final int expectedValue, final int updateValue) {
+        boundsCheck(index, SIZE_OF_INT);
+        return UNSAFE.compareAndSwapInt(byteArray, addressOffset + index, expectedValue, updateValue);
+    }
+
+    public int getAndAddInt(final int index, final int delta) {
+        boundsCheck(index, SIZE_OF_INT);
+        return UNSAFE.getAndAddInt(byteArray, addressOffset + index, delta);
+    }
+
+    public int getAndSetInt(final int index, final int value) {
+        boundsCheck(index, SIZE_OF_INT);
+        return UNSAFE.getAndSetInt(byteArray, addressOffset + index, value);
+    }
+
+    // short
+
+    public short getShort(final int index) {
+        boundsCheck(index, SIZE_OF_SHORT);
+        return UNSAFE.getShort(byteArray, addressOffset + index);
+    }
+
+    public short getShort(final int index, final ByteOrder byteOrder) {
+        final short value = getShort(index);
+        return byteOrder == NATIVE_BYTE_ORDER ? value : Short.reverseBytes(value);
+    }
+
+    public void putShort(final int index, final short value) {
+        boundsCheck(index, SIZE_OF_SHORT);
+        UNSAFE.putShort(byteArray, addressOffset + index, value);
+    }
+
+    public void putShort(final int index, final short value, final ByteOrder byteOrder) {
+        putShort(index, byteOrder == NATIVE_BYTE_ORDER ? value : Short.reverseBytes(value));
+    }
+
+    public short getShortVolatile(final int index) {
+        boundsCheck(index, SIZE_OF_SHORT);
+        return UNSAFE.getShortVolatile(byteArray, addressOffset + index);
+    }
+
+    public void putShortVolatile(final int index, final short value) {
+        boundsCheck(index, SIZE_OF_SHORT);
+        UNSAFE.putShortVolatile(byteArray, addressOffset + index, value);
+    }
+
+    // char
+
+    public char getChar(final int index) {
+        boundsCheck(index, SIZE_OF_CHAR);
+        return UNSAFE.getChar(byteArray, addressOffset + index);
+    }
+
+    public char getChar(final int index, final ByteOrder byteOrder) {
+        final char value = getChar(index);
+        return byteOrder == NATIVE_BYTE_ORDER ? value : Character.reverseBytes(value);
+    }
+
+    public void putChar(final int index, final char value) {
+        boundsCheck(index, SIZE_OF_CHAR);
+        UNSAFE.putChar(byteArray, addressOffset + index, value);
+    }
+
+    public void putChar(final int index, final char value, final ByteOrder byteOrder) {
+        putChar(index, byteOrder == NATIVE_BYTE_ORDER ? value : Character.reverseBytes(value));
+    }
+
+    // byte
+
+    public byte getByte(final int index) {
+        boundsCheck(index, SIZE_OF_BYTE);
+        return UNSAFE.getByte(byteArray, addressOffset + index);
+    }
+
+    public void putByte(final int index, final byte value) {
+        boundsCheck(index, SIZE_OF_BYTE);
+        UNSAFE.putByte(byteArray, addressOffset + index, value);
+    }
+
+    public byte getByteVolatile(final int index) {
+        boundsCheck(index, SIZE_OF_BYTE);
+        return UNSAFE.getByteVolatile(byteArray, addressOffset + index);
+    }
+
+    public void putByteVolatile(final int index, final byte value) {
+        boundsCheck(index, SIZE_OF_BYTE);
+        UNSAFE.putByteVolatile(byteArray, addressOffset + index, value);
+    }
+
+    // double and float
+
+    public double getDouble(final int index) {
+        boundsCheck(index, SIZE_OF_DOUBLE);
+        return UNSAFE.getDouble(byteArray, addressOffset + index);
+    }
+
+    public double getDouble(final int index, final ByteOrder byteOrder) {
+        if (byteOrder == NATIVE_BYTE_ORDER) {
+            return getDouble(index);
+        }
+        return Double.longBitsToDouble(Long.reverseBytes(getLong(index)));
+    }
+
+    public void putDouble(final int index, final double value) {
+        boundsCheck(index, SIZE_OF_DOUBLE);
+        UNSAFE.putDouble(byteArray, addressOffset + index, value);
+    }
+
+    public void putDouble(final int index, final double value, final ByteOrder byteOrder) {
+        if (byteOrder == NATIVE_BYTE_ORDER) {
+            putDouble(index, value);
+        } else {
+            putLong(index, Long.reverseBytes(Double.doubleToRawLongBits(value)));
+        }
+    }
+
+    public float getFloat(final int index) {
+        boundsCheck(index, SIZE_OF_FLOAT);
+        return UNSAFE.getFloat(byteArray, addressOffset + index);
+    }
+
+    public float getFloat(final int index, final ByteOrder byteOrder) {
+        if (byteOrder == NATIVE_BYTE_ORDER) {
+            return getFloat(index);
+        }
+        return Float.intBitsToFloat(Integer.reverseBytes(getInt(index)));
+    }
+
+    public void putFloat(final int index, final float value) {
+        boundsCheck(index, SIZE_OF_FLOAT);
+        UNSAFE.putFloat(byteArray, addressOffset + index, value);
+    }
+
+    public void putFloat(final int index, final float value, final ByteOrder byteOrder) {
+        if (byteOrder == NATIVE_BYTE_ORDER) {
+            putFloat(index, value);
+        } else {
+            putInt(index, Integer.reverseBytes(Float.floatToRawIntBits(value)));
+        }
+    }
+
+    // bulk
+
+    /**
+     * Copy bytes from this buffer into an array.
+     *
+     * @param index  in this buffer to copy from.
+     * @param dst    array to copy to.
+     * @param offset in the array to copy to.
+     * @param length of the bytes to copy.
+     */
+    public void getBytes(final int index, final byte[] dst, final int offset, final int length) {
+        if (SHOULD_BOUNDS_CHECK) {
+            checkBounds(index, length);
+            checkArrayBounds(dst, offset, length);
+        }
+        UNSAFE.copyMemory(byteArray, addressOffset + index, dst, ARRAY_BYTE_BASE_OFFSET + offset, length);
+    }
+
+    /**
+     * Copy bytes from an array into this buffer.
+     *
+     * @param index  in this buffer to copy to.
+     * @param src    array to copy from.
+     * @param offset in the array to copy from.
+     * @param length of the bytes to copy.
+     */
+    public void putBytes(final int index, final byte[] src, final int offset, final int length) {
+        if (SHOULD_BOUNDS_CHECK) {
+            checkBounds(index, length);
+            checkArrayBounds(src, offset, length);
+        }
+        UNSAFE.copyMemory(src, ARRAY_BYTE_BASE_OFFSET + offset, byteArray, addressOffset + index, length);
+    }
+
+    /**
+     * Copy bytes from another buffer into this buffer.
+     *
+     * @param index    in this buffer to copy to.
+     * @param src      buffer to copy from.
+     * @param srcIndex in the source buffer to copy from.
+     * @param length   of the bytes to copy.
+     */
+    public void putBytes(final int index, final UnsafeBuffer src, final int srcIndex, final int length) {
+        if (SHOULD_BOUNDS_CHECK) {
+            checkBounds(index, length);
+            src.checkBounds(srcIndex, length);
+        }
+        UNSAFE.copyMemory(src.byteArray, src.addressOffset + srcIndex, byteArray, addressOffset + index, length);
+    }
+
+    /**
+     * Set a range of this buffer to a value.
+     *
+     * @param index  of the first byte to set.
+     * @param length of the range.
+     * @param value  to set every byte to.
+     */
+    public void setMemory(final int index, final int length, final byte value) {
+        boundsCheck(index, length);
+        UNSAFE.setMemory(byteArray, addressOffset + index, length, value);
+    }
+
+    private static void checkArrayBounds(final byte[] array, final int offset, final int length) {
+        if ((offset | length | (array.length - offset - length)) < 0) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " length=" + length + " capacity=" + array.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UnsafeBuffer{addressOffset=" + addressOffset + ", capacity=" + capacity + ", byteArray="
+            + (byteArray == null ? "null" : "byte[" + byteArray.length + "]") + ", byteBuffer=" + byteBuffer + '}';
+    }
+}
@@ -0,0 +1,1185 @@
+package com.young.commons.cache;
+
+import com.young.commons.timer.DeadlineTimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A size bounded concurrent cache using the W-TinyLFU eviction policy, with optional time-based expiry.
+ * <p>
+ * Entries are stored in a {@link ConcurrentHashMap} so that lookups never block. The eviction policy itself is not
+ * thread-safe and is only touched while holding the eviction lock: reads are recorded into a lossy, striped ring
+ * buffer and writes are queued, and both are replayed against the policy in batches by whichever thread manages to
+ * acquire the lock. This keeps the cost of maintaining the policy amortized and off the read path.
+ * <p>
+ * The policy is split into a small admission window (1% of the capacity) and a main space that is a segmented LRU
+ * made of a probation and a protected (80% of the main space) segment. An entry evicted from the window competes
+ * against the victim of the probation segment, the one with the higher estimated frequency, as recorded by a
+ * {@link FrequencySketch}, being retained.
+ * <p>
+ * When expiry is configured the entries are grouped by the tick of the {@link DeadlineTimerWheel} in which they
+ * expire, each group holding a single timer of the wheel. The wheel is advanced during maintenance so that only the
+ * groups which are due are visited. Expired entries are never returned, even if the maintenance did not get to them
+ * yet. Caches are created with {@link #builder()} or {@link #BoundedCache(long)}.
+ * <p>
+ * Null keys and values are not permitted.
+ *
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+public class BoundedCache<K, V> {
+    private static final Logger logger = LoggerFactory.getLogger(BoundedCache.class);
+
+    private static final double PERCENT_MAIN = 0.99d;
+    private static final double PERCENT_MAIN_PROTECTED = 0.80d;
+
+    /**
+     * The candidate frequency below which a hot victim is never replaced by a random admission.
+     */
+    private static final int ADMIT_HASHDOS_THRESHOLD = 6;
+
+    /**
+     * Durations longer than this (~146 years) are treated as never expiring, which keeps deadlines from overflowing.
+     */
+    private static final long MAXIMUM_EXPIRY = Long.MAX_VALUE >> 1;
+    private static final long NO_TTL = -1L;
+
+    /**
+     * Timer wheel of 2^24ns (~16.8ms) ticks and 1024 spokes, one rotation is about 17 seconds.
+     */
+    private static final int TIMER_TICK_RESOLUTION_BITS = 24;
+    private static final long TIMER_TICK_RESOLUTION = 1L << TIMER_TICK_RESOLUTION_BITS;
+    private static final int TIMER_TICKS_PER_WHEEL = 1024;
+
+    private static final int IDLE = 0;
+    private static final int REQUIRED = 1;
+    private static final int PROCESSING = 2;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final long refreshAfterWriteNanos;
+    private final boolean expires;
+    private final Function<? super K, ? extends V> loader;
+    private final Executor executor;
+    private final LongSupplier ticker;
+
+    private final AccessOrderDeque<K, V> windowDeque = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probationDeque = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedDeque = new AccessOrderDeque<>();
+    private final FrequencySketch<K> sketch;
+
+    private final StripedReadBuffer<Node<K, V>> readBuffer = new StripedReadBuffer<>();
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicInteger drainStatus = new AtomicInteger(IDLE);
+    private final Consumer<Node<K, V>> accessPolicy = this::onAccess;
+
+    // guarded by evictionLock
+    private long weightedSize;
+    private long windowSize;
+    private long protectedSize;
+    private final DeadlineTimerWheel timerWheel;
+    private final Long2ObjectHashMap<TimerBucket<K, V>> bucketsByTick;
+    private final Long2ObjectHashMap<TimerBucket<K, V>> bucketsByTimerId;
+    private final ArrayList<Node<K, V>> unexpired;
+
+    /**
+     * Creates a cache holding at most {@code maximumSize} entries.
+     *
+     * @param maximumSize the maximum number of entries the cache may contain
+     */
+    public BoundedCache(long maximumSize) {
+        this(new Builder<K, V>().maximumSize(maximumSize));
+    }
+
+    private BoundedCache(Builder<K, V> builder) {
+        this.maximum = builder.maximumSize;
+        this.windowMaximum = maximum - (long) (PERCENT_MAIN * maximum);
+        this.protectedMaximum = (long) (PERCENT_MAIN_PROTECTED * (maximum - windowMaximum));
+        this.data = new ConcurrentHashMap<>((int) Math.min(maximum, 1 << 16));
+        this.sketch = new FrequencySketch<>(Math.min(maximum, 16));
+
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.loader = builder.loader;
+        this.executor = builder.executor;
+        this.ticker = builder.ticker;
+        this.expires = builder.expires();
+        if (expires) {
+            this.timerWheel = new DeadlineTimerWheel(
+                TimeUnit.NANOSECONDS, ticker.getAsLong(), TIMER_TICK_RESOLUTION, TIMER_TICKS_PER_WHEEL);
+            this.bucketsByTick = new Long2ObjectHashMap<>(16);
+            this.bucketsByTimerId = new Long2ObjectHashMap<>(16);
+            this.unexpired = new ArrayList<>();
+        } else {
+            this.timerWheel = null;
+            this.bucketsByTick = null;
+            this.bucketsByTimerId = null;
+            this.unexpired = null;
+        }
+    }
+
+    /**
+     * Creates a builder for configuring the size bound and the expiry of a cache.
+     *
+     * @param <K> the type of keys maintained by the cache
+     * @param <V> the type of mapped values
+     * @return a new builder
+     */
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the maximum number of entries the cache may contain.
+     */
+    public long maximumSize() {
+        return maximum;
+    }
+
+    /**
+     * Returns the approximate number of entries in this cache. Writes that are not yet applied to the eviction
+     * policy and expired entries that are not yet swept are included, so the value may briefly exceed
+     * {@link #maximumSize()}.
+     *
+     * @return the estimated number of mappings
+     */
+    public long estimatedSize() {
+        return data.mappingCount();
+    }
+
+    /**
+     * Returns the value associated with the key in this cache, or {@code null} if there is none.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or {@code null}
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        long now = expires ? ticker.getAsLong() : 0L;
+        if (hasExpired(node, now)) {
+            scheduleDrainBuffers();
+            return null;
+        }
+        V value = node.value;
+        afterRead(node, now);
+        return value;
+    }
+
+    /**
+     * Returns the value associated with the key, obtaining it from {@code mappingFunction} if necessary. The
+     * function is invoked at most once per absent key and the computation blocks other writers of the same key.
+     *
+     * @param key             the key with which the value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value, or {@code null} if the computed value is null
+     */
+    public V get(K key, Function<? super K, ? extends V> mappingFunction) {
+        requireNonNull(mappingFunction);
+        long now = expires ? ticker.getAsLong() : 0L;
+        Node<K, V> node = data.get(key);
+        if (node != null && !hasExpired(node, now)) {
+            V value = node.value;
+            afterRead(node, now);
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K, V>[] changed = new Node[2];
+        node = data.compute(key, (k, prior) -> {
+            if (prior != null && !hasExpired(prior, now)) {
+                return prior;
+            }
+            V value = mappingFunction.apply(k);
+            if (prior != null) {
+                synchronized (prior) {
+                    prior.retired = true;
+                }
+                changed[1] = prior;
+            }
+            if (value == null) {
+                return null;
+            }
+            return changed[0] = new Node<>(k, value, now);
+        });
+        if (changed[1] != null) {
+            afterWrite(new RemovalTask(changed[1]));
+        }
+        if (node == null) {
+            return null;
+        }
+        if (node == changed[0]) {
+            afterWrite(new AddTask(node));
+        } else {
+            afterRead(node, now);
+        }
+        return node.value;
+    }
+
+    /**
+     * Associates the value with the key in this cache, replacing any previous value.
+     *
+     * @param key   the key with which the specified value is to be associated
+     * @param value the value to be associated with the specified key
+     * @return the previous value associated with the key, or {@code null} if there was none
+     */
+    public V put(K key, V value) {
+        return put(key, value, NO_TTL);
+    }
+
+    /**
+     * Associates the value with the key in this cache, replacing any previous value. The entry expires once the
+     * given duration has elapsed since this write, regardless of the cache's expire-after-write setting; an
+     * expire-after-access setting still applies.
+     *
+     * @param key      the key with which the specified value is to be associated
+     * @param value    the value to be associated with the specified key
+     * @param duration the time to live of the entry
+     * @param unit     the unit of {@code duration}
+     * @return the previous value associated with the key, or {@code null} if there was none
+     */
+    public V put(K key, V value, long duration, TimeUnit unit) {
+        if (!expires) {
+            throw new IllegalStateException("per-entry expiry requires a cache built with expiry enabled");
+        }
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration must not be negative: " + duration);
+        }
+        return put(key, value, unit.toNanos(duration));
+    }
+
+    private V put(K key, V value, long ttlNanos) {
+        requireNonNull(key);
+        requireNonNull(value);
+
+        long now = expires ? ticker.getAsLong() : 0L;
+        Node<K, V> node = null;
+        for (; ; ) {
+            Node<K, V> prior = data.get(key);
+            if (prior == null) {
+                if (node == null) {
+                    node = new Node<>(key, value, now);
+                    node.ttl = ttlNanos;
+                }
+                prior = data.putIfAbsent(key, node);
+                if (prior == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+
+            V oldValue;
+            boolean expired;
+            synchronized (prior) {
+                if (prior.retired) {
+                    // removed concurrently, retry against the latest mapping
+                    continue;
+                }
+                expired = hasExpired(prior, now);
+                oldValue = prior.value;
+                prior.value = value;
+                if (expires) {
+                    prior.ttl = ttlNanos;
+                    prior.writeTime = now;
+                    prior.accessTime = now;
+                }
+            }
+            if (expires) {
+                afterWrite(new UpdateTask(prior));
+            } else {
+                afterRead(prior, now);
+            }
+            return expired ? null : oldValue;
+        }
+    }
+
+    /**
+     * Discards the mapping for the key, if present.
+     *
+     * @param key the key whose mapping is to be removed
+     * @return the value previously associated with the key, or {@code null} if there was none
+     */
+    public V remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node == null) {
+            return null;
+        }
+        synchronized (node) {
+            node.retired = true;
+        }
+        afterWrite(new RemovalTask(node));
+        return hasExpired(node, expires ? ticker.getAsLong() : 0L) ? null : node.value;
+    }
+
+    /**
+     * Discards all entries in the cache.
+     * <p>
+     * The buffered work is applied once, so that every entry of the map is linked to the policy, then the policy is
+     * reset as a whole rather than replaying a removal for each entry.
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            for (Node<K, V> node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    synchronized (node) {
+                        node.retired = true;
+                    }
+                }
+            }
+            unlinkAll(windowDeque);
+            unlinkAll(probationDeque);
+            unlinkAll(protectedDeque);
+            weightedSize = 0;
+            windowSize = 0;
+            protectedSize = 0;
+            if (expires) {
+                timerWheel.clear();
+                bucketsByTick.clear();
+                bucketsByTimerId.clear();
+            }
+            // applies the writes which raced with the clearing, the removed nodes being skipped as retired
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Performs any pending maintenance operations needed by the cache, such as applying buffered reads and writes
+     * to the eviction policy and sweeping expired entries.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the keys of a segment of the policy, from least to most recently used, checking that each node is
+     * tagged with that segment. Intended for tests, after a {@link #cleanUp()} with no concurrent writer.
+     */
+    List<K> segmentKeys(int queueType) {
+        evictionLock.lock();
+        try {
+            AccessOrderDeque<K, V> deque = queueType == Node.WINDOW ? windowDeque
+                : queueType == Node.PROBATION ? probationDeque : protectedDeque;
+            List<K> keys = new ArrayList<>();
+            for (Node<K, V> node = deque.peekFirst(); node != null; node = node.next) {
+                if (node.queueType != queueType) {
+                    throw new IllegalStateException("node of " + node.key + " is tagged " + node.queueType);
+                }
+                keys.add(node.key);
+            }
+            return keys;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    long windowSize() {
+        return windowSize;
+    }
+
+    long protectedSize() {
+        return protectedSize;
+    }
+
+    long weightedSize() {
+        return weightedSize;
+    }
+
+    long windowMaximum() {
+        return windowMaximum;
+    }
+
+    long protectedMaximum() {
+        return protectedMaximum;
+    }
+
+    private void afterRead(Node<K, V> node, long now) {
+        if (expireAfterAccessNanos > 0) {
+            node.accessTime = now;
+        }
+        if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos) {
+            refresh(node);
+        }
+
+        boolean delayable = readBuffer.offer(node) != StripedReadBuffer.FULL;
+        switch (drainStatus.get()) {
+            case IDLE:
+                if (delayable) {
+                    return;
+                }
+                break;
+            case REQUIRED:
+                break;
+            default:
+                return;
+        }
+        scheduleDrainBuffers();
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        drainStatus.set(REQUIRED);
+        scheduleDrainBuffers();
+    }
+
+    /**
+     * Asynchronously reloads the value of the entry, unless a reload is already in progress. The stale value keeps
+     * being served until the new one is available; if the loader fails or returns null the entry is left as is.
+     */
+    private void refresh(Node<K, V> node) {
+        synchronized (node) {
+            if (node.refreshing || node.retired) {
+                return;
+            }
+            node.refreshing = true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = loader.apply(node.key);
+                    if (value == null) {
+                        return;
+                    }
+                    synchronized (node) {
+                        if (node.retired) {
+                            return;
+                        }
+                        long now = ticker.getAsLong();
+                        node.value = value;
+                        node.writeTime = now;
+                        node.accessTime = now;
+                    }
+                    afterWrite(new UpdateTask(node));
+                } catch (Throwable t) {
+                    logger.warn("Exception thrown when refreshing key {}", node.key, t);
+                } finally {
+                    node.refreshing = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            node.refreshing = false;
+            logger.warn("Refresh of key {} was rejected", node.key, e);
+        }
+    }
+
+    /**
+     * Attempts to apply the buffered work, giving up immediately if another thread is already doing so. That
+     * thread re-checks the drain status after releasing the lock, so no write is left stranded.
+     */
+    private void scheduleDrainBuffers() {
+        while (evictionLock.tryLock()) {
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+            if (drainStatus.get() != REQUIRED) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replays the buffered reads and writes, sweeps the expired entries and evicts entries if the cache exceeds its
+     * maximum. Must be called with the eviction lock held.
+     */
+    private void maintenance() {
+        do {
+            drainStatus.set(PROCESSING);
+            drainBuffers();
+            expireEntries();
+            evictEntries();
+        } while (!drainStatus.compareAndSet(PROCESSING, IDLE));
+    }
+
+    private void drainBuffers() {
+        readBuffer.drainTo(accessPolicy);
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.retired) {
+            return;
+        }
+        sketch.increment(node.key);
+        switch (node.queueType) {
+            case Node.WINDOW:
+                windowDeque.moveToBack(node);
+                break;
+            case Node.PROBATION:
+                probationDeque.remove(node);
+                protectedDeque.addLast(node);
+                node.queueType = Node.PROTECTED;
+                protectedSize++;
+                demoteFromProtected();
+                break;
+            case Node.PROTECTED:
+                protectedDeque.moveToBack(node);
+                break;
+            default:
+                // not yet added to, or already removed from, the policy
+                return;
+        }
+        if (expireAfterAccessNanos > 0) {
+            rescheduleTimer(node);
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (protectedSize > protectedMaximum) {
+            Node<K, V> demoted = protectedDeque.pollFirst();
+            if (demoted == null) {
+                break;
+            }
+            probationDeque.addLast(demoted);
+            demoted.queueType = Node.PROBATION;
+            protectedSize--;
+        }
+    }
+
+    /**
+     * Advances the timer wheel to the current time, evicting the entries whose timer fired. Each spoke is visited
+     * at most once per call, so if the wheel fell behind by more than a rotation every overdue timer has been seen
+     * and the remaining idle ticks are skipped.
+     */
+    private void expireEntries() {
+        if (!expires) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        if (timerWheel.timerCount() == 0) {
+            timerWheel.currentTickTime(now);
+            return;
+        }
+
+        // a poll advances the wheel once the tick it visits is over, the tick advanced to must be visited as well
+        int ticks = 0;
+        long tickTime;
+        do {
+            tickTime = timerWheel.currentTickTime();
+            timerWheel.poll(now, this::onTimerExpiry, Integer.MAX_VALUE);
+        } while (timerWheel.currentTickTime() != tickTime && ++ticks < TIMER_TICKS_PER_WHEEL);
+        if (ticks == TIMER_TICKS_PER_WHEEL) {
+            timerWheel.currentTickTime(now);
+        }
+
+        // entries whose deadline was pushed back since their timer was scheduled, e.g. by a dropped read
+        for (int i = 0, size = unexpired.size(); i < size; i++) {
+            scheduleTimer(unexpired.get(i));
+        }
+        unexpired.clear();
+    }
+
+    private boolean onTimerExpiry(TimeUnit timeUnit, long now, long timerId) {
+        TimerBucket<K, V> bucket = bucketsByTimerId.remove(timerId);
+        if (bucket != null) {
+            bucketsByTick.remove(bucket.tick);
+            Node<K, V> node = bucket.first;
+            while (node != null) {
+                Node<K, V> next = node.timerNext;
+                node.bucket = null;
+                node.timerPrev = null;
+                node.timerNext = null;
+                if (hasExpired(node, now)) {
+                    expireEntry(node, now);
+                } else {
+                    unexpired.add(node);
+                }
+                node = next;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the expired entry, unless it was written to concurrently in which case a new timer is scheduled.
+     */
+    private void expireEntry(Node<K, V> node, long now) {
+        boolean[] resurrected = new boolean[1];
+        data.computeIfPresent(node.key, (k, n) -> {
+            if (n != node) {
+                return n;
+            }
+            synchronized (n) {
+                if (!hasExpired(n, now)) {
+                    resurrected[0] = true;
+                    return n;
+                }
+                n.retired = true;
+            }
+            return null;
+        });
+        if (resurrected[0]) {
+            unexpired.add(node);
+            return;
+        }
+        synchronized (node) {
+            node.retired = true;
+        }
+        unlinkFromPolicy(node);
+    }
+
+    private void evictEntries() {
+        int candidates = evictFromWindow();
+        evictFromMain(candidates);
+    }
+
+    /**
+     * Moves the entries that overflow the admission window to the tail of the probation segment, where they become
+     * candidates for admission into the main space.
+     *
+     * @return the number of candidates moved
+     */
+    private int evictFromWindow() {
+        int candidates = 0;
+        Node<K, V> node = windowDeque.peekFirst();
+        while (windowSize > windowMaximum && node != null) {
+            Node<K, V> next = node.next;
+            windowDeque.remove(node);
+            probationDeque.addLast(node);
+            node.queueType = Node.PROBATION;
+            windowSize--;
+            candidates++;
+            node = next;
+        }
+        return candidates;
+    }
+
+    /**
+     * Evicts entries from the main space while the cache exceeds its maximum. The candidates, taken from the tail
+     * of the probation segment, compete against the victims at its head; if the probation segment is exhausted
+     * then the protected segment and the window are evicted from, in that order.
+     *
+     * @param candidates the number of candidates that were moved from the window
+     */
+    private void evictFromMain(int candidates) {
+        int victimQueue = Node.PROBATION;
+        Node<K, V> victim = probationDeque.peekFirst();
+        Node<K, V> candidate = probationDeque.peekLast();
+        while (weightedSize > maximum) {
+            if (candidates == 0) {
+                candidate = null;
+            }
+
+            if (candidate == null && victim == null) {
+                if (victimQueue == Node.PROBATION) {
+                    victim = protectedDeque.peekFirst();
+                    victimQueue = Node.PROTECTED;
+                    continue;
+                } else if (victimQueue == Node.PROTECTED) {
+                    victim = windowDeque.peekFirst();
+                    victimQueue = Node.WINDOW;
+                    continue;
+                }
+                break;
+            }
+
+            if (victim == null) {
+                Node<K, V> evict = candidate;
+                candidate = candidate.prev;
+                candidates--;
+                evictEntry(evict);
+                continue;
+            } else if (candidate == null) {
+                Node<K, V> evict = victim;
+                victim = victim.next;
+                evictEntry(evict);
+                continue;
+            }
+
+            if (candidate == victim) {
+                victim = victim.next;
+                evictEntry(candidate);
+                candidate = null;
+                continue;
+            }
+
+            candidates--;
+            if (admit(candidate.key, victim.key)) {
+                Node<K, V> evict = victim;
+                victim = victim.next;
+                evictEntry(evict);
+                candidate = candidate.prev;
+            } else {
+                Node<K, V> evict = candidate;
+                candidate = candidate.prev;
+                evictEntry(evict);
+            }
+        }
+    }
+
+    /**
+     * Determines if the candidate should be accepted into the main space, as determined by its frequency relative
+     * to the victim. A small amount of randomness is used to protect against hash collision attacks, where the
+     * victim's frequency is artificially raised so that no new entries are admitted.
+     */
+    private boolean admit(K candidateKey, K victimKey) {
+        int victimFreq = sketch.frequency(victimKey);
+        int candidateFreq = sketch.frequency(candidateKey);
+        if (candidateFreq > victimFreq) {
+            return true;
+        } else if (candidateFreq < ADMIT_HASHDOS_THRESHOLD) {
+            return false;
+        }
+        int random = ThreadLocalRandom.current().nextInt();
+        return ((random & 127) == 0);
+    }
+
+    private void evictEntry(Node<K, V> node) {
+        data.remove(node.key, node);
+        synchronized (node) {
+            node.retired = true;
+        }
+        unlinkFromPolicy(node);
+    }
+
+    private void unlinkFromPolicy(Node<K, V> node) {
+        switch (node.queueType) {
+            case Node.WINDOW:
+                windowDeque.remove(node);
+                windowSize--;
+                break;
+            case Node.PROBATION:
+                probationDeque.remove(node);
+                break;
+            case Node.PROTECTED:
+                protectedDeque.remove(node);
+                protectedSize--;
+                break;
+            default:
+                return;
+        }
+        node.queueType = Node.NONE;
+        weightedSize--;
+        cancelTimer(node);
+    }
+
+    /**
+     * Detaches every node of the deque from the policy, along with its timer links, without touching the counters.
+     */
+    private void unlinkAll(AccessOrderDeque<K, V> deque) {
+        Node<K, V> node;
+        while ((node = deque.pollFirst()) != null) {
+            node.queueType = Node.NONE;
+            node.bucket = null;
+            node.timerPrev = null;
+            node.timerNext = null;
+        }
+    }
+
+    private boolean hasExpired(Node<K, V> node, long now) {
+        if (!expires) {
+            return false;
+        }
+        long expirationTime = expirationTime(node);
+        return expirationTime != Long.MAX_VALUE && now - expirationTime >= 0;
+    }
+
+    /**
+     * @return the time at which the entry expires, or {@link Long#MAX_VALUE} if it never does.
+     */
+    private long expirationTime(Node<K, V> node) {
+        long expirationTime = Long.MAX_VALUE;
+        long ttl = node.ttl != NO_TTL ? node.ttl : expireAfterWriteNanos;
+        if (ttl >= 0 && ttl <= MAXIMUM_EXPIRY) {
+            expirationTime = node.writeTime + ttl;
+        }
+        if (expireAfterAccessNanos > 0 && expireAfterAccessNanos <= MAXIMUM_EXPIRY) {
+            long accessExpirationTime = node.accessTime + expireAfterAccessNanos;
+            if (expirationTime == Long.MAX_VALUE || accessExpirationTime - expirationTime < 0) {
+                expirationTime = accessExpirationTime;
+            }
+        }
+        return expirationTime;
+    }
+
+    /**
+     * Adds the node to the bucket of the tick in which it expires, scheduling a timer for the bucket if it is the
+     * first node of that tick. The bucket fires at the end of its tick, so every node in it is due by then.
+     */
+    private void scheduleTimer(Node<K, V> node) {
+        if (!expires || node.retired || node.bucket != null) {
+            return;
+        }
+        long expirationTime = expirationTime(node);
+        if (expirationTime == Long.MAX_VALUE) {
+            return;
+        }
+
+        long tick = (expirationTime - timerWheel.startTime()) >> TIMER_TICK_RESOLUTION_BITS;
+        TimerBucket<K, V> bucket = bucketsByTick.get(tick);
+        if (bucket == null) {
+            long deadline = timerWheel.startTime() + ((tick + 1) << TIMER_TICK_RESOLUTION_BITS);
+            bucket = new TimerBucket<>(tick, timerWheel.scheduleTimer(deadline));
+            bucketsByTick.put(tick, bucket);
+            bucketsByTimerId.put(bucket.timerId, bucket);
+        }
+        bucket.add(node);
+    }
+
+    private void cancelTimer(Node<K, V> node) {
+        TimerBucket<K, V> bucket = node.bucket;
+        if (bucket != null) {
+            bucket.remove(node);
+            if (bucket.first == null) {
+                timerWheel.cancelTimer(bucket.timerId);
+                bucketsByTick.remove(bucket.tick);
+                bucketsByTimerId.remove(bucket.timerId);
+            }
+        }
+    }
+
+    private void rescheduleTimer(Node<K, V> node) {
+        cancelTimer(node);
+        scheduleTimer(node);
+    }
+
+    /**
+     * Adds the node to the admission window once it has been inserted into the map.
+     */
+    private final class AddTask implements Runnable {
+        private final Node<K, V> node;
+
+        AddTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.retired) {
+                // removed before the addition was applied
+                return;
+            }
+            windowDeque.addLast(node);
+            node.queueType = Node.WINDOW;
+            windowSize++;
+            weightedSize++;
+            sketch.ensureCapacity(Math.min(maximum, weightedSize << 1));
+            sketch.increment(node.key);
+            scheduleTimer(node);
+        }
+    }
+
+    /**
+     * Reorders the node and restarts its timer once its value has been replaced.
+     */
+    private final class UpdateTask implements Runnable {
+        private final Node<K, V> node;
+
+        UpdateTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.queueType != Node.NONE) {
+                onAccess(node);
+                if (expireAfterAccessNanos <= 0) {
+                    rescheduleTimer(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the node from the policy once it has been removed from the map.
+     */
+    private final class RemovalTask implements Runnable {
+        private final Node<K, V> node;
+
+        RemovalTask(Node<K, V> node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            unlinkFromPolicy(node);
+        }
+    }
+
+    static final class Node<K, V> {
+        static final int NONE = 0;
+        static final int WINDOW = 1;
+        static final int PROBATION = 2;
+        static final int PROTECTED = 3;
+
+        final K key;
+        volatile V value;
+        volatile boolean retired;
+        volatile boolean refreshing;
+        volatile long writeTime;
+        volatile long accessTime;
+        volatile long ttl = NO_TTL;
+
+        // guarded by the eviction lock
+        int queueType;
+        Node<K, V> prev;
+        Node<K, V> next;
+        TimerBucket<K, V> bucket;
+        Node<K, V> timerPrev;
+        Node<K, V> timerNext;
+
+        Node(K key, V value, long now) {
+            this.key = key;
+            this.value = value;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    /**
+     * An intrusive doubly-linked list of nodes ordered from least to most recently used.
+     */
+    static final class AccessOrderDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        Node<K, V> peekLast() {
+            return last;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node<K, V> node) {
+            Node<K, V> prev = node.prev;
+            Node<K, V> next = node.next;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+    }
+
+    /**
+     * The nodes expiring within the same tick of the timer wheel, sharing a single timer.
+     */
+    static final class TimerBucket<K, V> {
+        final long tick;
+        final long timerId;
+        Node<K, V> first;
+
+        TimerBucket(long tick, long timerId) {
+            this.tick = tick;
+            this.timerId = timerId;
+        }
+
+        void add(Node<K, V> node) {
+            node.bucket = this;
+            node.timerPrev = null;
+            node.timerNext = first;
+            if (first != null) {
+                first.timerPrev = node;
+            }
+            first = node;
+        }
+
+        void remove(Node<K, V> node) {
+            Node<K, V> prev = node.timerPrev;
+            Node<K, V> next = node.timerNext;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.timerNext = next;
+            }
+            if (next != null) {
+                next.timerPrev = prev;
+            }
+            node.bucket = null;
+            node.timerPrev = null;
+            node.timerNext = null;
+        }
+    }
+
+    /**
+     * Builder of {@link BoundedCache} instances. Caches are unbounded in size and never expire unless configured
+     * otherwise.
+     *
+     * @param <K> the type of keys maintained by the cache
+     * @param <V> the type of mapped values
+     */
+    public static final class Builder<K, V> {
+        private long maximumSize = Long.MAX_VALUE;
+        private long expireAfterWriteNanos = NO_TTL;
+        private long expireAfterAccessNanos = NO_TTL;
+        private long refreshAfterWriteNanos = NO_TTL;
+        private boolean variableExpiry;
+        private Function<? super K, ? extends V> loader;
+        private Executor executor = ForkJoinPool.commonPool();
+        private LongSupplier ticker = System::nanoTime;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maximumSize the maximum number of entries the cache may contain.
+         * @return this builder.
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            if (maximumSize < 0) {
+                throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Expires each entry once the duration has elapsed after its creation or the latest replacement of its value.
+         *
+         * @param duration the time to live of the entries.
+         * @param unit     the unit of {@code duration}.
+         * @return this builder.
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+            this.expireAfterWriteNanos = toNanos(duration, unit);
+            return this;
+        }
+
+        /**
+         * Expires each entry once the duration has elapsed after its creation, the latest replacement of its value
+         * or its last read.
+         *
+         * @param duration the time to idle of the entries.
+         * @param unit     the unit of {@code duration}.
+         * @return this builder.
+         */
+        public Builder<K, V> expireAfterAccess(long duration, TimeUnit unit) {
+            this.expireAfterAccessNanos = toNanos(duration, unit);
+            return this;
+        }
+
+        /**
+         * Enables {@link BoundedCache#put(Object, Object, long, TimeUnit)}, which gives every entry its own time to
+         * live.
+         *
+         * @return this builder.
+         */
+        public Builder<K, V> variableExpiry() {
+            this.variableExpiry = true;
+            return this;
+        }
+
+        /**
+         * Reloads an entry asynchronously when it is read once the duration has elapsed after its creation or the
+         * latest replacement of its value. The stale value is returned while the reload is in progress.
+         *
+         * @param duration the delay after which an entry becomes eligible for a reload.
+         * @param unit     the unit of {@code duration}.
+         * @param loader   the function computing the new value of a key.
+         * @return this builder.
+         */
+        public Builder<K, V> refreshAfterWrite(long duration, TimeUnit unit, Function<? super K, ? extends V> loader) {
+            this.refreshAfterWriteNanos = toNanos(duration, unit);
+            this.loader = requireNonNull(loader);
+            return this;
+        }
+
+        /**
+         * @param executor the executor running the asynchronous reloads, defaults to the common pool.
+         * @return this builder.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = requireNonNull(executor);
+            return this;
+        }
+
+        /**
+         * @param ticker the source of the time, in nanoseconds, against which the entries expire, defaults to
+         *               {@link System#nanoTime()}.
+         * @return this builder.
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+            this.ticker = requireNonNull(ticker);
+            return this;
+        }
+
+        public BoundedCache<K, V> build() {
+            return new BoundedCache<>(this);
+        }
+
+        private boolean expires() {
+            return variableExpiry || expireAfterWriteNanos != NO_TTL || expireAfterAccessNanos != NO_TTL
+                || refreshAfterWriteNanos != NO_TTL;
+        }
+
+        private static long toNanos(long duration, TimeUnit unit) {
+            if (duration <= 0) {
+                throw new IllegalArgumentException("duration must be greater than 0: " + duration);
+            }
+            return unit.toNanos(duration);
+        }
+    }
+}
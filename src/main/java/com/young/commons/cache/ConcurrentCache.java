@@ -1,45 +1,25 @@
 package com.young.commons.cache;
 
-import java.util.Map;
-import java.util.WeakHashMap;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
- * Copy from tomcat
+ * A simple size bounded cache, backed by a {@link BoundedCache} which decides what to keep using the
+ * W-TinyLFU policy.
  *
  * @param <K>
  * @param <V>
  */
 public final class ConcurrentCache<K, V> {
 
-    private final int size;
-
-    private final Map<K, V> eden;
-
-    private final Map<K, V> longterm;
+    private final BoundedCache<K, V> cache;
 
     public ConcurrentCache(int size) {
-        this.size = size;
-        this.eden = new ConcurrentHashMap<K, V>(size);
-        this.longterm = new WeakHashMap<K, V>(size);
+        this.cache = new BoundedCache<K, V>(size);
     }
 
     public V get(K k) {
-        V v = this.eden.get(k);
-        if (v == null) {
-            v = this.longterm.get(k);
-            if (v != null) {
-                this.eden.put(k, v);
-            }
-        }
-        return v;
+        return this.cache.get(k);
     }
 
     public void put(K k, V v) {
-        if (this.eden.size() >= size) {
-            this.longterm.putAll(this.eden);
-            this.eden.clear();
-        }
-        this.eden.put(k, v);
+        this.cache.put(k, v);
     }
 }
@@ -0,0 +1,133 @@
+package com.young.commons.cache;
+
+import com.young.commons.BitUtil;
+
+/**
+ * A probabilistic multi-set for estimating the popularity of an element within a time window. It is a count-min
+ * sketch of depth four holding 4-bit counters, so the maximum estimated frequency of an element is fifteen.
+ * <p>
+ * Once the number of recorded additions reaches the sample size all counters are halved, which ages the history
+ * so that elements that were popular in the past do not stay resident forever.
+ * <p>
+ * This class is not thread-safe, the caller is expected to guard it by a lock.
+ *
+ * @param <E> the type of elements being counted
+ */
+final class FrequencySketch<E> {
+    /**
+     * Seeds of the hash functions, one per row of the sketch.
+     */
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAXIMUM_TABLE_SIZE = 1 << 30;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Creates a sketch sized for the given number of distinct elements.
+     *
+     * @param maximumSize the maximum number of elements the caller intends to keep track of
+     */
+    FrequencySketch(long maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    /**
+     * Increases the capacity of this sketch if it is too small for the given number of elements. A resize discards
+     * the recorded history.
+     *
+     * @param maximumSize the maximum number of elements the caller intends to keep track of
+     */
+    void ensureCapacity(long maximumSize) {
+        int maximum = (int) Math.min(Math.max(maximumSize, 1), MAXIMUM_TABLE_SIZE);
+        if (table != null && table.length >= maximum) {
+            return;
+        }
+        int length = BitUtil.findNextPositivePowerOfTwo(maximum);
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min(10L * maximum, Integer.MAX_VALUE);
+        this.size = 0;
+    }
+
+    /**
+     * Returns the estimated number of occurrences of an element, up to the maximum (15).
+     *
+     * @param e the element to count occurrences of
+     * @return the estimated number of occurrences of the element; possibly zero but never negative
+     */
+    int frequency(E e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the popularity of the element if it does not exceed the maximum (15). The popularity of all
+     * elements will be periodically down sampled when the observed events exceeds a threshold.
+     *
+     * @param e the element to add
+     */
+    void increment(E e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = incrementAt(indexOf(hash, 0), start);
+        added |= incrementAt(indexOf(hash, 1), start + 1);
+        added |= incrementAt(indexOf(hash, 2), start + 2);
+        added |= incrementAt(indexOf(hash, 3), start + 3);
+
+        if (added && (++size == sampleSize)) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        if ((table[i] & mask) != mask) {
+            table[i] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter and adjusts the sample size accordingly.
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * Applies a supplemental hash function to a given hashCode, which defends against poor quality hash functions.
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,147 @@
+package com.young.commons.cache;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of primitive long keys to object values, so looking the timer buckets up does not box the
+ * ticks and timer ids.
+ * <p>
+ * Uses linear probing with backward shift on removal, hence no tombstones. Null is returned for absent keys and can
+ * not be stored. Not thread-safe.
+ *
+ * @param <V> the type of mapped values
+ */
+final class Long2ObjectHashMap<V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    Long2ObjectHashMap(final int initialCapacity) {
+        allocate(Math.max(MIN_CAPACITY, ceilingPowerOfTwo(initialCapacity)));
+    }
+
+    private static int ceilingPowerOfTwo(final int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    private static int hash(final long key, final int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final long key) {
+        int index = hash(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                return (V) values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return the previous value of the key or null.
+     */
+    @SuppressWarnings("unchecked")
+    V put(final long key, final V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        int index = hash(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                final V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the removed value of the key or null.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(final long key) {
+        int index = hash(key, mask);
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                final V value = (V) values[index];
+                values[index] = null;
+                size--;
+                compactChain(index);
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Move the entries following a removed one back, so no probe sequence crosses the free slot.
+     */
+    private void compactChain(int deleteIndex) {
+        int index = deleteIndex;
+        while (true) {
+            index = (index + 1) & mask;
+            if (values[index] == null) {
+                return;
+            }
+            final int home = hash(keys[index], mask);
+            if ((index < home && (home <= deleteIndex || deleteIndex <= index))
+                || (home <= deleteIndex && deleteIndex <= index)) {
+                keys[deleteIndex] = keys[index];
+                values[deleteIndex] = values[index];
+                values[index] = null;
+                deleteIndex = index;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity >> 1;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = hash(oldKeys[i], mask);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.young.commons.cache;
+
+import com.young.commons.BitUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy, multiple-producer / single-consumer buffer used to record reads. Producers are spread over a number
+ * of small ring buffers by their thread id so that they rarely contend on the same counters. When a ring is full
+ * the element is simply dropped, which is acceptable as the buffered reads are only used as policy hints.
+ *
+ * @param <E> the type of elements being buffered
+ */
+final class StripedReadBuffer<E> {
+    static final int SUCCESS = 0;
+    static final int FAILED = 1;
+    static final int FULL = 2;
+
+    private static final int RING_SIZE = 16;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private final Ring<E>[] rings;
+    private final int ringMask;
+
+    @SuppressWarnings("unchecked")
+    StripedReadBuffer() {
+        int count = BitUtil.findNextPositivePowerOfTwo(Runtime.getRuntime().availableProcessors());
+        this.rings = new Ring[count];
+        for (int i = 0; i < count; i++) {
+            rings[i] = new Ring<>();
+        }
+        this.ringMask = count - 1;
+    }
+
+    /**
+     * Inserts the specified element into this buffer if it is possible to do so immediately.
+     *
+     * @param e the element to add
+     * @return {@link #SUCCESS} if added, {@link #FAILED} if lost to a concurrent producer or {@link #FULL} if the
+     * ring is full and the element was dropped
+     */
+    int offer(E e) {
+        return rings[ringIndex()].offer(e);
+    }
+
+    /**
+     * Drains every ring, handing the buffered elements to the consumer. Must only be called by a single thread at
+     * a time.
+     *
+     * @param consumer the action to perform on each element
+     */
+    void drainTo(Consumer<E> consumer) {
+        for (Ring<E> ring : rings) {
+            ring.drainTo(consumer);
+        }
+    }
+
+    private int ringIndex() {
+        int h = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & ringMask;
+    }
+
+    private static final class Ring<E> {
+        private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(RING_SIZE);
+        private final AtomicLong readCounter = new AtomicLong();
+        private final AtomicLong writeCounter = new AtomicLong();
+
+        int offer(E e) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            if (tail - head >= RING_SIZE) {
+                return FULL;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & RING_MASK), e);
+                return SUCCESS;
+            }
+            return FAILED;
+        }
+
+        void drainTo(Consumer<E> consumer) {
+            long head = readCounter.get();
+            long tail = writeCounter.get();
+            for (; head != tail; head++) {
+                int index = (int) (head & RING_MASK);
+                E e = buffer.get(index);
+                if (e == null) {
+                    // not published yet
+                    break;
+                }
+                buffer.lazySet(index, null);
+                consumer.accept(e);
+            }
+            readCounter.lazySet(head);
+        }
+    }
+}
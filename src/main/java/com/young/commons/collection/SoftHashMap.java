@@ -1,67 +1,591 @@
 package com.young.commons.collection;
 
+import com.young.commons.BitUtil;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A memory-sensitive map whose values are held by {@link SoftReference}s, so that they are reclaimed by the garbage
+ * collector under memory pressure instead of causing an {@link OutOfMemoryError}. Entries whose value has been
+ * reclaimed are expunged through a {@link ReferenceQueue} as the map is used.
+ * <p>
+ * Optionally the most recently used values are also strongly referenced by a "hard core", so that they survive a
+ * collection. The map is split into lock-striped segments, each holding its own share of the hard core, so the
+ * hard core is an approximation of the N most recently used entries.
+ * <p>
+ * Reads are not lock-free: {@link #get(Object)} takes the exclusive lock of the key's segment, since it may expunge
+ * reclaimed entries and it reorders the access-ordered hard core. Contention is spread over the segments, so size
+ * the concurrency level after the number of reading threads as well; for read-mostly workloads where values are
+ * cheap to recompute, a {@link com.young.commons.cache.BoundedCache} does not block readers.
+ * <p>
+ * Null keys and values are not permitted. The views are weakly consistent: they iterate over a snapshot of the
+ * values which were alive when the iteration started and never throw {@link java.util.ConcurrentModificationException}.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ */
+public class SoftHashMap<K, V> extends AbstractMap<K, V> {
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+
+    private transient Set<K> keySet;
+    private transient Collection<V> values;
+    private transient Set<Entry<K, V>> entrySet;
+
+    /**
+     * Creates a map without a hard core, every value may be reclaimed by the garbage collector.
+     */
+    public SoftHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates a map strongly referencing about {@code hardSize} of the most recently used values.
+     *
+     * @param hardSize the number of most recently used values that are strongly referenced
+     */
+    public SoftHashMap(int hardSize) {
+        this(hardSize, DEFAULT_CONCURRENCY_LEVEL);
+    }
 
-public class SoftHashMap<K, V> implements Map<K, V> {
+    /**
+     * Creates a map strongly referencing about {@code hardSize} of the most recently used values.
+     *
+     * @param hardSize         the number of most recently used values that are strongly referenced
+     * @param concurrencyLevel the estimated number of concurrently updating threads, rounded up to a power of 2
+     */
+    @SuppressWarnings("unchecked")
+    public SoftHashMap(int hardSize, int concurrencyLevel) {
+        if (hardSize < 0) {
+            throw new IllegalArgumentException("hardSize must not be negative: " + hardSize);
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be greater than 0: " + concurrencyLevel);
+        }
+        int segmentCount = BitUtil.findNextPositivePowerOfTwo(Math.min(concurrencyLevel, 1 << 16));
+        int segmentHardSize = (hardSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(segmentHardSize);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    /**
+     * Returns the number of mappings. Values that have been reclaimed but not yet expunged may still be counted.
+     *
+     * @return the approximate number of mappings in this map
+     */
     @Override
     public int size() {
-        return 0;
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
     }
 
     @Override
     public boolean isEmpty() {
-        return false;
+        for (Segment<K, V> segment : segments) {
+            if (segment.size() != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public boolean containsKey(Object key) {
-        return false;
+        return get(key) != null;
     }
 
     @Override
     public boolean containsValue(Object value) {
+        requireNonNull(value);
+        for (Segment<K, V> segment : segments) {
+            if (segment.containsValue(value)) {
+                return true;
+            }
+        }
         return false;
     }
 
     @Override
     public V get(Object key) {
-        return null;
+        requireNonNull(key);
+        return segmentFor(key).get(key);
     }
 
     @Override
     public V put(K key, V value) {
-        return null;
+        requireNonNull(key);
+        requireNonNull(value);
+        return segmentFor(key).put(key, value, false);
     }
 
     @Override
-    public V remove(Object key) {
-        return null;
+    public V putIfAbsent(K key, V value) {
+        requireNonNull(key);
+        requireNonNull(value);
+        return segmentFor(key).put(key, value, true);
     }
 
+    /**
+     * Returns the value mapped to the key, computing it while holding the lock of the key's segment if it is absent
+     * or has been reclaimed.
+     *
+     * @param key             the key with which the value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value, or {@code null} if the computed value is null
+     */
     @Override
-    public void putAll(Map<? extends K, ? extends V> m) {
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        requireNonNull(key);
+        requireNonNull(mappingFunction);
+        return segmentFor(key).computeIfAbsent(key, mappingFunction);
+    }
 
+    @Override
+    public V remove(Object key) {
+        requireNonNull(key);
+        return segmentFor(key).remove(key);
     }
 
     @Override
     public void clear() {
-
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
     }
 
     @Override
     public Set<K> keySet() {
-        return null;
+        Set<K> ks = keySet;
+        return ks != null ? ks : (keySet = new KeySet());
     }
 
     @Override
     public Collection<V> values() {
-        return null;
+        Collection<V> vs = values;
+        return vs != null ? vs : (values = new Values());
     }
 
     @Override
     public Set<Entry<K, V>> entrySet() {
-        return null;
+        Set<Entry<K, V>> es = entrySet;
+        return es != null ? es : (entrySet = new EntrySet());
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9;
+        return segments[(h >>> 16) & segmentMask];
+    }
+
+    /**
+     * Clears and enqueues the reference to the value of the key, as the garbage collector does when the value is
+     * only softly reachable. Intended for tests.
+     *
+     * @return true if the key was mapped to a reference
+     */
+    boolean reclaim(Object key) {
+        return segmentFor(key).reclaim(key);
+    }
+
+    /**
+     * @return the number of values strongly referenced by the hard core of all the segments.
+     */
+    int hardCoreSize() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.hardCoreSize();
+        }
+        return size;
+    }
+
+    boolean isInHardCore(Object key) {
+        return segmentFor(key).isInHardCore(key);
+    }
+
+    private List<Entry<K, V>> snapshot() {
+        List<Entry<K, V>> entries = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            segment.copyTo(entries);
+        }
+        return entries;
+    }
+
+    /**
+     * A soft reference to a value which remembers its key, so that it can be expunged once the value is reclaimed.
+     */
+    private static final class SoftValue<K, V> extends SoftReference<V> {
+        private final K key;
+
+        SoftValue(K key, V value, ReferenceQueue<? super V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * A lock-protected partition of the map.
+     */
+    private static final class Segment<K, V> extends ReentrantLock {
+        private static final long serialVersionUID = 4196154768591389573L;
+
+        private final HashMap<K, SoftValue<K, V>> map = new HashMap<>();
+        private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+        private final LinkedHashMap<K, V> hardCore;
+        private volatile int count;
+
+        Segment(final int hardSize) {
+            if (hardSize > 0) {
+                this.hardCore = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                    private static final long serialVersionUID = -3417217389224470185L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Entry<K, V> eldest) {
+                        return size() > hardSize;
+                    }
+                };
+            } else {
+                this.hardCore = null;
+            }
+        }
+
+        int size() {
+            if (tryLock()) {
+                try {
+                    expungeStaleEntries();
+                } finally {
+                    unlock();
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Takes the lock even though no mapping is added, as expunging and touching the access-ordered hard core
+         * both modify the segment.
+         */
+        V get(Object key) {
+            lock();
+            try {
+                expungeStaleEntries();
+                SoftValue<K, V> ref = map.get(key);
+                if (ref == null) {
+                    return null;
+                }
+                V value = ref.get();
+                if (value == null) {
+                    map.remove(key);
+                    count = map.size();
+                    return null;
+                }
+                if (hardCore != null) {
+                    hardCore.put(ref.key, value);
+                }
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        V put(K key, V value, boolean onlyIfAbsent) {
+            lock();
+            try {
+                expungeStaleEntries();
+                SoftValue<K, V> ref = map.get(key);
+                V oldValue = ref == null ? null : ref.get();
+                if (oldValue != null && onlyIfAbsent) {
+                    if (hardCore != null) {
+                        hardCore.put(key, oldValue);
+                    }
+                    return oldValue;
+                }
+                store(key, value);
+                return oldValue;
+            } finally {
+                unlock();
+            }
+        }
+
+        V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+            lock();
+            try {
+                expungeStaleEntries();
+                SoftValue<K, V> ref = map.get(key);
+                V value = ref == null ? null : ref.get();
+                if (value == null) {
+                    value = mappingFunction.apply(key);
+                    if (value == null) {
+                        return null;
+                    }
+                    store(key, value);
+                } else if (hardCore != null) {
+                    hardCore.put(key, value);
+                }
+                return value;
+            } finally {
+                unlock();
+            }
+        }
+
+        V remove(Object key) {
+            lock();
+            try {
+                expungeStaleEntries();
+                SoftValue<K, V> ref = map.remove(key);
+                if (ref == null) {
+                    return null;
+                }
+                if (hardCore != null) {
+                    hardCore.remove(key);
+                }
+                count = map.size();
+                return ref.get();
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean containsValue(Object value) {
+            lock();
+            try {
+                for (SoftValue<K, V> ref : map.values()) {
+                    if (value.equals(ref.get())) {
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                map.clear();
+                if (hardCore != null) {
+                    hardCore.clear();
+                }
+                while (queue.poll() != null) {
+                    // discard, the whole map is cleared
+                }
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        void copyTo(List<Entry<K, V>> entries) {
+            lock();
+            try {
+                expungeStaleEntries();
+                for (SoftValue<K, V> ref : map.values()) {
+                    V value = ref.get();
+                    if (value != null) {
+                        entries.add(new SimpleImmutableEntry<>(ref.key, value));
+                    }
+                }
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean reclaim(Object key) {
+            lock();
+            try {
+                SoftValue<K, V> ref = map.get(key);
+                if (ref == null) {
+                    return false;
+                }
+                ref.clear();
+                ref.enqueue();
+                return true;
+            } finally {
+                unlock();
+            }
+        }
+
+        int hardCoreSize() {
+            lock();
+            try {
+                return hardCore == null ? 0 : hardCore.size();
+            } finally {
+                unlock();
+            }
+        }
+
+        boolean isInHardCore(Object key) {
+            lock();
+            try {
+                // containsKey does not count as an access of the access-ordered map
+                return hardCore != null && hardCore.containsKey(key);
+            } finally {
+                unlock();
+            }
+        }
+
+        private void store(K key, V value) {
+            map.put(key, new SoftValue<>(key, value, queue));
+            if (hardCore != null) {
+                hardCore.put(key, value);
+            }
+            count = map.size();
+        }
+
+        /**
+         * Removes the entries whose value has been reclaimed, unless the key has been re-mapped since.
+         */
+        private void expungeStaleEntries() {
+            Reference<? extends V> ref;
+            boolean expunged = false;
+            while ((ref = queue.poll()) != null) {
+                @SuppressWarnings("unchecked")
+                SoftValue<K, V> value = (SoftValue<K, V>) ref;
+                expunged |= map.remove(value.key, value);
+            }
+            if (expunged) {
+                count = map.size();
+            }
+        }
+    }
+
+    /**
+     * Iterates over a snapshot of the live entries, removals are written through to the map.
+     */
+    private abstract class SnapshotIterator<T> implements Iterator<T> {
+        private final Iterator<Entry<K, V>> iterator = snapshot().iterator();
+        private Entry<K, V> last;
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        Entry<K, V> nextEntry() {
+            if (!iterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return last = iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            SoftHashMap.this.remove(last.getKey());
+            last = null;
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new SnapshotIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    return nextEntry();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            V value = e.getKey() == null ? null : get(e.getKey());
+            return value != null && value.equals(e.getValue());
+        }
+
+        @Override
+        public int size() {
+            return SoftHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SoftHashMap.this.clear();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new SnapshotIterator<K>() {
+                @Override
+                public K next() {
+                    return nextEntry().getKey();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o != null && containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return o != null && SoftHashMap.this.remove(o) != null;
+        }
+
+        @Override
+        public int size() {
+            return SoftHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SoftHashMap.this.clear();
+        }
+    }
+
+    private final class Values extends AbstractCollection<V> {
+        @Override
+        public Iterator<V> iterator() {
+            return new SnapshotIterator<V>() {
+                @Override
+                public V next() {
+                    return nextEntry().getValue();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return SoftHashMap.this.size();
+        }
+
+        @Override
+        public void clear() {
+            SoftHashMap.this.clear();
+        }
     }
 }
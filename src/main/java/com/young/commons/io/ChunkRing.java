@@ -0,0 +1,184 @@
+package com.young.commons.io;
+
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer single-consumer ring of reusable chunks handing bytes from one thread to another.
+ * <p>
+ * The producer fills the chunk returned by {@link #claim()} and hands it over with {@link #publish()}, the consumer
+ * takes every published chunk at once with {@link #await()} and gives them back with {@link #release(long)}. A
+ * chunk is owned by one side at a time, so its content needs no synchronization beyond the volatile sequences.
+ * <p>
+ * A side waiting for the other one parks and is unparked as soon as the other side moves on, it never spins.
+ */
+final class ChunkRing {
+    private final ByteBuffer[] chunks;
+    private final int capacity;
+
+    /**
+     * Sequence of the next chunk to consume, written by the consumer.
+     */
+    private volatile long head;
+    /**
+     * Sequence of the next chunk to publish, written by the producer.
+     */
+    private volatile long tail;
+    private volatile boolean producerClosed;
+    private volatile boolean consumerClosed;
+    private volatile Thread waitingProducer;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param chunks all in write mode, i.e. cleared.
+     */
+    ChunkRing(ByteBuffer[] chunks) {
+        if (chunks.length < 2) {
+            throw new IllegalArgumentException("chunks must be at least 2: " + chunks.length);
+        }
+        this.chunks = chunks;
+        this.capacity = chunks.length;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    ByteBuffer chunk(long sequence) {
+        return chunks[(int) (sequence % capacity)];
+    }
+
+    long head() {
+        return head;
+    }
+
+    long tail() {
+        return tail;
+    }
+
+    /**
+     * Wait for a free chunk. Producer only.
+     *
+     * @return the chunk to fill, or null if the consumer is closed.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    ByteBuffer claim() throws InterruptedIOException {
+        final long sequence = tail;
+        while (sequence - head >= capacity) {
+            if (consumerClosed) {
+                return null;
+            }
+            waitingProducer = Thread.currentThread();
+            if (sequence - head >= capacity && !consumerClosed) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("interrupted while waiting for a free chunk");
+            }
+        }
+        return consumerClosed ? null : chunks[(int) (sequence % capacity)];
+    }
+
+    /**
+     * Hand the claimed chunk over to the consumer. Producer only.
+     */
+    void publish() {
+        tail = tail + 1;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    /**
+     * Wait until every published chunk is consumed or the consumer is closed. Producer only.
+     *
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    void awaitConsumed() throws InterruptedIOException {
+        final long sequence = tail;
+        while (head < sequence && !consumerClosed) {
+            waitingProducer = Thread.currentThread();
+            if (head < sequence && !consumerClosed) {
+                LockSupport.park(this);
+            }
+            waitingProducer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("interrupted while waiting for the chunks to be consumed");
+            }
+        }
+    }
+
+    /**
+     * No chunk will be published any more. Producer only.
+     */
+    void closeProducer() {
+        producerClosed = true;
+        LockSupport.unpark(waitingConsumer);
+    }
+
+    boolean isProducerClosed() {
+        return producerClosed;
+    }
+
+    /**
+     * Wait for published chunks. Consumer only.
+     *
+     * @return the sequence up to which chunks, from {@link #head()} on, are published; equal to the head once the
+     * producer is closed and every chunk is consumed.
+     * @throws InterruptedIOException if interrupted while waiting.
+     */
+    long await() throws InterruptedIOException {
+        final long sequence = head;
+        long available;
+        while ((available = tail) == sequence) {
+            if (producerClosed) {
+                // the producer may have published right before closing
+                return tail;
+            }
+            waitingConsumer = Thread.currentThread();
+            if (tail == sequence && !producerClosed) {
+                LockSupport.park(this);
+            }
+            waitingConsumer = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("interrupted while waiting for a chunk");
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return the sequence up to which chunks are published, without waiting.
+     */
+    long available() {
+        return tail;
+    }
+
+    /**
+     * Give the chunks up to a sequence back to the producer, cleared. Consumer only.
+     */
+    void release(long sequence) {
+        for (long s = head; s < sequence; s++) {
+            ((Buffer) chunks[(int) (s % capacity)]).clear();
+        }
+        head = sequence;
+        LockSupport.unpark(waitingProducer);
+    }
+
+    /**
+     * No chunk will be consumed any more, e.g. the consumer failed. Consumer only.
+     */
+    void closeConsumer() {
+        consumerClosed = true;
+        LockSupport.unpark(waitingProducer);
+    }
+
+    boolean isConsumerClosed() {
+        return consumerClosed;
+    }
+
+    ByteBuffer[] chunks() {
+        return chunks;
+    }
+}
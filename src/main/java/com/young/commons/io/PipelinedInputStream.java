@@ -0,0 +1,400 @@
+package com.young.commons.io;
+
+import com.young.commons.allocation.AllocatedBuffer;
+import com.young.commons.allocation.BufferAllocator;
+import com.young.commons.allocation.BufferAllocators;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link InputStream} reading ahead of its reader on a producer thread, so e.g. decompressing a large file does
+ * not stall on the disk latency. The counterpart of {@link PipelinedOutputStream}.
+ * <p>
+ * The producer reads into chunks allocated once from a {@link BufferAllocator}, the shared pooled allocator by
+ * default, and hands them over through a single-producer single-consumer ring whose size bounds the prefetch depth.
+ * A {@link FileInputStream} or a {@link ReadableByteChannel} is read through the channel straight into the chunks;
+ * other streams need array backed chunks, e.g. from a {@link com.young.commons.allocation.SimpleBufferAllocator},
+ * or are read through an intermediate array.
+ * <p>
+ * An exception thrown by the source is rethrown, wrapped in an {@link IOException}, once the bytes read before it
+ * have been consumed, and again by {@link #close()}. Closing the stream stops the producer, interrupting it and
+ * closing the source if it is blocked in a read, and gives the chunks back. A reader waiting for the producer when
+ * the stream is closed from another thread fails with an {@link IOException}; the reads are synchronized, so the
+ * chunks are only given back once no read uses them.
+ */
+public class PipelinedInputStream extends InputStream {
+    /**
+     * The default chunk size, the default size of Java buffers. Larger chunks suit large files better.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * The default number of chunks read ahead.
+     */
+    public static final int DEFAULT_PREFETCH_CHUNKS = 8;
+
+    private static final String ALLOCATION_TAG = "PipelinedInputStream";
+
+    /**
+     * How long {@link #close()} lets an interrupted producer exit before closing the source under it.
+     */
+    private static final long CLOSE_GRACE_MILLIS = 100;
+
+    /**
+     * Used to generate unique thread names.
+     */
+    private static final AtomicInteger streamIndex = new AtomicInteger();
+
+    /**
+     * The input stream to read ahead, null when reading {@link #channel}.
+     */
+    private final InputStream in;
+
+    /**
+     * The channel to read ahead, or null.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The chunks handed from the producer to the reader.
+     */
+    private final ChunkRing ring;
+
+    /**
+     * The allocated chunks, given back on close.
+     */
+    private final AllocatedBuffer[] allocatedChunks;
+
+    /**
+     * The producer thread.
+     */
+    private final Thread producer;
+
+    /**
+     * Tracks the number of bytes read.
+     */
+    private final AtomicLong bytesReadTracker;
+
+    /**
+     * True when the stream has been closed.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * The chunk being read, flipped, or null.
+     */
+    private ByteBuffer current;
+
+    /**
+     * The exception the producer failed with.
+     */
+    private volatile Throwable failure;
+
+    /**
+     * Instantiate a new pipelined input stream with {@link #DEFAULT_PREFETCH_CHUNKS} chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} bytes.
+     *
+     * @param in the input stream to read ahead.
+     */
+    public PipelinedInputStream(InputStream in) {
+        this(in, DEFAULT_CHUNK_SIZE, DEFAULT_PREFETCH_CHUNKS);
+    }
+
+    /**
+     * Instantiate a new pipelined input stream reading ahead on a daemon thread.
+     *
+     * @param in             the input stream to read ahead.
+     * @param chunkSize      the size of the chunks read ahead.
+     * @param prefetchChunks the number of chunks read ahead at most, at least 2.
+     */
+    public PipelinedInputStream(InputStream in, int chunkSize, int prefetchChunks) {
+        this(in, chunkSize, prefetchChunks, BufferAllocators.pooledAllocator(), null, new AtomicLong());
+    }
+
+    /**
+     * Instantiate a new pipelined input stream.
+     *
+     * @param in               the input stream to read ahead, read through its channel if it is a
+     *                         {@link FileInputStream}.
+     * @param chunkSize        the size of the chunks read ahead.
+     * @param prefetchChunks   the number of chunks read ahead at most, at least 2.
+     * @param allocator        to allocate the chunks from.
+     * @param threadFactory    to create the producer thread with, e.g. of virtual threads, or null for a daemon
+     *                         thread.
+     * @param bytesReadTracker an {@link AtomicLong} to use to track the number of bytes read.
+     */
+    public PipelinedInputStream(InputStream in, int chunkSize, int prefetchChunks, BufferAllocator allocator,
+                                ThreadFactory threadFactory, AtomicLong bytesReadTracker) {
+        this(in, fileChannel(in), chunkSize, prefetchChunks, allocator, threadFactory, bytesReadTracker);
+    }
+
+    /**
+     * Instantiate a new pipelined input stream reading a channel ahead on a daemon thread.
+     *
+     * @param channel        the channel to read ahead.
+     * @param chunkSize      the size of the chunks read ahead.
+     * @param prefetchChunks the number of chunks read ahead at most, at least 2.
+     */
+    public PipelinedInputStream(ReadableByteChannel channel, int chunkSize, int prefetchChunks) {
+        this(null, channel, chunkSize, prefetchChunks, BufferAllocators.pooledAllocator(), null, new AtomicLong());
+    }
+
+    private PipelinedInputStream(InputStream in, ReadableByteChannel channel, int chunkSize, int prefetchChunks,
+                                 BufferAllocator allocator, ThreadFactory threadFactory,
+                                 AtomicLong bytesReadTracker) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        if (prefetchChunks < 2) {
+            throw new IllegalArgumentException("prefetchChunks must be at least 2: " + prefetchChunks);
+        }
+        this.in = in;
+        this.channel = channel;
+        this.bytesReadTracker = bytesReadTracker;
+        allocatedChunks = new AllocatedBuffer[prefetchChunks];
+        final ByteBuffer[] chunks = new ByteBuffer[prefetchChunks];
+        for (int i = 0; i < prefetchChunks; i++) {
+            allocatedChunks[i] = allocator.allocate(chunkSize, ALLOCATION_TAG);
+            chunks[i] = allocatedChunks[i].getRawBuffer();
+            ((Buffer) chunks[i]).clear();
+        }
+        ring = new ChunkRing(chunks);
+        final String name = PipelinedInputStream.class.getSimpleName() + "-" + streamIndex.getAndIncrement();
+        if (threadFactory == null) {
+            producer = new Thread(this::produce, name);
+            producer.setDaemon(true);
+        } else {
+            producer = threadFactory.newThread(this::produce);
+        }
+        producer.start();
+    }
+
+    private static ReadableByteChannel fileChannel(InputStream in) {
+        // subclasses may override the reads, which the channel would bypass
+        return in != null && in.getClass() == FileInputStream.class ? ((FileInputStream) in).getChannel() : null;
+    }
+
+    /**
+     * Executed in the producer thread: fill chunks until the end of the source or until the reader is closed.
+     */
+    private void produce() {
+        final byte[] scratch = channel == null && !ring.chunk(0).hasArray() ? new byte[ring.chunk(0).capacity()] : null;
+        ByteBuffer chunk = null;
+        try {
+            while ((chunk = ring.claim()) != null) {
+                final boolean eof = fill(chunk, scratch);
+                final boolean filled = chunk.position() > 0;
+                chunk = null;
+                if (filled) {
+                    ring.publish();
+                }
+                if (eof) {
+                    break;
+                }
+            }
+        } catch (Throwable t) {
+            // failures caused by close(), e.g. the interrupt, are not the reader's concern
+            if (!ring.isConsumerClosed()) {
+                failure = t;
+            }
+            if (chunk != null && chunk.position() > 0) {
+                // the bytes read before the failure are consumed before it is rethrown
+                ring.publish();
+            }
+        } finally {
+            ring.closeProducer();
+            try {
+                closeSource();
+            } catch (Throwable t) {
+                if (failure == null && !ring.isConsumerClosed()) {
+                    failure = t;
+                }
+            }
+        }
+    }
+
+    private void closeSource() throws IOException {
+        if (in != null) {
+            in.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * Read into a chunk until it is full, the source would block or ends.
+     *
+     * @return true at the end of the source.
+     */
+    private boolean fill(ByteBuffer chunk, byte[] scratch) throws IOException {
+        while (chunk.hasRemaining()) {
+            final int n;
+            if (channel != null) {
+                n = channel.read(chunk);
+            } else if (scratch == null) {
+                n = in.read(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+                if (n > 0) {
+                    ((Buffer) chunk).position(chunk.position() + n);
+                }
+            } else {
+                n = in.read(scratch, 0, chunk.remaining());
+                if (n > 0) {
+                    chunk.put(scratch, 0, n);
+                }
+            }
+            if (n < 0) {
+                return true;
+            }
+            if (channel == null && in.available() <= 0) {
+                // hand the bytes over rather than wait for more
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+        final ByteBuffer chunk = readableChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        bytesReadTracker.incrementAndGet();
+        return chunk.get() & 0xff;
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - off - len)) < 0) {
+            throw new IndexOutOfBoundsException("off=" + off + " len=" + len + " b.length=" + b.length);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int total = 0;
+        ByteBuffer chunk = readableChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        while (true) {
+            final int n = Math.min(len, chunk.remaining());
+            chunk.get(b, off, n);
+            off += n;
+            len -= n;
+            total += n;
+            // only take the chunks already read ahead, do not wait for more
+            if (len == 0 || ring.available() == ring.head() + 1 || (chunk = readableChunk()) == null) {
+                break;
+            }
+        }
+        bytesReadTracker.addAndGet(total);
+        return total;
+    }
+
+    /**
+     * @return the number of bytes read ahead and not consumed yet.
+     */
+    @Override
+    public synchronized int available() throws IOException {
+        checkOpen();
+        long available = current == null ? 0 : current.remaining();
+        final long head = current == null ? ring.head() : ring.head() + 1;
+        for (long s = head, tail = ring.available(); s < tail; s++) {
+            available += ring.chunk(s).position();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, available);
+    }
+
+    /**
+     * Get the number of bytes read so far.
+     *
+     * @return the number of bytes read so far.
+     */
+    public long getBytesRead() {
+        return bytesReadTracker.get();
+    }
+
+    /**
+     * Close the stream, stopping the producer and closing the source. May be called from any thread.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.getAndSet(true)) {
+            ring.closeConsumer();
+            // wake the producer up from a blocked read, then the reader through the producer closing the ring
+            producer.interrupt();
+            try {
+                producer.join(CLOSE_GRACE_MILLIS);
+                if (producer.isAlive()) {
+                    // not interruptible, e.g. a socket: closing the source fails the read
+                    try {
+                        closeSource();
+                    } catch (IOException e) {
+                        // ignored like any failure after close, the producer closes the source again anyway
+                    }
+                }
+                // Block on producer thread completion before giving the chunks back
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the producer thread");
+            }
+            synchronized (this) {
+                // a concurrent read is over and fails from now on
+                current = null;
+                for (AllocatedBuffer chunk : allocatedChunks) {
+                    chunk.close();
+                }
+            }
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+    }
+
+    /**
+     * @return the chunk to read from, waiting for the producer if needed, or null at the end of the source.
+     */
+    private ByteBuffer readableChunk() throws IOException {
+        if (current != null) {
+            if (current.hasRemaining()) {
+                return current;
+            }
+            current = null;
+            ring.release(ring.head() + 1);
+        }
+        checkOpen();
+        final long head = ring.head();
+        final long tail = ring.await();
+        // closed from another thread while waiting
+        checkOpen();
+        if (tail == head) {
+            final Throwable t = failure;
+            if (t != null) {
+                throw new IOException(t);
+            }
+            return null;
+        }
+        current = ring.chunk(head);
+        ((Buffer) current).flip();
+        return current;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed.get()) {
+            throw new IOException("Tried to read from closed stream");
+        }
+    }
+}
@@ -1,220 +1,123 @@
 package com.young.commons.io;
 
-import java.io.BufferedOutputStream;
+import com.young.commons.allocation.DirectBufferCleaner;
+
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.util.ArrayDeque;
-import java.util.concurrent.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * An {@link OutputStream} whose writes are copied into chunks and written to the underlying stream by a consumer
+ * thread, so the producer does not wait for the I/O.
+ * <p>
+ * Chunks are reused through a single-producer single-consumer ring: the producer copies into the current chunk with
+ * bulk copies and hands it over once full, the consumer takes every chunk available at once and writes them in one
+ * go, as a single gathering write when the destination is a {@link GatheringByteChannel} or a
+ * {@link FileOutputStream}. Each side parks only when the ring is full or empty.
+ * <p>
+ * The consumer is a thread of its own, or a drain task run on a shared {@link Executor} so that many streams need a
+ * constant number of threads. A drain task writes at most a given number of chunks and then goes back to the end of
+ * the executor queue, so busy streams can not starve the others; each stream is still bounded by its own ring, its
+ * producer waits when the ring is full. Producers must not run on the executor draining their stream.
+ * <p>
+ * Bytes left in a partly filled chunk are handed over by {@link #flush()} or {@link #close()}. Closing the stream
+ * waits for the consumer to write everything and closes the underlying stream.
+ */
 public class PipelinedOutputStream extends OutputStream {
     /**
-     * An executor service for the consumer thread.
+     * The default chunk size, the default size of Java buffers. Larger chunks, e.g. 1 MB, suit large dumps better.
      */
-    private ExecutorService executor;
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
 
     /**
-     * The consumer stream.
+     * The default number of chunks written by a drain task on a shared executor before it yields.
      */
-    private final ConsumerStream consumerStream;
+    public static final int DEFAULT_DRAIN_BATCH_CHUNKS = 16;
 
     /**
-     * The {@link Future} used to await termination of the consumer thread.
+     * Used to generate unique thread names.
      */
-    private final Future<Void> consumerStreamFuture;
+    private static final AtomicInteger streamIndex = new AtomicInteger();
 
     /**
-     * The buffered output stream inserted between the producer and consumer.
+     * The output stream to write consumed bytes to, null when writing to {@link #channel} directly.
      */
-    private final BufferedOutputStream bufferedOutputStream;
+    private final OutputStream out;
 
     /**
-     * Tracks the number of bytes written.
+     * The channel to write consumed bytes to with gathering writes, or null.
      */
-    private final AtomicLong bytesWrittenTracker;
+    private final GatheringByteChannel channel;
 
     /**
-     * Used to generate unique thread names.
+     * The chunks handed from the producer to the consumer.
      */
-    private static final AtomicInteger streamIndex = new AtomicInteger();
+    private final ChunkRing ring;
 
     /**
-     * True when the stream has been closed.
+     * True if the chunks are direct buffers, freed on close.
      */
-    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final boolean direct;
 
     /**
-     * The Class BufferChunk.
-     */
-    private static class BufferChunk {
-        /**
-         * The buffer.
-         */
-        byte[] buffer = new byte[CHUNK_SIZE];
-
-        /**
-         * The number of bytes used in the buffer.
-         */
-        int len;
-
-        /**
-         * The poison pill to use to mark end of stream.
-         */
-        static final BufferChunk POISON_PILL = new BufferChunk();
-
-        /**
-         * The buffer chunk size to use. Should probably be 8192, since that is the default used by Java buffers.
-         */
-        private static final int CHUNK_SIZE = 8192;
-
-        /**
-         * Write the buffer chunk to an {@link OutputStream}.
-         *
-         * @param out the out
-         * @throws IOException Signals that an I/O exception has occurred.
-         */
-        void writeTo(OutputStream out) throws IOException {
-            out.write(buffer, 0, len);
-        }
-    }
+     * The executor running the drain tasks, null when the consumer is a thread of its own.
+     */
+    private final Executor executor;
 
     /**
-     * The {@link OutputStream} for the consumer thread.
-     */
-    private static class ConsumerStream extends OutputStream implements Callable<Void> {
-        /**
-         * The output stream to write consumed bytes to.
-         */
-        private final OutputStream out;
-
-        /**
-         * The consumer stream {@link Thread} reference.
-         */
-        private final AtomicReference<Thread> consumerStreamThread = new AtomicReference<>();
-
-        /**
-         * True when the consumer stream has been closed.
-         */
-        private final AtomicBoolean consumerStreamClosed = new AtomicBoolean(false);
-
-        /**
-         * The buffer chunks that have not yet been consumed.
-         */
-        private final ArrayBlockingQueue<BufferChunk> bufferChunks;
-
-        /**
-         * Recycler for buffer chunks.
-         */
-        private final ArrayDeque<BufferChunk> bufferChunkRecycler;
-
-        /**
-         * Instantiate a new consumer stream.
-         *
-         * @param bufSize      the size of the buffer to insert between producer and consumer.
-         * @param outputStream the stream to send consumed output to.
-         */
-        public ConsumerStream(int bufSize, OutputStream outputStream) {
-            if (bufSize <= 0) {
-                throw new IllegalArgumentException("bufSize must be greater than 0");
-            }
-            out = outputStream;
-            int numBufferChunks = (bufSize + BufferChunk.CHUNK_SIZE - 1) / BufferChunk.CHUNK_SIZE;
-            bufferChunks = new ArrayBlockingQueue<>(numBufferChunks);
-            bufferChunkRecycler = new ArrayDeque<>(numBufferChunks);
-        }
+     * The number of chunks written by a drain task at most.
+     */
+    private final int drainBatchChunks;
 
-        /**
-         * Executed in consumer thread.
-         *
-         * @return null
-         * @throws Exception if anything goes wrong while writing.
-         */
-        @Override
-        public Void call() throws Exception {
-            consumerStreamThread.set(Thread.currentThread());
-            try {
-                while (true) {
-                    try {
-                        BufferChunk chunk = bufferChunks.take();
-                        if (chunk == BufferChunk.POISON_PILL) {
-                            break;
-                        }
-                        chunk.writeTo(out);
-                        bufferChunkRecycler.add(chunk);
-                    } catch (Exception e) {
-                        throw e;
-                    }
-                }
-            } finally {
-                // Close the underlying OutputStream once the buffer is flushed, or if exception is thrown
-                consumerStreamClosed.set(true);
-                out.close();
-            }
-            return null;
-        }
+    /**
+     * True while a drain task is submitted or running.
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
 
-        @Override
-        public void write(byte[] b, int off, int len) throws IOException {
-            if (len > BufferChunk.CHUNK_SIZE) {
-                // If b is too big for buf, break b into chunks of size buf.length
-                int remaining = len;
-                for (int i = 0; i < len; i += BufferChunk.CHUNK_SIZE) {
-                    int bytesToWrite = Math.min(BufferChunk.CHUNK_SIZE, remaining);
-                    write(b, off + i, bytesToWrite);
-                    remaining -= bytesToWrite;
-                }
-            } else {
-                if (consumerStreamClosed.get()) {
-                    throw new IOException("Tried to write to closed stream");
-                }
-                BufferChunk bufferChunk = bufferChunkRecycler.poll();
-                if (bufferChunk == null) {
-                    bufferChunk = new BufferChunk();
-                }
-                for (int o = 0, i = off; o < len; ) {
-                    bufferChunk.buffer[o++] = b[i++];
-                }
-                bufferChunk.len = len;
-                try {
-                    bufferChunks.put(bufferChunk);
-                } catch (InterruptedException e) {
-                    throw new IOException(e);
-                }
-            }
-        }
+    /**
+     * The drain task.
+     */
+    private final Runnable drainTask = this::drain;
 
-        @Override
-        public synchronized void write(int b) throws IOException {
-            if (consumerStreamClosed.get()) {
-                throw new IOException("Tried to write to closed stream");
-            }
-            BufferChunk bufferChunk = bufferChunkRecycler.poll();
-            if (bufferChunk == null) {
-                bufferChunk = new BufferChunk();
-            }
-            bufferChunk.buffer[0] = (byte) b;
-            bufferChunk.len = 1;
-            try {
-                bufferChunks.put(bufferChunk);
-            } catch (InterruptedException e) {
-                throw new IOException(e);
-            }
-        }
+    /**
+     * The chunks of the batch being written, owned by the consumer.
+     */
+    private final ByteBuffer[] batch;
 
-        @Override
-        public void close() throws IOException {
-            if (!consumerStreamClosed.getAndSet(true)) {
-                try {
-                    bufferChunks.put(BufferChunk.POISON_PILL);
-                } catch (InterruptedException e) {
-                    throw new IOException(e);
-                }
-            }
-        }
-    }
+    /**
+     * Released once the consumer has closed the underlying stream.
+     */
+    private final CountDownLatch consumerFinished = new CountDownLatch(1);
+
+    /**
+     * Tracks the number of bytes written.
+     */
+    private final AtomicLong bytesWrittenTracker;
+
+    /**
+     * True when the stream has been closed.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * The chunk being filled by the producer, or null.
+     */
+    private ByteBuffer current;
+
+    /**
+     * The exception the consumer failed with.
+     */
+    private volatile Throwable failure;
 
     /**
      * Instantiate a new pipelined output stream.
@@ -227,19 +130,7 @@ public class PipelinedOutputStream extends OutputStream {
      */
     public PipelinedOutputStream(int bufSize, OutputStream outputStream, AtomicLong bytesWrittenTracker)
         throws IOException {
-        this.bytesWrittenTracker = bytesWrittenTracker;
-        executor = Executors.newFixedThreadPool(1, new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                final Thread thread = new Thread(r,
-                    PipelinedOutputStream.class.getSimpleName() + "-" + streamIndex.getAndIncrement());
-                thread.setDaemon(true);
-                return thread;
-            }
-        });
-        consumerStream = new ConsumerStream(bufSize, outputStream);
-        bufferedOutputStream = new BufferedOutputStream(consumerStream);
-        consumerStreamFuture = executor.submit(consumerStream);
+        this(bufSize, DEFAULT_CHUNK_SIZE, outputStream, bytesWrittenTracker);
     }
 
     /**
@@ -254,6 +145,229 @@ public class PipelinedOutputStream extends OutputStream {
         this(bufSize, out, new AtomicLong());
     }
 
+    /**
+     * Instantiate a new pipelined output stream.
+     *
+     * @param bufSize             the size of the buffer to insert between producer and consumer, rounded up to at
+     *                            least two chunks.
+     * @param chunkSize           the size of the chunks the buffer is split into, the unit handed to the consumer.
+     * @param outputStream        the output stream to write to, written with gathering writes to its channel if it is
+     *                            a {@link FileOutputStream}.
+     * @param bytesWrittenTracker an {@link AtomicLong} to use to track the number of bytes written.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public PipelinedOutputStream(int bufSize, int chunkSize, OutputStream outputStream,
+                                 AtomicLong bytesWrittenTracker) throws IOException {
+        this(bufSize, chunkSize, outputStream, fileChannel(outputStream), null, 0, bytesWrittenTracker);
+    }
+
+    /**
+     * Instantiate a new pipelined output stream drained by a shared executor, writing
+     * {@link #DEFAULT_DRAIN_BATCH_CHUNKS} chunks at most per drain task.
+     *
+     * @param bufSize             the size of the buffer to insert between producer and consumer, rounded up to at
+     *                            least two chunks.
+     * @param chunkSize           the size of the chunks the buffer is split into, the unit handed to the consumer.
+     * @param outputStream        the output stream to write to, written with gathering writes to its channel if it is
+     *                            a {@link FileOutputStream}.
+     * @param executor            the executor to run the drain tasks on, shared by any number of streams.
+     * @param bytesWrittenTracker an {@link AtomicLong} to use to track the number of bytes written.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public PipelinedOutputStream(int bufSize, int chunkSize, OutputStream outputStream, Executor executor,
+                                 AtomicLong bytesWrittenTracker) throws IOException {
+        this(bufSize, chunkSize, outputStream, executor, DEFAULT_DRAIN_BATCH_CHUNKS, bytesWrittenTracker);
+    }
+
+    /**
+     * Instantiate a new pipelined output stream drained by a shared executor.
+     *
+     * @param bufSize             the size of the buffer to insert between producer and consumer, rounded up to at
+     *                            least two chunks.
+     * @param chunkSize           the size of the chunks the buffer is split into, the unit handed to the consumer.
+     * @param outputStream        the output stream to write to, written with gathering writes to its channel if it is
+     *                            a {@link FileOutputStream}.
+     * @param executor            the executor to run the drain tasks on, shared by any number of streams.
+     * @param drainBatchChunks    the number of chunks a drain task writes at most before yielding to other streams.
+     * @param bytesWrittenTracker an {@link AtomicLong} to use to track the number of bytes written.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public PipelinedOutputStream(int bufSize, int chunkSize, OutputStream outputStream, Executor executor,
+                                 int drainBatchChunks, AtomicLong bytesWrittenTracker) throws IOException {
+        this(bufSize, chunkSize, outputStream, fileChannel(outputStream), requireExecutor(executor), drainBatchChunks,
+            bytesWrittenTracker);
+    }
+
+    /**
+     * Instantiate a new pipelined output stream writing to a channel with gathering writes, from direct chunks.
+     *
+     * @param bufSize   the size of the buffer to insert between producer and consumer, rounded up to at least two
+     *                  chunks.
+     * @param chunkSize the size of the chunks the buffer is split into, the unit handed to the consumer.
+     * @param channel   the channel to write to.
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public PipelinedOutputStream(int bufSize, int chunkSize, GatheringByteChannel channel) throws IOException {
+        this(bufSize, chunkSize, null, channel, null, 0, new AtomicLong());
+    }
+
+    private PipelinedOutputStream(int bufSize, int chunkSize, OutputStream out, GatheringByteChannel channel,
+                                  Executor executor, int drainBatchChunks, AtomicLong bytesWrittenTracker)
+        throws IOException {
+        if (bufSize <= 0) {
+            throw new IllegalArgumentException("bufSize must be greater than 0");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than 0");
+        }
+        if (executor != null && drainBatchChunks <= 0) {
+            throw new IllegalArgumentException("drainBatchChunks must be greater than 0");
+        }
+        this.out = out;
+        this.channel = channel;
+        this.bytesWrittenTracker = bytesWrittenTracker;
+        // direct chunks spare the channel a copy into a temporary direct buffer
+        this.direct = channel != null;
+        final int numChunks = Math.max(2, (int) (((long) bufSize + chunkSize - 1) / chunkSize));
+        final ByteBuffer[] chunks = new ByteBuffer[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            chunks[i] = direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+        }
+        ring = new ChunkRing(chunks);
+        batch = new ByteBuffer[numChunks];
+        this.executor = executor;
+        this.drainBatchChunks = executor != null ? Math.min(drainBatchChunks, numChunks) : numChunks;
+        if (executor == null) {
+            final Thread consumer = new Thread(this::consume,
+                PipelinedOutputStream.class.getSimpleName() + "-" + streamIndex.getAndIncrement());
+            consumer.setDaemon(true);
+            consumer.start();
+        }
+    }
+
+    private static Executor requireExecutor(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        return executor;
+    }
+
+    private static GatheringByteChannel fileChannel(OutputStream out) {
+        // subclasses may override the writes, which the channel would bypass
+        return out != null && out.getClass() == FileOutputStream.class ? ((FileOutputStream) out).getChannel() : null;
+    }
+
+    /**
+     * Executed in the consumer thread: write every available chunk at once until the producer is closed.
+     */
+    private void consume() {
+        try {
+            while (ring.await() != ring.head()) {
+                writeAvailable();
+            }
+        } catch (Throwable t) {
+            failure = t;
+        } finally {
+            finishConsumer();
+        }
+    }
+
+    /**
+     * Executed by the shared executor: write at most {@link #drainBatchChunks} chunks, then submit the task again if
+     * more are available, so other streams get their turn.
+     */
+    private void drain() {
+        try {
+            writeAvailable();
+            if (ring.available() != ring.head()) {
+                executor.execute(drainTask);
+                return;
+            }
+            // the producer publishes before closing, so no chunk is left behind once closed
+            if (ring.isProducerClosed() && ring.available() == ring.head()) {
+                finishConsumer();
+                return;
+            }
+            drainScheduled.set(false);
+            // the producer may have published after the checks above and seen the task still scheduled
+            if ((ring.available() != ring.head() || ring.isProducerClosed())
+                && drainScheduled.compareAndSet(false, true)) {
+                executor.execute(drainTask);
+            }
+        } catch (Throwable t) {
+            failure = t;
+            finishConsumer();
+        }
+    }
+
+    /**
+     * Submit a drain task unless one is pending already.
+     */
+    private void scheduleDrain() {
+        if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                failure = e;
+                finishConsumer();
+            }
+        }
+    }
+
+    /**
+     * Write the published chunks, {@link #drainBatchChunks} at most, with one write.
+     */
+    private void writeAvailable() throws IOException {
+        final long head = ring.head();
+        final int count = (int) Math.min(ring.available() - head, drainBatchChunks);
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            final ByteBuffer chunk = ring.chunk(head + i);
+            ((Buffer) chunk).flip();
+            batch[i] = chunk;
+        }
+        writeBatch(count);
+        ring.release(head + count);
+    }
+
+    private void finishConsumer() {
+        ring.closeConsumer();
+        // Close the underlying stream once the buffer is flushed, or if exception is thrown
+        try {
+            if (out != null) {
+                out.close();
+            } else {
+                channel.close();
+            }
+        } catch (Throwable t) {
+            if (failure == null) {
+                failure = t;
+            }
+        } finally {
+            consumerFinished.countDown();
+        }
+    }
+
+    private void writeBatch(int count) throws IOException {
+        if (channel != null) {
+            final ByteBuffer last = batch[count - 1];
+            int offset = 0;
+            while (last.hasRemaining()) {
+                channel.write(batch, offset, count - offset);
+                while (offset < count && !batch[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                final ByteBuffer chunk = batch[i];
+                out.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            }
+        }
+    }
+
     /**
      * Write an array of bytes.
      *
@@ -262,8 +376,7 @@ public class PipelinedOutputStream extends OutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        bufferedOutputStream.write(b);
-        bytesWrittenTracker.addAndGet(b.length);
+        write(b, 0, b.length);
     }
 
     /**
@@ -275,9 +388,23 @@ public class PipelinedOutputStream extends OutputStream {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     @Override
-    public void write(byte[] b, int off, int len) throws IOException {
-        bufferedOutputStream.write(b, off, len);
-        bytesWrittenTracker.addAndGet(len);
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if ((off | len | (b.length - off - len)) < 0) {
+            throw new IndexOutOfBoundsException("off=" + off + " len=" + len + " b.length=" + b.length);
+        }
+        final int total = len;
+        while (len > 0) {
+            final ByteBuffer chunk = currentChunk();
+            final int n = Math.min(len, chunk.remaining());
+            chunk.put(b, off, n);
+            off += n;
+            len -= n;
+            if (!chunk.hasRemaining()) {
+                current = null;
+                publish();
+            }
+        }
+        bytesWrittenTracker.addAndGet(total);
     }
 
     /**
@@ -288,10 +415,32 @@ public class PipelinedOutputStream extends OutputStream {
      */
     @Override
     public synchronized void write(int b) throws IOException {
-        bufferedOutputStream.write(b);
+        final ByteBuffer chunk = currentChunk();
+        chunk.put((byte) b);
+        if (!chunk.hasRemaining()) {
+            current = null;
+            publish();
+        }
         bytesWrittenTracker.incrementAndGet();
     }
 
+    /**
+     * Hand the buffered bytes over to the consumer, wait for it to write them and flush the underlying stream.
+     *
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        publishPartialChunk();
+        ring.awaitConsumed();
+        checkFailure();
+        if (out != null) {
+            // the consumer waits for the next chunk, it does not touch the stream
+            out.flush();
+        }
+    }
+
     /**
      * Get the number of bytes written so far.
      *
@@ -307,41 +456,73 @@ public class PipelinedOutputStream extends OutputStream {
      * @throws IOException Signals that an I/O exception has occurred.
      */
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
         if (!closed.getAndSet(true)) {
-            bufferedOutputStream.close();
             try {
-                // Block on consumer thread completion
-                consumerStreamFuture.get();
+                publishPartialChunk();
+            } finally {
+                ring.closeProducer();
+                if (executor != null) {
+                    scheduleDrain();
+                }
+            }
+            try {
+                // Block on consumer completion
+                consumerFinished.await();
             } catch (InterruptedException e) {
-                // Ignore
-            } catch (ExecutionException e) {
-                throw new IOException(e.getCause());
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the consumer thread");
             }
-            if (executor != null) {
-                // Try to shut down executor service cleanly
-                ExecutorService ex = executor;
-                executor = null;
-                try {
-                    ex.shutdown();
-                } catch (final SecurityException e) {
-                    // Ignore
-                }
-                boolean terminated = false;
-                try {
-                    // Await termination
-                    terminated = ex.awaitTermination(5000, TimeUnit.MILLISECONDS);
-                } catch (final InterruptedException e) {
-                    // Ignore
-                }
-                if (!terminated) {
-                    try {
-                        ex.shutdownNow();
-                    } catch (final SecurityException e) {
-                        throw new RuntimeException(e);
-                    }
+            if (direct) {
+                for (ByteBuffer chunk : ring.chunks()) {
+                    DirectBufferCleaner.free(chunk);
                 }
             }
+            current = null;
+            if (failure != null) {
+                throw new IOException(failure);
+            }
+        }
+    }
+
+    private ByteBuffer currentChunk() throws IOException {
+        if (current != null) {
+            return current;
+        }
+        checkOpen();
+        final ByteBuffer chunk = ring.claim();
+        if (chunk == null) {
+            checkFailure();
+            throw new IOException("Tried to write to closed stream");
+        }
+        current = chunk;
+        return chunk;
+    }
+
+    private void publishPartialChunk() {
+        if (current != null && current.position() > 0) {
+            current = null;
+            publish();
+        }
+    }
+
+    private void publish() {
+        ring.publish();
+        if (executor != null) {
+            scheduleDrain();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed.get()) {
+            throw new IOException("Tried to write to closed stream");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable t = failure;
+        if (t != null) {
+            throw new IOException(t);
         }
     }
 }
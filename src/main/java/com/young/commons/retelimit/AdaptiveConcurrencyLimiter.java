@@ -0,0 +1,172 @@
+package com.young.commons.retelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the calls in flight, e.g. to a downstream service, to a limit adjusted from the measured round trip times
+ * by a {@link LimitAlgorithm}, rather than to a fixed rate: as the downstream slows down the limit shrinks and the
+ * excess calls are refused right away instead of queueing.
+ * <p>
+ * A call is admitted by {@link #tryAcquire()} and must be completed by exactly one of {@link #onSuccess(long)},
+ * {@link #onDropped()} or {@link #onIgnore()}. The samples are recorded into striped accumulators, so concurrent
+ * calls do not contend on them; once a window has elapsed and has enough samples, the thread completing a call
+ * computes the new limit, unless another one already does. A sample recorded while a window closes may be counted
+ * in the next one.
+ * <p>
+ * {@link ConcurrencyLimitedExecutor} applies the limiter to the tasks of an executor.
+ */
+public class AdaptiveConcurrencyLimiter {
+    public static final long DEFAULT_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    public static final int DEFAULT_MIN_WINDOW_SAMPLES = 10;
+
+    private final LimitAlgorithm algorithm;
+    private final long windowNanos;
+    private final int minWindowSamples;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    private final LongAdder rttSum = new LongAdder();
+    private final LongAdder sampleCount = new LongAdder();
+    private final LongAdder dropCount = new LongAdder();
+    private final LongAccumulator minRtt = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxInFlight = new LongAccumulator(Math::max, 0);
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private volatile long windowStart;
+
+    /**
+     * Create a limiter with windows of {@link #DEFAULT_WINDOW_NANOS} and {@link #DEFAULT_MIN_WINDOW_SAMPLES}.
+     *
+     * @param algorithm to adjust the limit with, not shared with another limiter.
+     */
+    public AdaptiveConcurrencyLimiter(LimitAlgorithm algorithm) {
+        this(algorithm, DEFAULT_WINDOW_NANOS, TimeUnit.NANOSECONDS, DEFAULT_MIN_WINDOW_SAMPLES);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param algorithm        to adjust the limit with, not shared with another limiter.
+     * @param window           the shortest time between two adjustments of the limit.
+     * @param unit             the unit of the window.
+     * @param minWindowSamples the samples a window needs before the limit is adjusted.
+     */
+    public AdaptiveConcurrencyLimiter(LimitAlgorithm algorithm, long window, TimeUnit unit, int minWindowSamples) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        if (minWindowSamples <= 0) {
+            throw new IllegalArgumentException("minWindowSamples must be positive: " + minWindowSamples);
+        }
+        final int initialLimit = algorithm.initialLimit();
+        if (initialLimit <= 0) {
+            throw new IllegalArgumentException("initialLimit must be positive: " + initialLimit);
+        }
+        this.algorithm = algorithm;
+        this.windowNanos = unit.toNanos(window);
+        this.minWindowSamples = minWindowSamples;
+        this.limit = initialLimit;
+        this.windowStart = System.nanoTime();
+    }
+
+    /**
+     * Admit a call if fewer calls than the limit are in flight.
+     *
+     * @return true if the call was admitted and must be completed.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                maxInFlight.accumulate(current + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Complete an admitted call which succeeded, recording its RTT.
+     *
+     * @param rttNanos the time the call took.
+     */
+    public void onSuccess(long rttNanos) {
+        inFlight.decrementAndGet();
+        rttSum.add(rttNanos);
+        minRtt.accumulate(rttNanos);
+        sampleCount.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * Complete an admitted call which was dropped, e.g. timed out or rejected downstream, which shrinks the limit.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        dropCount.increment();
+        sampleCount.increment();
+        maybeUpdate();
+    }
+
+    /**
+     * Complete an admitted call without a sample, e.g. it failed for a reason unrelated to the load.
+     */
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return the current limit of calls in flight.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return the calls in flight.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void maybeUpdate() {
+        final long now = System.nanoTime();
+        if (now - windowStart < windowNanos || sampleCount.sum() < minWindowSamples || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            if (now - windowStart < windowNanos) {
+                // another thread closed the window meanwhile
+                return;
+            }
+            final int samples = (int) Math.min(Integer.MAX_VALUE, sampleCount.sumThenReset());
+            final long drops = dropCount.sumThenReset();
+            final long rtts = rttSum.sumThenReset();
+            final long min = minRtt.getThenReset();
+            final int max = (int) maxInFlight.getThenReset();
+            // calls still in flight count in the next window
+            maxInFlight.accumulate(inFlight.get());
+            windowStart = now;
+            final long measured = samples - drops;
+            if (measured <= 0) {
+                limit = Math.max(1, algorithm.update(samples, 0, 0, max, true));
+                return;
+            }
+            limit = Math.max(1, algorithm.update(samples, min, rtts / measured, max, drops > 0));
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveConcurrencyLimiter{limit=" + limit + ", inFlight=" + inFlight.get() + ", algorithm="
+            + algorithm + '}';
+    }
+}
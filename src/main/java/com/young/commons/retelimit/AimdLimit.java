@@ -0,0 +1,76 @@
+package com.young.commons.retelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease: the limit grows by one per window while the calls in flight use it,
+ * and is cut by a ratio when a call is dropped or the average RTT exceeds a timeout.
+ */
+public final class AimdLimit implements LimitAlgorithm {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9d;
+    public static final long DEFAULT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+
+    private double limit;
+
+    public AimdLimit() {
+        this(DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO, DEFAULT_TIMEOUT_NANOS,
+            TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param initialLimit the limit to start with.
+     * @param minLimit     the lowest limit.
+     * @param maxLimit     the highest limit.
+     * @param backoffRatio the ratio the limit is multiplied by on a drop, between 0.5 and 1.
+     * @param timeout      the average RTT above which the window counts as dropped.
+     * @param unit         the unit of the timeout.
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long timeout,
+                     TimeUnit unit) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must be positive and min <= initial <= max: " + minLimit
+                + ", " + initialLimit + ", " + maxLimit);
+        }
+        if (!(backoffRatio >= 0.5d && backoffRatio < 1.0d)) {
+            throw new IllegalArgumentException("backoffRatio must be in [0.5, 1): " + backoffRatio);
+        }
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive: " + timeout);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.timeoutNanos = unit.toNanos(timeout);
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int samples, long minRttNanos, long avgRttNanos, int maxInFlight, boolean dropped) {
+        if (dropped || avgRttNanos > timeoutNanos) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (maxInFlight * 2 >= limit) {
+            // only grow while the limit is actually used
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        return (int) limit;
+    }
+
+    @Override
+    public String toString() {
+        return "AimdLimit{limit=" + (int) limit + ", backoffRatio=" + backoffRatio + '}';
+    }
+}
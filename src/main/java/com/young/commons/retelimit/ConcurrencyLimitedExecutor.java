@@ -0,0 +1,170 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.thread.MonitoringExecutorService;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor admitting tasks into another one, e.g. a {@link com.young.commons.thread.MonitoringThreadPoolExecutor},
+ * through an {@link AdaptiveConcurrencyLimiter}: a task submitted while the limit of tasks queued or running is
+ * reached is rejected with a {@link RejectedExecutionException} right away, rather than queueing behind the others.
+ * <p>
+ * The RTT of a task is measured from its submission to its end, so a growing queue raises it as much as slower tasks
+ * do and shrinks the limit. A task rejected by the wrapped executor counts as dropped, a task throwing an exception
+ * or cancelled before it ran is not sampled, whether executed or submitted.
+ */
+public class ConcurrencyLimitedExecutor extends AbstractExecutorService implements MonitoringExecutorService {
+    private final MonitoringExecutorService delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * @param delegate  to run the admitted tasks.
+     * @param algorithm to adjust the limit with, not shared with another limiter.
+     */
+    public ConcurrencyLimitedExecutor(MonitoringExecutorService delegate, LimitAlgorithm algorithm) {
+        this(delegate, new AdaptiveConcurrencyLimiter(algorithm));
+    }
+
+    /**
+     * @param delegate to run the admitted tasks.
+     * @param limiter  to admit the tasks with, only used by this executor.
+     */
+    public ConcurrencyLimitedExecutor(MonitoringExecutorService delegate, AdaptiveConcurrencyLimiter limiter) {
+        if (delegate == null || limiter == null) {
+            throw new IllegalArgumentException("delegate and limiter must not be null");
+        }
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        if (!limiter.tryAcquire()) {
+            rejectedCount.increment();
+            throw new RejectedExecutionException("concurrency limit reached: " + limiter.getLimit());
+        }
+        final long start = System.nanoTime();
+        try {
+            delegate.execute(() -> {
+                boolean completed = false;
+                try {
+                    command.run();
+                    // the future of a submitted task catches its exception, ask it for the outcome
+                    completed = !(command instanceof SampledFutureTask) || ((SampledFutureTask<?>) command).succeeded;
+                } finally {
+                    if (completed) {
+                        limiter.onSuccess(System.nanoTime() - start);
+                    } else {
+                        limiter.onIgnore();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (delegate.isShutdown()) {
+                limiter.onIgnore();
+            } else {
+                limiter.onDropped();
+            }
+            rejectedCount.increment();
+            throw e;
+        }
+    }
+
+    @Override
+    protected <T> FutureTask<T> newTaskFor(Runnable runnable, T value) {
+        return new SampledFutureTask<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    protected <T> FutureTask<T> newTaskFor(Callable<T> callable) {
+        return new SampledFutureTask<>(callable);
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the number of tasks rejected so far, by the limiter or by the wrapped executor.
+     */
+    public long rejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public int waitCount() {
+        return delegate.waitCount();
+    }
+
+    @Override
+    public int executingCount() {
+        return delegate.executingCount();
+    }
+
+    @Override
+    public long completeCount() {
+        return delegate.completeCount();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Future of a submitted task remembering whether the task returned normally, which {@link FutureTask#run()}
+     * does not tell.
+     */
+    private static final class SampledFutureTask<V> extends FutureTask<V> {
+        /**
+         * Only read by the thread running the task, after {@link #run()}.
+         */
+        private boolean succeeded;
+
+        SampledFutureTask(Callable<V> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void set(V v) {
+            succeeded = true;
+            super.set(v);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimitedExecutor{limiter=" + limiter + ", delegate=" + delegate + '}';
+    }
+}
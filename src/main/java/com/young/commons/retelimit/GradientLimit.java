@@ -0,0 +1,101 @@
+package com.young.commons.retelimit;
+
+/**
+ * Gradient based limit: the average RTT of each window is compared with an exponential moving average of the RTT
+ * over many windows. While the recent RTT stays within a tolerance of the long-term one the limit grows by its
+ * square root, allowing for some queueing; once it rises the limit is scaled down by the ratio of the two, by half at
+ * most.
+ * <p>
+ * When the recent RTT drops well below the long-term one, e.g. after a load spike cleared, the average is decayed
+ * faster so the limit recovers quickly.
+ */
+public final class GradientLimit implements LimitAlgorithm {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double DEFAULT_SMOOTHING = 0.2d;
+    public static final double DEFAULT_RTT_TOLERANCE = 1.5d;
+    public static final int DEFAULT_LONG_WINDOW = 100;
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double longRttFactor;
+
+    private double limit;
+    private double longRttNanos;
+
+    public GradientLimit() {
+        this(DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT, DEFAULT_SMOOTHING, DEFAULT_RTT_TOLERANCE,
+            DEFAULT_LONG_WINDOW);
+    }
+
+    /**
+     * @param initialLimit the limit to start with.
+     * @param minLimit     the lowest limit.
+     * @param maxLimit     the highest limit.
+     * @param smoothing    the weight of a new limit against the current one, in (0, 1].
+     * @param rttTolerance how many times the long-term RTT the recent one may reach before the limit shrinks, at
+     *                     least 1.
+     * @param longWindow   the number of windows the long-term RTT is averaged over.
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance,
+                         int longWindow) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must be positive and min <= initial <= max: " + minLimit
+                + ", " + initialLimit + ", " + maxLimit);
+        }
+        if (!(smoothing > 0.0d && smoothing <= 1.0d)) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        if (!(rttTolerance >= 1.0d)) {
+            throw new IllegalArgumentException("rttTolerance must be at least 1: " + rttTolerance);
+        }
+        if (longWindow <= 0) {
+            throw new IllegalArgumentException("longWindow must be positive: " + longWindow);
+        }
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longRttFactor = 2.0d / (longWindow + 1);
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int samples, long minRttNanos, long avgRttNanos, int maxInFlight, boolean dropped) {
+        final double shortRtt = avgRttNanos;
+        // nothing to average when every call was dropped
+        if (shortRtt > 0 && longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else if (shortRtt > 0) {
+            longRttNanos = longRttNanos * (1 - longRttFactor) + shortRtt * longRttFactor;
+            if (longRttNanos / shortRtt > 2) {
+                // the load went away, forget the slow period faster
+                longRttNanos *= 0.95d;
+            }
+        }
+        if (!dropped && maxInFlight * 2 < limit) {
+            // the calls do not use the limit, so the RTT says nothing about it
+            return (int) limit;
+        }
+
+        final double gradient = dropped
+            ? 0.5d : Math.max(0.5d, Math.min(1.0d, rttTolerance * longRttNanos / shortRtt));
+        final double next = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + next * smoothing));
+        return (int) limit;
+    }
+
+    @Override
+    public String toString() {
+        return "GradientLimit{limit=" + (int) limit + ", longRttNanos=" + (long) longRttNanos + '}';
+    }
+}
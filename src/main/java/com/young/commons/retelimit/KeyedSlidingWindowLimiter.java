@@ -0,0 +1,171 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.cache.BoundedCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter keeping a separate limit for each key, e.g. each API key, over a sliding window.
+ * <p>
+ * Each key only holds the counts of the current and of the previous fixed window, two ints, and the number of the
+ * current window, an int; the count over the sliding window is estimated by weighting the previous count with the
+ * part of the previous window still covered. A decision is a cache lookup and a few arithmetic operations under the
+ * lock of the key, whatever the number of keys. The estimate assumes the calls of the previous window were spread
+ * evenly; {@link KeyedSlidingWindowLogLimiter} counts exactly, at the cost of a time per permit.
+ * <p>
+ * The keys are held in a {@link BoundedCache} expiring them after two idle windows, when their counts no longer
+ * matter, so the memory used stays proportional to the active keys. The cache is also bounded in size: a key evicted
+ * while active starts over with empty counts, so the bound should be above the number of keys active at once.
+ *
+ * @param <K> the type of keys
+ */
+public class KeyedSlidingWindowLimiter<K> {
+    /**
+     * The default maximum number of keys tracked at once.
+     */
+    public static final long DEFAULT_MAXIMUM_KEYS = 1 << 20;
+
+    private final int limit;
+    private final long windowNanos;
+    private final long startNanos;
+    private final BoundedCache<K, Window> windows;
+
+    /**
+     * Counts of one key. The window numbers are ints which wrap around, compared by their difference: a key idle
+     * long enough for it to overflow has expired from the cache long before.
+     */
+    static final class Window {
+        int epoch;
+        int previous;
+        int current;
+
+        Window(int epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Create a limiter tracking at most {@link #DEFAULT_MAXIMUM_KEYS} keys.
+     *
+     * @param limit  the permits allowed per key over any window.
+     * @param window the duration of the sliding window.
+     * @param unit   the unit of the window.
+     */
+    public KeyedSlidingWindowLimiter(int limit, long window, TimeUnit unit) {
+        this(limit, window, unit, DEFAULT_MAXIMUM_KEYS);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param limit       the permits allowed per key over any window.
+     * @param window      the duration of the sliding window.
+     * @param unit        the unit of the window.
+     * @param maximumKeys the maximum number of keys tracked at once.
+     */
+    public KeyedSlidingWindowLimiter(int limit, long window, TimeUnit unit, long maximumKeys) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        if (maximumKeys <= 0) {
+            throw new IllegalArgumentException("maximumKeys must be positive: " + maximumKeys);
+        }
+        this.limit = limit;
+        this.windowNanos = unit.toNanos(window);
+        this.startNanos = System.nanoTime();
+        this.windows = BoundedCache.<K, Window>builder()
+            .maximumSize(maximumKeys)
+            .expireAfterAccess(Math.min(Long.MAX_VALUE >> 2, windowNanos) * 2, TimeUnit.NANOSECONDS)
+            .build();
+    }
+
+    /**
+     * Take a permit for a key if available right now.
+     *
+     * @param key to take the permit for.
+     * @return true if the permit was taken.
+     */
+    public boolean tryAcquire(K key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Take permits for a key if available right now.
+     *
+     * @param key     to take the permits for.
+     * @param permits to take.
+     * @return true if the permits were taken.
+     */
+    public boolean tryAcquire(K key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        final long now = System.nanoTime() - startNanos;
+        final int epoch = (int) (now / windowNanos);
+        final double previousWeight = 1.0d - (double) (now % windowNanos) / windowNanos;
+        final Window window = windows.get(key, k -> new Window(epoch));
+        synchronized (window) {
+            roll(window, epoch);
+            if (window.previous * previousWeight + window.current + permits > limit) {
+                return false;
+            }
+            window.current += permits;
+            return true;
+        }
+    }
+
+    /**
+     * @param key to estimate the count of.
+     * @return the estimated permits taken by the key over the sliding window ending now.
+     */
+    public int estimatedCount(K key) {
+        final Window window = windows.get(key);
+        if (window == null) {
+            return 0;
+        }
+        final long now = System.nanoTime() - startNanos;
+        final int epoch = (int) (now / windowNanos);
+        final double previousWeight = 1.0d - (double) (now % windowNanos) / windowNanos;
+        synchronized (window) {
+            roll(window, epoch);
+            return (int) (window.previous * previousWeight + window.current);
+        }
+    }
+
+    /**
+     * @return the approximate number of keys tracked.
+     */
+    public long estimatedKeys() {
+        return windows.estimatedSize();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    /**
+     * Move the counts of a key to the current window.
+     */
+    private static void roll(Window window, int epoch) {
+        final int elapsed = epoch - window.epoch;
+        if (elapsed <= 0) {
+            // a caller which read the clock earlier than the last one counts in the current window
+            return;
+        }
+        window.previous = elapsed == 1 ? window.current : 0;
+        window.current = 0;
+        window.epoch = epoch;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyedSlidingWindowLimiter{limit=" + limit + ", windowNanos=" + windowNanos + '}';
+    }
+}
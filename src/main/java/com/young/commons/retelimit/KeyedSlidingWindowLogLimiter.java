@@ -0,0 +1,185 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.cache.BoundedCache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter keeping a separate limit for each key, e.g. each API key, over an exact sliding window.
+ * <p>
+ * Each key logs the time of every permit taken within the last window, in a ring of longs growing up to the limit,
+ * and a permit is granted if fewer than the limit are logged once the older ones are dropped. Unlike the estimate of
+ * {@link KeyedSlidingWindowLimiter}, the count is exact whatever the spread of the calls over the windows, but a key
+ * costs up to 8 bytes per permit of the limit instead of a few ints, and dropping the old times costs a step each:
+ * prefer it for small limits, e.g. a few calls per second or per minute, where bursts at window edges matter.
+ * <p>
+ * As in {@link KeyedSlidingWindowLimiter}, the keys are held in a {@link BoundedCache} expiring them after an idle
+ * window, when their log is empty anyway; a key evicted while active starts over with an empty log.
+ *
+ * @param <K> the type of keys
+ */
+public class KeyedSlidingWindowLogLimiter<K> {
+    /**
+     * The default maximum number of keys tracked at once.
+     */
+    public static final long DEFAULT_MAXIMUM_KEYS = KeyedSlidingWindowLimiter.DEFAULT_MAXIMUM_KEYS;
+
+    private static final int INITIAL_LOG_CAPACITY = 16;
+
+    private final int limit;
+    private final long windowNanos;
+    private final long startNanos;
+    private final BoundedCache<K, Log> logs;
+
+    /**
+     * Times of the permits of one key within the last window, oldest first, in a ring.
+     */
+    static final class Log {
+        long[] times;
+        int head;
+        int size;
+
+        Log(int capacity) {
+            this.times = new long[capacity];
+        }
+
+        /**
+         * Drop the times which left the window.
+         */
+        void expire(long windowStart) {
+            while (size > 0 && times[head] - windowStart <= 0) {
+                head = (head + 1) % times.length;
+                size--;
+            }
+        }
+
+        void append(long time, int count, int limit) {
+            if (size + count > times.length) {
+                grow(Math.min(limit, Math.max(size + count, times.length << 1)));
+            }
+            for (int i = 0; i < count; i++) {
+                times[(head + size) % times.length] = time;
+                size++;
+            }
+        }
+
+        private void grow(int capacity) {
+            final long[] grown = new long[capacity];
+            final int tail = Math.min(size, times.length - head);
+            System.arraycopy(times, head, grown, 0, tail);
+            System.arraycopy(times, 0, grown, tail, size - tail);
+            times = grown;
+            head = 0;
+        }
+    }
+
+    /**
+     * Create a limiter tracking at most {@link #DEFAULT_MAXIMUM_KEYS} keys.
+     *
+     * @param limit  the permits allowed per key over any window.
+     * @param window the duration of the sliding window.
+     * @param unit   the unit of the window.
+     */
+    public KeyedSlidingWindowLogLimiter(int limit, long window, TimeUnit unit) {
+        this(limit, window, unit, DEFAULT_MAXIMUM_KEYS);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param limit       the permits allowed per key over any window.
+     * @param window      the duration of the sliding window.
+     * @param unit        the unit of the window.
+     * @param maximumKeys the maximum number of keys tracked at once.
+     */
+    public KeyedSlidingWindowLogLimiter(int limit, long window, TimeUnit unit, long maximumKeys) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        if (maximumKeys <= 0) {
+            throw new IllegalArgumentException("maximumKeys must be positive: " + maximumKeys);
+        }
+        this.limit = limit;
+        this.windowNanos = unit.toNanos(window);
+        this.startNanos = System.nanoTime();
+        this.logs = BoundedCache.<K, Log>builder()
+            .maximumSize(maximumKeys)
+            .expireAfterAccess(Math.min(Long.MAX_VALUE >> 2, windowNanos), TimeUnit.NANOSECONDS)
+            .build();
+    }
+
+    /**
+     * Take a permit for a key if available right now.
+     *
+     * @param key to take the permit for.
+     * @return true if the permit was taken.
+     */
+    public boolean tryAcquire(K key) {
+        return tryAcquire(key, 1);
+    }
+
+    /**
+     * Take permits for a key if available right now.
+     *
+     * @param key     to take the permits for.
+     * @param permits to take.
+     * @return true if the permits were taken.
+     */
+    public boolean tryAcquire(K key, int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        if (permits > limit) {
+            return false;
+        }
+        final long now = System.nanoTime() - startNanos;
+        final Log log = logs.get(key, k -> new Log(Math.min(limit, INITIAL_LOG_CAPACITY)));
+        synchronized (log) {
+            log.expire(now - windowNanos);
+            if (log.size + permits > limit) {
+                return false;
+            }
+            log.append(now, permits, limit);
+            return true;
+        }
+    }
+
+    /**
+     * @param key to count the permits of.
+     * @return the permits taken by the key over the sliding window ending now.
+     */
+    public int count(K key) {
+        final Log log = logs.get(key);
+        if (log == null) {
+            return 0;
+        }
+        final long now = System.nanoTime() - startNanos;
+        synchronized (log) {
+            log.expire(now - windowNanos);
+            return log.size;
+        }
+    }
+
+    /**
+     * @return the approximate number of keys tracked.
+     */
+    public long estimatedKeys() {
+        return logs.estimatedSize();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "KeyedSlidingWindowLogLimiter{limit=" + limit + ", windowNanos=" + windowNanos + '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.young.commons.retelimit;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -11,8 +13,14 @@ public class LeakyBucketLimiter extends RateLimiter {
     private long lastTime;                                                  // 时间戳
     private final ReentrantLock lock = new ReentrantLock();                       // 可重入锁
 
-    LeakyBucketLimiter(int qps) {
+    /**
+     * @param qps 每秒流出的许可数, 也是水桶容量
+     */
+    public LeakyBucketLimiter(int qps) {
         super(qps);
+        if (qps <= 0) {
+            throw new IllegalArgumentException("qps must be positive: " + qps);
+        }
         capacity = qps;
         remainWater = capacity;
         lastTime = 0;
@@ -20,27 +28,65 @@ public class LeakyBucketLimiter extends RateLimiter {
 
     @Override
     public boolean tryAcquire() {
+        long waitingMs = fill(1);
+        if (waitingMs < 0) {
+            return false;
+        }
+        try {
+            Thread.sleep(waitingMs);                                        // 为实现匀速处理请求，需要在锁外阻塞一段时间后再return
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * 异步获取许可, 见 {@link #acquireAsync(int)}
+     *
+     * @return 许可可用时以true完成的future, 桶满时立即以false完成
+     */
+    public CompletableFuture<Boolean> acquireAsync() {
+        return acquireAsync(1);
+    }
+
+    /**
+     * 异步获取许可: 与 {@link #tryAcquire()} 相同地加水, 但不阻塞调用线程, 而是由共享的定时器在水滴出后完成future.
+     * 回调在定时器线程上执行, 耗时的回调应使用 {@link CompletableFuture} 的async方法添加.
+     * 定时器过载时future以 {@link java.util.concurrent.RejectedExecutionException} 失败, 已加的水不会退回.
+     *
+     * @param permits 许可数
+     * @return 许可可用时以true完成的future, 桶满时立即以false完成
+     */
+    public CompletableFuture<Boolean> acquireAsync(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        long waitingMs = fill(permits);
+        if (waitingMs < 0) {
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+        }
+        return PermitTimer.grantAfter(TimeUnit.MILLISECONDS.toNanos(waitingMs));
+    }
+
+    /**
+     * 加水
+     *
+     * @return 刚加入的水滴完全滴出漏桶需要的时间（毫秒）, 桶满时返回-1
+     */
+    private long fill(int permits) {
         lock.lock();
         try {
             long now = System.currentTimeMillis();
             double outWater = ((now - lastTime) / 1000.0) * capacity;         // 计算这段时间匀速流出的水
             lastTime = now;
             remainWater = Math.max(0, remainWater - outWater);
-            if (remainWater + 1 <= capacity) {
-                remainWater += 1;
-                long waitingMs = (long) ((remainWater / capacity) * 1000);   // 计算刚加入的水滴完全滴出漏桶需要的时间（毫秒）
-                lock.unlock();
-                try {
-                    Thread.sleep(waitingMs);                                // 为实现匀速处理请求，需要阻塞一段时间后再return
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                return true;
-            } else {
-                return false;
+            if (remainWater + permits > capacity) {
+                return -1;
             }
+            remainWater += permits;
+            return (long) ((remainWater / capacity) * 1000);                // 计算刚加入的水滴完全滴出漏桶需要的时间（毫秒）
         } finally {
-            if (lock.isLocked()) lock.unlock();
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,31 @@
+package com.young.commons.retelimit;
+
+/**
+ * How an {@link AdaptiveConcurrencyLimiter} adjusts its limit of calls in flight from the round trip times measured
+ * over a window of calls.
+ * <p>
+ * {@link AimdLimit} only backs off on drops and timeouts, {@link VegasLimit} estimates the queue building up from
+ * the rise of the RTT over the lowest one seen, and {@link GradientLimit} compares the recent RTT with its long-term
+ * average.
+ * <p>
+ * An algorithm keeps the limit, as a fractional estimate, and possibly more state: it is called by one thread at a
+ * time and must not be shared between limiters.
+ */
+public interface LimitAlgorithm {
+    /**
+     * @return the limit to start with.
+     */
+    int initialLimit();
+
+    /**
+     * Compute the limit after a window of calls.
+     *
+     * @param samples     the number of calls which completed in the window.
+     * @param minRttNanos the lowest RTT of the window, 0 if every call was dropped.
+     * @param avgRttNanos the average RTT of the window, 0 if every call was dropped.
+     * @param maxInFlight the highest number of calls in flight during the window.
+     * @param dropped     true if a call was dropped in the window, e.g. rejected or timed out downstream.
+     * @return the new limit, at least 1.
+     */
+    int update(int samples, long minRttNanos, long avgRttNanos, int maxInFlight, boolean dropped);
+}
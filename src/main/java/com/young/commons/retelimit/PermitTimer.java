@@ -0,0 +1,116 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.thread.BackoffIdleStrategy;
+import com.young.commons.thread.NamedThreadFactory;
+import com.young.commons.timer.ConcurrentDeadlineTimerWheel;
+import com.young.commons.timer.DeadlineTimerWheelRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer shared by every limiter to complete the futures of asynchronous acquisitions once their wait is over, so
+ * any number of callers can wait without a thread each.
+ * <p>
+ * A single daemon thread, started on first use, runs a {@link ConcurrentDeadlineTimerWheel} of about 1ms ticks. The
+ * futures are completed on that thread: dependent stages doing more than handing the work over should be added with
+ * the async methods of {@link CompletableFuture}, or they delay every other waiter.
+ * <p>
+ * Timers are handed to the thread through a bounded command ring. When it is full, the future is completed with a
+ * {@link RejectedExecutionException} at once rather than making the caller wait for room.
+ */
+final class PermitTimer {
+    /**
+     * Ticks of 2^20ns (~1ms) and 1024 spokes, longer waits are kept in the overflow heap of the wheel.
+     */
+    private static final long TICK_RESOLUTION = 1L << 20;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final int COMMAND_CAPACITY = 1 << 16;
+
+    private final int commandCapacity;
+    private final ConcurrentDeadlineTimerWheel wheel;
+    private final DeadlineTimerWheelRunner runner;
+    private final ConcurrentHashMap<Long, CompletableFuture<Boolean>> waiters = new ConcurrentHashMap<>();
+
+    private static final class Holder {
+        static final PermitTimer INSTANCE = new PermitTimer();
+    }
+
+    private PermitTimer() {
+        this(COMMAND_CAPACITY, new NamedThreadFactory("rate-limiter-timer", true));
+    }
+
+    /**
+     * A timer of its own, for tests.
+     *
+     * @param commandCapacity of the command ring (must be power of 2).
+     * @param threadFactory   to create the timer thread with.
+     */
+    PermitTimer(int commandCapacity, ThreadFactory threadFactory) {
+        this.commandCapacity = commandCapacity;
+        wheel = new ConcurrentDeadlineTimerWheel(
+            TimeUnit.NANOSECONDS, System.nanoTime(), TICK_RESOLUTION, TICKS_PER_WHEEL, commandCapacity);
+        // the runner is unparked when an earlier timer is scheduled, so an idle thread may park for long
+        runner = new DeadlineTimerWheelRunner(wheel, this::onTimerExpiry, new BackoffIdleStrategy(
+            BackoffIdleStrategy.DEFAULT_MAX_SPINS, BackoffIdleStrategy.DEFAULT_MAX_YIELDS,
+            BackoffIdleStrategy.DEFAULT_MIN_PARK_NANOS, TimeUnit.SECONDS.toNanos(1)));
+        runner.start(threadFactory);
+    }
+
+    /**
+     * @param waitNanos to wait before completing the future.
+     * @return a future completed with true once the wait is over, right away if there is none, or exceptionally
+     * with a {@link RejectedExecutionException} if too many timers are pending.
+     */
+    static CompletableFuture<Boolean> grantAfter(long waitNanos) {
+        if (waitNanos <= 0) {
+            return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+        return Holder.INSTANCE.schedule(waitNanos);
+    }
+
+    CompletableFuture<Boolean> schedule(long waitNanos) {
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        // registered before scheduling, the timer may expire before scheduleTimer returns
+        final long timerId = wheel.reserveTimerId();
+        waiters.put(timerId, future);
+        if (!runner.scheduleTimer(timerId, System.nanoTime() + waitNanos)) {
+            waiters.remove(timerId);
+            future.completeExceptionally(new RejectedExecutionException(
+                "too many pending timers, command capacity: " + commandCapacity));
+            return future;
+        }
+        future.whenComplete((granted, t) -> {
+            // e.g. cancelled by the caller: the permits stay taken, only the timer is dropped
+            if (waiters.remove(timerId) != null) {
+                runner.cancelTimer(timerId);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return the futures waiting for their timer.
+     */
+    int waiterCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Stop the thread of a timer created for tests.
+     */
+    void close() {
+        runner.close();
+    }
+
+    private boolean onTimerExpiry(TimeUnit timeUnit, long now, long timerId) {
+        final CompletableFuture<Boolean> future = waiters.remove(timerId);
+        if (future != null) {
+            future.complete(Boolean.TRUE);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package com.young.commons.retelimit;
+
+/**
+ * Smooth limiter serving the permits stored while idle at once, up to a burst of a given number of seconds of
+ * permits. A new limiter starts with no stored permits.
+ */
+public final class SmoothBurstyLimiter extends SmoothRateLimiter {
+    private final double maxBurstSeconds;
+
+    /**
+     * Create a limiter storing up to one second of permits.
+     *
+     * @param permitsPerSecond the stable rate.
+     */
+    public SmoothBurstyLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, 1.0);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param permitsPerSecond the stable rate.
+     * @param maxBurstSeconds  the seconds of permits stored at most while idle, 0 for none.
+     */
+    public SmoothBurstyLimiter(double permitsPerSecond, double maxBurstSeconds) {
+        super(permitsPerSecond);
+        if (!(maxBurstSeconds >= 0.0)) {
+            throw new IllegalArgumentException("maxBurstSeconds must not be negative: " + maxBurstSeconds);
+        }
+        this.maxBurstSeconds = maxBurstSeconds;
+        setRate(permitsPerSecond);
+    }
+
+    @Override
+    double maxPermits(double stableIntervalNanos) {
+        return maxBurstSeconds * 1e9 / stableIntervalNanos;
+    }
+
+    @Override
+    double storedPermitsAfterRateChange(State previous, double maxPermits) {
+        if (previous == null) {
+            return 0.0;
+        }
+        // keep the same fraction of the burst
+        return previous.maxPermits == 0.0 ? 0.0 : previous.storedPermits * maxPermits / previous.maxPermits;
+    }
+
+    @Override
+    double storedPermitsToWaitTime(State state, double permitsToTake) {
+        return 0.0;
+    }
+
+    @Override
+    double coolDownIntervalNanos(State state) {
+        return state.stableIntervalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SmoothBurstyLimiter{rate=" + getRate() + ", maxBurstSeconds=" + maxBurstSeconds + '}';
+    }
+}
@@ -0,0 +1,270 @@
+package com.young.commons.retelimit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Rate limiter spacing permits evenly at a rate which can be changed at runtime, and storing the permits left unused
+ * while idle to serve them later.
+ * <p>
+ * How stored permits are served is up to the subclass: {@link SmoothBurstyLimiter} serves them at once, as a burst,
+ * while {@link SmoothWarmingUpLimiter} serves them slower than the stable rate, so a limiter idle for a while ramps
+ * up from a cold rate. As in the classic algorithm, a request is never delayed for its own permits but makes the
+ * following requests wait for them: {@link #reserve(int)} returns how long the caller should wait before using its
+ * permits, without waiting itself.
+ * <p>
+ * The whole state is an immutable snapshot swapped with a compare-and-set, so no caller ever waits for a lock.
+ */
+public abstract class SmoothRateLimiter extends RateLimiter {
+    private final long startNanos = System.nanoTime();
+    private final AtomicReference<State> state = new AtomicReference<>();
+
+    /**
+     * Snapshot of the limiter, replaced as a whole on every change.
+     */
+    static final class State {
+        final double permitsPerSecond;
+        final double stableIntervalNanos;
+        final double maxPermits;
+        final double storedPermits;
+        /**
+         * Time when the next request can be granted, in nanoseconds since the limiter was created.
+         */
+        final long nextFreeNanos;
+
+        State(double permitsPerSecond, double stableIntervalNanos, double maxPermits, double storedPermits,
+              long nextFreeNanos) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.stableIntervalNanos = stableIntervalNanos;
+            this.maxPermits = maxPermits;
+            this.storedPermits = storedPermits;
+            this.nextFreeNanos = nextFreeNanos;
+        }
+    }
+
+    /**
+     * The subclass constructor calls {@link #setRate(double)} once its own fields are set.
+     */
+    SmoothRateLimiter(double permitsPerSecond) {
+        super((int) checkRate(permitsPerSecond));
+    }
+
+    private static double checkRate(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0.0) || Double.isInfinite(permitsPerSecond)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive and finite: " + permitsPerSecond);
+        }
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return the maximum number of stored permits at the given stable interval.
+     */
+    abstract double maxPermits(double stableIntervalNanos);
+
+    /**
+     * @return the stored permits after a rate change, from the previous state or null for a new limiter.
+     */
+    abstract double storedPermitsAfterRateChange(State previous, double maxPermits);
+
+    /**
+     * @return the nanoseconds it takes to serve permits out of the stored ones.
+     */
+    abstract double storedPermitsToWaitTime(State state, double permitsToTake);
+
+    /**
+     * @return the nanoseconds it takes to store one permit while idle.
+     */
+    abstract double coolDownIntervalNanos(State state);
+
+    /**
+     * Change the rate. Requests already granted are not affected, the next one waits at the new rate.
+     *
+     * @param permitsPerSecond the new stable rate.
+     */
+    public void setRate(double permitsPerSecond) {
+        checkRate(permitsPerSecond);
+        State current;
+        State next;
+        do {
+            final long now = now();
+            current = state.get();
+            next = newState(current == null ? null : resync(current, now), permitsPerSecond, now);
+        } while (!state.compareAndSet(current, next));
+        qps = (int) permitsPerSecond;
+    }
+
+    /**
+     * @return the stable rate in permits per second.
+     */
+    public double getRate() {
+        return state.get().permitsPerSecond;
+    }
+
+    /**
+     * @return the permits stored while idle, as of now.
+     */
+    public double storedPermits() {
+        return resync(state.get(), now()).storedPermits;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Take permits if they can be granted right now.
+     *
+     * @param permits to take.
+     * @return true if the permits were taken.
+     */
+    public boolean tryAcquire(int permits) {
+        return tryReserve(permits, 0) >= 0;
+    }
+
+    /**
+     * Take permits if they can be granted within a timeout, waiting for them.
+     *
+     * @param permits to take.
+     * @param timeout to wait for at most.
+     * @param unit    of the timeout.
+     * @return true if the permits were taken, false right away if they could not be in time.
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        final long waitNanos = tryReserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (waitNanos < 0) {
+            return false;
+        }
+        sleep(waitNanos);
+        return true;
+    }
+
+    /**
+     * Take a permit asynchronously, see {@link #acquireAsync(int)}.
+     *
+     * @return a future completed with true once the permit can be used.
+     */
+    public CompletableFuture<Boolean> acquireAsync() {
+        return acquireAsync(1);
+    }
+
+    /**
+     * Take permits without blocking: the permits are reserved right away and the future is completed by a shared
+     * timer once they can be used. Callbacks run on the timer thread unless added with the async methods of
+     * {@link CompletableFuture}. If the timer is overloaded, the future fails with a
+     * {@link java.util.concurrent.RejectedExecutionException} and the permits stay taken.
+     *
+     * @param permits to take.
+     * @return a future completed with true once the permits can be used.
+     */
+    public CompletableFuture<Boolean> acquireAsync(int permits) {
+        return PermitTimer.grantAfter(reserve(permits));
+    }
+
+    /**
+     * Take permits if they can be granted within a timeout, without blocking, see {@link #acquireAsync(int)}.
+     *
+     * @param permits to take.
+     * @param timeout to wait for at most.
+     * @param unit    of the timeout.
+     * @return a future completed with true once the permits can be used, or with false right away if they could not
+     * be in time.
+     */
+    public CompletableFuture<Boolean> tryAcquireAsync(int permits, long timeout, TimeUnit unit) {
+        final long waitNanos = tryReserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (waitNanos < 0) {
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+        }
+        return PermitTimer.grantAfter(waitNanos);
+    }
+
+    /**
+     * Reserve a permit, see {@link #reserve(int)}.
+     *
+     * @return the nanoseconds to wait before using the permit.
+     */
+    public long reserve() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserve permits without waiting: the caller is expected to wait the returned time, e.g. by scheduling its work,
+     * before using them.
+     *
+     * @param permits to reserve.
+     * @return the nanoseconds to wait before using the permits, 0 if they can be used right now.
+     */
+    public long reserve(int permits) {
+        return tryReserve(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the nanoseconds to wait, or -1 if longer than the timeout and nothing was reserved.
+     */
+    private long tryReserve(int permits, long timeoutNanos) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+        while (true) {
+            final long now = now();
+            final State current = state.get();
+            if (current.nextFreeNanos - now > timeoutNanos) {
+                return -1;
+            }
+            final State resynced = resync(current, now);
+            final double storedToSpend = Math.min(permits, resynced.storedPermits);
+            final double freshPermits = permits - storedToSpend;
+            final double waitNanos = storedPermitsToWaitTime(resynced, storedToSpend)
+                + freshPermits * resynced.stableIntervalNanos;
+            final State next = new State(resynced.permitsPerSecond, resynced.stableIntervalNanos,
+                resynced.maxPermits, resynced.storedPermits - storedToSpend,
+                saturatedAdd(resynced.nextFreeNanos, (long) waitNanos));
+            if (state.compareAndSet(current, next)) {
+                return Math.max(0, resynced.nextFreeNanos - now);
+            }
+        }
+    }
+
+    /**
+     * @return the state with the permits stored while idle up to now.
+     */
+    private State resync(State current, long now) {
+        if (now <= current.nextFreeNanos) {
+            return current;
+        }
+        final double newPermits = (now - current.nextFreeNanos) / coolDownIntervalNanos(current);
+        return new State(current.permitsPerSecond, current.stableIntervalNanos, current.maxPermits,
+            Math.min(current.maxPermits, current.storedPermits + newPermits), now);
+    }
+
+    private State newState(State previous, double permitsPerSecond, long now) {
+        final double stableIntervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        final double maxPermits = maxPermits(stableIntervalNanos);
+        return new State(permitsPerSecond, stableIntervalNanos, maxPermits,
+            storedPermitsAfterRateChange(previous, maxPermits), previous == null ? now : previous.nextFreeNanos);
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        final long sum = a + b;
+        return ((a ^ sum) & (b ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static void sleep(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        boolean interrupted = false;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            interrupted |= Thread.interrupted();
+            nanos = deadline - System.nanoTime();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.young.commons.retelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Smooth limiter ramping up after being idle, for downstream resources such as caches which are slow while cold.
+ * <p>
+ * Permits stored while idle are served slower than the stable rate: up to {@code coldFactor} times the stable
+ * interval for a full limiter, going down linearly to the stable interval, so a full limiter reaches the stable rate
+ * after the warm-up period. A new limiter starts full, i.e. cold. Below half of the warm-up period worth of stored
+ * permits, they are served at the stable rate.
+ */
+public final class SmoothWarmingUpLimiter extends SmoothRateLimiter {
+    public static final double DEFAULT_COLD_FACTOR = 3.0;
+
+    private final long warmupPeriodNanos;
+    private final double coldFactor;
+
+    /**
+     * Create a limiter starting at a third of the stable rate.
+     *
+     * @param permitsPerSecond the stable rate.
+     * @param warmupPeriod     the time to ramp up from cold to the stable rate.
+     * @param unit             of the warm-up period.
+     */
+    public SmoothWarmingUpLimiter(double permitsPerSecond, long warmupPeriod, TimeUnit unit) {
+        this(permitsPerSecond, warmupPeriod, unit, DEFAULT_COLD_FACTOR);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param permitsPerSecond the stable rate.
+     * @param warmupPeriod     the time to ramp up from cold to the stable rate.
+     * @param unit             of the warm-up period.
+     * @param coldFactor       the cold interval over the stable interval, at least 1.
+     */
+    public SmoothWarmingUpLimiter(double permitsPerSecond, long warmupPeriod, TimeUnit unit, double coldFactor) {
+        super(permitsPerSecond);
+        if (warmupPeriod <= 0) {
+            throw new IllegalArgumentException("warmupPeriod must be positive: " + warmupPeriod);
+        }
+        if (!(coldFactor >= 1.0)) {
+            throw new IllegalArgumentException("coldFactor must be at least 1: " + coldFactor);
+        }
+        this.warmupPeriodNanos = unit.toNanos(warmupPeriod);
+        this.coldFactor = coldFactor;
+        setRate(permitsPerSecond);
+    }
+
+    private double thresholdPermits(double stableIntervalNanos) {
+        return 0.5 * warmupPeriodNanos / stableIntervalNanos;
+    }
+
+    @Override
+    double maxPermits(double stableIntervalNanos) {
+        final double coldIntervalNanos = stableIntervalNanos * coldFactor;
+        return thresholdPermits(stableIntervalNanos)
+            + 2.0 * warmupPeriodNanos / (stableIntervalNanos + coldIntervalNanos);
+    }
+
+    @Override
+    double storedPermitsAfterRateChange(State previous, double maxPermits) {
+        if (previous == null) {
+            return maxPermits;
+        }
+        return previous.maxPermits == 0.0 ? maxPermits : previous.storedPermits * maxPermits / previous.maxPermits;
+    }
+
+    @Override
+    double storedPermitsToWaitTime(State state, double permitsToTake) {
+        final double stable = state.stableIntervalNanos;
+        final double threshold = thresholdPermits(stable);
+        final double slope = (stable * coldFactor - stable) / (state.maxPermits - threshold);
+        final double aboveThreshold = state.storedPermits - threshold;
+        double nanos = 0.0;
+        // the part above the threshold is served on the slope, the area of a trapezoid
+        if (aboveThreshold > 0.0) {
+            final double taken = Math.min(aboveThreshold, permitsToTake);
+            final double length = permitsToInterval(stable, slope, aboveThreshold)
+                + permitsToInterval(stable, slope, aboveThreshold - taken);
+            nanos = taken * length / 2.0;
+            permitsToTake -= taken;
+        }
+        return nanos + stable * permitsToTake;
+    }
+
+    private static double permitsToInterval(double stable, double slope, double permitsAboveThreshold) {
+        return stable + permitsAboveThreshold * slope;
+    }
+
+    @Override
+    double coolDownIntervalNanos(State state) {
+        // fill up in the warm-up period
+        return warmupPeriodNanos / state.maxPermits;
+    }
+
+    @Override
+    public String toString() {
+        return "SmoothWarmingUpLimiter{rate=" + getRate() + ", warmupPeriodNanos=" + warmupPeriodNanos
+            + ", coldFactor=" + coldFactor + '}';
+    }
+}
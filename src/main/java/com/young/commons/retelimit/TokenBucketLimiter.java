@@ -0,0 +1,228 @@
+package com.young.commons.retelimit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free token bucket, implemented as the generic cell rate algorithm: instead of a token count refilled over time
+ * the whole bucket is a single {@link AtomicLong}, the theoretical arrival time of the next permit in
+ * {@link System#nanoTime()} nanoseconds. Taking permits pushes that time forward by one interval per permit, and is
+ * allowed as long as it stays within the burst of the current time.
+ * <p>
+ * A decision is one read and, when permits are granted, one compare-and-set; a refused {@link #tryAcquire(int)} does
+ * not write at all. Only {@link #tryAcquire(int, long, TimeUnit)} ever blocks, for the wait it was allowed; the
+ * {@code acquireAsync} methods complete a future from a shared timer instead.
+ */
+public class TokenBucketLimiter extends RateLimiter {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long startNanos;
+    /**
+     * Theoretical arrival time of the next permit, relative to {@link #startNanos}.
+     */
+    private final AtomicLong arrivalTime = new AtomicLong();
+
+    /**
+     * Create a limiter allowing bursts of one second of permits.
+     *
+     * @param qps the permits per second.
+     */
+    public TokenBucketLimiter(int qps) {
+        this(qps, qps);
+    }
+
+    /**
+     * Create a limiter.
+     *
+     * @param qps   the permits per second, at most one per nanosecond.
+     * @param burst the permits which can be taken at once, the capacity of the bucket.
+     */
+    public TokenBucketLimiter(int qps, long burst) {
+        super(qps);
+        if (qps <= 0) {
+            throw new IllegalArgumentException("qps must be positive: " + qps);
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive: " + burst);
+        }
+        this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / qps);
+        this.burstNanos = burst * intervalNanos;
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Take permits if available right now.
+     *
+     * @param permits to take.
+     * @return true if the permits were taken.
+     */
+    public boolean tryAcquire(int permits) {
+        checkPermits(permits);
+        final long cost = permits * intervalNanos;
+        while (true) {
+            final long now = now();
+            final long arrival = arrivalTime.get();
+            final long next = Math.max(arrival, now) + cost;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (arrivalTime.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take permits if they become available within a timeout, waiting for them.
+     *
+     * @param permits to take.
+     * @param timeout to wait for at most.
+     * @param unit    of the timeout.
+     * @return true if the permits were taken, false right away if they would not be available in time.
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) {
+        final long waitNanos = tryReserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (waitNanos < 0) {
+            return false;
+        }
+        sleep(waitNanos);
+        return true;
+    }
+
+    /**
+     * Take a permit asynchronously, see {@link #acquireAsync(int)}.
+     *
+     * @return a future completed with true once the permit is available.
+     */
+    public CompletableFuture<Boolean> acquireAsync() {
+        return acquireAsync(1);
+    }
+
+    /**
+     * Take permits whether available or not, without blocking: the permits are reserved right away and the future
+     * is completed by a shared timer once they are available. Callbacks run on the timer thread unless added with
+     * the async methods of {@link CompletableFuture}. If the timer is overloaded, the future fails with a
+     * {@link java.util.concurrent.RejectedExecutionException} and the permits stay taken.
+     *
+     * @param permits to take.
+     * @return a future completed with true once the permits are available.
+     */
+    public CompletableFuture<Boolean> acquireAsync(int permits) {
+        return PermitTimer.grantAfter(reserve(permits));
+    }
+
+    /**
+     * Take permits if they become available within a timeout, without blocking, see {@link #acquireAsync(int)}.
+     *
+     * @param permits to take.
+     * @param timeout to wait for at most.
+     * @param unit    of the timeout.
+     * @return a future completed with true once the permits are available, or with false right away if they would
+     * not be available in time.
+     */
+    public CompletableFuture<Boolean> tryAcquireAsync(int permits, long timeout, TimeUnit unit) {
+        final long waitNanos = tryReserve(permits, Math.max(0, unit.toNanos(timeout)));
+        if (waitNanos < 0) {
+            return CompletableFuture.completedFuture(Boolean.FALSE);
+        }
+        return PermitTimer.grantAfter(waitNanos);
+    }
+
+    /**
+     * Reserve a permit, see {@link #reserve(int)}.
+     *
+     * @return the nanoseconds to wait before using the permit.
+     */
+    public long reserve() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserve permits whether available or not, without waiting: the caller is expected to wait the returned time,
+     * e.g. by scheduling its work, before using them. Later callers wait for these permits too.
+     *
+     * @param permits to reserve.
+     * @return the nanoseconds to wait before using the permits, 0 if available right now.
+     */
+    public long reserve(int permits) {
+        checkPermits(permits);
+        final long cost = permits * intervalNanos;
+        while (true) {
+            final long now = now();
+            final long arrival = arrivalTime.get();
+            final long next = Math.max(arrival, now) + cost;
+            if (arrivalTime.compareAndSet(arrival, next)) {
+                return Math.max(0, next - now - burstNanos);
+            }
+        }
+    }
+
+    /**
+     * @return the nanoseconds to wait, or -1 if longer than the timeout and nothing was taken.
+     */
+    private long tryReserve(int permits, long timeoutNanos) {
+        checkPermits(permits);
+        final long cost = permits * intervalNanos;
+        while (true) {
+            final long now = now();
+            final long arrival = arrivalTime.get();
+            final long next = Math.max(arrival, now) + cost;
+            final long waitNanos = next - now - burstNanos;
+            if (waitNanos > timeoutNanos) {
+                return -1;
+            }
+            if (arrivalTime.compareAndSet(arrival, next)) {
+                return Math.max(0, waitNanos);
+            }
+        }
+    }
+
+    /**
+     * @return the permits which could be taken right now.
+     */
+    public long availablePermits() {
+        final long now = now();
+        final long backlog = Math.max(arrivalTime.get(), now) - now;
+        return Math.max(0, (burstNanos - backlog) / intervalNanos);
+    }
+
+    public long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private static void checkPermits(int permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be positive: " + permits);
+        }
+    }
+
+    private static void sleep(long nanos) {
+        final long deadline = System.nanoTime() + nanos;
+        boolean interrupted = false;
+        while (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+            // the permits are taken already, keep waiting for them rather than spin on the interrupt
+            interrupted |= Thread.interrupted();
+            nanos = deadline - System.nanoTime();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TokenBucketLimiter{qps=" + qps + ", burst=" + burstNanos / intervalNanos + '}';
+    }
+}
@@ -0,0 +1,95 @@
+package com.young.commons.retelimit;
+
+/**
+ * Delay based limit after TCP Vegas: the RTT of a call without any queueing is taken as the lowest RTT seen, and the
+ * number of calls queued downstream is estimated as {@code limit * (1 - noLoadRtt / rtt)}. The limit grows fast
+ * while nothing queues, slowly while little does, and shrinks once the queue passes a threshold, all thresholds
+ * growing with the logarithm of the limit.
+ * <p>
+ * Since the lowest RTT would never go up again, e.g. after the downstream moved, it is probed again from the lowest
+ * RTT of the current window after about {@code probeMultiplier} times the limit calls.
+ */
+public final class VegasLimit implements LimitAlgorithm {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    public static final double DEFAULT_SMOOTHING = 1.0d;
+    public static final int DEFAULT_PROBE_MULTIPLIER = 30;
+
+    private final int initialLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final int probeMultiplier;
+
+    private double limit;
+    private long noLoadRttNanos;
+    private long samplesSinceProbe;
+
+    public VegasLimit() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_SMOOTHING, DEFAULT_PROBE_MULTIPLIER);
+    }
+
+    /**
+     * @param initialLimit    the limit to start with.
+     * @param maxLimit        the highest limit.
+     * @param smoothing       the weight of a new limit against the current one, in (0, 1].
+     * @param probeMultiplier how many times the limit calls to wait for before probing the no load RTT again.
+     */
+    public VegasLimit(int initialLimit, int maxLimit, double smoothing, int probeMultiplier) {
+        if (initialLimit <= 0 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("limits must be positive and initial <= max: " + initialLimit + ", "
+                + maxLimit);
+        }
+        if (!(smoothing > 0.0d && smoothing <= 1.0d)) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        if (probeMultiplier <= 0) {
+            throw new IllegalArgumentException("probeMultiplier must be positive: " + probeMultiplier);
+        }
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.probeMultiplier = probeMultiplier;
+        this.limit = initialLimit;
+    }
+
+    @Override
+    public int initialLimit() {
+        return initialLimit;
+    }
+
+    @Override
+    public int update(int samples, long minRttNanos, long avgRttNanos, int maxInFlight, boolean dropped) {
+        samplesSinceProbe += samples;
+        if (minRttNanos > 0 && (noLoadRttNanos == 0 || minRttNanos < noLoadRttNanos
+            || samplesSinceProbe >= probeMultiplier * (long) limit)) {
+            samplesSinceProbe = 0;
+            noLoadRttNanos = minRttNanos;
+        }
+        final double log = Math.max(1.0d, Math.log10(limit));
+        final double next;
+        if (dropped) {
+            next = limit - log;
+        } else if (maxInFlight * 2 < limit) {
+            // the calls do not use the limit, so the RTT says nothing about it
+            return (int) limit;
+        } else {
+            final double queue = Math.ceil(limit * (1.0d - (double) noLoadRttNanos / avgRttNanos));
+            if (queue <= log) {
+                next = limit + 6 * log;
+            } else if (queue < 3 * log) {
+                next = limit + log;
+            } else if (queue > 6 * log) {
+                next = limit - log;
+            } else {
+                return (int) limit;
+            }
+        }
+        limit = Math.max(1.0d, Math.min(maxLimit, limit * (1 - smoothing) + next * smoothing));
+        return (int) limit;
+    }
+
+    @Override
+    public String toString() {
+        return "VegasLimit{limit=" + (int) limit + ", noLoadRttNanos=" + noLoadRttNanos + '}';
+    }
+}
@@ -1,43 +1,109 @@
 package com.young.commons.schedule;
 
-import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-@ToString(of = {"tickDuration", "ticksPerWheel", "currentTickIndex", "wheel", "indicator"})
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hierarchical timing wheel expiring elements after a timeout.
+ * <p>
+ * The first level has {@code ticksPerWheel} slots of {@code tickDuration} each. Timeouts beyond its span go to an
+ * overflow level whose tick is the span of the level below, and so on, so any timeout is held in a bounded number of
+ * slots. As time passes the slots of the upper levels are emptied into the lower levels, until the elements reach
+ * the first level and expire.
+ * <p>
+ * The levels are only accessed by the worker thread. Adding and removing elements enqueue them to the worker, which
+ * picks them up at every tick and sleeps until the next slot to expire in between. Expiration listeners are called on
+ * the worker thread, unless an expiration executor is given: the elements expired by a tick are then handed to the
+ * executor in batches, so that slow listeners do not delay the ticks. A
+ * {@link com.young.commons.thread.MonitoringExecutorService} makes the backlog of batches observable. How late the
+ * ticks fire is tracked by {@link #tickLag(TimeUnit)}, {@link #maxTickLag(TimeUnit)} and
+ * {@link #averageTickLag(TimeUnit)}.
+ * <p>
+ * Every addition creates an internal entry, which is the current one of its element until replaced by another
+ * addition or removed. An entry is scheduled until either cancelled, by a replacement or a removal, or expired by the
+ * worker; the transition is a CAS, so whichever comes first wins without locking and the element's monitor is never
+ * used.
+ *
+ * @param <E> the type of elements.
+ */
+@ToString(of = {"tickDuration", "ticksPerWheel", "indicator"})
 public class TimingWheel<E> {
     private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
 
+    /**
+     * Expirations later than this (~146 million years) are treated as this, which keeps the level arithmetic from
+     * overflowing.
+     */
+    private static final long MAXIMUM_EXPIRATION = Long.MAX_VALUE >> 1;
+
     private final long tickDuration;
     private final int ticksPerWheel;
-    private final ArrayList<Slot<E>> wheel;
-    private final Map<E, Slot<E>> indicator = new ConcurrentHashMap<E, Slot<E>>();
+    private final Map<E, TimerEntry<E>> indicator = new ConcurrentHashMap<E, TimerEntry<E>>();
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
     private final CopyOnWriteArrayList<ExpirationListener<E>> expirationListeners = new CopyOnWriteArrayList<ExpirationListener<E>>();
-    private volatile int currentTickIndex = 0;
+    /**
+     * Entries added or cancelled since the last tick, multiple producers and the worker as single consumer.
+     */
+    private final Queue<TimerEntry<E>> pendingEntries = new ConcurrentLinkedQueue<TimerEntry<E>>();
+    /**
+     * Slots holding entries of every level, ordered by expiration. Only accessed by the worker.
+     */
+    private final PriorityQueue<Slot<E>> slots = new PriorityQueue<Slot<E>>();
+    private final long startTime = System.nanoTime();
     private final Thread workerThread;
+    private final Executor expirationExecutor;
+    private final int expirationBatchSize;
+    private Level wheel;
+    /**
+     * Elements expired by the current tick, reused from tick to tick. Only accessed by the worker.
+     */
+    private Object[] expired = new Object[16];
+    private int expiredCount;
+
+    private volatile long lastTickLag;
+    private volatile long maxTickLag;
+    private volatile long totalTickLag;
+    private volatile long tickCount;
 
 
     /**
      * Construct a timing wheel.
      *
      * @param tickDuration  tick duration with specified time unit.
-     * @param ticksPerWheel
-     * @param timeUnit
+     * @param ticksPerWheel the number of slots of the first level, whose span is the default timeout.
+     * @param timeUnit      of the tick duration.
      */
     public TimingWheel(int tickDuration, int ticksPerWheel, TimeUnit timeUnit) {
+        this(tickDuration, ticksPerWheel, timeUnit, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Construct a timing wheel dispatching the expirations to an executor.
+     *
+     * @param tickDuration        tick duration with specified time unit.
+     * @param ticksPerWheel       the number of slots of the first level, whose span is the default timeout.
+     * @param timeUnit            of the tick duration.
+     * @param expirationExecutor  to call the expiration listeners on, or null to call them on the worker thread.
+     * @param expirationBatchSize the maximum number of elements handed to the executor in a single task.
+     */
+    public TimingWheel(
+        int tickDuration, int ticksPerWheel, TimeUnit timeUnit, Executor expirationExecutor, int expirationBatchSize) {
         if (timeUnit == null) {
             throw new NullPointerException("unit");
         }
@@ -47,15 +113,14 @@ public class TimingWheel<E> {
         if (ticksPerWheel <= 0) {
             throw new IllegalArgumentException("ticksPerWheel must be greater than 0: " + ticksPerWheel);
         }
-
-        this.wheel = new ArrayList<Slot<E>>();
-        this.tickDuration = TimeUnit.MILLISECONDS.convert(tickDuration, timeUnit);
-        this.ticksPerWheel = ticksPerWheel + 1;
-
-        for (int i = 0; i < this.ticksPerWheel; i++) {
-            wheel.add(new Slot<E>(i));
+        if (expirationBatchSize <= 0) {
+            throw new IllegalArgumentException("expirationBatchSize must be greater than 0: " + expirationBatchSize);
         }
-        wheel.trimToSize();
+
+        this.tickDuration = Math.max(1, TimeUnit.MILLISECONDS.convert(tickDuration, timeUnit));
+        this.ticksPerWheel = ticksPerWheel;
+        this.expirationExecutor = expirationExecutor;
+        this.expirationBatchSize = expirationBatchSize;
 
         workerThread = new Thread(new TickWorker(), "Timing-Wheel");
     }
@@ -101,44 +166,39 @@ public class TimingWheel<E> {
     }
 
     /**
-     * Add a element to {@link TimingWheel} and start to count down its life-time.
+     * Add a element to {@link TimingWheel} and start to count down its life-time, which is the span of the first
+     * level: <code>ticksPerWheel * tickDuration</code>. Adding an element already in the wheel restarts its
+     * count down.
      *
      * @param e
      * @return remain time to be expired in millisecond.
      */
     public long add(E e) {
-        // at any time just only one e(element) in the timing-wheel, all operations(add,remove,put) on this element should be synchronized.
-        synchronized (e) {
-            checkAdd(e);
-
-            int previousTickIndex = getPreviousTickIndex();
-            Slot<E> slot = wheel.get(previousTickIndex);
-            slot.add(e);
-            indicator.put(e, slot);
-
-            return (ticksPerWheel - 1) * tickDuration;
-        }
+        return add(e, ticksPerWheel * tickDuration, TimeUnit.MILLISECONDS);
     }
 
-    private void checkAdd(E e) {
-        Slot<E> slot = indicator.get(e);
-        if (slot != null) {
-            slot.remove(e);
+    /**
+     * Add a element to {@link TimingWheel} expiring after the given timeout. Adding an element already in the wheel
+     * replaces its timeout.
+     *
+     * @param e
+     * @param timeout  after which the element expires, rounded to the tick duration.
+     * @param timeUnit of the timeout.
+     * @return remain time to be expired in millisecond.
+     */
+    public long add(E e, long timeout, TimeUnit timeUnit) {
+        final long timeoutMillis = Math.max(0, timeUnit.toMillis(timeout));
+        final long now = currentTime();
+        final long expiration = timeoutMillis >= MAXIMUM_EXPIRATION - now ? MAXIMUM_EXPIRATION : now + timeoutMillis;
+        final TimerEntry<E> entry = new TimerEntry<E>(e, expiration);
+        // each replaced entry is cancelled by the thread which replaced it, so only the current one stays scheduled
+        final TimerEntry<E> previous = indicator.put(e, entry);
+        if (previous != null) {
+            cancel(previous);
         }
-    }
+        pendingEntries.offer(entry);
 
-    private int getPreviousTickIndex() {
-        lock.readLock().lock();
-        try {
-            int cti = currentTickIndex;
-            if (cti == 0) {
-                return ticksPerWheel - 1;
-            }
-
-            return cti - 1;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return timeoutMillis;
     }
 
     /**
@@ -149,34 +209,112 @@ public class TimingWheel<E> {
      * element
      */
     public boolean remove(E e) {
-        synchronized (e) {
-            Slot<E> slot = indicator.get(e);
-            if (slot == null) {
-                return false;
-            }
+        final TimerEntry<E> entry = indicator.remove(e);
+        return entry != null && cancel(entry);
+    }
+
+    /**
+     * Cancel an entry and let the worker unlink it from its slot.
+     *
+     * @return false if the entry expired first.
+     */
+    private boolean cancel(TimerEntry<E> entry) {
+        if (!entry.transition(TimerEntry.SCHEDULED, TimerEntry.CANCELLED)) {
+            return false;
+        }
+        pendingEntries.offer(entry);
+        return true;
+    }
 
-            indicator.remove(e);
-            return slot.remove(e) != null;
+    private void notifyExpired(TimerEntry<E> entry) {
+        if (!entry.transition(TimerEntry.SCHEDULED, TimerEntry.EXPIRED)) {
+            return;
         }
+        final E e = entry.element;
+        // a concurrent addition may already have replaced the entry
+        indicator.remove(e, entry);
+        if (expiredCount == expired.length) {
+            expired = Arrays.copyOf(expired, expiredCount << 1);
+        }
+        expired[expiredCount++] = e;
     }
 
-    private void notifyExpired(int idx) {
-        Slot<E> slot = wheel.get(idx);
-        Set<E> elements = slot.elements();
-        for (E e : elements) {
-            slot.remove(e);
-            synchronized (e) {
-                Slot<E> latestSlot = indicator.get(e);
-                if (slot.equals(latestSlot)) {
-                    indicator.remove(e);
+    /**
+     * Hand the elements expired by the tick to the listeners, and clear the batch.
+     */
+    private void dispatchExpired() {
+        if (expiredCount == 0) {
+            return;
+        }
+        try {
+            if (expirationExecutor == null) {
+                notifyListeners(expired, 0, expiredCount);
+            } else {
+                for (int from = 0; from < expiredCount; from += expirationBatchSize) {
+                    final int to = (int) Math.min((long) from + expirationBatchSize, expiredCount);
+                    final Object[] batch = Arrays.copyOfRange(expired, from, to);
+                    try {
+                        expirationExecutor.execute(() -> notifyListeners(batch, 0, batch.length));
+                    } catch (RejectedExecutionException ex) {
+                        logger.warn("Expiration executor rejected {} elements, notifying them on the worker",
+                            batch.length);
+                        notifyListeners(batch, 0, batch.length);
+                    }
                 }
             }
+        } finally {
+            // never dispatched again, even if a listener threw an error
+            Arrays.fill(expired, 0, expiredCount, null);
+            expiredCount = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void notifyListeners(Object[] elements, int from, int to) {
+        for (int i = from; i < to; i++) {
+            final E e = (E) elements[i];
             for (ExpirationListener<E> listener : expirationListeners) {
-                listener.expired(e);
+                try {
+                    listener.expired(e);
+                } catch (RuntimeException ex) {
+                    logger.warn("Expiration listener {} failed for {}", listener, e, ex);
+                }
             }
         }
     }
 
+    /**
+     * @param timeUnit of the result.
+     * @return how late the last tick fired compared to its scheduled time.
+     */
+    public long tickLag(TimeUnit timeUnit) {
+        return timeUnit.convert(lastTickLag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit of the result.
+     * @return the maximum lateness of a tick since the wheel started.
+     */
+    public long maxTickLag(TimeUnit timeUnit) {
+        return timeUnit.convert(maxTickLag, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit of the result.
+     * @return the average lateness of the ticks since the wheel started.
+     */
+    public long averageTickLag(TimeUnit timeUnit) {
+        final long count = tickCount;
+        return count == 0 ? 0 : timeUnit.convert(totalTickLag / count, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of ticks since the wheel started.
+     */
+    public long tickCount() {
+        return tickCount;
+    }
+
     /**
      * @return the number of elements within timing wheel.
      */
@@ -191,74 +329,247 @@ public class TimingWheel<E> {
         return indicator.keySet();
     }
 
+    /**
+     * @return milliseconds elapsed since the construction of this wheel.
+     */
+    private long currentTime() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    }
 
-    @ToString
-    @EqualsAndHashCode(of = "id")
-    private static class Slot<E> {
+    /**
+     * An element along with its expiration time, linked in the slot holding it.
+     */
+    private static final class TimerEntry<E> {
+        static final int SCHEDULED = 0;
+        static final int CANCELLED = 1;
+        static final int EXPIRED = 2;
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<TimerEntry> STATE_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(TimerEntry.class, "state");
+
+        private final E element;
+        private final long expiration;
+        private volatile int state = SCHEDULED;
+
+        // only accessed by the worker
+        private Slot<E> slot;
+        private TimerEntry<E> prev;
+        private TimerEntry<E> next;
+
+        TimerEntry(E element, long expiration) {
+            this.element = element;
+            this.expiration = expiration;
+        }
 
-        private final int id;
-        private final Map<E, E> elements = new ConcurrentHashMap<E, E>();
+        boolean isCancelled() {
+            return state == CANCELLED;
+        }
 
-        public Slot(int id) {
-            this.id = id;
+        boolean transition(int expect, int update) {
+            return STATE_UPDATER.compareAndSet(this, expect, update);
         }
+    }
 
-        public void add(E e) {
-            elements.put(e, e);
+    /**
+     * A doubly linked list of entries expiring in the same tick of a level.
+     */
+    private static final class Slot<E> implements Comparable<Slot<E>> {
+        private final TimerEntry<E> root = new TimerEntry<E>(null, -1);
+        private long expiration = -1;
+
+        Slot() {
+            root.prev = root;
+            root.next = root;
         }
 
-        public E remove(E e) {
-            return elements.remove(e);
+        void add(TimerEntry<E> entry) {
+            final TimerEntry<E> tail = root.prev;
+            entry.next = root;
+            entry.prev = tail;
+            entry.slot = this;
+            tail.next = entry;
+            root.prev = entry;
         }
 
-        public Set<E> elements() {
-            return elements.keySet();
+        void remove(TimerEntry<E> entry) {
+            entry.next.prev = entry.prev;
+            entry.prev.next = entry.next;
+            entry.next = null;
+            entry.prev = null;
+            entry.slot = null;
         }
-    }
 
-    private class TickWorker implements Runnable {
+        /**
+         * @return true if the expiration changed, i.e. the slot must be queued again.
+         */
+        boolean setExpiration(long expiration) {
+            final boolean changed = this.expiration != expiration;
+            this.expiration = expiration;
+            return changed;
+        }
 
-        private long startTime;
-        private long tick;
+        /**
+         * Remove all entries, handing them to the consumer, and reset the expiration.
+         */
+        void flush(TimerWorkerConsumer<E> consumer) {
+            TimerEntry<E> entry = root.next;
+            while (entry != root) {
+                final TimerEntry<E> next = entry.next;
+                remove(entry);
+                consumer.accept(entry);
+                entry = next;
+            }
+            expiration = -1;
+        }
 
         @Override
-        public void run() {
-            startTime = System.currentTimeMillis();
-            tick = 1;
+        public int compareTo(Slot<E> o) {
+            return Long.compare(expiration, o.expiration);
+        }
+    }
+
+    @FunctionalInterface
+    private interface TimerWorkerConsumer<E> {
+        void accept(TimerEntry<E> entry);
+    }
+
+    /**
+     * A level of the wheel, whose span is its number of slots times its tick. Entries beyond the span go to the
+     * overflow level, created on demand. The span saturates at {@link Long#MAX_VALUE}, beyond any expiration, so the
+     * number of levels is bounded.
+     */
+    private final class Level {
+        private final long tick;
+        private final long interval;
+        private final Slot<E>[] buckets;
+        private long currentTime;
+        private Level overflow;
+
+        @SuppressWarnings("unchecked")
+        Level(long tick, int slotCount, long startTime) {
+            this.tick = tick;
+            this.interval = tick > Long.MAX_VALUE / slotCount ? Long.MAX_VALUE : tick * slotCount;
+            this.currentTime = startTime - (startTime % tick);
+            this.buckets = new Slot[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                buckets[i] = new Slot<E>();
+            }
+        }
 
-            for (int i = 0; !shutdown.get(); i++) {
-                if (i == wheel.size()) {
-                    i = 0;
+        /**
+         * @return false if the entry is already expired and was not added.
+         */
+        boolean add(TimerEntry<E> entry) {
+            // differences rather than sums, which would overflow on the upper levels
+            final long delay = entry.expiration - currentTime;
+            if (delay < tick) {
+                return false;
+            }
+            if (delay < interval) {
+                final long virtualId = entry.expiration / tick;
+                final Slot<E> slot = buckets[(int) (virtualId % buckets.length)];
+                slot.add(entry);
+                if (slot.setExpiration(virtualId * tick)) {
+                    slots.offer(slot);
                 }
-                lock.writeLock().lock();
-                try {
-                    currentTickIndex = i;
-                } finally {
-                    lock.writeLock().unlock();
+                return true;
+            }
+            if (overflow == null) {
+                // at least two slots per overflow level, or a level of one slot would never widen the span
+                overflow = new Level(interval, Math.max(2, buckets.length), currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        void advanceClock(long time) {
+            if (time - currentTime >= tick) {
+                currentTime = time - (time % tick);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
                 }
-                notifyExpired(currentTickIndex);
-                waitForNextTick();
             }
         }
+    }
 
-        private void waitForNextTick() {
-            for (; ; ) {
-                long currentTime = System.currentTimeMillis();
-                long sleepTime = tickDuration * tick - (currentTime - startTime);
-                logger.debug(" Wait for next tick sleep sleepTime={}", sleepTime);
+    private class TickWorker implements Runnable {
 
-                if (sleepTime <= 0) {
-                    break;
-                }
+        @Override
+        public void run() {
+            wheel = new Level(tickDuration, ticksPerWheel, currentTime());
 
+            while (!shutdown.get()) {
+                final long now = currentTime();
                 try {
-                    Thread.sleep(sleepTime);
-                } catch (InterruptedException e) {
-                    return;
+                    drainPendingEntries();
+
+                    Slot<E> slot;
+                    while ((slot = slots.peek()) != null && slot.expiration <= now) {
+                        slots.poll();
+                        wheel.advanceClock(slot.expiration);
+                        slot.flush(this::schedule);
+                    }
+                    wheel.advanceClock(now);
+                    dispatchExpired();
+                } catch (Throwable t) {
+                    // keep ticking, a single failure must not stop every other timer
+                    logger.error("Timing wheel tick failed", t);
+                }
+
+                waitForNextTick(now);
+            }
+        }
+
+        private void drainPendingEntries() {
+            TimerEntry<E> entry;
+            while ((entry = pendingEntries.poll()) != null) {
+                if (entry.isCancelled()) {
+                    if (entry.slot != null) {
+                        entry.slot.remove(entry);
+                    }
+                } else if (entry.slot == null) {
+                    schedule(entry);
                 }
             }
+        }
 
-            tick++;
+        /**
+         * Place an entry on its level, or expire it if it is due.
+         */
+        private void schedule(TimerEntry<E> entry) {
+            if (entry.isCancelled()) {
+                return;
+            }
+            if (!wheel.add(entry)) {
+                notifyExpired(entry);
+            }
+        }
+
+        /**
+         * Sleep until the next slot expires, for at most one tick so that new entries are picked up. Interrupts of the
+         * worker, for instance by a listener, are cleared rather than turning the sleep into a busy spin.
+         */
+        private void waitForNextTick(long now) {
+            final Slot<E> next = slots.peek();
+            final long deadline = Math.min(now + tickDuration, next == null ? Long.MAX_VALUE : next.expiration);
+            final long deadlineNanos = startTime + TimeUnit.MILLISECONDS.toNanos(deadline);
+            long sleepTime;
+            while ((sleepTime = deadlineNanos - System.nanoTime()) > 0 && !shutdown.get()) {
+                logger.debug(" Wait for next tick sleep sleepTime={}", sleepTime);
+                LockSupport.parkNanos(this, sleepTime);
+                // parking returns at once while the flag is set, stop sets the shutdown flag before interrupting
+                Thread.interrupted();
+            }
+            recordTickLag(Math.max(0, -sleepTime));
+        }
+
+        private void recordTickLag(long lag) {
+            lastTickLag = lag;
+            if (lag > maxTickLag) {
+                maxTickLag = lag;
+            }
+            totalTickLag += lag;
+            tickCount++;
         }
     }
 }
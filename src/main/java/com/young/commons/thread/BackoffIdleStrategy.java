@@ -0,0 +1,104 @@
+package com.young.commons.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spins first, then yields, then parks for exponentially longer periods the longer the thread stays idle, so a
+ * busy thread reacts fast and an idle one gives the CPU up.
+ */
+public final class BackoffIdleStrategy implements IdleStrategy {
+    public static final long DEFAULT_MAX_SPINS = 10;
+    public static final long DEFAULT_MAX_YIELDS = 5;
+    public static final long DEFAULT_MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    public static final long DEFAULT_MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int NOT_IDLE = 0;
+    private static final int SPINNING = 1;
+    private static final int YIELDING = 2;
+    private static final int PARKING = 3;
+
+    private final long maxSpins;
+    private final long maxYields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    private int state = NOT_IDLE;
+    private long spins;
+    private long yields;
+    private long parkNanos;
+
+    public BackoffIdleStrategy() {
+        this(DEFAULT_MAX_SPINS, DEFAULT_MAX_YIELDS, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    /**
+     * @param maxSpins     idle cycles spinning before yielding.
+     * @param maxYields    idle cycles yielding before parking.
+     * @param minParkNanos first park period, doubled every idle cycle.
+     * @param maxParkNanos longest park period.
+     */
+    public BackoffIdleStrategy(long maxSpins, long maxYields, long minParkNanos, long maxParkNanos) {
+        if (maxSpins < 0 || maxYields < 0) {
+            throw new IllegalArgumentException("maxSpins and maxYields must not be negative: " + maxSpins + ", "
+                + maxYields);
+        }
+        if (minParkNanos <= 0 || maxParkNanos < minParkNanos) {
+            throw new IllegalArgumentException("park nanos must be positive and min <= max: " + minParkNanos + ", "
+                + maxParkNanos);
+        }
+        this.maxSpins = maxSpins;
+        this.maxYields = maxYields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int workCount, long maxIdleNanos) {
+        if (workCount > 0) {
+            reset();
+            return;
+        }
+        switch (state) {
+            case NOT_IDLE:
+                state = SPINNING;
+                spins++;
+                break;
+            case SPINNING:
+                if (++spins > maxSpins) {
+                    state = YIELDING;
+                    yields = 0;
+                }
+                break;
+            case YIELDING:
+                if (++yields > maxYields) {
+                    state = PARKING;
+                    parkNanos = minParkNanos;
+                } else {
+                    Thread.yield();
+                }
+                break;
+            case PARKING:
+            default:
+                if (maxIdleNanos > 0) {
+                    LockSupport.parkNanos(Math.min(parkNanos, maxIdleNanos));
+                }
+                parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+                break;
+        }
+    }
+
+    @Override
+    public void reset() {
+        spins = 0;
+        yields = 0;
+        parkNanos = minParkNanos;
+        state = NOT_IDLE;
+    }
+
+    @Override
+    public String toString() {
+        return "BackoffIdleStrategy{maxSpins=" + maxSpins + ", maxYields=" + maxYields + ", minParkNanos="
+            + minParkNanos + ", maxParkNanos=" + maxParkNanos + '}';
+    }
+}
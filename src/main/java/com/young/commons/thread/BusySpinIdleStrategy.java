@@ -0,0 +1,21 @@
+package com.young.commons.thread;
+
+/**
+ * Never gives the CPU up, for the lowest latency when a core can be dedicated to the thread.
+ */
+public final class BusySpinIdleStrategy implements IdleStrategy {
+    public static final BusySpinIdleStrategy INSTANCE = new BusySpinIdleStrategy();
+
+    @Override
+    public void idle(int workCount, long maxIdleNanos) {
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public String toString() {
+        return "BusySpinIdleStrategy{}";
+    }
+}
@@ -0,0 +1,41 @@
+package com.young.commons.thread;
+
+/**
+ * How a thread running a duty cycle, polling for work in a loop, waits when a cycle found nothing to do.
+ * <p>
+ * Strategies trade latency for CPU: {@link BusySpinIdleStrategy} reacts immediately but burns a core, while
+ * {@link SleepingIdleStrategy} costs nearly nothing but reacts only once its sleep is over.
+ * {@link BackoffIdleStrategy} goes from one to the other as the thread stays idle.
+ * <p>
+ * The loop passes the work done by the last cycle, a strategy resets itself as soon as work was done:
+ * <pre>{@code
+ * while (running) {
+ *     idleStrategy.idle(doWork());
+ * }
+ * }</pre>
+ * Strategies keep state and must not be shared between threads.
+ */
+public interface IdleStrategy {
+    /**
+     * Idle if no work was done.
+     *
+     * @param workCount done by the last duty cycle.
+     */
+    default void idle(int workCount) {
+        idle(workCount, Long.MAX_VALUE);
+    }
+
+    /**
+     * Idle if no work was done, for at most the given time, e.g. until the next known deadline. Strategies which
+     * park the thread return early when it is unparked.
+     *
+     * @param workCount    done by the last duty cycle.
+     * @param maxIdleNanos longest time to idle for.
+     */
+    void idle(int workCount, long maxIdleNanos);
+
+    /**
+     * Reset the state, e.g. the backoff, before a new idle period.
+     */
+    void reset();
+}
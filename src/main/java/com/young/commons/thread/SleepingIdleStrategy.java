@@ -0,0 +1,44 @@
+package com.young.commons.thread;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parks the thread for a fixed period when idle, or less when the caller knows when the next work is due.
+ */
+public final class SleepingIdleStrategy implements IdleStrategy {
+    public static final long DEFAULT_SLEEP_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long sleepNanos;
+
+    public SleepingIdleStrategy() {
+        this(DEFAULT_SLEEP_NANOS);
+    }
+
+    /**
+     * @param sleepNanos to park for when idle.
+     */
+    public SleepingIdleStrategy(long sleepNanos) {
+        if (sleepNanos <= 0) {
+            throw new IllegalArgumentException("sleepNanos must be positive: " + sleepNanos);
+        }
+        this.sleepNanos = sleepNanos;
+    }
+
+    @Override
+    public void idle(int workCount, long maxIdleNanos) {
+        if (workCount > 0 || maxIdleNanos <= 0) {
+            return;
+        }
+        LockSupport.parkNanos(Math.min(sleepNanos, maxIdleNanos));
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public String toString() {
+        return "SleepingIdleStrategy{sleepNanos=" + sleepNanos + '}';
+    }
+}
@@ -0,0 +1,25 @@
+package com.young.commons.thread;
+
+/**
+ * Yields the CPU to other threads when idle, but keeps the thread runnable.
+ */
+public final class YieldingIdleStrategy implements IdleStrategy {
+    public static final YieldingIdleStrategy INSTANCE = new YieldingIdleStrategy();
+
+    @Override
+    public void idle(int workCount, long maxIdleNanos) {
+        if (workCount > 0) {
+            return;
+        }
+        Thread.yield();
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public String toString() {
+        return "YieldingIdleStrategy{}";
+    }
+}
@@ -0,0 +1,292 @@
+package com.young.commons.timer;
+
+import com.young.commons.BitUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.young.commons.timer.DeadlineTimerWheel.NULL_DEADLINE;
+
+/**
+ * A {@link DeadlineTimerWheel} which timers can be scheduled and cancelled on from any thread, while a single thread
+ * polls it.
+ * <p>
+ * Producers never touch the wheel: {@link #scheduleTimer(long, long)} and {@link #cancelTimer(long)} append a command
+ * to a bounded lock-free multi-producer single-consumer ring, which {@link #poll} drains before polling the wheel.
+ * Producers therefore never block; when the ring is full the command is refused and the caller decides whether to
+ * retry.
+ * <p>
+ * As the wheel assigns its own ids only when a command is applied, timers are referred to by ids reserved up front
+ * with {@link #reserveTimerId()}, which the handler passed to {@link #poll} is called with. A cancel is applied after
+ * the schedule of the same timer as long as the schedule returned before the cancel was issued, whatever the threads.
+ * Cancelling a reserved id before scheduling it has no effect.
+ * <p>
+ * {@link #poll}, {@link #drainCommands()}, {@link #nextDeadline()}, {@link #deadline(long)}, {@link #forEach} and
+ * {@link #timerCount()} must only be called from the polling thread.
+ */
+public class ConcurrentDeadlineTimerWheel {
+    public static final long NULL_TIMER_ID = -1;
+    public static final int DEFAULT_COMMAND_CAPACITY = 4096;
+
+    private final DeadlineTimerWheel wheel;
+    private final AtomicLong timerIds = new AtomicLong();
+
+    // command ring, sequences[i] holds the position + 1 of the command published in the slot
+    private final int commandMask;
+    private final long[] commandTimerIds;
+    private final long[] commandDeadlines;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // owned by the polling thread
+    private final Long2LongHashMap reservedToWheel = new Long2LongHashMap(64, NULL_TIMER_ID);
+    private final Long2LongHashMap wheelToReserved = new Long2LongHashMap(64, NULL_TIMER_ID);
+    private final DeadlineTimerWheel.TimerHandler expiryHandler = this::onTimerExpiry;
+    private DeadlineTimerWheel.TimerHandler handler;
+
+    /**
+     * Construct timer wheel with the {@link #DEFAULT_COMMAND_CAPACITY}.
+     *
+     * @param timeUnit       for the values used to express the time.
+     * @param startTime      for the wheel (in given {@link TimeUnit}).
+     * @param tickResolution for the wheel, i.e. how many {@link TimeUnit}s per tick.
+     * @param ticksPerWheel  or spokes, for the wheel (must be power of 2).
+     */
+    public ConcurrentDeadlineTimerWheel(
+        final TimeUnit timeUnit, final long startTime, final long tickResolution, final int ticksPerWheel) {
+        this(timeUnit, startTime, tickResolution, ticksPerWheel, DEFAULT_COMMAND_CAPACITY);
+    }
+
+    /**
+     * Construct timer wheel.
+     *
+     * @param timeUnit        for the values used to express the time.
+     * @param startTime       for the wheel (in given {@link TimeUnit}).
+     * @param tickResolution  for the wheel, i.e. how many {@link TimeUnit}s per tick.
+     * @param ticksPerWheel   or spokes, for the wheel (must be power of 2).
+     * @param commandCapacity number of commands pending between two polls (must be power of 2).
+     */
+    public ConcurrentDeadlineTimerWheel(
+        final TimeUnit timeUnit,
+        final long startTime,
+        final long tickResolution,
+        final int ticksPerWheel,
+        final int commandCapacity) {
+        if (!BitUtil.isPowerOfTwo(commandCapacity)) {
+            throw new IllegalArgumentException("command capacity must be a power of 2: " + commandCapacity);
+        }
+        this.wheel = new DeadlineTimerWheel(timeUnit, startTime, tickResolution, ticksPerWheel);
+        this.commandMask = commandCapacity - 1;
+        this.commandTimerIds = new long[commandCapacity];
+        this.commandDeadlines = new long[commandCapacity];
+        this.sequences = new AtomicLongArray(commandCapacity);
+    }
+
+    public TimeUnit timeUnit() {
+        return wheel.timeUnit();
+    }
+
+    public long tickResolution() {
+        return wheel.tickResolution();
+    }
+
+    public int ticksPerWheel() {
+        return wheel.ticksPerWheel();
+    }
+
+    public long startTime() {
+        return wheel.startTime();
+    }
+
+    /**
+     * Time of current tick of the wheel, which advances as it is polled.
+     *
+     * @return time of the current tick of the wheel in {@link #timeUnit()}s.
+     */
+    public long currentTickTime() {
+        return wheel.currentTickTime();
+    }
+
+    /**
+     * Reserve an id to schedule a timer with later on, from any thread.
+     *
+     * @return a new timer id.
+     */
+    public long reserveTimerId() {
+        return timerIds.getAndIncrement();
+    }
+
+    /**
+     * Schedule a timer from any thread, reserving its id.
+     *
+     * @param deadline after which the timer should expire.
+     * @return the id of the timer, or {@link #NULL_TIMER_ID} if too many commands are pending.
+     */
+    public long scheduleTimer(final long deadline) {
+        final long timerId = reserveTimerId();
+        return scheduleTimer(timerId, deadline) ? timerId : NULL_TIMER_ID;
+    }
+
+    /**
+     * Schedule a timer from any thread with a reserved id. Scheduling an id which is already scheduled moves the
+     * timer to the new deadline.
+     *
+     * @param timerId  reserved with {@link #reserveTimerId()}.
+     * @param deadline after which the timer should expire.
+     * @return false if too many commands are pending.
+     */
+    public boolean scheduleTimer(final long timerId, final long deadline) {
+        if (timerId < 0) {
+            throw new IllegalArgumentException("timerId must not be negative: " + timerId);
+        }
+        if (deadline == NULL_DEADLINE) {
+            throw new IllegalArgumentException("deadline must not be NULL_DEADLINE");
+        }
+        return offer(timerId, deadline);
+    }
+
+    /**
+     * Cancel a timer from any thread. The timer may still expire if it is due by the time the command is drained.
+     *
+     * @param timerId of the timer to cancel.
+     * @return false if too many commands are pending.
+     */
+    public boolean cancelTimer(final long timerId) {
+        if (timerId < 0) {
+            return true;
+        }
+        return offer(timerId, NULL_DEADLINE);
+    }
+
+    /**
+     * @return an estimate of the commands not drained yet.
+     */
+    public int pendingCommands() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Apply the pending schedule and cancel commands to the wheel. Called by {@link #poll}.
+     *
+     * @return number of commands applied.
+     */
+    public int drainCommands() {
+        long position = head.get();
+        int drained = 0;
+        while (true) {
+            final int index = (int) position & commandMask;
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            final long timerId = commandTimerIds[index];
+            final long deadline = commandDeadlines[index];
+            position++;
+            head.lazySet(position);
+            drained++;
+
+            final long previous = reservedToWheel.remove(timerId);
+            if (previous != NULL_TIMER_ID) {
+                wheel.cancelTimer(previous);
+                wheelToReserved.remove(previous);
+            }
+            if (deadline != NULL_DEADLINE) {
+                final long wheelTimerId = wheel.scheduleTimer(deadline);
+                reservedToWheel.put(timerId, wheelTimerId);
+                wheelToReserved.put(wheelTimerId, timerId);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Drain the pending commands and poll for timers expired by the deadline passing. Only from the polling thread.
+     *
+     * @param now         current time to compare deadlines against.
+     * @param handler     to call for each expired timer, with its reserved id.
+     * @param expiryLimit to process in one poll operation.
+     * @return count of expired timers as a result of this poll operation.
+     * @see DeadlineTimerWheel#poll(long, DeadlineTimerWheel.TimerHandler, int)
+     */
+    public int poll(final long now, final DeadlineTimerWheel.TimerHandler handler, final int expiryLimit) {
+        drainCommands();
+        this.handler = handler;
+        try {
+            return wheel.poll(now, expiryHandler, expiryLimit);
+        } finally {
+            this.handler = null;
+        }
+    }
+
+    /**
+     * Number of active timers, not counting the pending commands. Only from the polling thread.
+     *
+     * @return number of currently scheduled timers.
+     */
+    public long timerCount() {
+        return wheel.timerCount();
+    }
+
+    /**
+     * Earliest deadline of the active timers, not counting the pending commands. Only from the polling thread.
+     *
+     * @return earliest deadline or {@link DeadlineTimerWheel#NULL_DEADLINE} if no timer is scheduled.
+     * @see DeadlineTimerWheel#nextDeadline()
+     */
+    public long nextDeadline() {
+        return wheel.nextDeadline();
+    }
+
+    /**
+     * Get the deadline of a timer, not counting the pending commands. Only from the polling thread.
+     *
+     * @param timerId of the timer to return the deadline of.
+     * @return deadline for the given timerId or {@link DeadlineTimerWheel#NULL_DEADLINE} if it is not scheduled.
+     */
+    public long deadline(final long timerId) {
+        final long wheelTimerId = reservedToWheel.get(timerId);
+        return wheelTimerId == NULL_TIMER_ID ? NULL_DEADLINE : wheel.deadline(wheelTimerId);
+    }
+
+    /**
+     * Iterate over the active timers, with their reserved ids. Only from the polling thread.
+     *
+     * @param consumer to call for each active timer.
+     */
+    public void forEach(final DeadlineTimerWheel.TimerConsumer consumer) {
+        wheel.forEach((deadline, timerId) -> consumer.accept(deadline, wheelToReserved.get(timerId)));
+    }
+
+    private boolean offer(final long timerId, final long deadline) {
+        final int capacity = commandMask + 1;
+        long position;
+        do {
+            position = tail.get();
+            if (position - head.get() >= capacity) {
+                return false;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+
+        final int index = (int) position & commandMask;
+        commandTimerIds[index] = timerId;
+        commandDeadlines[index] = deadline;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    private boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long wheelTimerId) {
+        final long timerId = wheelToReserved.get(wheelTimerId);
+        // a handler which throws has its timer consumed, as the wheel does
+        boolean consumed = true;
+        try {
+            consumed = handler.onTimerExpiry(timeUnit, now, timerId);
+            return consumed;
+        } finally {
+            if (consumed) {
+                wheelToReserved.remove(wheelTimerId);
+                reservedToWheel.remove(timerId);
+            }
+        }
+    }
+}
@@ -5,6 +5,16 @@ import com.young.commons.BitUtil;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Timer wheel of deadlines for a single thread, with timers due within one rotation stored in per tick arrays.
+ * <p>
+ * Timers due beyond one rotation are held in a min-heap instead, so they are not scanned again on every rotation, and
+ * a burst of timers on one tick can not pin the arrays grown for it: every rotation the arrays are shrunk back to the
+ * smallest power of 2 holding the highest occupied slot, never below the initial allocation.
+ * <p>
+ * The earliest deadline is cached: scheduling a timer lowers it, and only cancelling the earliest timer, expiring
+ * timers or winding the wheel forward make the next {@link #nextDeadline()} scan the spokes again.
+ */
 public class DeadlineTimerWheel {
     public static final long NULL_DEADLINE = Long.MAX_VALUE;
     private static final int INITIAL_TICK_ALLOCATION = 16;
@@ -14,9 +24,13 @@ public class DeadlineTimerWheel {
     private final int tickMask;
     private final int resolutionBitsToShift;
     private final TimeUnit timeUnit;
+    private final int initialTickAllocation;
+    private final TimerHeap farTimers = new TimerHeap();
     private long startTime;
     private long currentTick;
     private long timerCount;
+    private long nextDeadline = NULL_DEADLINE;
+    private boolean nextDeadlineStale;
     private int tickAllocation;
     private int allocationBitsToShift;
     private int pollIndex;
@@ -57,6 +71,7 @@ public class DeadlineTimerWheel {
         this.timeUnit = timeUnit;
         this.ticksPerWheel = ticksPerWheel;
         this.tickAllocation = initialTickAllocation;
+        this.initialTickAllocation = initialTickAllocation;
         this.tickMask = ticksPerWheel - 1;
         this.tickResolution = tickResolution;
         this.resolutionBitsToShift = Long.numberOfTrailingZeros(tickResolution);
@@ -79,6 +94,10 @@ public class DeadlineTimerWheel {
         return (int) timerId;
     }
 
+    private long farTimerId(final int handle) {
+        return timerIdForSlot(ticksPerWheel, handle);
+    }
+
     private static void checkTicksPerWheel(final int ticksPerWheel) {
         if (!BitUtil.isPowerOfTwo(ticksPerWheel)) {
             throw new IllegalArgumentException("ticks per wheel must be a power of 2: " + ticksPerWheel);
@@ -139,7 +158,16 @@ public class DeadlineTimerWheel {
      * @return number of currently scheduled timers.
      */
     public long timerCount() {
-        return timerCount;
+        return timerCount + farTimers.size();
+    }
+
+    /**
+     * Space allocated per tick of the wheel, grown when a tick overflows and shrunk back as timers expire.
+     *
+     * @return space allocated per tick of the wheel.
+     */
+    public int tickAllocation() {
+        return tickAllocation;
     }
 
     /**
@@ -149,7 +177,7 @@ public class DeadlineTimerWheel {
      * @throws IllegalStateException if wheel has any scheduled timers.
      */
     public void resetStartTime(final long startTime) {
-        if (timerCount > 0) {
+        if (timerCount() > 0) {
             throw new IllegalStateException("can not reset startTime with active timers");
         }
 
@@ -179,12 +207,17 @@ public class DeadlineTimerWheel {
      */
     public void currentTickTime(final long now) {
         currentTick = Math.max((now - startTime) >> resolutionBitsToShift, currentTick);
+        // timers of the ticks wound past are no longer ahead of the scan
+        nextDeadlineStale = true;
     }
 
     /**
      * Clear out all scheduled timers in the wheel.
      */
     public void clear() {
+        farTimers.clear();
+        nextDeadline = NULL_DEADLINE;
+        nextDeadlineStale = false;
         long remainingTimers = timerCount;
         if (0 == remainingTimers) {
             return;
@@ -210,7 +243,14 @@ public class DeadlineTimerWheel {
      * @return timerId assigned for the scheduled timer.
      */
     public long scheduleTimer(final long deadline) {
+        if (deadline < nextDeadline) {
+            nextDeadline = deadline;
+        }
         final long deadlineTick = Math.max((deadline - startTime) >> resolutionBitsToShift, currentTick);
+        if (deadlineTick - currentTick >= ticksPerWheel) {
+            return farTimerId(farTimers.add(deadline));
+        }
+
         final int spokeIndex = (int) (deadlineTick & tickMask);
         final int tickStartIndex = spokeIndex << allocationBitsToShift;
 
@@ -239,8 +279,18 @@ public class DeadlineTimerWheel {
         final int tickIndex = indexInTickArray(timerId);
         final int wheelIndex = (spokeIndex << allocationBitsToShift) + tickIndex;
 
-        if (spokeIndex < ticksPerWheel) {
-            if (tickIndex < tickAllocation && NULL_DEADLINE != wheel[wheelIndex]) {
+        if (spokeIndex == ticksPerWheel) {
+            final long deadline = farTimers.deadline(tickIndex);
+            if (farTimers.remove(tickIndex)) {
+                onRemoved(deadline);
+                return true;
+            }
+            return false;
+        }
+
+        if (spokeIndex >= 0 && spokeIndex < ticksPerWheel) {
+            if (tickIndex >= 0 && tickIndex < tickAllocation && NULL_DEADLINE != wheel[wheelIndex]) {
+                onRemoved(wheel[wheelIndex]);
                 wheel[wheelIndex] = NULL_DEADLINE;
                 timerCount--;
 
@@ -262,6 +312,28 @@ public class DeadlineTimerWheel {
     public int poll(final long now, final TimerHandler handler, final int expiryLimit) {
         int timersExpired = 0;
 
+        while (expiryLimit > timersExpired && now >= farTimers.peekDeadline()) {
+            final long deadline = farTimers.peekDeadline();
+            final int handle = farTimers.pollHandle();
+            timersExpired++;
+            nextDeadlineStale = true;
+
+            boolean restored = false;
+            try {
+                if (!handler.onTimerExpiry(timeUnit, now, farTimerId(handle))) {
+                    farTimers.restore(handle, deadline);
+                    restored = true;
+
+                    return --timersExpired;
+                }
+            } finally {
+                // a handler throwing expires the timer, as for the timers of the wheel
+                if (!restored) {
+                    farTimers.release(handle);
+                }
+            }
+        }
+
         if (timerCount > 0) {
             final int spokeIndex = (int) currentTick & tickMask;
 
@@ -273,6 +345,7 @@ public class DeadlineTimerWheel {
                     wheel[wheelIndex] = NULL_DEADLINE;
                     timerCount--;
                     timersExpired++;
+                    nextDeadlineStale = true;
 
                     if (!handler.onTimerExpiry(timeUnit, now, timerIdForSlot(spokeIndex, pollIndex))) {
                         wheel[wheelIndex] = deadline;
@@ -286,14 +359,12 @@ public class DeadlineTimerWheel {
             }
 
             if (expiryLimit > timersExpired && now >= currentTickTime0()) {
-                currentTick++;
-                pollIndex = 0;
+                advanceTick();
             } else if (pollIndex >= tickAllocation) {
                 pollIndex = 0;
             }
         } else if (now >= currentTickTime0()) {
-            currentTick++;
-            pollIndex = 0;
+            advanceTick();
         }
 
         return timersExpired;
@@ -305,17 +376,17 @@ public class DeadlineTimerWheel {
      * @param consumer to call for each active timer.
      */
     public void forEach(final TimerConsumer consumer) {
+        farTimers.forEach((deadline, handle) -> consumer.accept(deadline, farTimerId((int) handle)));
+
         long timersRemaining = timerCount;
+        final int allocationMask = tickAllocation - 1;
 
-        for (int i = 0, length = wheel.length; i < length; i++) {
+        for (int i = 0, length = wheel.length; i < length && timersRemaining > 0; i++) {
             final long deadline = wheel[i];
 
             if (NULL_DEADLINE != deadline) {
-                consumer.accept(deadline, timerIdForSlot(i >> allocationBitsToShift, i & tickMask));
-
-                if (--timersRemaining <= 0) {
-                    return;
-                }
+                consumer.accept(deadline, timerIdForSlot(i >> allocationBitsToShift, i & allocationMask));
+                timersRemaining--;
             }
         }
     }
@@ -331,8 +402,12 @@ public class DeadlineTimerWheel {
         final int tickIndex = indexInTickArray(timerId);
         final int wheelIndex = (spokeIndex << allocationBitsToShift) + tickIndex;
 
-        if (spokeIndex < ticksPerWheel) {
-            if (tickIndex < tickAllocation) {
+        if (spokeIndex == ticksPerWheel) {
+            return farTimers.deadline(tickIndex);
+        }
+
+        if (spokeIndex >= 0 && spokeIndex < ticksPerWheel) {
+            if (tickIndex >= 0 && tickIndex < tickAllocation) {
                 return wheel[wheelIndex];
             }
         }
@@ -340,6 +415,102 @@ public class DeadlineTimerWheel {
         return NULL_DEADLINE;
     }
 
+    /**
+     * Earliest deadline of the scheduled timers, for instance to know how long the polling thread can idle for.
+     * <p>
+     * The deadline is cached until the earliest timer is cancelled or timers expire. Then spokes are scanned from the
+     * current tick on and the scan stops at the first spoke holding a timer due within its tick, so the cost depends
+     * on how far the next timer is rather than on the number of timers.
+     *
+     * @return earliest deadline or {@link #NULL_DEADLINE} if no timer is scheduled.
+     */
+    public long nextDeadline() {
+        if (nextDeadlineStale) {
+            nextDeadline = scanNextDeadline();
+            nextDeadlineStale = false;
+        }
+        return nextDeadline;
+    }
+
+    private void onRemoved(final long deadline) {
+        if (deadline <= nextDeadline) {
+            nextDeadlineStale = true;
+        }
+    }
+
+    private long scanNextDeadline() {
+        long earliest = farTimers.peekDeadline();
+        if (0 == timerCount) {
+            return earliest;
+        }
+
+        for (int k = 0; k < ticksPerWheel; k++) {
+            final long tick = currentTick + k;
+            final long tickEnd = ((tick + 1) << resolutionBitsToShift) + startTime;
+            final int tickStartIndex = ((int) tick & tickMask) << allocationBitsToShift;
+
+            long spokeEarliest = NULL_DEADLINE;
+            for (int i = 0; i < tickAllocation; i++) {
+                final long deadline = wheel[tickStartIndex + i];
+                if (deadline < earliest) {
+                    earliest = deadline;
+                }
+                if (deadline < tickEnd && deadline < spokeEarliest) {
+                    spokeEarliest = deadline;
+                }
+            }
+
+            if (NULL_DEADLINE != spokeEarliest) {
+                return Math.min(spokeEarliest, earliest);
+            }
+        }
+
+        return earliest;
+    }
+
+    private void advanceTick() {
+        currentTick++;
+        pollIndex = 0;
+
+        if (((int) currentTick & tickMask) == 0 && tickAllocation > initialTickAllocation) {
+            shrinkCapacity();
+        }
+    }
+
+    /**
+     * Shrink the tick arrays to the highest slot occupied in any tick, so timer ids stay the same.
+     */
+    private void shrinkCapacity() {
+        final int allocationMask = tickAllocation - 1;
+        int highestIndex = -1;
+        long timersRemaining = timerCount;
+
+        for (int i = 0, length = wheel.length; i < length && timersRemaining > 0; i++) {
+            if (NULL_DEADLINE != wheel[i]) {
+                highestIndex = Math.max(highestIndex, i & allocationMask);
+                timersRemaining--;
+            }
+        }
+
+        final int newTickAllocation = Math.max(
+            initialTickAllocation, BitUtil.findNextPositivePowerOfTwo(highestIndex + 1));
+        if (newTickAllocation >= tickAllocation) {
+            return;
+        }
+
+        final int newAllocationBitsToShift = Integer.numberOfTrailingZeros(newTickAllocation);
+        final long[] newWheel = new long[ticksPerWheel * newTickAllocation];
+
+        for (int j = 0; j < ticksPerWheel; j++) {
+            System.arraycopy(
+                wheel, j << allocationBitsToShift, newWheel, j << newAllocationBitsToShift, newTickAllocation);
+        }
+
+        tickAllocation = newTickAllocation;
+        allocationBitsToShift = newAllocationBitsToShift;
+        wheel = newWheel;
+    }
+
     private long currentTickTime0() {
         return ((currentTick + 1L) << resolutionBitsToShift) + startTime;
     }
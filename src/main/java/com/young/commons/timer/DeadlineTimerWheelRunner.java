@@ -0,0 +1,275 @@
+package com.young.commons.timer;
+
+import com.young.commons.thread.IdleStrategy;
+import com.young.commons.thread.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import static com.young.commons.timer.DeadlineTimerWheel.NULL_DEADLINE;
+
+/**
+ * Runs the duty cycle polling a {@link ConcurrentDeadlineTimerWheel}, so timers scheduled from any thread expire on
+ * time without every user writing the loop around {@link ConcurrentDeadlineTimerWheel#poll}.
+ * <p>
+ * The runner can own a thread with {@link #start()}, be handed to any thread, e.g. a virtual thread, as a
+ * {@link Runnable}, or have {@link #doWork()} called by the caller's own duty cycle.
+ * <p>
+ * When a cycle expires nothing, the thread idles with the given {@link IdleStrategy}, for no longer than the time
+ * left until the next deadline: a {@link com.young.commons.thread.BusySpinIdleStrategy} gives the best accuracy,
+ * a {@link com.young.commons.thread.SleepingIdleStrategy} or a
+ * {@link com.young.commons.thread.BackoffIdleStrategy} keeps an idle wheel nearly free. Scheduling a timer due before
+ * the end of the current idle period through the runner unparks its thread.
+ */
+public class DeadlineTimerWheelRunner implements Runnable, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineTimerWheelRunner.class);
+
+    public static final int DEFAULT_EXPIRY_LIMIT = 1024;
+
+    private static final long NOT_IDLE = Long.MIN_VALUE;
+
+    private final ConcurrentDeadlineTimerWheel wheel;
+    private final DeadlineTimerWheel.TimerHandler handler;
+    private final IdleStrategy idleStrategy;
+    private final LongSupplier clock;
+    private final int expiryLimit;
+
+    private volatile boolean running = true;
+    private volatile Thread thread;
+    /**
+     * Deadline the thread idles until, {@link #NOT_IDLE} while it works.
+     */
+    private volatile long idleDeadline = NOT_IDLE;
+    private volatile Thread startedThread;
+
+    /**
+     * Create a runner reading the time from {@link System#nanoTime()}, converted to the time unit of the wheel.
+     *
+     * @param wheel        to poll, whose start time must be on the {@link System#nanoTime()} time line.
+     * @param handler      to call for each expired timer.
+     * @param idleStrategy to idle with when no timer expired.
+     */
+    public DeadlineTimerWheelRunner(
+        final ConcurrentDeadlineTimerWheel wheel,
+        final DeadlineTimerWheel.TimerHandler handler,
+        final IdleStrategy idleStrategy) {
+        this(wheel, handler, idleStrategy, nanoClock(wheel.timeUnit()), DEFAULT_EXPIRY_LIMIT);
+    }
+
+    /**
+     * Create a runner.
+     *
+     * @param wheel        to poll.
+     * @param handler      to call for each expired timer.
+     * @param idleStrategy to idle with when no timer expired.
+     * @param clock        current time in the time unit of the wheel.
+     * @param expiryLimit  of timers expired per duty cycle.
+     */
+    public DeadlineTimerWheelRunner(
+        final ConcurrentDeadlineTimerWheel wheel,
+        final DeadlineTimerWheel.TimerHandler handler,
+        final IdleStrategy idleStrategy,
+        final LongSupplier clock,
+        final int expiryLimit) {
+        if (expiryLimit <= 0) {
+            throw new IllegalArgumentException("expiryLimit must be positive: " + expiryLimit);
+        }
+        this.wheel = wheel;
+        this.handler = handler;
+        this.idleStrategy = idleStrategy;
+        this.clock = clock;
+        this.expiryLimit = expiryLimit;
+    }
+
+    private static LongSupplier nanoClock(final TimeUnit timeUnit) {
+        if (timeUnit == TimeUnit.NANOSECONDS) {
+            return System::nanoTime;
+        }
+        return () -> timeUnit.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public ConcurrentDeadlineTimerWheel wheel() {
+        return wheel;
+    }
+
+    /**
+     * Schedule a timer from any thread, waking the runner up if it is due before the runner would.
+     *
+     * @param deadline after which the timer should expire.
+     * @return the id of the timer, or {@link ConcurrentDeadlineTimerWheel#NULL_TIMER_ID} if too many commands are
+     * pending.
+     * @see ConcurrentDeadlineTimerWheel#scheduleTimer(long)
+     */
+    public long scheduleTimer(final long deadline) {
+        final long timerId = wheel.scheduleTimer(deadline);
+        if (timerId != ConcurrentDeadlineTimerWheel.NULL_TIMER_ID) {
+            wakeUpBefore(deadline);
+        }
+        return timerId;
+    }
+
+    /**
+     * Schedule a timer with a reserved id from any thread, waking the runner up if it is due before the runner would.
+     *
+     * @param timerId  reserved with {@link ConcurrentDeadlineTimerWheel#reserveTimerId()}.
+     * @param deadline after which the timer should expire.
+     * @return false if too many commands are pending.
+     * @see ConcurrentDeadlineTimerWheel#scheduleTimer(long, long)
+     */
+    public boolean scheduleTimer(final long timerId, final long deadline) {
+        if (wheel.scheduleTimer(timerId, deadline)) {
+            wakeUpBefore(deadline);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancel a timer from any thread.
+     *
+     * @param timerId of the timer to cancel.
+     * @return false if too many commands are pending.
+     * @see ConcurrentDeadlineTimerWheel#cancelTimer(long)
+     */
+    public boolean cancelTimer(final long timerId) {
+        return wheel.cancelTimer(timerId);
+    }
+
+    /**
+     * One duty cycle: apply the pending commands and expire the due timers, catching up with the ticks elapsed since
+     * the last cycle. Only from the polling thread.
+     *
+     * @return the number of commands applied and timers expired.
+     */
+    public int doWork() {
+        final long now = clock.getAsLong();
+        int workCount = wheel.drainCommands();
+        int expired = 0;
+        while (expired < expiryLimit) {
+            final long tickTime = wheel.currentTickTime();
+            final int count = wheel.poll(now, handler, expiryLimit - expired);
+            expired += count;
+            if (count == 0 && (tickTime > now || tickTime == wheel.currentTickTime())) {
+                break;
+            }
+        }
+        return workCount + expired;
+    }
+
+    /**
+     * Time left until the next timer is due, the longest the polling thread may idle for. Cheap enough for every idle
+     * cycle, as the wheel caches its next deadline. Only from the polling thread.
+     *
+     * @return nanoseconds left, 0 if due already, or {@link Long#MAX_VALUE} if no timer is scheduled.
+     */
+    public long idleNanos() {
+        return idleNanos(wheel.nextDeadline());
+    }
+
+    /**
+     * Start a daemon thread running this runner.
+     *
+     * @return the thread started.
+     */
+    public Thread start() {
+        return start(new NamedThreadFactory("deadline-timer-wheel", true));
+    }
+
+    /**
+     * Start a thread from a factory running this runner, {@link #close()} waits for it to exit.
+     *
+     * @param threadFactory to create the thread with.
+     * @return the thread started.
+     */
+    public Thread start(final ThreadFactory threadFactory) {
+        final Thread t = threadFactory.newThread(this);
+        startedThread = t;
+        t.start();
+        return t;
+    }
+
+    /**
+     * Run the duty cycle until closed, on the current thread.
+     */
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        idleStrategy.reset();
+        try {
+            while (running) {
+                int workCount;
+                try {
+                    workCount = doWork();
+                } catch (Throwable t) {
+                    logger.error("Timer handler threw exception", t);
+                    workCount = 1;
+                }
+                if (workCount > 0) {
+                    idleStrategy.idle(workCount);
+                    continue;
+                }
+
+                // publish the idle deadline before the last look at the commands, so a producer either sees it
+                // and unparks the thread or has its command seen here
+                final long deadline = wheel.nextDeadline();
+                idleDeadline = deadline;
+                if (wheel.pendingCommands() == 0 && running) {
+                    idleStrategy.idle(0, idleNanos(deadline));
+                }
+                idleDeadline = NOT_IDLE;
+            }
+        } finally {
+            thread = null;
+        }
+    }
+
+    /**
+     * Stop the duty cycle, waiting for the thread started by {@link #start} to exit.
+     */
+    @Override
+    public void close() {
+        running = false;
+        final Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        final Thread started = startedThread;
+        if (started != null && started != Thread.currentThread()) {
+            try {
+                started.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private long idleNanos(final long deadline) {
+        if (deadline == NULL_DEADLINE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, wheel.timeUnit().toNanos(deadline - clock.getAsLong()));
+    }
+
+    private void wakeUpBefore(final long deadline) {
+        if (deadline < idleDeadline) {
+            final Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DeadlineTimerWheelRunner{idleStrategy=" + idleStrategy + ", expiryLimit=" + expiryLimit
+            + ", running=" + running + '}';
+    }
+}
@@ -0,0 +1,153 @@
+package com.young.commons.timer;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map of primitive long keys to long values, so looking timer ids up does not box them.
+ * <p>
+ * Uses linear probing with backward shift on removal, hence no tombstones. {@link #missingValue()} is returned for
+ * absent keys and can not be stored. Not thread-safe.
+ */
+final class Long2LongHashMap {
+    private static final int MIN_CAPACITY = 8;
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    Long2LongHashMap(final int initialCapacity, final long missingValue) {
+        this.missingValue = missingValue;
+        allocate(Math.max(MIN_CAPACITY, ceilingPowerOfTwo(initialCapacity)));
+    }
+
+    private static int ceilingPowerOfTwo(final int value) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    private static int hash(final long key, final int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int) h & mask;
+    }
+
+    long missingValue() {
+        return missingValue;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(final long key) {
+        int index = hash(key, mask);
+        while (used[index]) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return the previous value of the key or {@link #missingValue()}.
+     */
+    long put(final long key, final long value) {
+        if (value == missingValue) {
+            throw new IllegalArgumentException("value can not be the missing value: " + value);
+        }
+        int index = hash(key, mask);
+        while (used[index]) {
+            if (keys[index] == key) {
+                final long previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @return the removed value of the key or {@link #missingValue()}.
+     */
+    long remove(final long key) {
+        int index = hash(key, mask);
+        while (used[index]) {
+            if (keys[index] == key) {
+                final long value = values[index];
+                used[index] = false;
+                size--;
+                compactChain(index);
+                return value;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(used, false);
+            size = 0;
+        }
+    }
+
+    /**
+     * Move the entries following a removed one back, so no probe sequence crosses the free slot.
+     */
+    private void compactChain(int deleteIndex) {
+        int index = deleteIndex;
+        while (true) {
+            index = (index + 1) & mask;
+            if (!used[index]) {
+                return;
+            }
+            final int home = hash(keys[index], mask);
+            if ((index < home && (home <= deleteIndex || deleteIndex <= index))
+                || (home <= deleteIndex && deleteIndex <= index)) {
+                used[deleteIndex] = true;
+                keys[deleteIndex] = keys[index];
+                values[deleteIndex] = values[index];
+                used[index] = false;
+                deleteIndex = index;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        resizeThreshold = capacity >> 1;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        final boolean[] oldUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oldUsed.length; i++) {
+            if (oldUsed[i]) {
+                int index = hash(oldKeys[i], mask);
+                while (used[index]) {
+                    index = (index + 1) & mask;
+                }
+                used[index] = true;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.young.commons.timer;
+
+import java.util.Arrays;
+
+import static com.young.commons.timer.DeadlineTimerWheel.NULL_DEADLINE;
+
+/**
+ * Indexed binary min-heap of deadlines, holding the timers of a {@link DeadlineTimerWheel} due beyond one rotation.
+ * <p>
+ * Each timer is given a handle which stays the same while it moves in the heap, so it can be cancelled or looked up
+ * in O(log n) and O(1). Handles of removed timers are reused. Not thread-safe.
+ */
+final class TimerHeap {
+    private static final int INITIAL_CAPACITY = 16;
+
+    // by heap position
+    private long[] deadlines = new long[INITIAL_CAPACITY];
+    private int[] handles = new int[INITIAL_CAPACITY];
+    // by handle, -1 when the handle is not in the heap
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int handleCount;
+    private int size;
+
+    TimerHeap() {
+        Arrays.fill(positions, -1);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the earliest deadline or {@link DeadlineTimerWheel#NULL_DEADLINE} if empty.
+     */
+    long peekDeadline() {
+        return size == 0 ? NULL_DEADLINE : deadlines[0];
+    }
+
+    int peekHandle() {
+        return handles[0];
+    }
+
+    long deadline(final int handle) {
+        if (handle < 0 || handle >= handleCount) {
+            return NULL_DEADLINE;
+        }
+        final int position = positions[handle];
+        return position < 0 ? NULL_DEADLINE : deadlines[position];
+    }
+
+    /**
+     * @return the handle of the timer added.
+     */
+    int add(final long deadline) {
+        final int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (handleCount == positions.length) {
+                final int length = positions.length;
+                positions = Arrays.copyOf(positions, length << 1);
+                Arrays.fill(positions, length, positions.length, -1);
+            }
+            handle = handleCount++;
+        }
+        insert(handle, deadline);
+        return handle;
+    }
+
+    /**
+     * Remove the earliest timer, keeping its handle reserved until {@link #release(int)} or {@link #restore}.
+     *
+     * @return the handle of the timer removed.
+     */
+    int pollHandle() {
+        final int handle = handles[0];
+        removeAt(0);
+        return handle;
+    }
+
+    /**
+     * Put back a timer taken by {@link #pollHandle()}.
+     */
+    void restore(final int handle, final long deadline) {
+        insert(handle, deadline);
+    }
+
+    /**
+     * Make a handle taken by {@link #pollHandle()} available again.
+     */
+    void release(final int handle) {
+        pushFreeHandle(handle);
+    }
+
+    boolean remove(final int handle) {
+        if (handle < 0 || handle >= handleCount || positions[handle] < 0) {
+            return false;
+        }
+        removeAt(positions[handle]);
+        pushFreeHandle(handle);
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(positions, 0, handleCount, -1);
+        size = 0;
+        handleCount = 0;
+        freeCount = 0;
+    }
+
+    void forEach(final DeadlineTimerWheel.TimerConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(deadlines[i], handles[i]);
+        }
+    }
+
+    private void pushFreeHandle(final int handle) {
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount << 1);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    private void insert(final int handle, final long deadline) {
+        if (size == deadlines.length) {
+            deadlines = Arrays.copyOf(deadlines, size << 1);
+            handles = Arrays.copyOf(handles, size << 1);
+        }
+        siftUp(size++, handle, deadline);
+    }
+
+    private void removeAt(final int position) {
+        positions[handles[position]] = -1;
+        final int last = --size;
+        if (position == last) {
+            return;
+        }
+        final int handle = handles[last];
+        final long deadline = deadlines[last];
+        if (position > 0 && deadline < deadlines[(position - 1) >>> 1]) {
+            siftUp(position, handle, deadline);
+        } else {
+            siftDown(position, handle, deadline);
+        }
+    }
+
+    private void siftUp(int position, final int handle, final long deadline) {
+        while (position > 0) {
+            final int parent = (position - 1) >>> 1;
+            if (deadlines[parent] <= deadline) {
+                break;
+            }
+            move(parent, position);
+            position = parent;
+        }
+        set(position, handle, deadline);
+    }
+
+    private void siftDown(int position, final int handle, final long deadline) {
+        final int half = size >>> 1;
+        while (position < half) {
+            int child = (position << 1) + 1;
+            final int right = child + 1;
+            if (right < size && deadlines[right] < deadlines[child]) {
+                child = right;
+            }
+            if (deadline <= deadlines[child]) {
+                break;
+            }
+            move(child, position);
+            position = child;
+        }
+        set(position, handle, deadline);
+    }
+
+    private void move(final int from, final int to) {
+        set(to, handles[from], deadlines[from]);
+    }
+
+    private void set(final int position, final int handle, final long deadline) {
+        deadlines[position] = deadline;
+        handles[position] = handle;
+        positions[handle] = position;
+    }
+}
@@ -0,0 +1,192 @@
+package com.young.commons;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ByteSearchTest {
+    private static final byte[] SPECIAL = {0x00, (byte) 0x80, (byte) 0xFF, 0x7F, 0x01};
+
+    private static int naiveIndexOf(byte[] source, byte value, int fromIndex, int endIndex) {
+        for (int i = fromIndex; i < endIndex; i++) {
+            if (source[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int naiveIndexOf(byte[] source, byte[] target, int fromIndex, int endIndex) {
+        outer:
+        for (int i = fromIndex; i <= endIndex - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static void assertSearch(byte[] source, byte[] target, int fromIndex, int endIndex) {
+        final int expected = naiveIndexOf(source, target, fromIndex, endIndex);
+        final String message = Arrays.toString(target) + " in [" + fromIndex + ", " + endIndex + ")";
+        assertEquals(message, expected, ByteSearch.indexOf(source, target, fromIndex, endIndex));
+        assertEquals(message, expected, ByteSearch.compile(target).indexOf(source, fromIndex, endIndex));
+    }
+
+    private static void assertOutOfBounds(Runnable search) {
+        try {
+            search.run();
+            fail("range outside of the array");
+        } catch (IndexOutOfBoundsException expected) {
+            // checked
+        }
+    }
+
+    @Test
+    public void testByteAtEveryAlignment() {
+        for (byte value : SPECIAL) {
+            final byte other = (byte) (value + 1);
+            for (int length = 0; length <= 40; length++) {
+                final byte[] source = new byte[length];
+                Arrays.fill(source, other);
+                for (int at = -1; at < length; at++) {
+                    if (at >= 0) {
+                        source[at] = value;
+                    }
+                    for (int from = 0; from <= length; from++) {
+                        for (int end = from; end <= length; end++) {
+                            assertEquals(naiveIndexOf(source, value, from, end), ByteSearch.indexOf(source, value, from, end));
+                        }
+                    }
+                    if (at >= 0) {
+                        source[at] = other;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSpecialBytesNextToEachOther() {
+        // bytes which differ from the value only in the high bit, or are all ones, must not be taken for matches
+        final byte[] source = new byte[64];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = SPECIAL[i % SPECIAL.length];
+        }
+        for (byte value : SPECIAL) {
+            for (int from = 0; from <= source.length; from++) {
+                assertEquals(naiveIndexOf(source, value, from, source.length), ByteSearch.indexOf(source, value, from, source.length));
+            }
+        }
+        for (int value = -128; value < 128; value++) {
+            assertEquals(naiveIndexOf(source, (byte) value, 0, source.length), ByteSearch.indexOf(source, (byte) value, 0, source.length));
+        }
+    }
+
+    @Test
+    public void testPatternAcrossWordBoundaries() {
+        final byte[] target = {(byte) 0xFF, 0x00, (byte) 0x80, (byte) 0xFF, 0x00};
+        for (int at = 0; at + target.length <= 48; at++) {
+            final byte[] source = new byte[48];
+            // a partial match right before the real one
+            source[Math.max(0, at - 3)] = (byte) 0xFF;
+            System.arraycopy(target, 0, source, at, target.length);
+            for (int from = 0; from <= source.length; from++) {
+                for (int end = from; end <= source.length; end++) {
+                    assertSearch(source, target, from, end);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomSources() {
+        final Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            // few distinct bytes, so there are many partial matches
+            final byte[] source = new byte[random.nextInt(round % 10 == 0 ? 2000 : 100)];
+            for (int i = 0; i < source.length; i++) {
+                source[i] = SPECIAL[random.nextInt(3)];
+            }
+            final byte[] target = new byte[1 + random.nextInt(6)];
+            for (int i = 0; i < target.length; i++) {
+                target[i] = SPECIAL[random.nextInt(3)];
+            }
+            final int from = random.nextInt(source.length + 1);
+            final int end = from + random.nextInt(source.length - from + 1);
+            assertSearch(source, target, from, end);
+            assertEquals(naiveIndexOf(source, target[0], from, end), ByteSearch.indexOf(source, target[0], from, end));
+        }
+    }
+
+    @Test
+    public void testLongRangesUseTheCompiledPattern() {
+        final byte[] source = new byte[4096];
+        Arrays.fill(source, (byte) 0x80);
+        final byte[] target = {(byte) 0x80, (byte) 0x80, 0x00};
+        assertSearch(source, target, 0, source.length);
+        for (int at : new int[]{0, 511, 512, 1000, 4093}) {
+            source[at + 2] = 0x00;
+            assertSearch(source, target, 0, source.length);
+            assertSearch(source, target, 1, source.length);
+            assertSearch(source, target, 0, at + 2);
+            source[at + 2] = (byte) 0x80;
+        }
+    }
+
+    @Test
+    public void testEmptyRangesAndTargets() {
+        final byte[] source = {1, 2, 3};
+        assertEquals(-1, ByteSearch.indexOf(source, (byte) 1, 1, 1));
+        assertEquals(-1, ByteSearch.indexOf(new byte[0], (byte) 0, 0, 0));
+        assertEquals(-1, ByteSearch.indexOf(source, new byte[]{1, 2}, 0, 0));
+        // the empty sequence occurs at the start of any range
+        assertEquals(2, ByteSearch.indexOf(source, new byte[0], 2, 2));
+        assertEquals(3, ByteSearch.compile(new byte[0]).indexOf(source, 3, 3));
+        assertEquals(1, ByteSearch.compile(new byte[]{2}).indexOf(source));
+    }
+
+    @Test
+    public void testPatternLongerThanTheRange() {
+        final byte[] source = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        final byte[] target = {3, 4, 5, 6};
+        assertEquals(2, ByteSearch.indexOf(source, target, 0, 6));
+        assertEquals(-1, ByteSearch.indexOf(source, target, 0, 5));
+        assertEquals(-1, ByteSearch.indexOf(source, target, 3, 9));
+        assertEquals(-1, ByteSearch.indexOf(source, new byte[12], 0, 9));
+        assertEquals(-1, ByteSearch.compile(target).indexOf(source, 2, 5));
+    }
+
+    @Test
+    public void testRangesAreChecked() {
+        final byte[] source = new byte[16];
+        final byte[] target = {0, 0};
+        final ByteSearch.Pattern pattern = ByteSearch.compile(target);
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, (byte) 1, -1, 8));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, (byte) 1, 0, 17));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, (byte) 1, 9, 8));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, (byte) 1, 8, Integer.MAX_VALUE));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, target, -8, 2));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, target, 0, 1024));
+        assertOutOfBounds(() -> ByteSearch.indexOf(source, new byte[0], 4, 3));
+        assertOutOfBounds(() -> pattern.indexOf(source, 0, 17));
+        assertOutOfBounds(() -> pattern.indexOf(source, 3, 2));
+    }
+
+    @Test
+    public void testByteUtilClampsItsRanges() {
+        final byte[] source = {1, 2, 3, 1, 2, 3};
+        assertEquals(-1, ByteUtil.indexOf(source, (byte) 1, -5, -1));
+        assertEquals(3, ByteUtil.indexOf(source, (byte) 1, 1, 100));
+        assertEquals(-1, ByteUtil.indexOf(source, new byte[]{1, 2}, -5, -1));
+        assertEquals(0, ByteUtil.indexOf(source, new byte[]{1, 2}, -5, 100));
+        assertEquals(3, ByteUtil.indexOf(source, new byte[]{1, 2}, 1, 100));
+    }
+}
@@ -0,0 +1,171 @@
+package com.young.commons.allocation;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferLeakDetectorTest {
+
+    /**
+     * Collects until the detector has reported the expected number of leaks, phantom references being enqueued
+     * some time after the collection.
+     */
+    private static void awaitLeaks(final BufferLeakDetector detector, final long leaks) throws InterruptedException {
+        for (int i = 0; i < 100 && detector.leakCount() < leaks; i++) {
+            System.gc();
+            Thread.sleep(10);
+            detector.reportLeaks();
+        }
+        assertEquals(leaks, detector.leakCount());
+    }
+
+    private static void leak(final AbstractBufferAllocator allocator, final int capacity, final String tag) {
+        allocator.allocate(capacity, tag);
+    }
+
+    @Test
+    public void testLeakIsReportedAndReleasedFromTheGauges() throws InterruptedException {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        final BufferLeakDetector detector = allocator.leakDetector();
+        detector.setSamplingInterval(1);
+
+        leak(allocator, 100, "leaky");
+        assertEquals(1, detector.trackedCount());
+        assertEquals(100, allocator.stats().usedBytes());
+        assertEquals(100, allocator.stats("leaky").usedBytes());
+
+        awaitLeaks(detector, 1);
+        assertEquals(0, detector.trackedCount());
+        assertEquals(0, allocator.stats().usedBytes());
+        assertEquals(0, allocator.stats().count());
+        assertEquals(0, allocator.stats("leaky").usedBytes());
+        assertEquals(0, allocator.stats("leaky").count());
+    }
+
+    @Test
+    public void testClosedBuffersAreNotReported() throws InterruptedException {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        final BufferLeakDetector detector = allocator.leakDetector();
+        detector.setSamplingInterval(1);
+
+        for (int i = 0; i < 10; i++) {
+            allocator.allocate(10).close();
+        }
+        assertEquals(0, detector.trackedCount());
+        leak(allocator, 10, null);
+        awaitLeaks(detector, 1);
+        // nothing else is reported later on
+        System.gc();
+        assertEquals(0, detector.reportLeaks());
+        assertEquals(1, detector.leakCount());
+    }
+
+    @Test
+    public void testSamplingInterval() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        final BufferLeakDetector detector = allocator.leakDetector();
+        final List<AllocatedBuffer> buffers = new ArrayList<>();
+
+        detector.setSamplingInterval(0);
+        for (int i = 0; i < 100; i++) {
+            buffers.add(allocator.allocate(1));
+        }
+        assertEquals(0, detector.trackedCount());
+
+        detector.setSamplingInterval(1);
+        for (int i = 0; i < 100; i++) {
+            buffers.add(allocator.allocate(1));
+        }
+        assertEquals(100, detector.trackedCount());
+
+        detector.setSamplingInterval(10);
+        for (int i = 0; i < 1000; i++) {
+            buffers.add(allocator.allocate(1));
+        }
+        final int sampled = detector.trackedCount() - 100;
+        assertTrue("sampled " + sampled, sampled > 30 && sampled < 300);
+
+        for (AllocatedBuffer buffer : buffers) {
+            buffer.close();
+        }
+        assertEquals(0, detector.trackedCount());
+        assertEquals(0, allocator.stats().count());
+    }
+
+    @Test
+    public void testNegativeSamplingIntervalIsRejected() {
+        final BufferLeakDetector detector = new BufferLeakDetector("test", 3);
+        assertEquals(3, detector.samplingInterval());
+        try {
+            detector.setSamplingInterval(-1);
+            fail("negative interval");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+        assertEquals(3, detector.samplingInterval());
+        assertEquals(BufferLeakDetector.DEFAULT_SAMPLING_INTERVAL,
+            new BufferLeakDetector("default").samplingInterval());
+    }
+
+    @Test
+    public void testStatsPerAllocatorAndTag() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        assertNull(allocator.stats("a"));
+        final AllocatedBuffer a1 = allocator.allocate(10, "a");
+        final AllocatedBuffer a2 = allocator.allocate(20, "a");
+        final AllocatedBuffer b = allocator.allocate(30, "b");
+        final AllocatedBuffer untagged = allocator.allocate(40);
+
+        assertEquals(100, allocator.stats().usedBytes());
+        assertEquals(4, allocator.stats().count());
+        assertEquals(30, allocator.stats("a").usedBytes());
+        assertEquals(2, allocator.stats("a").count());
+        assertEquals(30, allocator.stats("b").usedBytes());
+        assertEquals(2, allocator.tagStats().size());
+        try {
+            allocator.tagStats().clear();
+            fail("modifiable view");
+        } catch (UnsupportedOperationException expected) {
+            // read only
+        }
+
+        a1.close();
+        a1.close();
+        b.close();
+        assertEquals(60, allocator.stats().usedBytes());
+        assertEquals(2, allocator.stats().count());
+        assertEquals(20, allocator.stats("a").usedBytes());
+        assertEquals(0, allocator.stats("b").count());
+        assertEquals("BufferStats{usedBytes=20, count=1}", allocator.stats("a").toString());
+
+        a2.close();
+        untagged.close();
+        assertEquals(0, allocator.stats().usedBytes());
+        assertEquals(0, allocator.stats().count());
+        // the gauges of a tag stay around once used
+        assertEquals(0, allocator.stats("a").usedBytes());
+    }
+
+    @Test
+    public void testSubclassOverridingAllocate() {
+        final AbstractBufferAllocator legacy = new AbstractBufferAllocator() {
+            @Override
+            public AllocatedBuffer allocate(final int capacity) {
+                return new AllocatedSimpleBuffer(ByteBuffer.allocate(capacity));
+            }
+        };
+        try (AllocatedBuffer buffer = legacy.allocate(16, "tag")) {
+            assertEquals(16, buffer.capacity());
+        }
+        // the tag is ignored, as it was before allocators accounted buffers
+        assertNull(legacy.stats("tag"));
+        assertEquals(0, legacy.stats().count());
+    }
+}
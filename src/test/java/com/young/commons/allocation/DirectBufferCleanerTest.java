@@ -0,0 +1,135 @@
+package com.young.commons.allocation;
+
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DirectBufferCleanerTest {
+    private static final List<Object> CLEANED = new ArrayList<>();
+
+    /**
+     * Stand-in for {@code DirectBuffer.cleaner()}: like Java 8, slices and duplicates have no cleaner.
+     */
+    static Object cleaner(final ByteBuffer buffer) {
+        return buffer.capacity() == 64 ? buffer : null;
+    }
+
+    /**
+     * Stand-in for {@code Cleaner.clean()}.
+     */
+    static void clean(final Object cleaner) {
+        CLEANED.add(cleaner);
+    }
+
+    private static MethodHandle handle(final String name, final MethodType type) throws ReflectiveOperationException {
+        return MethodHandles.lookup().findStatic(DirectBufferCleanerTest.class, name, type);
+    }
+
+    @Test
+    public void testInvokeCleanerPath() {
+        // Java 9+ frees through Unsafe.invokeCleaner
+        assertTrue(DirectBufferCleaner.isSupported());
+        assertTrue(DirectBufferCleaner.usesInvokeCleaner());
+        DirectBufferCleaner.free(ByteBuffer.allocateDirect(1024));
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        try {
+            DirectBufferCleaner.free(buffer.duplicate());
+            fail("duplicate freed");
+        } catch (IllegalArgumentException expected) {
+            // only the buffer owning the memory can be freed
+        }
+        DirectBufferCleaner.free(buffer);
+    }
+
+    @Test
+    public void testCleanerPath() throws ReflectiveOperationException {
+        final MethodHandle getCleaner = handle("cleaner", MethodType.methodType(Object.class, ByteBuffer.class));
+        final MethodHandle clean = handle("clean", MethodType.methodType(void.class, Object.class));
+        CLEANED.clear();
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        DirectBufferCleaner.free(buffer, null, getCleaner, clean);
+        assertEquals(1, CLEANED.size());
+        assertSame(buffer, CLEANED.get(0));
+
+        try {
+            DirectBufferCleaner.free(ByteBuffer.allocateDirect(128), null, getCleaner, clean);
+            fail("buffer without a cleaner freed");
+        } catch (IllegalArgumentException expected) {
+            // a slice or duplicate
+        }
+        assertEquals(1, CLEANED.size());
+    }
+
+    @Test
+    public void testUnsupportedAndHeapBuffersAreIgnored() throws ReflectiveOperationException {
+        final MethodHandle clean = handle("clean", MethodType.methodType(void.class, Object.class));
+        CLEANED.clear();
+        // neither path is available, the buffer is left to the garbage collector
+        DirectBufferCleaner.free(ByteBuffer.allocateDirect(64), null, null, null);
+        DirectBufferCleaner.free(ByteBuffer.allocate(64), null,
+            handle("cleaner", MethodType.methodType(Object.class, ByteBuffer.class)), clean);
+        DirectBufferCleaner.free(null);
+        DirectBufferCleaner.free(ByteBuffer.allocate(64));
+        assertTrue(CLEANED.isEmpty());
+    }
+
+    @Test
+    public void testFreeOnClose() {
+        final DirectBufferAllocator allocator = new DirectBufferAllocator(true);
+        assertTrue(allocator.isFreeOnClose());
+        final long before = AbstractBufferAllocator.ALLOCATED_MEMORY.get();
+        final AllocatedBuffer buffer = allocator.allocate(4096);
+        buffer.getRawBuffer().putLong(0, 42L);
+        assertEquals(4096, AbstractBufferAllocator.ALLOCATED_MEMORY.get() - before);
+
+        buffer.close();
+        assertTrue(buffer.isClosed());
+        assertEquals(0, AbstractBufferAllocator.ALLOCATED_MEMORY.get() - before);
+        assertEquals(0, allocator.stats().usedBytes());
+        try {
+            buffer.getRawBuffer();
+            fail("freed buffer accessed");
+        } catch (IllegalStateException expected) {
+            // the memory is gone
+        }
+
+        // a second close neither frees the memory again nor releases it twice from the gauges
+        buffer.close();
+        assertEquals(0, AbstractBufferAllocator.ALLOCATED_MEMORY.get() - before);
+        assertEquals(0, allocator.stats().usedBytes());
+        assertEquals(0, allocator.stats().count());
+    }
+
+    @Test
+    public void testCloseWithoutFree() {
+        final DirectBufferAllocator allocator = new DirectBufferAllocator();
+        assertFalse(allocator.isFreeOnClose());
+        final long before = AbstractBufferAllocator.ALLOCATED_MEMORY.get();
+        final AllocatedBuffer buffer = allocator.allocate(100, "test");
+        assertEquals(100, allocator.stats("test").usedBytes());
+        buffer.close();
+        buffer.close();
+        assertEquals(0, AbstractBufferAllocator.ALLOCATED_MEMORY.get() - before);
+        assertEquals(0, allocator.stats("test").usedBytes());
+        assertEquals(0, allocator.stats("test").count());
+        try {
+            buffer.getRawBuffer();
+            fail("closed buffer accessed");
+        } catch (IllegalStateException expected) {
+            // closed
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.young.commons.allocation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PooledBufferAllocatorTest {
+    private static final int CHUNK = 64 * 1024;
+
+    private static long allocatedMemory() {
+        return AbstractBufferAllocator.ALLOCATED_MEMORY.get();
+    }
+
+    @Test
+    public void testSizeClasses() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(256, 4096, 4, 4);
+        assertEquals(5, allocator.sizeClasses());
+        try (AllocatedBuffer small = allocator.allocate(10);
+             AllocatedBuffer exact = allocator.allocate(1024);
+             AllocatedBuffer rounded = allocator.allocate(1025)) {
+            assertEquals(10, small.capacity());
+            assertEquals(1024, exact.capacity());
+            assertEquals(1025, rounded.capacity());
+            assertTrue(rounded.getRawBuffer().isDirect());
+        }
+    }
+
+    @Test
+    public void testChunksAreRecycled() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(256, CHUNK, 4, 4);
+        final long before = allocatedMemory();
+        final AllocatedBuffer first = allocator.allocate(CHUNK);
+        assertEquals(CHUNK, allocatedMemory() - before);
+        first.close();
+        // cached by this thread, still allocated
+        assertEquals(CHUNK, allocatedMemory() - before);
+
+        try (AllocatedBuffer second = allocator.allocate(CHUNK - 1)) {
+            assertEquals(CHUNK, allocatedMemory() - before);
+            assertEquals(CHUNK - 1, second.getRawBuffer().remaining());
+        }
+        assertEquals(0, allocator.stats().usedBytes());
+    }
+
+    @Test
+    public void testAccountingWhenCachesOverflow() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(256, CHUNK, 2, 3);
+        final long before = allocatedMemory();
+        final List<AllocatedBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            buffers.add(allocator.allocate(CHUNK));
+        }
+        assertEquals(10L * CHUNK, allocatedMemory() - before);
+        assertEquals(10L * CHUNK, allocator.stats().usedBytes());
+        for (AllocatedBuffer buffer : buffers) {
+            buffer.close();
+        }
+        // 2 in the thread cache, 3 in the arena, the others freed
+        assertEquals(3, allocator.arenaBufferCount());
+        assertEquals(5L * CHUNK, allocatedMemory() - before);
+        assertEquals(0, allocator.stats().usedBytes());
+    }
+
+    @Test
+    public void testLargeBuffersAreNotPooled() {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(256, 4096, 4, 4);
+        final long before = allocatedMemory();
+        final AllocatedBuffer buffer = allocator.allocate(CHUNK);
+        assertEquals(CHUNK, allocatedMemory() - before);
+        buffer.close();
+        assertEquals(0, allocatedMemory() - before);
+        assertEquals(0, allocator.arenaBufferCount());
+    }
+
+    @Test
+    public void testDeadThreadCachesAreReclaimed() throws InterruptedException {
+        final PooledBufferAllocator allocator = new PooledBufferAllocator(256, CHUNK, 4, 4);
+        final long before = allocatedMemory();
+        for (int i = 0; i < 20; i++) {
+            final Thread thread = new Thread(() -> {
+                final List<AllocatedBuffer> buffers = new ArrayList<>();
+                for (int j = 0; j < 4; j++) {
+                    buffers.add(allocator.allocate(CHUNK));
+                }
+                buffers.forEach(AllocatedBuffer::close);
+            });
+            thread.start();
+            thread.join();
+        }
+
+        int reclaimed = 0;
+        for (int i = 0; i < 50 && allocatedMemory() - before > 4L * CHUNK; i++) {
+            System.gc();
+            Thread.sleep(10);
+            reclaimed += allocator.reclaimThreadCaches();
+        }
+        assertTrue("reclaimed " + reclaimed, reclaimed > 0);
+        // only the arena keeps chunks once every cache is reclaimed
+        assertEquals(4L * CHUNK, allocatedMemory() - before);
+        assertEquals(4, allocator.arenaBufferCount());
+    }
+}
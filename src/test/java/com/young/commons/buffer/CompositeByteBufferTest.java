@@ -0,0 +1,207 @@
+package com.young.commons.buffer;
+
+import com.young.commons.allocation.SimpleBufferAllocator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompositeByteBufferTest {
+
+    private static void putValues(CompositeByteBuffer composite, ByteBuffer expected) {
+        // 1 + 2 + 4 + 8 + 4 + 8 bytes over 5 byte chunks, so every multi-byte value but the first is split
+        composite.put((byte) 7).putShort((short) 0x1234).putInt(0xCAFEBABE).putLong(0x0102030405060708L)
+            .putFloat(1.5f).putDouble(Math.PI);
+        expected.put((byte) 7).putShort((short) 0x1234).putInt(0xCAFEBABE).putLong(0x0102030405060708L)
+            .putFloat(1.5f).putDouble(Math.PI);
+    }
+
+    private static byte[] readAll(CompositeByteBuffer composite) {
+        final byte[] bytes = new byte[(int) composite.readableBytes()];
+        composite.get(bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    @Test
+    public void testSplitValuesBigEndian() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(allocator, 5)) {
+            final ByteBuffer expected = ByteBuffer.allocate(27);
+            putValues(composite, expected);
+            assertEquals(27, composite.writerIndex());
+            assertEquals(6, composite.chunkCount());
+            assertArrayEquals(expected.array(), readAll(composite));
+            assertFalse(composite.isReadable());
+        }
+    }
+
+    @Test
+    public void testSplitValuesLittleEndian() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(allocator, 5)) {
+            composite.order(ByteOrder.LITTLE_ENDIAN);
+            final ByteBuffer expected = ByteBuffer.allocate(27).order(ByteOrder.LITTLE_ENDIAN);
+            putValues(composite, expected);
+            assertArrayEquals(expected.array(), readAll(composite));
+        }
+    }
+
+    @Test
+    public void testOrderChangeAppliesToTheCurrentChunk() {
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(new SimpleBufferAllocator(), 16)) {
+            composite.putInt(1);
+            composite.order(ByteOrder.LITTLE_ENDIAN);
+            composite.putInt(1);
+            assertArrayEquals(new byte[]{0, 0, 0, 1, 1, 0, 0, 0}, readAll(composite));
+        }
+    }
+
+    @Test
+    public void testPutByteBufferAcrossChunks() {
+        final byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(new SimpleBufferAllocator(), 16)) {
+            final ByteBuffer src = ByteBuffer.wrap(bytes, 10, 80);
+            composite.put(src);
+            assertFalse(src.hasRemaining());
+            assertEquals(90, src.limit());
+            composite.put(bytes, 0, 10);
+            assertEquals(90, composite.readableBytes());
+            assertEquals(6, composite.chunkCount());
+
+            final byte[] read = readAll(composite);
+            for (int i = 0; i < 80; i++) {
+                assertEquals(bytes[i + 10], read[i]);
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals(bytes[i], read[i + 80]);
+            }
+        }
+    }
+
+    @Test
+    public void testConsumedChunksAreReleased() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        final CompositeByteBuffer composite = new CompositeByteBuffer(allocator, 8);
+        for (int i = 0; i < 10; i++) {
+            composite.putLong(i);
+        }
+        assertEquals(10, composite.chunkCount());
+        assertEquals(80, allocator.stats().usedBytes());
+
+        final byte[] bytes = new byte[20];
+        composite.get(bytes, 0, bytes.length);
+        assertEquals(20, composite.readerIndex());
+        // the two chunks read entirely are given back
+        assertEquals(8, composite.chunkCount());
+        assertEquals(64, allocator.stats().usedBytes());
+
+        composite.get(bytes, 0, 20);
+        composite.get(bytes, 0, 20);
+        composite.get(bytes, 0, 20);
+        // the last chunk is kept for the next writes
+        assertEquals(1, composite.chunkCount());
+        assertEquals(8, allocator.stats().usedBytes());
+
+        composite.close();
+        assertEquals(0, allocator.stats().usedBytes());
+        assertEquals(0, allocator.stats().count());
+        try {
+            composite.put((byte) 1);
+            fail("put after close");
+        } catch (IllegalStateException expected) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testClearReleasesChunksAndAllowsReuse() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(allocator, 4)) {
+            composite.putLong(42L);
+            composite.clear();
+            assertEquals(0, allocator.stats().usedBytes());
+            assertEquals(0, composite.writerIndex());
+            assertEquals(0, composite.chunkCount());
+
+            composite.putInt(42);
+            assertEquals(4, composite.readableBytes());
+            assertArrayEquals(ByteBuffer.allocate(4).putInt(42).array(), readAll(composite));
+        }
+    }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        final ByteBuffer expected = ByteBuffer.allocate(27);
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        try (CompositeByteBuffer composite = new CompositeByteBuffer(allocator, 5)) {
+            putValues(composite, expected);
+            assertEquals(6, composite.nioBuffers().length);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long written = 0;
+            while (composite.isReadable()) {
+                written += composite.write(new GatheringChannel(Channels.newChannel(out)));
+            }
+            assertEquals(27, written);
+            assertArrayEquals(expected.array(), out.toByteArray());
+            assertEquals(1, composite.chunkCount());
+            assertTrue(allocator.stats().usedBytes() <= 5);
+        }
+    }
+
+    /**
+     * Gathering adapter over a plain channel, writes the buffers one by one.
+     */
+    private static final class GatheringChannel implements GatheringByteChannel {
+        private final WritableByteChannel channel;
+
+        GatheringChannel(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                while (srcs[i].hasRemaining()) {
+                    written += channel.write(srcs[i]);
+                }
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.young.commons.buffer;
+
+import com.young.commons.allocation.DirectBufferAllocator;
+import com.young.commons.allocation.SimpleBufferAllocator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DynamicByteBufferTest {
+
+    private static byte[] written(DynamicByteBuffer buffer) {
+        final ByteBuffer view = buffer.asReadOnlySlice();
+        final byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void testGrowthKeepsTheWrittenBytes() {
+        final DynamicByteBuffer buffer = new DynamicByteBuffer(4);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1);
+        buffer.putInt(0x05040302);
+        assertEquals(8, buffer.capacity());
+        assertEquals(5, buffer.position());
+        // the order is carried over to the new buffer
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+
+        buffer.putLong(0x0D0C0B0A09080706L);
+        assertEquals(16, buffer.capacity());
+        buffer.put(new byte[]{14, 15, 16, 17, 18, 19, 20});
+        assertEquals(32, buffer.capacity());
+
+        final byte[] expected = new byte[20];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (byte) (i + 1);
+        }
+        assertArrayEquals(expected, written(buffer));
+    }
+
+    @Test
+    public void testGrowthToTheNeededCapacity() {
+        final DynamicByteBuffer buffer = new DynamicByteBuffer(2, 1);
+        buffer.put(new byte[100]);
+        assertEquals(102, buffer.capacity());
+        assertEquals(100, buffer.position());
+
+        final DynamicByteBuffer empty = new DynamicByteBuffer(0);
+        empty.putShort((short) 7);
+        assertEquals(2, empty.capacity());
+        assertEquals(7, empty.getShort(0));
+    }
+
+    @Test
+    public void testNewCapacitySaturates() {
+        assertEquals(20, DynamicByteBuffer.newCapacity(10, 1, 2));
+        assertEquals(30, DynamicByteBuffer.newCapacity(10, 20, 2));
+        assertEquals(DynamicByteBuffer.MAX_CAPACITY, DynamicByteBuffer.newCapacity(1_500_000_000, 1, 2));
+        assertEquals(DynamicByteBuffer.MAX_CAPACITY, DynamicByteBuffer.newCapacity(1_500_000_000, 1, 1e30f));
+        assertEquals(DynamicByteBuffer.MAX_CAPACITY,
+            DynamicByteBuffer.newCapacity(DynamicByteBuffer.MAX_CAPACITY - 1, 1, 1));
+        try {
+            DynamicByteBuffer.newCapacity(Integer.MAX_VALUE - 10, 100, 2);
+            fail("overflowed");
+        } catch (BufferOverflowException expected) {
+            // more than an array can hold
+        }
+        try {
+            DynamicByteBuffer.newCapacity(DynamicByteBuffer.MAX_CAPACITY, 1, 1);
+            fail("overflowed");
+        } catch (BufferOverflowException expected) {
+            // more than an array can hold
+        }
+    }
+
+    @Test
+    public void testReadOnlySlice() {
+        final DynamicByteBuffer buffer = new DynamicByteBuffer(16);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(42);
+        buffer.putInt(43);
+
+        final ByteBuffer slice = buffer.asReadOnlySlice();
+        assertTrue(slice.isReadOnly());
+        assertEquals(0, slice.position());
+        assertEquals(8, slice.remaining());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, slice.order());
+        assertEquals(42, slice.getInt(0));
+        assertEquals(43, slice.getInt(4));
+        try {
+            slice.put(0, (byte) 1);
+            fail("read-only slice written");
+        } catch (ReadOnlyBufferException expected) {
+            // read only
+        }
+        // the buffer itself is left as it was
+        assertEquals(8, buffer.position());
+        assertEquals(16, buffer.limit());
+        buffer.putInt(44);
+        // the view shares the memory but not the later position
+        assertEquals(8, slice.remaining());
+    }
+
+    @Test
+    public void testAllocatorBackedGrowthAndClose() {
+        final SimpleBufferAllocator allocator = new SimpleBufferAllocator();
+        final DynamicByteBuffer buffer = new DynamicByteBuffer(8, allocator);
+        assertEquals(8, allocator.stats().usedBytes());
+        buffer.putLong(1L);
+        buffer.putLong(2L);
+        // the previous buffer is given back when growing
+        assertEquals(16, buffer.capacity());
+        assertEquals(16, allocator.stats().usedBytes());
+        assertEquals(1, allocator.stats().count());
+        assertEquals(1L, buffer.getLong(0));
+        assertEquals(2L, buffer.getLong(8));
+
+        buffer.close();
+        buffer.close();
+        assertEquals(0, allocator.stats().usedBytes());
+        assertEquals(0, allocator.stats().count());
+    }
+
+    @Test
+    public void testDirectBufferWrittenToChannel() throws Exception {
+        final DirectBufferAllocator allocator = new DirectBufferAllocator(true);
+        try (DynamicByteBuffer buffer = new DynamicByteBuffer(4, 1.5f, allocator)) {
+            assertTrue(buffer.isDirect());
+            assertFalse(buffer.hasArray());
+            assertEquals(1.5f, buffer.getExpandFactor(), 0.0f);
+            buffer.put("hello, world".getBytes("US-ASCII"));
+            assertTrue(buffer.isDirect());
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(12, buffer.writeTo(Channels.newChannel(out)));
+            assertEquals("hello, world", out.toString("US-ASCII"));
+            assertEquals(12, buffer.position());
+        }
+        assertEquals(0, allocator.stats().usedBytes());
+    }
+
+    @Test
+    public void testExpandFactorIsValidated() {
+        try {
+            new DynamicByteBuffer(4, 0.5f);
+            fail("shrinking factor");
+        } catch (IllegalArgumentException expected) {
+            // must be at least 1
+        }
+        final DynamicByteBuffer buffer = new DynamicByteBuffer(4);
+        try {
+            buffer.setExpandFactor(0.9f);
+            fail("shrinking factor");
+        } catch (IllegalArgumentException expected) {
+            // must be at least 1
+        }
+        assertEquals(2f, buffer.getExpandFactor(), 0.0f);
+    }
+}
@@ -0,0 +1,245 @@
+package com.young.commons.buffer;
+
+import com.young.commons.UnsafeAccess;
+import com.young.commons.allocation.AllocatedBuffer;
+import com.young.commons.allocation.DirectBufferAllocator;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnsafeBufferTest {
+    private static final ByteOrder[] ORDERS = {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN};
+
+    /**
+     * Heap, array region and direct buffers of 32 bytes.
+     */
+    private static List<UnsafeBuffer> buffers() {
+        final List<UnsafeBuffer> buffers = new ArrayList<>();
+        buffers.add(new UnsafeBuffer(new byte[32]));
+        buffers.add(new UnsafeBuffer(new byte[40], 5, 32));
+        buffers.add(new UnsafeBuffer(ByteBuffer.allocate(32)));
+        buffers.add(new UnsafeBuffer(ByteBuffer.allocateDirect(32)));
+        return buffers;
+    }
+
+    /**
+     * The bytes of the buffer as a {@link ByteBuffer} in the given order, to compare the encoding against.
+     */
+    private static ByteBuffer bytes(final UnsafeBuffer buffer, final ByteOrder order) {
+        final byte[] bytes = new byte[buffer.capacity()];
+        buffer.getBytes(0, bytes, 0, bytes.length);
+        return ByteBuffer.wrap(bytes).order(order);
+    }
+
+    private static void assertOutOfBounds(final Runnable access) {
+        try {
+            access.run();
+            fail("out of bounds access");
+        } catch (IndexOutOfBoundsException expected) {
+            // checked
+        }
+    }
+
+    @Test
+    public void testRoundTripInEveryByteOrder() {
+        for (UnsafeBuffer buffer : buffers()) {
+            for (ByteOrder order : ORDERS) {
+                buffer.setMemory(0, buffer.capacity(), (byte) 0);
+                buffer.putLong(1, 0x0102030405060708L, order);
+                buffer.putInt(9, 0xCAFEBABE, order);
+                buffer.putShort(13, (short) 0x1234, order);
+                buffer.putChar(15, '\u00e9', order);
+                buffer.putDouble(17, Math.PI, order);
+                buffer.putFloat(25, 1.5f, order);
+                buffer.putByte(29, (byte) 0x80);
+
+                assertEquals(0x0102030405060708L, buffer.getLong(1, order));
+                assertEquals(0xCAFEBABE, buffer.getInt(9, order));
+                assertEquals((short) 0x1234, buffer.getShort(13, order));
+                assertEquals('\u00e9', buffer.getChar(15, order));
+                assertEquals(Math.PI, buffer.getDouble(17, order), 0.0d);
+                assertEquals(1.5f, buffer.getFloat(25, order), 0.0f);
+                assertEquals((byte) 0x80, buffer.getByte(29));
+
+                // the same layout as a ByteBuffer of that order
+                final ByteBuffer expected = bytes(buffer, order);
+                assertEquals(0x0102030405060708L, expected.getLong(1));
+                assertEquals(0xCAFEBABE, expected.getInt(9));
+                assertEquals((short) 0x1234, expected.getShort(13));
+                assertEquals('\u00e9', expected.getChar(15));
+                assertEquals(Math.PI, expected.getDouble(17), 0.0d);
+                assertEquals(1.5f, expected.getFloat(25), 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void testNativeOrderAccessors() {
+        for (UnsafeBuffer buffer : buffers()) {
+            buffer.putLong(0, -2L);
+            buffer.putInt(8, -3);
+            buffer.putShort(12, (short) -4);
+            buffer.putChar(14, 'x');
+            buffer.putDouble(16, -0.5d);
+            buffer.putFloat(24, 0.25f);
+            assertEquals(-2L, buffer.getLong(0));
+            assertEquals(-3, buffer.getInt(8));
+            assertEquals((short) -4, buffer.getShort(12));
+            assertEquals('x', buffer.getChar(14));
+            assertEquals(-0.5d, buffer.getDouble(16), 0.0d);
+            assertEquals(0.25f, buffer.getFloat(24), 0.0f);
+
+            final ByteBuffer expected = bytes(buffer, ByteOrder.nativeOrder());
+            assertEquals(-2L, expected.getLong(0));
+            assertEquals(-3, expected.getInt(8));
+            assertEquals(0.25f, expected.getFloat(24), 0.0f);
+        }
+    }
+
+    @Test
+    public void testVolatileAndAtomicAccessors() {
+        final UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(32));
+        buffer.verifyAlignment();
+
+        buffer.putLongVolatile(0, 1L);
+        assertEquals(1L, buffer.getLongVolatile(0));
+        buffer.putLongOrdered(0, 2L);
+        assertTrue(buffer.compareAndSetLong(0, 2L, 3L));
+        assertFalse(buffer.compareAndSetLong(0, 2L, 4L));
+        assertEquals(3L, buffer.getAndAddLong(0, 10L));
+        assertEquals(13L, buffer.getAndSetLong(0, 5L));
+        assertEquals(5L, buffer.getLong(0));
+
+        buffer.putIntVolatile(8, 1);
+        assertEquals(1, buffer.getIntVolatile(8));
+        buffer.putIntOrdered(8, 2);
+        assertTrue(buffer.compareAndSetInt(8, 2, 3));
+        assertFalse(buffer.compareAndSetInt(8, 2, 4));
+        assertEquals(3, buffer.getAndAddInt(8, 10));
+        assertEquals(13, buffer.getAndSetInt(8, 5));
+        assertEquals(5, buffer.getInt(8));
+
+        buffer.putShortVolatile(12, (short) 7);
+        assertEquals((short) 7, buffer.getShortVolatile(12));
+        buffer.putByteVolatile(14, (byte) 9);
+        assertEquals((byte) 9, buffer.getByteVolatile(14));
+    }
+
+    @Test
+    public void testBytesCopies() {
+        final UnsafeBuffer heap = new UnsafeBuffer(new byte[16]);
+        final UnsafeBuffer direct = new UnsafeBuffer(ByteBuffer.allocateDirect(16));
+        final byte[] src = {1, 2, 3, 4, 5, 6, 7, 8};
+        heap.putBytes(4, src, 2, 6);
+        direct.putBytes(0, heap, 4, 6);
+        final byte[] dst = new byte[8];
+        direct.getBytes(0, dst, 1, 6);
+        assertArrayEquals(new byte[]{0, 3, 4, 5, 6, 7, 8, 0}, dst);
+
+        direct.setMemory(2, 3, (byte) -1);
+        direct.getBytes(0, dst, 0, 8);
+        assertArrayEquals(new byte[]{3, 4, -1, -1, -1, 8, 0, 0}, dst);
+    }
+
+    @Test
+    public void testBoundsChecks() {
+        assertTrue(UnsafeBuffer.SHOULD_BOUNDS_CHECK);
+        for (UnsafeBuffer buffer : buffers()) {
+            assertOutOfBounds(() -> buffer.getLong(25));
+            assertOutOfBounds(() -> buffer.putLong(-1, 0L));
+            assertOutOfBounds(() -> buffer.getInt(29));
+            assertOutOfBounds(() -> buffer.putInt(Integer.MAX_VALUE, 0));
+            assertOutOfBounds(() -> buffer.getShort(31));
+            assertOutOfBounds(() -> buffer.getChar(31, ByteOrder.BIG_ENDIAN));
+            assertOutOfBounds(() -> buffer.getByte(32));
+            assertOutOfBounds(() -> buffer.getDouble(25));
+            assertOutOfBounds(() -> buffer.putFloat(29, 0f));
+            assertOutOfBounds(() -> buffer.setMemory(30, 3, (byte) 0));
+            assertOutOfBounds(() -> buffer.getBytes(0, new byte[8], 4, 5));
+            assertOutOfBounds(() -> buffer.putBytes(28, new byte[8], 0, 5));
+            assertOutOfBounds(() -> buffer.putBytes(0, new UnsafeBuffer(new byte[4]), 0, 5));
+            assertOutOfBounds(() -> buffer.boundsCheck(0, -1));
+            // the last bytes are within bounds
+            buffer.putLong(24, 1L);
+            buffer.getByte(31);
+        }
+        assertOutOfBounds(() -> new UnsafeBuffer(new byte[8], 4, 5));
+        assertOutOfBounds(() -> new UnsafeBuffer(new byte[8], -1, 2));
+    }
+
+    @Test
+    public void testWrapHeapAndDirectBuffers() {
+        final ByteBuffer heap = ByteBuffer.allocate(16);
+        heap.position(4);
+        final ByteBuffer slice = heap.slice();
+        final UnsafeBuffer buffer = new UnsafeBuffer(slice);
+        assertEquals(12, buffer.capacity());
+        assertSame(heap.array(), buffer.byteArray());
+        assertSame(slice, buffer.byteBuffer());
+        buffer.putInt(0, 42, ByteOrder.BIG_ENDIAN);
+        // positions are ignored, the slice starts at offset 4 of the array
+        assertEquals(42, heap.getInt(4));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(16);
+        buffer.wrap(direct);
+        assertNull(buffer.byteArray());
+        assertEquals(UnsafeAccess.address(direct), buffer.addressOffset());
+        assertEquals(16, buffer.capacity());
+        buffer.putLong(8, 7L, ByteOrder.LITTLE_ENDIAN);
+        assertEquals(7L, direct.order(ByteOrder.LITTLE_ENDIAN).getLong(8));
+
+        // a raw address, as of the direct buffer
+        final UnsafeBuffer raw = new UnsafeBuffer(UnsafeAccess.address(direct), 16);
+        assertEquals(7L, raw.getLong(8, ByteOrder.LITTLE_ENDIAN));
+        assertNull(raw.byteBuffer());
+
+        try (AllocatedBuffer allocated = new DirectBufferAllocator().allocate(8)) {
+            final UnsafeBuffer wrapped = new UnsafeBuffer(allocated);
+            wrapped.putLong(0, 3L);
+            assertEquals(3L, allocated.getRawBuffer().order(ByteOrder.nativeOrder()).getLong(0));
+        }
+    }
+
+    @Test
+    public void testWrapReadOnlyBuffers() {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        direct.putLong(0, 11L);
+        final UnsafeBuffer buffer = new UnsafeBuffer(direct.asReadOnlyBuffer());
+        assertEquals(11L, buffer.getLong(0, ByteOrder.BIG_ENDIAN));
+
+        final ByteBuffer readOnlyHeap = ByteBuffer.allocate(8).asReadOnlyBuffer();
+        try {
+            buffer.wrap(readOnlyHeap);
+            fail("read-only heap buffer wrapped");
+        } catch (IllegalArgumentException expected) {
+            // its array is not accessible
+        }
+        // left as it was
+        assertEquals(11L, buffer.getLong(0, ByteOrder.BIG_ENDIAN));
+    }
+
+    @Test
+    public void testAddress() {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(8);
+        assertTrue(UnsafeAccess.BUFFER_ADDRESS_OFFSET >= 0);
+        assertTrue(UnsafeAccess.address(direct) != 0);
+        try {
+            UnsafeAccess.address(ByteBuffer.allocate(8));
+            fail("address of a heap buffer");
+        } catch (IllegalArgumentException expected) {
+            // heap buffers have no address
+        }
+        assertOutOfBounds(() -> new UnsafeBuffer(new byte[0]).getByte(0));
+    }
+}
@@ -0,0 +1,183 @@
+package com.young.commons.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BoundedCacheExpiryTest {
+    private final AtomicLong time = new AtomicLong(TimeUnit.SECONDS.toNanos(42));
+
+    private void advance(long duration, TimeUnit unit) {
+        time.addAndGet(unit.toNanos(duration));
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .expireAfterWrite(1, TimeUnit.SECONDS)
+            .ticker(time::get)
+            .build();
+        cache.put(1, 1);
+        advance(600, TimeUnit.MILLISECONDS);
+        // reads do not extend the lifetime
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        advance(399, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        advance(1, TimeUnit.MILLISECONDS);
+        assertNull(cache.get(1));
+        assertEquals(Integer.valueOf(2), cache.get(1, k -> 2));
+
+        // a write restarts the lifetime
+        advance(900, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(2), cache.put(1, 3));
+        advance(900, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(3), cache.get(1));
+        advance(100, TimeUnit.MILLISECONDS);
+        assertNull(cache.get(1));
+        assertNull("an expired value is not returned", cache.put(1, 4));
+    }
+
+    @Test
+    public void testExpireAfterAccess() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .expireAfterAccess(1, TimeUnit.SECONDS)
+            .ticker(time::get)
+            .build();
+        cache.put(1, 1);
+        for (int i = 0; i < 5; i++) {
+            advance(600, TimeUnit.MILLISECONDS);
+            assertEquals(Integer.valueOf(1), cache.get(1));
+            cache.cleanUp();
+        }
+        advance(1, TimeUnit.SECONDS);
+        assertNull(cache.get(1));
+        assertNull(cache.remove(1));
+    }
+
+    @Test
+    public void testExpiredEntriesAreSwept() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .maximumSize(1000)
+            .expireAfterWrite(5, TimeUnit.SECONDS)
+            .ticker(time::get)
+            .build();
+        for (int i = 0; i < 20; i++) {
+            cache.put(i, i);
+            advance(100, TimeUnit.MILLISECONDS);
+        }
+        cache.cleanUp();
+        assertEquals(20, cache.estimatedSize());
+
+        // the first half expired at least a tick of the wheel ago, the second half is not due yet
+        advance(3950, TimeUnit.MILLISECONDS);
+        cache.cleanUp();
+        assertEquals(10, cache.estimatedSize());
+        assertNull(cache.get(9));
+        assertEquals(Integer.valueOf(10), cache.get(10));
+
+        // far behind the wheel, more than a rotation
+        advance(1, TimeUnit.MINUTES);
+        cache.cleanUp();
+        assertEquals(0, cache.estimatedSize());
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testPerEntryExpiry() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .variableExpiry()
+            .ticker(time::get)
+            .build();
+        cache.put(1, 1, 100, TimeUnit.MILLISECONDS);
+        cache.put(2, 2, 1, TimeUnit.HOURS);
+        cache.put(3, 3);
+        // the sweep lags the expiry by up to a tick of the wheel, about 17ms
+        advance(120, TimeUnit.MILLISECONDS);
+        cache.cleanUp();
+        assertNull(cache.get(1));
+        assertEquals(2, cache.estimatedSize());
+
+        advance(1, TimeUnit.HOURS);
+        cache.cleanUp();
+        assertNull(cache.get(2));
+        assertEquals("an entry without a time to live never expires", Integer.valueOf(3), cache.get(3));
+        try {
+            cache.put(4, 4, -1, TimeUnit.SECONDS);
+            fail("negative duration");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+    }
+
+    @Test
+    public void testRefreshAfterWrite() {
+        final AtomicInteger loads = new AtomicInteger();
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .refreshAfterWrite(1, TimeUnit.SECONDS, k -> k * 10 + loads.incrementAndGet())
+            .executor(Runnable::run)
+            .ticker(time::get)
+            .build();
+        cache.put(1, 10);
+        advance(999, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(10), cache.get(1));
+        assertEquals(0, loads.get());
+
+        advance(1, TimeUnit.MILLISECONDS);
+        // the stale value is served while the reload runs
+        assertEquals(Integer.valueOf(10), cache.get(1));
+        assertEquals(1, loads.get());
+        assertEquals(Integer.valueOf(11), cache.get(1));
+        assertEquals(1, loads.get());
+
+        // the reload counts as a write
+        advance(999, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(11), cache.get(1));
+        assertEquals(1, loads.get());
+        advance(1, TimeUnit.MILLISECONDS);
+        cache.get(1);
+        assertEquals(Integer.valueOf(12), cache.get(1));
+    }
+
+    @Test
+    public void testRefreshFailureKeepsTheValue() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .refreshAfterWrite(1, TimeUnit.SECONDS, k -> {
+                throw new IllegalStateException("unavailable");
+            })
+            .executor(Runnable::run)
+            .ticker(time::get)
+            .build();
+        cache.put(1, 1);
+        advance(2, TimeUnit.SECONDS);
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        assertEquals(Integer.valueOf(1), cache.get(1));
+    }
+
+    @Test
+    public void testClearCancelsTimers() {
+        final BoundedCache<Integer, Integer> cache = BoundedCache.<Integer, Integer>builder()
+            .expireAfterWrite(1, TimeUnit.SECONDS)
+            .ticker(time::get)
+            .build();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+            advance(1, TimeUnit.MILLISECONDS);
+        }
+        cache.clear();
+        assertEquals(0, cache.estimatedSize());
+
+        cache.put(1, 1);
+        advance(500, TimeUnit.MILLISECONDS);
+        cache.cleanUp();
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        advance(520, TimeUnit.MILLISECONDS);
+        cache.cleanUp();
+        assertEquals(0, cache.estimatedSize());
+    }
+}
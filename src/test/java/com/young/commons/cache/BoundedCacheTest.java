@@ -0,0 +1,240 @@
+package com.young.commons.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheTest {
+
+    /**
+     * Checks that every mapping is in exactly one segment, that the segments are tagged and counted accordingly and
+     * that they respect their bounds.
+     */
+    private static void assertConsistent(BoundedCache<Integer, Integer> cache) {
+        cache.cleanUp();
+        final List<Integer> window = cache.segmentKeys(BoundedCache.Node.WINDOW);
+        final List<Integer> probation = cache.segmentKeys(BoundedCache.Node.PROBATION);
+        final List<Integer> protectedKeys = cache.segmentKeys(BoundedCache.Node.PROTECTED);
+
+        assertEquals(cache.windowSize(), window.size());
+        assertEquals(cache.protectedSize(), protectedKeys.size());
+        assertEquals(cache.weightedSize(), window.size() + probation.size() + protectedKeys.size());
+        assertEquals(cache.weightedSize(), cache.estimatedSize());
+        assertTrue(cache.weightedSize() <= cache.maximumSize());
+        assertTrue(cache.protectedSize() <= cache.protectedMaximum());
+
+        final Set<Integer> keys = new HashSet<>();
+        keys.addAll(window);
+        keys.addAll(probation);
+        keys.addAll(protectedKeys);
+        assertEquals("a key is in several segments", cache.weightedSize(), keys.size());
+        for (Integer key : keys) {
+            assertTrue(cache.get(key) != null);
+        }
+    }
+
+    @Test
+    public void testSizeBoundedEviction() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.estimatedSize());
+        assertEquals(1, cache.windowMaximum());
+        assertEquals(1, cache.windowSize());
+        assertConsistent(cache);
+    }
+
+    @Test
+    public void testZeroMaximumSizeKeepsNothing() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(0);
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+        assertEquals(0, cache.estimatedSize());
+        assertNull(cache.get(9));
+    }
+
+    @Test
+    public void testHotKeySurvivesScan() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        cache.put(-1, -1);
+        for (int i = 0; i < 20; i++) {
+            cache.get(-1);
+            // the read buffer is lossy, apply each read so the frequency is recorded
+            cache.cleanUp();
+        }
+
+        // the hot key is read less often than the scan turns the whole cache over, which an LRU would not survive
+        for (int i = 100; i < 10_000; i++) {
+            cache.put(i, i);
+            if (i % 200 == 0) {
+                assertEquals("hot key evicted before " + i, Integer.valueOf(-1), cache.get(-1));
+            }
+        }
+        cache.cleanUp();
+        assertEquals(Integer.valueOf(-1), cache.get(-1));
+        assertTrue(cache.segmentKeys(BoundedCache.Node.PROTECTED).contains(-1));
+        assertEquals(100, cache.estimatedSize());
+        assertConsistent(cache);
+    }
+
+    @Test
+    public void testFrequentEntriesAreNotReplacedByOneHitWonders() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        for (int round = 0; round < 4; round++) {
+            for (int i = 0; i < 100; i++) {
+                cache.get(i);
+            }
+            cache.cleanUp();
+        }
+
+        for (int i = 100; i < 200; i++) {
+            cache.put(i, i);
+        }
+        cache.cleanUp();
+
+        int survivors = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get(i) != null) {
+                survivors++;
+            }
+        }
+        assertTrue("survivors: " + survivors, survivors >= 95);
+        assertConsistent(cache);
+    }
+
+    @Test
+    public void testSegmentsStayConsistent() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(50);
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 5_000; i++) {
+            final int key = random.nextInt(200);
+            switch (random.nextInt(4)) {
+                case 0:
+                    cache.put(key, key);
+                    break;
+                case 1:
+                    cache.remove(key);
+                    break;
+                case 2:
+                    cache.get(key, k -> k);
+                    break;
+                default:
+                    cache.get(key);
+                    break;
+            }
+            if (i % 500 == 0) {
+                assertConsistent(cache);
+            }
+        }
+        assertConsistent(cache);
+        assertTrue(cache.protectedSize() > 0);
+    }
+
+    @Test
+    public void testPutReplacesAndRemoveUnlinks() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(10);
+        assertNull(cache.put(1, 1));
+        assertEquals(Integer.valueOf(1), cache.put(1, 2));
+        assertEquals(Integer.valueOf(2), cache.get(1));
+        assertConsistent(cache);
+        assertEquals(1, cache.weightedSize());
+
+        assertEquals(Integer.valueOf(2), cache.remove(1));
+        assertNull(cache.remove(1));
+        assertNull(cache.get(1));
+        assertConsistent(cache);
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void testClear() {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        for (int i = 0; i < 150; i++) {
+            cache.put(i, i);
+            cache.get(i);
+        }
+        cache.cleanUp();
+        // some writes are left buffered
+        for (int i = 150; i < 160; i++) {
+            cache.put(i, i);
+        }
+        cache.clear();
+        assertEquals(0, cache.estimatedSize());
+        assertEquals(0, cache.weightedSize());
+        assertEquals(0, cache.windowSize());
+        assertEquals(0, cache.protectedSize());
+        assertNull(cache.get(155));
+
+        for (int i = 0; i < 150; i++) {
+            cache.put(i, i);
+        }
+        assertConsistent(cache);
+        assertEquals(100, cache.estimatedSize());
+    }
+
+    @Test
+    public void testConcurrentReadsAndWrites() throws Exception {
+        final BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 50_000; i++) {
+                        // skewed keys, so some are hot
+                        final int key = random.nextInt(1 + random.nextInt(1000));
+                        final int op = random.nextInt(10);
+                        if (op < 6) {
+                            final Integer value = cache.get(key);
+                            if (value != null && value != key) {
+                                throw new AssertionError("key " + key + " mapped to " + value);
+                            }
+                        } else if (op < 8) {
+                            cache.put(key, key);
+                        } else if (op < 9) {
+                            assertEquals(Integer.valueOf(key), cache.get(key, k -> k));
+                        } else {
+                            cache.remove(key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertConsistent(cache);
+    }
+}
@@ -0,0 +1,187 @@
+package com.young.commons.collection;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SoftHashMapTest {
+
+    @Test
+    public void testHardCoreIsBounded() {
+        final SoftHashMap<Integer, String> map = new SoftHashMap<>(8, 1);
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+        assertEquals(100, map.size());
+        assertEquals(8, map.hardCoreSize());
+        assertTrue(map.isInHardCore(99));
+        assertFalse(map.isInHardCore(0));
+
+        // a read makes the value the most recently used
+        assertEquals("v0", map.get(0));
+        for (int i = 100; i < 107; i++) {
+            map.put(i, "v" + i);
+        }
+        assertEquals(8, map.hardCoreSize());
+        assertTrue(map.isInHardCore(0));
+        assertFalse(map.isInHardCore(99));
+
+        assertEquals("v0", map.remove(0));
+        assertFalse(map.isInHardCore(0));
+        assertEquals(7, map.hardCoreSize());
+    }
+
+    @Test
+    public void testHardCoreIsSharedBetweenSegments() {
+        final SoftHashMap<Integer, String> map = new SoftHashMap<>(64, 4);
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i, "v" + i);
+        }
+        assertEquals(64, map.hardCoreSize());
+        assertEquals(0, new SoftHashMap<Integer, String>().hardCoreSize());
+    }
+
+    @Test
+    public void testReclaimedValuesAreExpunged() {
+        final SoftHashMap<Integer, String> map = new SoftHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            map.put(i, "v" + i);
+        }
+        assertTrue(map.reclaim(3));
+        assertTrue(map.reclaim(4));
+        assertFalse(map.reclaim(42));
+
+        assertEquals(8, map.size());
+        assertNull(map.get(3));
+        assertFalse(map.containsKey(4));
+        assertFalse(map.keySet().contains(3));
+        assertFalse(map.containsValue("v4"));
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            assertTrue(entry.getKey() != 3 && entry.getKey() != 4);
+        }
+
+        // a reclaimed value counts as absent
+        assertNull(map.putIfAbsent(3, "w3"));
+        assertEquals("w3", map.get(3));
+        assertEquals("w4", map.computeIfAbsent(4, k -> "w" + k));
+        assertEquals(10, map.size());
+    }
+
+    @Test
+    public void testRemappedKeyIsNotExpungedByItsStaleReference() {
+        final SoftHashMap<Integer, String> map = new SoftHashMap<>();
+        map.put(1, "a");
+        map.reclaim(1);
+        // the put expunges the stale reference before storing the new one
+        assertNull(map.put(1, "b"));
+        map.put(2, "c");
+        assertEquals("b", map.get(1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testIteratorRemoveWritesThrough() {
+        final SoftHashMap<Integer, String> map = new SoftHashMap<>(4);
+        for (int i = 0; i < 20; i++) {
+            map.put(i, "v" + i);
+        }
+        final Iterator<Integer> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next() % 2 == 0) {
+                keys.remove();
+            }
+        }
+        assertEquals(10, map.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 2 == 0 ? null : "v" + i, map.get(i));
+        }
+
+        map.values().clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.hardCoreSize());
+    }
+
+    @Test
+    public void testIterationUnderConcurrentUpdates() throws Exception {
+        final SoftHashMap<Integer, Integer> map = new SoftHashMap<>(32, 4);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        final int key = random.nextInt(500);
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                map.put(key, key);
+                                break;
+                            case 1:
+                                map.remove(key);
+                                break;
+                            case 2:
+                                map.reclaim(key);
+                                break;
+                            default:
+                                final Integer value = map.get(key);
+                                if (value != null && value != key) {
+                                    throw new AssertionError(key + " mapped to " + value);
+                                }
+                                break;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        try {
+            for (int i = 0; i < 200; i++) {
+                // weakly consistent: no ConcurrentModificationException and only live, consistent entries
+                final Iterator<Map.Entry<Integer, Integer>> entries = map.entrySet().iterator();
+                while (entries.hasNext()) {
+                    final Map.Entry<Integer, Integer> entry = entries.next();
+                    assertEquals(entry.getKey(), entry.getValue());
+                    if (entry.getKey() % 7 == 0) {
+                        entries.remove();
+                    }
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        final Map<Integer, Integer> copy = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue());
+        }
+        assertEquals(copy.size(), map.size());
+        assertTrue(map.hardCoreSize() <= 32);
+    }
+}
@@ -0,0 +1,146 @@
+package com.young.commons.io;
+
+import com.young.commons.allocation.SimpleBufferAllocator;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedInputStreamTest {
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readFully(InputStream in, int bufferSize) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[bufferSize];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] bytes = randomBytes(1 << 20);
+        try (PipelinedInputStream in = new PipelinedInputStream(new ByteArrayInputStream(bytes), 1000, 4)) {
+            assertArrayEquals(bytes, readFully(in, 777));
+            assertEquals(-1, in.read());
+            assertEquals(bytes.length, in.getBytesRead());
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws IOException {
+        final byte[] bytes = randomBytes(10000);
+        try (PipelinedInputStream in = new PipelinedInputStream(new ByteArrayInputStream(bytes), 128, 2)) {
+            for (byte b : bytes) {
+                assertEquals(b & 0xff, in.read());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testArrayBackedChunks() throws IOException {
+        final byte[] bytes = randomBytes(100000);
+        try (PipelinedInputStream in = new PipelinedInputStream(new ByteArrayInputStream(bytes), 4096, 3,
+            new SimpleBufferAllocator(), null, new AtomicLong())) {
+            assertArrayEquals(bytes, readFully(in, 5000));
+        }
+    }
+
+    @Test
+    public void testFailureAfterBytesReadBeforeIt() throws IOException {
+        final byte[] bytes = randomBytes(10000);
+        final InputStream source = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                if (position == bytes.length) {
+                    throw new IOException("source failure");
+                }
+                return bytes[position++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position == bytes.length) {
+                    throw new IOException("source failure");
+                }
+                final int n = Math.min(Math.min(len, 1000), bytes.length - position);
+                System.arraycopy(bytes, position, b, off, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                // claims more bytes, so the producer keeps filling its chunk until the failure
+                return 1;
+            }
+        };
+        final ByteArrayOutputStream read = new ByteArrayOutputStream();
+        final PipelinedInputStream in = new PipelinedInputStream(source, 1024, 4);
+        try {
+            int b;
+            while ((b = in.read()) >= 0) {
+                read.write(b);
+            }
+            fail("the source failure was not rethrown");
+        } catch (IOException e) {
+            assertEquals("source failure", e.getCause().getMessage());
+        }
+        assertArrayEquals(bytes, read.toByteArray());
+        try {
+            in.close();
+            fail("the source failure was not rethrown by close");
+        } catch (IOException e) {
+            assertEquals("source failure", e.getCause().getMessage());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCloseWhileSourceBlocks() throws Exception {
+        final PipedOutputStream writer = new PipedOutputStream();
+        final PipedInputStream source = new PipedInputStream(writer);
+        writer.write(1);
+        final PipelinedInputStream in = new PipelinedInputStream(source, 1024, 2);
+        assertEquals(1, in.read());
+        final CompletableFuture<Integer> blockedRead = CompletableFuture.supplyAsync(() -> {
+            try {
+                return in.read();
+            } catch (IOException e) {
+                return -2;
+            }
+        });
+        Thread.sleep(100);
+
+        in.close();
+        assertEquals(-2, (int) blockedRead.get(5, TimeUnit.SECONDS));
+        try {
+            in.read();
+            fail("read after close");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.young.commons.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PipelinedOutputStreamTest {
+
+    private static byte[] randomBytes(int length) {
+        final byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeInPieces(OutputStream out, byte[] bytes, int pieceSize) throws IOException {
+        for (int off = 0; off < bytes.length; off += pieceSize) {
+            out.write(bytes, off, Math.min(pieceSize, bytes.length - off));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] bytes = randomBytes(1 << 20);
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        final PipelinedOutputStream out = new PipelinedOutputStream(4096, 1000, sink, new AtomicLong());
+        writeInPieces(out, bytes, 777);
+        out.close();
+        assertArrayEquals(bytes, sink.toByteArray());
+        assertEquals(bytes.length, out.getBytesWritten());
+    }
+
+    @Test
+    public void testSingleByteWritesAndFlush() throws IOException {
+        final byte[] bytes = randomBytes(10000);
+        final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (PipelinedOutputStream out = new PipelinedOutputStream(256, sink)) {
+            for (int i = 0; i < 100; i++) {
+                out.write(bytes[i]);
+            }
+            out.flush();
+            assertEquals(100, sink.size());
+            for (int i = 100; i < bytes.length; i++) {
+                out.write(bytes[i]);
+            }
+        }
+        assertArrayEquals(bytes, sink.toByteArray());
+    }
+
+    @Test
+    public void testStreamsSharingAnExecutor() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final byte[][] expected = new byte[4][];
+            final ByteArrayOutputStream[] sinks = new ByteArrayOutputStream[expected.length];
+            final PipelinedOutputStream[] streams = new PipelinedOutputStream[expected.length];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = randomBytes(100000 + i);
+                sinks[i] = new ByteArrayOutputStream();
+                streams[i] = new PipelinedOutputStream(4096, 512, sinks[i], executor, 2, new AtomicLong());
+            }
+            // interleaved, so the drain tasks of the streams take turns on the executor
+            for (int off = 0; off < expected[0].length; off += 1000) {
+                for (int i = 0; i < expected.length; i++) {
+                    streams[i].write(expected[i], off, Math.min(1000, expected[i].length - off));
+                }
+            }
+            for (int i = 0; i < expected.length; i++) {
+                streams[i].write(expected[i], expected[0].length, expected[i].length - expected[0].length);
+                streams[i].close();
+                assertArrayEquals(expected[i], sinks[i].toByteArray());
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testGatheringWritesToChannel() throws IOException {
+        final byte[] bytes = randomBytes(300000);
+        final Path file = Files.createTempFile("pipelined", ".bin");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                 PipelinedOutputStream out = new PipelinedOutputStream(8192, 1024, channel)) {
+                writeInPieces(out, bytes, 5000);
+            }
+            assertArrayEquals(bytes, Files.readAllBytes(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFailureIsRethrown() throws IOException {
+        final OutputStream failing = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                written += len;
+                if (written > 5000) {
+                    throw new IOException("sink failure");
+                }
+            }
+        };
+        final PipelinedOutputStream out = new PipelinedOutputStream(2048, 512, failing, new AtomicLong());
+        IOException thrown = null;
+        try {
+            writeInPieces(out, randomBytes(1 << 20), 100);
+            out.flush();
+        } catch (IOException e) {
+            thrown = e;
+        }
+        try {
+            out.close();
+            fail("the sink failure was not rethrown by close");
+        } catch (IOException e) {
+            if (thrown == null) {
+                thrown = e;
+            }
+        }
+        assertEquals("sink failure", thrown.getCause().getMessage());
+    }
+}
@@ -0,0 +1,79 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testAimd() {
+        final AimdLimit limit = new AimdLimit(10, 1, 12, 0.5, 1, TimeUnit.SECONDS);
+        assertEquals(5, limit.update(10, MILLI, MILLI, 10, true));
+        assertEquals(6, limit.update(10, MILLI, MILLI, 3, false));
+        // the limit is not used, so it does not grow
+        assertEquals(6, limit.update(10, MILLI, MILLI, 2, false));
+        // too slow counts as dropped
+        assertEquals(3, limit.update(10, MILLI, 2000 * MILLI, 6, false));
+        for (int i = 0; i < 20; i++) {
+            limit.update(10, MILLI, MILLI, 12, false);
+        }
+        assertEquals(12, limit.update(10, MILLI, MILLI, 12, false));
+    }
+
+    @Test
+    public void testVegas() {
+        final VegasLimit limit = new VegasLimit(20, 1000, 1.0, 30);
+        // no queueing: grows by 6 times log10(limit)
+        assertEquals(27, limit.update(10, MILLI, MILLI, 20, false));
+        // the RTT is ten times the no load one, so most calls queue
+        assertEquals(26, limit.update(10, MILLI, 10 * MILLI, 27, false));
+        assertEquals(24, limit.update(10, 0, 0, 26, true));
+    }
+
+    @Test
+    public void testAdmission() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+            new AimdLimit(2, 1, 10, 0.5, 1, TimeUnit.SECONDS), 1, TimeUnit.NANOSECONDS, 1);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        // a window of one sample: the limit was used, so it grows
+        limiter.onSuccess(MILLI);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+
+        limiter.onDropped();
+        assertEquals(1, limiter.getLimit());
+        limiter.onIgnore();
+        limiter.onIgnore();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(1, limiter.getLimit());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testWindowNeedsEnoughSamples() {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(
+            new AimdLimit(4, 1, 10, 0.5, 1, TimeUnit.SECONDS), 1, TimeUnit.NANOSECONDS, 3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        limiter.onDropped();
+        limiter.onDropped();
+        assertEquals(4, limiter.getLimit());
+        limiter.onDropped();
+        assertEquals(2, limiter.getLimit());
+    }
+}
@@ -0,0 +1,121 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.thread.MonitoringThreadPoolExecutor;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitedExecutorTest {
+
+    /**
+     * Fixed limit counting the samples it is updated with.
+     */
+    private static final class RecordingLimit implements LimitAlgorithm {
+        private final int limit;
+        private final AtomicInteger samples = new AtomicInteger();
+
+        RecordingLimit(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int initialLimit() {
+            return limit;
+        }
+
+        @Override
+        public int update(int samples, long minRttNanos, long avgRttNanos, int maxInFlight, boolean dropped) {
+            this.samples.addAndGet(samples);
+            return limit;
+        }
+    }
+
+    private static ConcurrencyLimitedExecutor executor(RecordingLimit algorithm) {
+        // every completed call closes a window, so each sample reaches the algorithm
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(algorithm, 1, TimeUnit.NANOSECONDS, 1);
+        return new ConcurrencyLimitedExecutor(
+            new MonitoringThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>()), limiter);
+    }
+
+    @Test
+    public void testSubmittedFailuresAreNotSampled() throws Exception {
+        final RecordingLimit algorithm = new RecordingLimit(10);
+        final ConcurrencyLimitedExecutor executor = executor(algorithm);
+        final Future<?> failed = executor.submit((Runnable) () -> {
+            throw new IllegalStateException("task failure");
+        });
+        final Future<String> failedCall = executor.submit(() -> {
+            throw new Exception("call failure");
+        });
+        final Future<String> succeeded = executor.submit(() -> "ok");
+        try {
+            failed.get();
+            fail("the failure was swallowed");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        try {
+            failedCall.get();
+            fail("the failure was swallowed");
+        } catch (ExecutionException expected) {
+            assertEquals("call failure", expected.getCause().getMessage());
+        }
+        assertEquals("ok", succeeded.get());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, algorithm.samples.get());
+        assertEquals(0, executor.getLimiter().getInFlight());
+    }
+
+    @Test
+    public void testExecutedFailuresAreNotSampled() throws InterruptedException {
+        final RecordingLimit algorithm = new RecordingLimit(10);
+        final ConcurrencyLimitedExecutor executor = executor(algorithm);
+        executor.execute(() -> {
+            throw new IllegalStateException("expected failure");
+        });
+        executor.execute(() -> {
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, algorithm.samples.get());
+        assertEquals(0, executor.getLimiter().getInFlight());
+    }
+
+    @Test
+    public void testRejectedOverTheLimit() throws Exception {
+        final ConcurrencyLimitedExecutor executor = executor(new RecordingLimit(2));
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<?> first = executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        final Future<?> second = executor.submit(() -> {
+            release.await();
+            return null;
+        });
+        try {
+            executor.submit(() -> "over the limit");
+            fail("admitted over the limit");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(1, executor.rejectedCount());
+        }
+        release.countDown();
+        first.get();
+        second.get();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getLimiter().getInFlight());
+    }
+}
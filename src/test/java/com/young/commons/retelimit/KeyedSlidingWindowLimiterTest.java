@@ -0,0 +1,53 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedSlidingWindowLimiterTest {
+
+    @Test
+    public void testLimitPerKey() {
+        final KeyedSlidingWindowLimiter<String> limiter = new KeyedSlidingWindowLimiter<>(3, 1, TimeUnit.HOURS);
+        assertTrue(limiter.tryAcquire("a", 2));
+        assertTrue(limiter.tryAcquire("a"));
+        assertFalse(limiter.tryAcquire("a"));
+        assertEquals(3, limiter.estimatedCount("a"));
+
+        assertFalse(limiter.tryAcquire("b", 4));
+        assertTrue(limiter.tryAcquire("b", 3));
+        assertEquals(0, limiter.estimatedCount("c"));
+        assertEquals(2, limiter.estimatedKeys());
+    }
+
+    @Test
+    public void testCountsLeaveTheWindow() throws InterruptedException {
+        final KeyedSlidingWindowLimiter<String> limiter =
+            new KeyedSlidingWindowLimiter<>(10, 100, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.tryAcquire("a", 10));
+        assertFalse(limiter.tryAcquire("a"));
+        // two windows later neither the current nor the previous window holds a count
+        Thread.sleep(250);
+        assertEquals(0, limiter.estimatedCount("a"));
+        assertTrue(limiter.tryAcquire("a", 10));
+    }
+
+    @Test
+    public void testPreviousWindowIsWeighted() throws InterruptedException {
+        final long windowMillis = 200;
+        final KeyedSlidingWindowLimiter<String> limiter =
+            new KeyedSlidingWindowLimiter<>(100, windowMillis, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.tryAcquire("a", 100));
+        // wait for the next window, the count goes down as it moves on
+        Thread.sleep(windowMillis + 10);
+        final int early = limiter.estimatedCount("a");
+        Thread.sleep(windowMillis / 2);
+        final int late = limiter.estimatedCount("a");
+        assertTrue("early " + early, early <= 100);
+        assertTrue("early " + early + " late " + late, late < early);
+    }
+}
@@ -0,0 +1,54 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedSlidingWindowLogLimiterTest {
+
+    @Test
+    public void testLimitPerKey() {
+        final KeyedSlidingWindowLogLimiter<String> limiter = new KeyedSlidingWindowLogLimiter<>(3, 1, TimeUnit.MINUTES);
+        assertTrue(limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a", 2));
+        assertFalse(limiter.tryAcquire("a"));
+        assertEquals(3, limiter.count("a"));
+
+        assertTrue(limiter.tryAcquire("b", 3));
+        assertFalse(limiter.tryAcquire("b"));
+        assertEquals(0, limiter.count("c"));
+        assertFalse(limiter.tryAcquire("c", 4));
+        assertEquals(0, limiter.count("c"));
+    }
+
+    @Test
+    public void testLogGrowsUpToTheLimit() {
+        final KeyedSlidingWindowLogLimiter<String> limiter = new KeyedSlidingWindowLogLimiter<>(100, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.tryAcquire("a", 7));
+        }
+        assertTrue(limiter.tryAcquire("a", 30));
+        assertFalse(limiter.tryAcquire("a"));
+        assertEquals(100, limiter.count("a"));
+    }
+
+    @Test
+    public void testPermitsLeaveTheWindow() throws InterruptedException {
+        final KeyedSlidingWindowLogLimiter<String> limiter =
+            new KeyedSlidingWindowLogLimiter<>(4, 200, TimeUnit.MILLISECONDS);
+        assertTrue(limiter.tryAcquire("a", 2));
+        Thread.sleep(120);
+        assertTrue(limiter.tryAcquire("a", 2));
+        assertFalse(limiter.tryAcquire("a"));
+
+        // only the first two permits left the window, unlike with fixed windows the last two still count
+        Thread.sleep(120);
+        assertEquals(2, limiter.count("a"));
+        assertTrue(limiter.tryAcquire("a", 2));
+        assertFalse(limiter.tryAcquire("a"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LeakyBucketLimiterTest {
+
+    @Test
+    public void testFullBucketRefuses() throws Exception {
+        // one drop a second leaks out, so the bucket stays full during the test
+        final LeakyBucketLimiter limiter = new LeakyBucketLimiter(1);
+        final CompletableFuture<Boolean> first = limiter.acquireAsync();
+        assertFalse(limiter.tryAcquire());
+        final CompletableFuture<Boolean> refused = limiter.acquireAsync();
+        assertTrue(refused.isDone());
+        assertFalse(refused.get());
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testAsyncAcquisitionsAreSpacedOut() throws Exception {
+        final LeakyBucketLimiter limiter = new LeakyBucketLimiter(20);
+        final long start = System.nanoTime();
+        CompletableFuture<Boolean> last = null;
+        for (int i = 0; i < 4; i++) {
+            last = limiter.acquireAsync();
+        }
+        // the fourth drop leaks out 4 * 50ms later
+        assertFalse(last.isDone());
+        assertTrue(last.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 190);
+    }
+
+    @Test
+    public void testArgumentsAreValidated() {
+        try {
+            new LeakyBucketLimiter(0);
+            fail("no permits");
+        } catch (IllegalArgumentException expected) {
+            // must be positive
+        }
+        try {
+            new LeakyBucketLimiter(1).acquireAsync(0);
+            fail("no permits");
+        } catch (IllegalArgumentException expected) {
+            // must be positive
+        }
+    }
+}
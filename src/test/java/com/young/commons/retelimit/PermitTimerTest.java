@@ -0,0 +1,118 @@
+package com.young.commons.retelimit;
+
+import com.young.commons.thread.NamedThreadFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PermitTimerTest {
+
+    @Test
+    public void testNoWaitCompletesAtOnce() throws Exception {
+        assertTrue(PermitTimer.grantAfter(0).isDone());
+        assertTrue(PermitTimer.grantAfter(-1).get());
+    }
+
+    @Test(timeout = 10000)
+    public void testFuturesCompleteAfterTheirWait() throws Exception {
+        final PermitTimer timer = new PermitTimer(64, new NamedThreadFactory("permit-timer-test", true));
+        try {
+            final long start = System.nanoTime();
+            final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            final long[] completedAt = new long[5];
+            for (int i = 0; i < 5; i++) {
+                final int index = i;
+                // in reverse order of their waits
+                futures.add(timer.schedule(TimeUnit.MILLISECONDS.toNanos(100 - 20 * i)).thenApply(granted -> {
+                    completedAt[index] = System.nanoTime();
+                    return granted;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+            for (int i = 0; i < 5; i++) {
+                assertTrue(futures.get(i).get());
+                final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(completedAt[i] - start);
+                assertTrue("completed after " + waitedMillis + "ms", waitedMillis >= 100 - 20 * i);
+                assertTrue("completed after " + waitedMillis + "ms", waitedMillis < 2000);
+            }
+            assertEquals(0, timer.waiterCount());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testCancellationDropsTheTimer() throws Exception {
+        final PermitTimer timer = new PermitTimer(64, new NamedThreadFactory("permit-timer-test", true));
+        try {
+            final CompletableFuture<Boolean> cancelled = timer.schedule(TimeUnit.MINUTES.toNanos(10));
+            final CompletableFuture<Boolean> kept = timer.schedule(TimeUnit.MILLISECONDS.toNanos(50));
+            assertEquals(2, timer.waiterCount());
+            assertTrue(cancelled.cancel(false));
+            assertEquals(1, timer.waiterCount());
+
+            assertTrue(kept.get());
+            assertTrue(cancelled.isCancelled());
+            assertEquals(0, timer.waiterCount());
+        } finally {
+            timer.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testFullCommandRingRejects() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        // the timer thread holds off draining the commands until the gate opens
+        final PermitTimer timer = new PermitTimer(4, r -> {
+            final Thread thread = new Thread(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                r.run();
+            }, "permit-timer-test");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(timer.schedule(TimeUnit.MILLISECONDS.toNanos(10)));
+            }
+            final CompletableFuture<Boolean> rejected = timer.schedule(TimeUnit.MILLISECONDS.toNanos(10));
+            assertTrue(rejected.isCompletedExceptionally());
+            try {
+                rejected.get();
+                fail("scheduled past the capacity");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            assertEquals(4, timer.waiterCount());
+            for (CompletableFuture<Boolean> future : futures) {
+                assertFalse(future.isDone());
+            }
+
+            gate.countDown();
+            for (CompletableFuture<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+            // there is room again
+            assertTrue(timer.schedule(TimeUnit.MILLISECONDS.toNanos(10)).get());
+        } finally {
+            gate.countDown();
+            timer.close();
+        }
+    }
+}
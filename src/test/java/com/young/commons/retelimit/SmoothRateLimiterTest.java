@@ -0,0 +1,72 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SmoothRateLimiterTest {
+    private static final long STABLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static void assertAbout(long expectedNanos, long actualNanos) {
+        // the reservations take a little time between them
+        assertTrue("expected about " + expectedNanos + " but was " + actualNanos,
+            actualNanos <= expectedNanos && actualNanos > expectedNanos - TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testBurstyPaysForward() {
+        final SmoothBurstyLimiter limiter = new SmoothBurstyLimiter(10, 0);
+        assertEquals(0, limiter.reserve());
+        // the first request is served at once, the next ones wait for it and each other
+        assertAbout(STABLE_NANOS, limiter.reserve(3));
+        assertAbout(4 * STABLE_NANOS, limiter.reserve());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testBurstyStoresPermitsWhileIdle() throws InterruptedException {
+        final SmoothBurstyLimiter limiter = new SmoothBurstyLimiter(100, 0.5);
+        assertEquals(0.0, limiter.storedPermits(), 0.5);
+        Thread.sleep(200);
+        final double stored = limiter.storedPermits();
+        assertTrue("stored " + stored, stored >= 15 && stored <= 50);
+        // served without any wait
+        assertTrue(limiter.tryAcquire(10));
+        assertEquals(0, limiter.reserve());
+    }
+
+    @Test
+    public void testWarmingUpStartsCold() {
+        final SmoothWarmingUpLimiter limiter = new SmoothWarmingUpLimiter(10, 1, TimeUnit.SECONDS);
+        // 10 stored permits, served from 3 times the stable interval down to the stable interval at 5 stored
+        assertEquals(10.0, limiter.storedPermits(), 0.01);
+        assertEquals(0, limiter.reserve());
+        assertAbout(TimeUnit.MILLISECONDS.toNanos(280), limiter.reserve());
+        assertAbout(TimeUnit.MILLISECONDS.toNanos(280 + 240), limiter.reserve());
+    }
+
+    @Test
+    public void testWarmWhenStoredPermitsAreLow() {
+        final SmoothWarmingUpLimiter limiter = new SmoothWarmingUpLimiter(10, 1, TimeUnit.SECONDS);
+        // take the 5 permits above the threshold: 280 + 240 + 200 + 160 + 120 ms
+        assertEquals(0, limiter.reserve(5));
+        assertAbout(TimeUnit.MILLISECONDS.toNanos(1000), limiter.reserve());
+        // the stored permits below the threshold are served at the stable rate
+        assertAbout(TimeUnit.MILLISECONDS.toNanos(1100), limiter.reserve());
+    }
+
+    @Test
+    public void testSetRate() {
+        final SmoothBurstyLimiter limiter = new SmoothBurstyLimiter(10, 0);
+        limiter.reserve();
+        limiter.setRate(1);
+        assertEquals(1.0, limiter.getRate(), 0.0);
+        // the request granted at the old rate is not affected, the next one waits at the new rate
+        assertAbout(STABLE_NANOS, limiter.reserve());
+        assertAbout(STABLE_NANOS + TimeUnit.SECONDS.toNanos(1), limiter.reserve());
+    }
+}
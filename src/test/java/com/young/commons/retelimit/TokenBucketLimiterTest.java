@@ -0,0 +1,68 @@
+package com.young.commons.retelimit;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketLimiterTest {
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testBurst() {
+        // one permit a second, so none comes back during the test
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(1, 5);
+        assertEquals(5, limiter.availablePermits());
+        assertTrue(limiter.tryAcquire(3));
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(0, limiter.availablePermits());
+    }
+
+    @Test
+    public void testMorePermitsThanTheBurst() {
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(1, 5);
+        assertFalse(limiter.tryAcquire(6));
+        assertEquals(5, limiter.availablePermits());
+    }
+
+    @Test
+    public void testReservationsQueueUp() {
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 1);
+        assertEquals(INTERVAL_NANOS, limiter.getIntervalNanos());
+        assertEquals(0, limiter.reserve());
+        final long first = limiter.reserve();
+        final long second = limiter.reserve();
+        assertTrue("waits " + first, first > INTERVAL_NANOS / 2 && first <= INTERVAL_NANOS);
+        assertTrue("waits " + second, second - first > INTERVAL_NANOS / 2 && second <= 2 * INTERVAL_NANOS);
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testTryAcquireWithTimeout() {
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 1);
+        assertTrue(limiter.tryAcquire());
+        // the next permit comes in about 100ms
+        assertFalse(limiter.tryAcquire(1, 10, TimeUnit.MILLISECONDS));
+        final long start = System.nanoTime();
+        assertTrue(limiter.tryAcquire(1, 1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= INTERVAL_NANOS / 2);
+    }
+
+    @Test
+    public void testAcquireAsync() throws Exception {
+        final TokenBucketLimiter limiter = new TokenBucketLimiter(10, 1);
+        final CompletableFuture<Boolean> now = limiter.acquireAsync();
+        assertTrue(now.isDone());
+        final long start = System.nanoTime();
+        final CompletableFuture<Boolean> later = limiter.acquireAsync();
+        assertFalse(limiter.tryAcquireAsync(1, 10, TimeUnit.MILLISECONDS).get());
+        assertTrue(later.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= INTERVAL_NANOS / 2);
+    }
+}
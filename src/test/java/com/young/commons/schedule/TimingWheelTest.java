@@ -0,0 +1,292 @@
+package com.young.commons.schedule;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+    private TimingWheel<String> wheel;
+
+    @After
+    public void tearDown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    private CountDownLatch start(int tickMillis, int ticksPerWheel, Queue<String> expired, int expectedCount) {
+        final CountDownLatch latch = new CountDownLatch(expectedCount);
+        wheel = new TimingWheel<>(tickMillis, ticksPerWheel, TimeUnit.MILLISECONDS);
+        wheel.addExpirationListener(e -> {
+            expired.add(e);
+            latch.countDown();
+        });
+        wheel.start();
+        return latch;
+    }
+
+    @Test
+    public void testExpiry() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 2);
+        wheel.add("a", 20, TimeUnit.MILLISECONDS);
+        wheel.add("b", 40, TimeUnit.MILLISECONDS);
+        wheel.add("removed", 30, TimeUnit.MILLISECONDS);
+        assertTrue(wheel.remove("removed"));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals("[a, b]", expired.toString());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testOverflowLevels() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 4, expired, 1);
+        final long start = System.nanoTime();
+        // 40ms per first level span, so this goes through two overflow levels
+        wheel.add("far", 300, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("expired early after " + elapsedMillis + "ms", elapsedMillis >= 290);
+    }
+
+    @Test
+    public void testSingleSlotWheelOverflows() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 1, expired, 1);
+        wheel.add("e", 50, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testHugeTimeoutDoesNotStopTheWorker() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 1);
+        wheel.add("near", 10, TimeUnit.MILLISECONDS);
+        wheel.add("huge", Long.MAX_VALUE / 4, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("[near]", expired.toString());
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testMaxTimeoutNeverExpires() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 1);
+        wheel.add("max", Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        wheel.add("days", Long.MAX_VALUE, TimeUnit.DAYS);
+        wheel.add("near", 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals("[near]", expired.toString());
+        assertTrue(wheel.elements().contains("max"));
+        assertTrue(wheel.elements().contains("days"));
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopTheWorker() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 2);
+        wheel.addExpirationListener(e -> {
+            if (e.equals("bad")) {
+                throw new AssertionError("listener failure");
+            }
+        });
+        wheel.add("bad", 10, TimeUnit.MILLISECONDS);
+        Thread.sleep(50);
+        wheel.add("good", 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("[bad, good]", expired.toString());
+        assertFalse(wheel.elements().contains("good"));
+    }
+
+    @Test
+    public void testInterruptingListenerDoesNotSpinTheWorker() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final Queue<Boolean> interruptedOnEntry = new ConcurrentLinkedQueue<>();
+        final AtomicReference<Thread> worker = new AtomicReference<>();
+        final CountDownLatch interrupted = new CountDownLatch(2);
+        start(50, 8, expired, 2);
+        wheel.addExpirationListener(e -> {
+            worker.set(Thread.currentThread());
+            interruptedOnEntry.add(Thread.currentThread().isInterrupted());
+            Thread.currentThread().interrupt();
+            interrupted.countDown();
+        });
+        wheel.add("first", 10, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final boolean cpuTime = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        final long before = cpuTime ? threads.getThreadCpuTime(worker.get().getId()) : 0;
+        Thread.sleep(300);
+        if (cpuTime) {
+            final long spentMillis = TimeUnit.NANOSECONDS.toMillis(threads.getThreadCpuTime(worker.get().getId()) - before);
+            assertTrue("worker busy for " + spentMillis + "ms while idle", spentMillis < 100);
+        }
+
+        wheel.add("second", 10, TimeUnit.MILLISECONDS);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals("[first, second]", expired.toString());
+        // the flag set by the first listener call was cleared by the worker
+        assertEquals("[false, false]", interruptedOnEntry.toString());
+    }
+
+    @Test
+    public void testRemoveBeforeExpiry() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 1);
+        wheel.add("removed", 100, TimeUnit.MILLISECONDS);
+        // let the worker place it in its slot first
+        Thread.sleep(15);
+        assertTrue(wheel.elements().contains("removed"));
+        assertTrue(wheel.remove("removed"));
+        assertFalse(wheel.remove("removed"));
+        assertEquals(0, wheel.size());
+        // expires after the removed element would have
+        wheel.add("sentinel", 150, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(30);
+        assertEquals("[sentinel]", expired.toString());
+        assertFalse(wheel.remove("sentinel"));
+    }
+
+    @Test
+    public void testReAddExpiredElement() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch first = start(10, 8, expired, 1);
+        final CountDownLatch second = new CountDownLatch(2);
+        wheel.addExpirationListener(e -> second.countDown());
+        wheel.add("e", 20, TimeUnit.MILLISECONDS);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertFalse("an expired element is no longer in the wheel", wheel.remove("e"));
+        assertEquals(0, wheel.size());
+
+        // the element is scheduled anew, with its own timeout
+        final long start = System.nanoTime();
+        wheel.add("e", 100, TimeUnit.MILLISECONDS);
+        assertTrue(wheel.elements().contains("e"));
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("expired early after " + elapsedMillis + "ms", elapsedMillis >= 90);
+        assertEquals("[e, e]", expired.toString());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testReAddReplacesTheTimeout() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 2);
+        wheel.add("late", 20, TimeUnit.MILLISECONDS);
+        wheel.add("late", 150, TimeUnit.MILLISECONDS);
+        wheel.add("early", 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("replaced entries do not expire", "[early, late]", expired.toString());
+    }
+
+    @Test
+    public void testExpirationsDispatchedInBatches() throws InterruptedException {
+        final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "expirations"));
+        final AtomicInteger tasks = new AtomicInteger();
+        final Queue<String> threads = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = new CountDownLatch(5);
+        try {
+            wheel = new TimingWheel<>(10, 8, TimeUnit.MILLISECONDS, r -> {
+                tasks.incrementAndGet();
+                executor.execute(r);
+            }, 2);
+            wheel.addExpirationListener(e -> {
+                threads.add(Thread.currentThread().getName());
+                latch.countDown();
+            });
+            wheel.start();
+            for (int i = 0; i < 5; i++) {
+                wheel.add("e" + i, 20, TimeUnit.MILLISECONDS);
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals("[expirations, expirations, expirations, expirations, expirations]", threads.toString());
+            assertTrue("at most 2 elements per task: " + tasks.get(), tasks.get() >= 3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRejectedExpirationsNotifiedOnTheWorker() throws InterruptedException {
+        final AtomicInteger rejected = new AtomicInteger();
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final Queue<String> threads = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+        wheel = new TimingWheel<>(10, 8, TimeUnit.MILLISECONDS, r -> {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("saturated");
+        }, 1);
+        wheel.addExpirationListener(e -> {
+            expired.add(e);
+            threads.add(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        wheel.start();
+        wheel.add("a", 20, TimeUnit.MILLISECONDS);
+        wheel.add("b", 20, TimeUnit.MILLISECONDS);
+        wheel.add("c", 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, expired.size());
+        assertTrue(expired.contains("a") && expired.contains("b") && expired.contains("c"));
+        assertEquals("[Timing-Wheel, Timing-Wheel, Timing-Wheel]", threads.toString());
+        assertEquals(3, rejected.get());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testTickLagIsReported() throws InterruptedException {
+        final Queue<String> expired = new ConcurrentLinkedQueue<>();
+        final CountDownLatch latch = start(10, 8, expired, 1);
+        // a slow listener on the worker delays the following tick
+        wheel.addExpirationListener(e -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        wheel.add("slow", 10, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+
+        final long ticks = wheel.tickCount();
+        assertTrue("ticks: " + ticks, ticks > 5);
+        final long maxLag = wheel.maxTickLag(TimeUnit.MILLISECONDS);
+        assertTrue("max lag: " + maxLag + "ms", maxLag >= 80);
+        assertTrue(wheel.tickLag(TimeUnit.MILLISECONDS) <= maxLag);
+        final long averageLag = wheel.averageTickLag(TimeUnit.MICROSECONDS);
+        assertTrue("average lag: " + averageLag + "us", averageLag > 0);
+        assertTrue(averageLag <= wheel.maxTickLag(TimeUnit.MICROSECONDS));
+        assertTrue(wheel.tickCount() >= ticks);
+    }
+}
@@ -0,0 +1,144 @@
+package com.young.commons.thread;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdleStrategyTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * @return nanoseconds taken by a single idle call.
+     */
+    private static long timeIdle(IdleStrategy strategy, int workCount, long maxIdleNanos) {
+        final long start = System.nanoTime();
+        strategy.idle(workCount, maxIdleNanos);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Far shorter than the parks the tests expect, but long enough for a yield on a loaded machine.
+     */
+    private static void assertFast(long nanos) {
+        assertTrue("idled for " + nanos + "ns", nanos < 500 * MILLIS);
+    }
+
+    @Test(timeout = 10000)
+    public void testBusySpinAndYieldingNeverPark() {
+        for (IdleStrategy strategy : new IdleStrategy[]{BusySpinIdleStrategy.INSTANCE, YieldingIdleStrategy.INSTANCE}) {
+            for (int i = 0; i < 100; i++) {
+                assertFast(timeIdle(strategy, 0, Long.MAX_VALUE));
+            }
+            strategy.reset();
+            assertFast(timeIdle(strategy, 1, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testSleepingParksForAtMostTheIdleTime() {
+        final SleepingIdleStrategy strategy = new SleepingIdleStrategy(TimeUnit.SECONDS.toNanos(1));
+        // use up a stale permit of the test thread, which would cut the first park short
+        LockSupport.parkNanos(1);
+        final long slept = timeIdle(strategy, 0, Long.MAX_VALUE);
+        assertTrue("slept " + slept + "ns", slept >= 900 * MILLIS);
+
+        assertFast(timeIdle(strategy, 0, 5 * MILLIS));
+        assertFast(timeIdle(strategy, 0, 0));
+        assertFast(timeIdle(strategy, 3, Long.MAX_VALUE));
+        try {
+            new SleepingIdleStrategy(0);
+            fail("no sleep");
+        } catch (IllegalArgumentException expected) {
+            // must be positive
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testParkingStrategiesReturnWhenUnparked() throws InterruptedException {
+        final IdleStrategy[] strategies = {
+            new SleepingIdleStrategy(TimeUnit.MINUTES.toNanos(1)),
+            new BackoffIdleStrategy(0, 0, TimeUnit.MINUTES.toNanos(1), TimeUnit.MINUTES.toNanos(1))
+        };
+        // the backoff goes through spinning and yielding first
+        final int[] cyclesBeforeParking = {0, 3};
+        for (int s = 0; s < strategies.length; s++) {
+            final IdleStrategy strategy = strategies[s];
+            final int cycles = cyclesBeforeParking[s];
+            final CountDownLatch idling = new CountDownLatch(1);
+            final AtomicLong idled = new AtomicLong();
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < cycles; i++) {
+                    strategy.idle(0, Long.MAX_VALUE);
+                }
+                idling.countDown();
+                idled.set(timeIdle(strategy, 0, Long.MAX_VALUE));
+            });
+            thread.start();
+            idling.await();
+            Thread.sleep(50);
+            LockSupport.unpark(thread);
+            thread.join(5000);
+            assertTrue(strategy + " not unparked", !thread.isAlive() && idled.get() < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    public void testBackoffSpinsThenYieldsThenParks() {
+        final long minPark = 2 * MILLIS;
+        final long maxPark = 8 * MILLIS;
+        final BackoffIdleStrategy strategy = new BackoffIdleStrategy(5, 3, minPark, maxPark);
+        LockSupport.parkNanos(1);
+
+        long total = 0;
+        // the cycle starting to spin, 5 spinning cycles and 4 yielding ones, the last of which starts to park
+        for (int i = 0; i < 1 + 5 + 4; i++) {
+            total += timeIdle(strategy, 0, Long.MAX_VALUE);
+        }
+        assertFast(total);
+
+        // then parks of 2, 4, 8 and 8ms
+        long parked = 0;
+        for (int i = 0; i < 4; i++) {
+            parked += timeIdle(strategy, 0, Long.MAX_VALUE);
+        }
+        assertTrue("parked " + parked + "ns", parked >= 20 * MILLIS);
+        assertTrue("parked " + parked + "ns", parked < TimeUnit.SECONDS.toNanos(1));
+
+        // never for more than the idle time
+        assertFast(timeIdle(strategy, 0, 0));
+
+        // work done starts over from spinning
+        assertFast(timeIdle(strategy, 1, Long.MAX_VALUE));
+        assertFast(timeIdle(strategy, 0, Long.MAX_VALUE));
+        strategy.reset();
+        assertFast(timeIdle(strategy, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testBackoffArgumentsAreValidated() {
+        try {
+            new BackoffIdleStrategy(-1, 0, 1, 1);
+            fail("negative spins");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+        try {
+            new BackoffIdleStrategy(0, 0, 2, 1);
+            fail("min park above max park");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+        try {
+            new BackoffIdleStrategy(0, 0, 0, 1);
+            fail("no park");
+        } catch (IllegalArgumentException expected) {
+            // rejected
+        }
+    }
+}
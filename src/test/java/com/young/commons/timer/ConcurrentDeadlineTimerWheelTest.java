@@ -0,0 +1,102 @@
+package com.young.commons.timer;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentDeadlineTimerWheelTest {
+    private static final long RESOLUTION = 1024;
+    private static final int TICKS = 16;
+
+    @Test
+    public void testScheduleMovesAndCancelsById() {
+        final ConcurrentDeadlineTimerWheel wheel =
+            new ConcurrentDeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS, 8);
+        final long moved = wheel.reserveTimerId();
+        assertTrue(wheel.scheduleTimer(moved, 10 * RESOLUTION));
+        assertTrue(wheel.scheduleTimer(moved, 100 * RESOLUTION));
+        final long cancelled = wheel.scheduleTimer(5 * RESOLUTION);
+        assertTrue(wheel.cancelTimer(cancelled));
+        assertEquals(4, wheel.pendingCommands());
+
+        assertEquals(4, wheel.drainCommands());
+        assertEquals(1, wheel.timerCount());
+        assertEquals(100 * RESOLUTION, wheel.deadline(moved));
+        assertEquals(DeadlineTimerWheel.NULL_DEADLINE, wheel.deadline(cancelled));
+    }
+
+    @Test
+    public void testFullCommandRingRefuses() {
+        final ConcurrentDeadlineTimerWheel wheel =
+            new ConcurrentDeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS, 4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(wheel.scheduleTimer(RESOLUTION) != ConcurrentDeadlineTimerWheel.NULL_TIMER_ID);
+        }
+        assertEquals(ConcurrentDeadlineTimerWheel.NULL_TIMER_ID, wheel.scheduleTimer(RESOLUTION));
+        assertFalse(wheel.cancelTimer(0));
+        wheel.drainCommands();
+        assertTrue(wheel.cancelTimer(0));
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentProducers() throws InterruptedException {
+        final int producers = 4;
+        final int timersPerProducer = 20000;
+        final ConcurrentDeadlineTimerWheel wheel =
+            new ConcurrentDeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS, 256);
+        final Set<Long> scheduled = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(producers);
+        final long deadline = 1000 * RESOLUTION;
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < timersPerProducer; i++) {
+                    final long timerId = wheel.reserveTimerId();
+                    while (!wheel.scheduleTimer(timerId, deadline + i)) {
+                        Thread.yield();
+                    }
+                    // every other timer is cancelled right after it is scheduled
+                    if ((i & 1) == 0) {
+                        while (!wheel.cancelTimer(timerId)) {
+                            Thread.yield();
+                        }
+                    } else {
+                        scheduled.add(timerId);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+
+        // drains the commands without expiring anything meanwhile
+        while (done.getCount() > 0) {
+            wheel.poll(0, (timeUnit, now, timerId) -> {
+                throw new AssertionError("expired early: " + timerId);
+            }, Integer.MAX_VALUE);
+        }
+        wheel.drainCommands();
+        assertEquals(0, wheel.pendingCommands());
+        assertEquals(scheduled.size(), wheel.timerCount());
+
+        final Set<Long> expired = new HashSet<>();
+        final AtomicBoolean duplicate = new AtomicBoolean();
+        final long end = deadline + timersPerProducer;
+        while (wheel.timerCount() > 0) {
+            wheel.poll(end, (timeUnit, now, timerId) -> {
+                duplicate.compareAndSet(false, !expired.add(timerId));
+                return true;
+            }, Integer.MAX_VALUE);
+        }
+        assertFalse(duplicate.get());
+        assertEquals(producers * timersPerProducer / 2, expired.size());
+        assertEquals(scheduled, expired);
+    }
+}
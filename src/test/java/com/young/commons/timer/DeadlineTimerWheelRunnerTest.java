@@ -0,0 +1,177 @@
+package com.young.commons.timer;
+
+import com.young.commons.thread.BackoffIdleStrategy;
+import com.young.commons.thread.BusySpinIdleStrategy;
+import com.young.commons.thread.IdleStrategy;
+import com.young.commons.thread.SleepingIdleStrategy;
+import com.young.commons.thread.YieldingIdleStrategy;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.young.commons.timer.DeadlineTimerWheel.NULL_DEADLINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTimerWheelRunnerTest {
+    private static final long RESOLUTION = 1024;
+    /**
+     * About 65us per tick, on the {@link System#nanoTime()} time line.
+     */
+    private static final long NANO_RESOLUTION = 1 << 16;
+
+    private static ConcurrentDeadlineTimerWheel nanoWheel() {
+        return new ConcurrentDeadlineTimerWheel(TimeUnit.NANOSECONDS, System.nanoTime(), NANO_RESOLUTION, 256);
+    }
+
+    @Test
+    public void testDutyCycleOnTheCallersThread() {
+        final AtomicLong clock = new AtomicLong();
+        final ConcurrentDeadlineTimerWheel wheel =
+            new ConcurrentDeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, 16);
+        final List<Long> expired = new ArrayList<>();
+        final DeadlineTimerWheelRunner runner = new DeadlineTimerWheelRunner(
+            wheel, (timeUnit, now, timerId) -> expired.add(timerId), BusySpinIdleStrategy.INSTANCE, clock::get, 2);
+
+        final long first = runner.scheduleTimer(10 * RESOLUTION);
+        runner.scheduleTimer(10 * RESOLUTION);
+        runner.scheduleTimer(12 * RESOLUTION);
+        // pending commands are not timers yet
+        assertEquals(Long.MAX_VALUE, runner.idleNanos());
+        assertEquals(3, runner.doWork());
+        assertEquals(10 * RESOLUTION, runner.idleNanos());
+        assertEquals(0, runner.doWork());
+
+        clock.set(10 * RESOLUTION);
+        assertEquals(0, runner.idleNanos());
+        // at most 2 expired per cycle
+        assertEquals(2, runner.doWork());
+        assertEquals(first, (long) expired.get(0));
+        assertEquals(2 * RESOLUTION, runner.idleNanos());
+        clock.set(12 * RESOLUTION);
+        assertEquals(1, runner.doWork());
+        assertEquals(3, expired.size());
+        assertEquals(Long.MAX_VALUE, runner.idleNanos());
+
+        final long cancelled = runner.scheduleTimer(20 * RESOLUTION);
+        assertTrue(runner.cancelTimer(cancelled));
+        assertEquals(2, runner.doWork());
+        assertEquals(NULL_DEADLINE, wheel.nextDeadline());
+        assertEquals(Long.MAX_VALUE, runner.idleNanos());
+        clock.set(30 * RESOLUTION);
+        runner.doWork();
+        assertEquals(3, expired.size());
+    }
+
+    @Test
+    public void testExpiryLimitIsValidated() {
+        try {
+            new DeadlineTimerWheelRunner(nanoWheel(), (timeUnit, now, timerId) -> true,
+                BusySpinIdleStrategy.INSTANCE, System::nanoTime, 0);
+            fail("no timer could expire");
+        } catch (IllegalArgumentException expected) {
+            // must be positive
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testEveryIdleStrategyExpiresTheTimers() throws InterruptedException {
+        final IdleStrategy[] strategies = {
+            BusySpinIdleStrategy.INSTANCE,
+            YieldingIdleStrategy.INSTANCE,
+            new SleepingIdleStrategy(TimeUnit.MILLISECONDS.toNanos(5)),
+            new BackoffIdleStrategy(10, 5, TimeUnit.MICROSECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(5))
+        };
+        for (IdleStrategy strategy : strategies) {
+            final ConcurrentDeadlineTimerWheel wheel = nanoWheel();
+            final Map<Long, Long> deadlines = new ConcurrentHashMap<>();
+            final Map<Long, Long> expiredAt = new ConcurrentHashMap<>();
+            final CountDownLatch latch = new CountDownLatch(5);
+            final DeadlineTimerWheelRunner runner = new DeadlineTimerWheelRunner(wheel, (timeUnit, now, timerId) -> {
+                expiredAt.put(timerId, System.nanoTime());
+                latch.countDown();
+                return true;
+            }, strategy);
+            final Thread thread = runner.start();
+            try {
+                for (int i = 1; i <= 5; i++) {
+                    final long timerId = wheel.reserveTimerId();
+                    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10 * i);
+                    deadlines.put(timerId, deadline);
+                    assertTrue(runner.scheduleTimer(timerId, deadline));
+                }
+                assertTrue(strategy.toString(), latch.await(10, TimeUnit.SECONDS));
+            } finally {
+                runner.close();
+            }
+            assertFalse(runner.isRunning());
+            assertFalse(strategy + " thread left running", thread.isAlive());
+            assertEquals(deadlines.keySet(), expiredAt.keySet());
+            for (Map.Entry<Long, Long> entry : expiredAt.entrySet()) {
+                assertTrue(strategy + " expired early", entry.getValue() >= deadlines.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testSchedulingWakesTheRunnerUp() throws InterruptedException {
+        final ConcurrentDeadlineTimerWheel wheel = nanoWheel();
+        final CountDownLatch first = new CountDownLatch(1);
+        final CountDownLatch second = new CountDownLatch(2);
+        // idles for a minute unless woken up
+        final DeadlineTimerWheelRunner runner = new DeadlineTimerWheelRunner(wheel, (timeUnit, now, timerId) -> {
+            first.countDown();
+            second.countDown();
+            return true;
+        }, new SleepingIdleStrategy(TimeUnit.MINUTES.toNanos(1)));
+        runner.start();
+        try {
+            Thread.sleep(50);
+            final long start = System.nanoTime();
+            runner.scheduleTimer(start + TimeUnit.MILLISECONDS.toNanos(10));
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+
+            // idle again until the far timer, which a nearer one cuts short
+            runner.scheduleTimer(System.nanoTime() + TimeUnit.MINUTES.toNanos(10));
+            Thread.sleep(50);
+            final long timerId = wheel.reserveTimerId();
+            assertTrue(runner.scheduleTimer(timerId, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10)));
+            assertTrue(second.await(5, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        } finally {
+            runner.close();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void testFailingHandlerDoesNotStopTheRunner() throws InterruptedException {
+        final ConcurrentDeadlineTimerWheel wheel = nanoWheel();
+        final CountDownLatch latch = new CountDownLatch(2);
+        final long failing = wheel.reserveTimerId();
+        final DeadlineTimerWheelRunner runner = new DeadlineTimerWheelRunner(wheel, (timeUnit, now, timerId) -> {
+            latch.countDown();
+            if (timerId == failing) {
+                throw new IllegalStateException("handler failure");
+            }
+            return true;
+        }, new BackoffIdleStrategy());
+        runner.start();
+        try {
+            final long now = System.nanoTime();
+            runner.scheduleTimer(failing, now + TimeUnit.MILLISECONDS.toNanos(5));
+            runner.scheduleTimer(now + TimeUnit.MILLISECONDS.toNanos(20));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertTrue(runner.isRunning());
+        } finally {
+            runner.close();
+        }
+    }
+}
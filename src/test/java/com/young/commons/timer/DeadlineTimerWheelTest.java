@@ -0,0 +1,157 @@
+package com.young.commons.timer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.young.commons.timer.DeadlineTimerWheel.NULL_DEADLINE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DeadlineTimerWheelTest {
+    private static final long RESOLUTION = 1024;
+    private static final int TICKS = 8;
+
+    /**
+     * Poll until the time given, expiring at most one tick per poll as a duty cycle would.
+     */
+    private static void pollUntil(DeadlineTimerWheel wheel, long time, DeadlineTimerWheel.TimerHandler handler) {
+        while (wheel.currentTickTime() <= time) {
+            wheel.poll(time, handler, Integer.MAX_VALUE);
+        }
+        wheel.poll(time, handler, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testTimersExpireAfterTheirDeadline() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS);
+        final Map<Long, Long> deadlines = new HashMap<>();
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            // a quarter within the first rotation, the others in the heap of far timers
+            final long deadline = 1 + random.nextInt((int) (RESOLUTION * TICKS * 4));
+            deadlines.put(wheel.scheduleTimer(deadline), deadline);
+        }
+        assertEquals(1000, wheel.timerCount());
+
+        final List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= RESOLUTION * TICKS * 4; now += RESOLUTION / 4) {
+            final long time = now;
+            pollUntil(wheel, time, (timeUnit, t, timerId) -> {
+                final long deadline = deadlines.get(timerId);
+                assertTrue("expired at " + time + " before its deadline " + deadline, deadline <= time);
+                // at most a tick late
+                assertTrue("expired at " + time + " long after its deadline " + deadline,
+                    time - deadline < 2 * RESOLUTION);
+                expired.add(timerId);
+                return true;
+            });
+        }
+        assertEquals(1000, expired.size());
+        assertEquals(deadlines.keySet(), new HashSet<>(expired));
+        assertEquals(0, wheel.timerCount());
+    }
+
+    @Test
+    public void testCancelFarAndNearTimers() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS);
+        final long near = wheel.scheduleTimer(2 * RESOLUTION);
+        final long far = wheel.scheduleTimer(100 * RESOLUTION);
+        final long farther = wheel.scheduleTimer(200 * RESOLUTION);
+        assertEquals(2 * RESOLUTION, wheel.nextDeadline());
+        assertTrue(wheel.cancelTimer(near));
+        assertTrue(wheel.cancelTimer(far));
+        assertEquals(200 * RESOLUTION, wheel.nextDeadline());
+        assertEquals(NULL_DEADLINE, wheel.deadline(far));
+        assertEquals(200 * RESOLUTION, wheel.deadline(farther));
+        assertEquals(1, wheel.timerCount());
+        assertFalse(wheel.cancelTimer(far));
+    }
+
+    @Test
+    public void testTickArraysShrinkAfterBurst() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS, 4);
+        for (int i = 0; i < 100; i++) {
+            wheel.scheduleTimer(RESOLUTION + i);
+        }
+        assertEquals(128, wheel.tickAllocation());
+
+        final int[] expired = new int[1];
+        pollUntil(wheel, 2 * RESOLUTION, (timeUnit, now, timerId) -> {
+            expired[0]++;
+            return true;
+        });
+        assertEquals(100, expired[0]);
+        final long kept = wheel.scheduleTimer(2 * TICKS * RESOLUTION + 1);
+
+        // shrunk back once a rotation is over
+        pollUntil(wheel, TICKS * RESOLUTION, (timeUnit, now, timerId) -> true);
+        assertEquals(4, wheel.tickAllocation());
+        assertEquals(2 * TICKS * RESOLUTION + 1, wheel.deadline(kept));
+        assertEquals(1, wheel.timerCount());
+    }
+
+    @Test
+    public void testFarTimerReleasedWhenHandlerThrows() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS);
+        final long deadline = 100 * RESOLUTION;
+        final long timerId = wheel.scheduleTimer(deadline);
+        try {
+            wheel.poll(deadline, (timeUnit, now, id) -> {
+                throw new IllegalStateException("handler failure");
+            }, Integer.MAX_VALUE);
+            fail("the handler failure was swallowed");
+        } catch (IllegalStateException expected) {
+            // expired as if the handler returned true
+        }
+        assertEquals(0, wheel.timerCount());
+        assertEquals(NULL_DEADLINE, wheel.nextDeadline());
+        // the handle of the expired timer is free again
+        assertEquals(timerId, wheel.scheduleTimer(deadline * 2));
+    }
+
+    @Test
+    public void testFarTimerRestoredWhenHandlerRefuses() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS);
+        final long deadline = 100 * RESOLUTION;
+        final long timerId = wheel.scheduleTimer(deadline);
+        assertEquals(0, wheel.poll(deadline, (timeUnit, now, id) -> false, Integer.MAX_VALUE));
+        assertEquals(1, wheel.timerCount());
+        assertEquals(deadline, wheel.deadline(timerId));
+        assertEquals(1, wheel.poll(deadline, (timeUnit, now, id) -> true, Integer.MAX_VALUE));
+        assertEquals(0, wheel.timerCount());
+    }
+
+    @Test
+    public void testCachedNextDeadlineFollowsTheTimers() {
+        final DeadlineTimerWheel wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, 0, RESOLUTION, TICKS);
+        final List<Long> timerIds = new ArrayList<>();
+        final Random random = new Random(42);
+        long now = 0;
+        for (int i = 0; i < 20_000; i++) {
+            final int op = random.nextInt(10);
+            if (op < 5) {
+                timerIds.add(wheel.scheduleTimer(now + random.nextInt((int) (RESOLUTION * TICKS * 3))));
+            } else if (op < 8 && !timerIds.isEmpty()) {
+                // the earliest timer now and then
+                final int index = random.nextBoolean() ? random.nextInt(timerIds.size()) : 0;
+                wheel.cancelTimer(timerIds.remove(index));
+            } else {
+                now += random.nextInt((int) RESOLUTION);
+                wheel.poll(now, (timeUnit, time, timerId) -> random.nextInt(8) != 0, 1 + random.nextInt(4));
+            }
+
+            final long[] earliest = {NULL_DEADLINE};
+            wheel.forEach((deadline, timerId) -> earliest[0] = Math.min(earliest[0], deadline));
+            assertEquals("after operation " + i, earliest[0], wheel.nextDeadline());
+        }
+    }
+}